@@ -8,11 +8,7 @@ IF %argsC%==0 (
 	java -jar simulator.jar -m=structured
 )
 IF NOT %argsC%==0 (
-  IF NOT EXIST ".\logs\" MKDIR ".\logs\"
-  FOR %%A IN (%*) DO (
-    ECHO %%A
-    java -jar simulator.jar -m=structured %%A > "logs\%%~nxA.log"
-  )
+  java -jar simulator.jar -m=structured --batch %*
 )
 endlocal
 pause
@@ -0,0 +1,89 @@
+package nl.utwente.simulator.benchmark;
+
+import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.entities.RadicalPosition;
+import nl.utwente.simulator.entities.abstractSpecies.CompositionalSpecies;
+import nl.utwente.simulator.entities.abstractSpecies.CompositionalSpeciesFactory;
+import nl.utwente.simulator.entities.abstractSpecies.SizeSpecies;
+import nl.utwente.simulator.entities.abstractSpecies.SizeSpeciesFactory;
+import nl.utwente.simulator.simulator.RejectedReaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the creation of the abstract species (keys) of reaction products,
+ * which happens in every step of <code>Simulator.run</code>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AbstractSpeciesFactoryBenchmark {
+
+    private CompositionalSpeciesFactory compositionalFactory;
+    private SizeSpeciesFactory sizeFactory;
+
+    private CompositionalSpecies compositionalPolymer, compositionalMonomer;
+    private SizeSpecies sizePolymer, sizeMonomer;
+    private final long[] compositionalKey = new long[CompositionalSpecies.KEY_LENGTH];
+    private final long[] sizeKey = new long[SizeSpecies.KEY_LENGTH];
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Settings.init();
+        compositionalFactory = new CompositionalSpeciesFactory();
+        sizeFactory = new SizeSpeciesFactory();
+
+        compositionalMonomer = compositionalFactory.abstractSpeciesForMonomer();
+        compositionalPolymer = compositionalFactory.createGroup(1, 1500, 500, 700, 1, 2, 3);
+        sizeMonomer = sizeFactory.abstractSpeciesForMonomer();
+        sizePolymer = sizeFactory.abstractSpeciesAfterInterMolecularReaction(
+                sizeFactory.abstractSpeciesForInitiatingMolecule(), RadicalPosition.CHAIN_END_NON_CROSSLINKER, sizeFactory.abstractSpeciesForCrosslinker()
+        );
+    }
+
+    @Benchmark
+    public CompositionalSpecies compositionalInterMolecular() throws RejectedReaction {
+        return compositionalFactory.abstractSpeciesAfterInterMolecularReaction(compositionalPolymer, RadicalPosition.MID_CHAIN_CROSSLINKER, compositionalMonomer);
+    }
+
+    @Benchmark
+    public CompositionalSpecies compositionalIntraMolecular() throws RejectedReaction {
+        return compositionalFactory.abstractSpeciesAfterIntraMolecularReaction(compositionalPolymer, RadicalPosition.CHAIN_END_CROSSLINKER);
+    }
+
+    @Benchmark
+    public int compositionalHashCode() throws RejectedReaction {
+        return compositionalFactory.abstractSpeciesAfterInterMolecularReaction(compositionalPolymer, RadicalPosition.MID_CHAIN_CROSSLINKER, compositionalMonomer).hashCode();
+    }
+
+    @Benchmark
+    public long[] compositionalInterMolecularKey() throws RejectedReaction {                                            //As used by the simulator, without allocation
+        compositionalFactory.keyAfterInterMolecularReaction(compositionalPolymer, RadicalPosition.MID_CHAIN_CROSSLINKER, compositionalMonomer, compositionalKey);
+        return compositionalKey;
+    }
+
+    @Benchmark
+    public SizeSpecies sizeInterMolecular() throws RejectedReaction {
+        return sizeFactory.abstractSpeciesAfterInterMolecularReaction(sizePolymer, RadicalPosition.CHAIN_END_CROSSLINKER, sizeMonomer);
+    }
+
+    @Benchmark
+    public SizeSpecies sizeIntraMolecular() throws RejectedReaction {
+        return sizeFactory.abstractSpeciesAfterIntraMolecularReaction(sizePolymer, RadicalPosition.CHAIN_END_CROSSLINKER);
+    }
+
+    @Benchmark
+    public int sizeHashCode() throws RejectedReaction {
+        return sizeFactory.abstractSpeciesAfterInterMolecularReaction(sizePolymer, RadicalPosition.CHAIN_END_CROSSLINKER, sizeMonomer).hashCode();
+    }
+
+    @Benchmark
+    public long[] sizeInterMolecularKey() throws RejectedReaction {
+        sizeFactory.keyAfterInterMolecularReaction(sizePolymer, RadicalPosition.CHAIN_END_CROSSLINKER, sizeMonomer, sizeKey);
+        return sizeKey;
+    }
+}
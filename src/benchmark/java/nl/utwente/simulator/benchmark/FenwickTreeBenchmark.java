@@ -0,0 +1,105 @@
+package nl.utwente.simulator.benchmark;
+
+import nl.utwente.simulator.utils.DecimalFenwickTree;
+import nl.utwente.simulator.utils.IntegerSamplingTree;
+import nl.utwente.simulator.utils.SamplingTree;
+import nl.utwente.simulator.utils.random.Random;
+import nl.utwente.simulator.utils.random.SplitMixRandom;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the sampling and update operations of the Fenwick trees used by <code>Simulator.pickVinyl</code>
+ * and the <code>RadicalTracker</code>, for tree sizes in the range of live species seen in production.
+ * The integer operations are measured for every <code>SamplingTree</code>; note that <code>indexOf</code> of the
+ * composition-rejection sampler takes linear time, as it only supports <code>sample</code> efficiently
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class FenwickTreeBenchmark {
+
+    private static final int SAMPLES = 1 << 16;                                                                         //Precomputed samples, so we do not measure the random number generator
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"FENWICK", "BARY", "COMPOSITION_REJECTION"})
+    public SamplingTree tree;
+
+    private IntegerSamplingTree integerTree;
+    private DecimalFenwickTree decimalTree;
+    private IntegerSamplingTree growingTree;
+
+    private long[] integerSamples;
+    private double[] decimalSamples;
+    private int[] indices;
+    private int sample;
+    private final Random random = new SplitMixRandom(42);
+
+    @Setup(Level.Trial)
+    public void setup(){
+        SplittableRandom random = new SplittableRandom(42);
+        integerTree = IntegerSamplingTree.create(tree);
+        decimalTree = new DecimalFenwickTree();
+        growingTree = IntegerSamplingTree.create(tree);
+        for(int i=0;i<size;i++){
+            integerTree.add(1 + random.nextInt(100));
+            decimalTree.add(random.nextDouble());
+        }
+
+        integerSamples = new long[SAMPLES];
+        decimalSamples = new double[SAMPLES];
+        indices = new int[SAMPLES];
+        for(int i=0;i<SAMPLES;i++){
+            integerSamples[i] = random.nextLong(integerTree.totalSum());
+            decimalSamples[i] = random.nextDouble(decimalTree.totalSum);
+            indices[i] = random.nextInt(size);
+        }
+    }
+
+    private int next(){
+        sample = (sample + 1) & (SAMPLES - 1);
+        return sample;
+    }
+
+    @Benchmark
+    public int integerIndexOf(){
+        return integerTree.indexOf(integerSamples[next()]);
+    }
+
+    @Benchmark
+    public int integerSample(){
+        return integerTree.sample(random);
+    }
+
+    @Benchmark
+    public void integerAdj(){
+        int i = next();
+        integerTree.adj(indices[i], 1);                                                                                 //Keep the tree unchanged on average, as the simulator does
+        integerTree.adj(indices[(i + 1) & (SAMPLES - 1)], -1);
+    }
+
+    @Benchmark
+    public int decimalIndexOf(){
+        return decimalTree.indexOf(decimalSamples[next()]);
+    }
+
+    /**
+     * Appends to a tree until it reaches <code>size</code> elements, after which we start over with an empty tree.
+     * This includes the amortized cost of doubling the tree
+     */
+    @Benchmark
+    public IntegerSamplingTree integerAdd(){
+        if(growingTree.size() >= size){
+            growingTree = IntegerSamplingTree.create(tree);
+        }
+        growingTree.add(integerSamples[next()]);
+        return growingTree;
+    }
+}
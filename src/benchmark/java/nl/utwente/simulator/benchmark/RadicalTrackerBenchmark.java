@@ -0,0 +1,88 @@
+package nl.utwente.simulator.benchmark;
+
+import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.entities.species.unstructured.UnstructuredParticle;
+import nl.utwente.simulator.entities.species.unstructured.UnstructuredSpeciesStore;
+import nl.utwente.simulator.utils.RadicalTracker;
+import nl.utwente.simulator.utils.SamplingTree;
+import nl.utwente.simulator.utils.random.SplitMixRandom;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures picking and updating radicals in the <code>RadicalTracker</code>,
+ * which walks three Fenwick trees in lockstep, either stored separately or interleaved in a single array,
+ * or a B-ary tree or composition-rejection sampler depending on <code>tree</code>, in which case the layout is ignored
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class RadicalTrackerBenchmark {
+
+    private static final int SAMPLES = 1 << 16;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int species;
+
+    @Param({"SEPARATE", "INTERLEAVED", "FIXED_POINT"})
+    public RadicalTracker.Layout layout;
+
+    @Param({"FENWICK", "BARY", "COMPOSITION_REJECTION"})
+    public SamplingTree tree;
+
+    private RadicalTracker tracker;
+    private UnstructuredSpeciesStore population;
+    private long activeVinylGroups;
+
+    private int[] indices;
+    private int sample;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Settings.init();
+        Settings.RADICAL_TRACKER_LAYOUT = layout;
+        Settings.SAMPLING_TREE = tree;
+        SimulationContext context = SimulationContext.fromSettings();
+        population = new UnstructuredSpeciesStore(context);
+        tracker = RadicalTracker.create(context, new SplitMixRandom(42), 0);
+        activeVinylGroups = 0;
+        for(UnstructuredParticle p : SpeciesPopulation.create(species, 100, 42)){
+            population.add(p);
+            tracker.addAll(population, population.slots()-1);
+            activeVinylGroups += p.number() * p.numberOfActiveVinylGroups();
+        }
+
+        SplittableRandom random = new SplittableRandom(42);
+        indices = new int[SAMPLES];
+        for(int i=0;i<SAMPLES;i++){
+            indices[i] = random.nextInt(species);
+        }
+    }
+
+    private int next(){
+        sample = (sample + 1) & (SAMPLES - 1);
+        return indices[sample];
+    }
+
+    @Benchmark
+    public int pickRadical(){
+        return tracker.pickRadical(activeVinylGroups);
+    }
+
+    /**
+     * Increases and decreases the same species, keeping the trees unchanged
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void increaseAndDecreaseParticle(){
+        int index = next();
+        tracker.increaseParticle(population, index);
+        tracker.decreaseParticle(population, index);
+    }
+}
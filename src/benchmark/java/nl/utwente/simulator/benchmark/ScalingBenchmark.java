@@ -0,0 +1,346 @@
+package nl.utwente.simulator.benchmark;
+
+import nl.utwente.simulator.Simulator;
+import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.entities.abstractSpecies.CompositionalSpeciesFactory;
+import nl.utwente.simulator.entities.abstractSpecies.SizeSpeciesFactory;
+import nl.utwente.simulator.entities.species.structured.StructuredSpeciesFactory;
+import nl.utwente.simulator.entities.species.unstructured.UnstructuredSpeciesFactory;
+import nl.utwente.simulator.input.InputSource;
+import nl.utwente.simulator.output.LatencyHistogram;
+import nl.utwente.simulator.output.PhaseTimer;
+import nl.utwente.simulator.simulator.AbstractSpecies;
+import nl.utwente.simulator.simulator.AbstractSpeciesFactory;
+import nl.utwente.simulator.simulator.Event;
+import nl.utwente.simulator.simulator.SliceListener;
+import nl.utwente.simulator.simulator.Species;
+import nl.utwente.simulator.simulator.SpeciesFactory;
+import nl.utwente.simulator.utils.RadicalTracker;
+import nl.utwente.simulator.utils.SamplingTree;
+import nl.utwente.simulator.utils.random.Random;
+import nl.utwente.simulator.utils.random.SplitMixRandom;
+import nl.utwente.simulator.utils.storage.Storage;
+import org.apache.log4j.Level;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static nl.utwente.simulator.config.Settings.*;
+
+/**
+ * Runs the complete simulation headlessly for a number of presets and reports how the throughput
+ * develops with conversion and number of species, as JSON.
+ *
+ * Usage: java -cp target/benchmarks.jar nl.utwente.simulator.benchmark.ScalingBenchmark [options]
+ *
+ *  --molecules=100000,1000000       numbers of initial molecules (default: 10^5, 10^6, 10^7 and 10^8)
+ *  --modes=unstructured,structured  particle representations (default: both)
+ *  --factories=compositional,size   abstract species factories (default: both)
+ *  --radical-tracker=interleaved    memory layout of the radical tracker (default: separate)
+ *  --rebuild-interval=1e6           steps between exact rebuilds of the radical tracker (default: 0, never)
+ *  --sampling-tree=bary             tree from which vinyl groups and radicals are sampled (default: fenwick)
+ *  --rejection-free=true            weigh reactions by steric hindrance instead of rejecting them (default: false)
+ *  --timing-interval=1000           picked reactions between the ones of which the phases are timed (default: 0, never)
+ *  --output=scaling.json            file to write the results to (default: output/scaling-benchmark.json)
+ *
+ * Every run should be compared with runs of the same preset on the same machine and JVM settings.
+ */
+public class ScalingBenchmark {
+
+    public static final int DECILES = 10;
+    public static final long SEED = 42;                                                                                 //Every preset simulates the same reactions in every run
+
+    public static class Preset {
+        public final InputSource mode;
+        public final String factory;
+        public final long molecules;
+
+        public Preset(InputSource mode, String factory, long molecules) {
+            this.mode = mode;
+            this.factory = factory;
+            this.molecules = molecules;
+        }
+
+        public String name(){
+            return String.format("%s-%s-%d", mode.name().toLowerCase(), factory, molecules);
+        }
+
+        AbstractSpeciesFactory<? extends AbstractSpecies> abstractSpeciesFactory(){
+            return factory.equals("size")
+                ? new SizeSpeciesFactory()
+                : new CompositionalSpeciesFactory();
+        }
+
+        SpeciesFactory<?> speciesFactory(SimulationContext context, Random random){
+            return mode == InputSource.STRUCTURED
+                ? new StructuredSpeciesFactory(context, random)
+                : new UnstructuredSpeciesFactory(context);
+        }
+    }
+
+    /**
+     * Records the number of steps and the time spent per decile of conversion
+     */
+    public static class Measurement implements SliceListener {
+        final long[] steps = new long[DECILES];
+        final long[] nanos = new long[DECILES];
+        final int[] species = new int[DECILES];                                                                         //Number of species at the end of each decile
+        int maxSpecies;
+        int finalSpecies;
+        long finalSteps;
+        double finalConversion;
+
+        private long previousSteps;
+        private long previousTime = System.nanoTime();
+
+        @Override
+        public void slice(double conversion, long stepNumber, int numberOfSpecies) {
+            long time = System.nanoTime();
+            int decile = Math.min(DECILES - 1, (int) (conversion / (100 / DECILES)));
+            steps[decile] += stepNumber - previousSteps;
+            nanos[decile] += time - previousTime;
+            species[decile] = numberOfSpecies;
+
+            maxSpecies = Math.max(maxSpecies, numberOfSpecies);
+            finalSpecies = numberOfSpecies;
+            finalSteps = stepNumber;
+            finalConversion = conversion;
+            previousSteps = stepNumber;
+            previousTime = time;
+        }
+    }
+
+    public static List<Preset> presets(List<Long> molecules, List<InputSource> modes, List<String> factories){
+        List<Preset> presets = new ArrayList<>();
+        for(InputSource mode : modes){
+            for(String factory : factories){
+                for(long n : molecules){
+                    presets.add(new Preset(mode, factory, n));
+                }
+            }
+        }
+        return presets;
+    }
+
+    private static <S extends Species, A extends AbstractSpecies> Simulator<S, A> simulator(SimulationContext context, AbstractSpeciesFactory<A> abstractSpeciesFactory, SpeciesFactory<S> speciesFactory, Random random) throws ParseException {
+        return new Simulator<>(context, abstractSpeciesFactory, speciesFactory, random);
+    }
+
+    public static String run(Preset preset, String outputDirectory) throws Exception {
+        INPUT_SOURCE = preset.mode;
+        NUMBER_OF_MOLECULES = preset.molecules;
+        OUTPUT_DIRECTORY = outputDirectory + File.separator + preset.name();
+        MAX_3D_MODEL_SIZES_TEXT = "" + Integer.MAX_VALUE;                                                               //Do not generate (or stop at) intermediate 3D models
+        MAX_3D_MODEL_SIZES.clear();
+        Settings.init();
+        LOG_TO_FILE = false;
+        SimulationContext context = SimulationContext.fromSettings();
+
+        Random random = new SplitMixRandom(SEED);
+        Simulator<?, ?> sim = simulator(context, preset.abstractSpeciesFactory(), preset.speciesFactory(context, random), random);
+        Measurement measurement = new Measurement();
+        sim.addSliceListener(measurement);
+
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+            if(pool.getType() == MemoryType.HEAP){
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        long gcTime = -gcTime();
+        long gcCount = -gcCount();
+        long start = System.nanoTime();
+
+        sim.run();
+
+        long wallTime = System.nanoTime() - start;
+        gcTime += gcTime();
+        gcCount += gcCount();
+        long peakHeap = 0;
+        for(MemoryPoolMXBean pool : heapPools){
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("    {\n");
+        json.append(String.format(Locale.ROOT, "      \"preset\": \"%s\",\n", preset.name()));
+        json.append(String.format(Locale.ROOT, "      \"mode\": \"%s\",\n", preset.mode.name()));
+        json.append(String.format(Locale.ROOT, "      \"abstractSpeciesFactory\": \"%s\",\n", preset.abstractSpeciesFactory().getClass().getSimpleName()));
+        json.append(String.format(Locale.ROOT, "      \"molecules\": %d,\n", preset.molecules));
+        json.append(String.format(Locale.ROOT, "      \"wallTimeSeconds\": %.3f,\n", wallTime / 1e9));
+        json.append(String.format(Locale.ROOT, "      \"steps\": %d,\n", measurement.finalSteps));
+        json.append(String.format(Locale.ROOT, "      \"finalConversion\": %.2f,\n", measurement.finalConversion));
+        json.append(String.format(Locale.ROOT, "      \"stepsPerSecond\": %.1f,\n", measurement.finalSteps / (wallTime / 1e9)));
+        json.append(String.format(Locale.ROOT, "      \"peakHeapBytes\": %d,\n", peakHeap));
+        json.append(String.format(Locale.ROOT, "      \"gcTimeSeconds\": %.3f,\n", gcTime / 1e3));
+        json.append(String.format(Locale.ROOT, "      \"gcCount\": %d,\n", gcCount));
+        json.append(String.format(Locale.ROOT, "      \"finalSpecies\": %d,\n", measurement.finalSpecies));
+        json.append(String.format(Locale.ROOT, "      \"maxSpecies\": %d,\n", measurement.maxSpecies));
+        json.append(String.format(Locale.ROOT, "      \"maxRelativeDrift\": %.3e,\n", sim.getMaxRelativeDrift()));
+        json.append(String.format(Locale.ROOT, "      \"rejectionRatio\": %.4f,\n", sim.getRejectionRatio()));
+        json.append("      \"events\": {");
+        for(Event event : Event.values()){
+            json.append(String.format(Locale.ROOT, "%s\"%s\": %d", event.ordinal() > 0 ? ", " : "", event.name(), sim.getEventCount(event)));
+        }
+        json.append("},\n");
+        PhaseTimer phaseTimer = sim.getPhaseTimer();
+        if(phaseTimer != null){
+            json.append("      \"phases\": {");
+            for(PhaseTimer.Phase phase : PhaseTimer.Phase.values()){
+                LatencyHistogram histogram = phaseTimer.total(phase);
+                json.append(String.format(Locale.ROOT, "%s\"%s\": {\"count\": %d, \"totalSeconds\": %.3f, \"meanNanos\": %.1f, \"p50Nanos\": %d, \"p99Nanos\": %d}",
+                        phase.ordinal() > 0 ? ", " : "",
+                        phase.name(),
+                        histogram.count(),
+                        histogram.totalNanos() / 1e9,
+                        histogram.meanNanos(),
+                        histogram.quantileNanos(0.5),
+                        histogram.quantileNanos(0.99)
+                ));
+            }
+            json.append("},\n");
+        }
+        json.append("      \"deciles\": [\n");
+        for(int d=0;d<DECILES;d++){
+            double seconds = measurement.nanos[d] / 1e9;
+            json.append(String.format(Locale.ROOT,
+                    "        {\"fromConversion\": %d, \"toConversion\": %d, \"steps\": %d, \"seconds\": %.3f, \"stepsPerSecond\": %s, \"species\": %d}%s\n",
+                    d * (100 / DECILES),
+                    (d + 1) * (100 / DECILES),
+                    measurement.steps[d],
+                    seconds,
+                    measurement.steps[d] > 0 ? String.format(Locale.ROOT, "%.1f", measurement.steps[d] / seconds) : "null",
+                    measurement.species[d],
+                    d < DECILES - 1 ? "," : ""
+            ));
+        }
+        json.append("      ]\n");
+        json.append("    }");
+        return json.toString();
+    }
+
+    private static long gcTime(){
+        long time = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static long gcCount(){
+        long count = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Long> molecules = Arrays.asList(100_000L, 1_000_000L, 10_000_000L, 100_000_000L);
+        List<InputSource> modes = Arrays.asList(InputSource.UNSTRUCTURED, InputSource.STRUCTURED);
+        List<String> factories = Arrays.asList("compositional", "size");
+        String outputFile = "output" + File.separator + "scaling-benchmark.json";
+
+        for(String arg : args){
+            String[] option = arg.split("=", 2);
+            if(option.length != 2){
+                throw new IllegalArgumentException("Unknown argument "+arg);
+            }
+            List<String> values = Arrays.asList(option[1].toLowerCase().split(","));
+            switch(option[0]){
+                case "--molecules":
+                    molecules = new ArrayList<>();
+                    for(String v : values){
+                        molecules.add((long) Double.parseDouble(v));                                                    //Allow scientific notation, e.g. 1e7
+                    }
+                    break;
+                case "--modes":
+                    modes = new ArrayList<>();
+                    for(String v : values){
+                        modes.add(InputSource.valueOf(v.toUpperCase()));
+                    }
+                    break;
+                case "--factories":
+                    factories = values;
+                    break;
+                case "--radical-tracker":                                                                               //separate, interleaved or fixed_point
+                    RADICAL_TRACKER_LAYOUT = RadicalTracker.Layout.valueOf(option[1].toUpperCase());
+                    break;
+                case "--rebuild-interval":
+                    REBUILD_INTERVAL = (long) Double.parseDouble(option[1]);
+                    break;
+                case "--sampling-tree":                                                                                 //fenwick, bary or composition_rejection
+                    SAMPLING_TREE = SamplingTree.valueOf(option[1].toUpperCase());
+                    break;
+                case "--storage":                                                                                       //heap, direct or mapped
+                    STORAGE = Storage.valueOf(option[1].toUpperCase());
+                    break;
+                case "--storage-directory":
+                    STORAGE_DIRECTORY = option[1];
+                    break;
+                case "--rejection-free":
+                    REJECTION_FREE_STERIC_HINDRANCE = Boolean.parseBoolean(option[1]);
+                    break;
+                case "--timing-interval":
+                    TIMING_INTERVAL = (long) Double.parseDouble(option[1]);
+                    break;
+                case "--output":
+                    outputFile = option[1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument "+arg);
+            }
+        }
+
+        LOG_LEVEL = Level.WARN;                                                                                         //Run headless, only report problems
+        log.setLevel(LOG_LEVEL);
+
+        File output = new File(outputFile).getAbsoluteFile();
+        String outputDirectory = output.getParent() + File.separator + "scaling-benchmark";
+
+        List<String> results = new ArrayList<>();
+        for(Preset preset : presets(molecules, modes, factories)){
+            System.err.println("Running "+preset.name());
+            results.add(run(preset, outputDirectory));
+        }
+
+        String json = "{\n" +
+                String.format(Locale.ROOT, "  \"javaVersion\": \"%s\",\n", System.getProperty("java.version")) +
+                String.format(Locale.ROOT, "  \"availableProcessors\": %d,\n", Runtime.getRuntime().availableProcessors()) +
+                String.format(Locale.ROOT, "  \"maxHeapBytes\": %d,\n", Runtime.getRuntime().maxMemory()) +
+                String.format(Locale.ROOT, "  \"assertionsEnabled\": %b,\n", ASSERTIONS_ENABLED) +
+                String.format(Locale.ROOT, "  \"radicalTracker\": \"%s\",\n", RADICAL_TRACKER_LAYOUT) +
+                String.format(Locale.ROOT, "  \"samplingTree\": \"%s\",\n", SAMPLING_TREE) +
+                String.format(Locale.ROOT, "  \"storage\": \"%s\",\n", STORAGE) +
+                String.format(Locale.ROOT, "  \"rebuildInterval\": %d,\n", REBUILD_INTERVAL) +
+                String.format(Locale.ROOT, "  \"rejectionFree\": %b,\n", REJECTION_FREE_STERIC_HINDRANCE) +
+                String.format(Locale.ROOT, "  \"timingInterval\": %d,\n", TIMING_INTERVAL) +
+                "  \"runs\": [\n" +
+                String.join(",\n", results) + "\n" +
+                "  ]\n" +
+                "}\n";
+
+        writeFile(output, json);
+        System.out.print(json);
+    }
+
+    private static void writeFile(File file, String contents) throws IOException {
+        nl.utwente.simulator.output.FileWriter.createDirectoryIfNonExistent(file.getParent());
+        Files.write(Paths.get(file.getPath()), contents.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,94 @@
+package nl.utwente.simulator.benchmark;
+
+import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.entities.species.structured.StructuredParticle;
+import nl.utwente.simulator.entities.species.structured.StructuredSpeciesFactory;
+import nl.utwente.simulator.entities.species.unstructured.UnstructuredParticle;
+import nl.utwente.simulator.entities.species.unstructured.UnstructuredSpeciesFactory;
+import nl.utwente.simulator.simulator.RejectedReaction;
+import nl.utwente.simulator.utils.random.SplitMixRandom;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the creation of reaction products by the species factories,
+ * which happens whenever <code>Simulator.run</code> encounters a new species
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class SpeciesFactoryBenchmark {
+
+    /**
+     * Number of propagation steps used to grow the radical particle, the cost of structured species grows with its size
+     */
+    @Param({"100", "1000", "10000"})
+    public int particleSize;
+
+    private UnstructuredSpeciesFactory unstructuredFactory;
+    private UnstructuredParticle unstructuredPolymer, unstructuredMonomer;
+
+    private StructuredSpeciesFactory structuredFactory;
+    private StructuredParticle structuredPolymer, structuredMonomer, structuredCrosslinker;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Settings.init();
+        SimulationContext context = SimulationContext.fromSettings();
+
+        unstructuredFactory = new UnstructuredSpeciesFactory(context);
+        unstructuredMonomer = unstructuredFactory.createM(1);
+        List<UnstructuredParticle> population = SpeciesPopulation.create(particleSize, 1, 42);
+        unstructuredPolymer = population.get(population.size()-1);
+
+        structuredFactory = new StructuredSpeciesFactory(context, new SplitMixRandom(42));
+        StructuredParticle i = structuredFactory.createI(1);
+        structuredMonomer = structuredFactory.createM(1);
+        structuredCrosslinker = structuredFactory.createC(1);
+
+        StructuredParticle p = i;
+        for(int step=0;step<particleSize;step++){
+            if(step%5 == 4 && p.numberOfActiveVinylGroups() > 0){                                                       //Regularly add another chain, so the number of reactive centers grows as well
+                p = structuredFactory.createSpecies(i, 0, p);
+            }else{
+                p = structuredFactory.createSpecies(p, 0, step%3 == 0 ? structuredCrosslinker : structuredMonomer);
+            }
+        }
+        structuredPolymer = p;
+    }
+
+    @Benchmark
+    public UnstructuredParticle unstructuredInterMolecular() throws RejectedReaction {
+        return unstructuredFactory.createSpecies(unstructuredPolymer, 0, unstructuredMonomer);
+    }
+
+    @Benchmark
+    public UnstructuredParticle unstructuredIntraMolecular() throws RejectedReaction {
+        return unstructuredFactory.createSpecies(unstructuredPolymer, 0);
+    }
+
+    @Benchmark
+    public StructuredParticle structuredInterMolecular() {
+        return structuredFactory.createSpecies(structuredPolymer, 0, structuredMonomer);
+    }
+
+    @Benchmark
+    public StructuredParticle structuredInterMolecularPolymer() {
+        return structuredFactory.createSpecies(structuredPolymer, 0, structuredPolymer);
+    }
+
+    @Benchmark
+    public StructuredParticle structuredIntraMolecular() {
+        try {
+            return structuredFactory.createSpecies(structuredPolymer, (int) structuredPolymer.numberOfRadicals() - 1);
+        } catch (RejectedReaction e) {                                                                                  //Same rejection as in the simulator, which is part of the cost
+            return null;
+        }
+    }
+}
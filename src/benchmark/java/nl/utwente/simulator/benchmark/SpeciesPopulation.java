@@ -0,0 +1,41 @@
+package nl.utwente.simulator.benchmark;
+
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.entities.species.unstructured.UnstructuredParticle;
+import nl.utwente.simulator.entities.species.unstructured.UnstructuredSpeciesFactory;
+import nl.utwente.simulator.simulator.RejectedReaction;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Creates a population of distinct unstructured species for the benchmarks,
+ * similar to what the simulator holds after a number of propagation steps
+ */
+public class SpeciesPopulation {
+
+    /**
+     * Creates <code>size</code> distinct species by repeatedly propagating a growing chain with monomers and crosslinkers.
+     * Every species is given a random number of particles between 1 and <code>maxNumber</code>
+     */
+    public static List<UnstructuredParticle> create(int size, int maxNumber, long seed) throws RejectedReaction, ParseException {
+        UnstructuredSpeciesFactory factory = new UnstructuredSpeciesFactory(SimulationContext.fromSettings());
+        SplittableRandom random = new SplittableRandom(seed);
+
+        UnstructuredParticle m = factory.createM(1);
+        UnstructuredParticle c = factory.createC(1);
+
+        List<UnstructuredParticle> species = new ArrayList<>(size);
+        UnstructuredParticle p = factory.createI(1);
+        for(int i=0;i<size;i++){
+            p = factory.createSpecies(p, 0, i%3 == 0 ? c : m);                                                          //Every third step a crosslinker is added, so the number of vinyl groups varies as well
+            for(int n=random.nextInt(maxNumber);n>0;n--){
+                p.increaseNumber();
+            }
+            species.add(p);
+        }
+        return species;
+    }
+}
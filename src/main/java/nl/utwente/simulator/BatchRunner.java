@@ -0,0 +1,192 @@
+package nl.utwente.simulator;
+
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.input.ExcelInput;
+import nl.utwente.simulator.input.InputSource;
+import nl.utwente.simulator.output.FileWriter;
+import nl.utwente.simulator.output.RunLogAppender;
+import nl.utwente.simulator.simulator.SliceListener;
+import nl.utwente.simulator.utils.random.Random;
+import org.apache.log4j.MDC;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static nl.utwente.simulator.config.Settings.*;
+
+/**
+ * Runs the simulations of multiple workbooks concurrently on a bounded pool of workers.
+ *
+ * Every workbook is simulated with its own <code>SimulationContext</code>, writes its output to
+ * <code>[workbook directory]/output/[workbook name]</code> and its log to <code>[log directory]/[workbook name].log</code>.
+ * The wall time and throughput of all runs are written to <code>[summary directory]/batch-summary.csv</code>.
+ */
+public class BatchRunner {
+
+    public static final String SUMMARY_FILE = "batch-summary";
+    public static final long DEFAULT_HEAP_PER_RUN = 512L * 1024 * 1024;                                                 //in bytes
+
+    /**
+     * Outcome of the simulation of a single workbook
+     */
+    public static class Run implements SliceListener {
+        public final File workbook;
+        public final String name;
+        public final String outputDirectory;
+        public long seed;
+        public long wallTime;                                                                                           //in milliseconds
+        public long steps;
+        public int species;
+        public double conversion;
+        public Exception error;
+
+        Run(File workbook, String name){
+            this.workbook = workbook;
+            this.name = name;
+            this.outputDirectory = workbook.getAbsoluteFile().getParent()+File.separator+"output"+File.separator+name;
+        }
+
+        @Override
+        public void slice(double conversion, long stepNumber, int numberOfSpecies) {
+            this.conversion = conversion;
+            this.steps = stepNumber;
+            this.species = numberOfSpecies;
+        }
+
+        public double stepsPerSecond(){
+            return wallTime > 0 ? steps * 1000D / wallTime : 0;
+        }
+    }
+
+    private final InputSource src;
+    private final List<Run> runs = new ArrayList<>();
+    private final int workers;
+    private final String summaryDirectory;
+    private final String logDirectory;
+
+    /**
+     * @param src Type of input of all workbooks
+     * @param workbooks Excel files to simulate
+     * @param workers Maximum number of concurrent simulations
+     * @param summaryDirectory Directory the summary of all runs is written to
+     * @param logDirectory Directory the log of every run is written to
+     */
+    public BatchRunner(InputSource src, List<File> workbooks, int workers, String summaryDirectory, String logDirectory){
+        this.src = src;
+        this.workers = Math.max(1, Math.min(workers, workbooks.size()));
+        this.summaryDirectory = summaryDirectory;
+        this.logDirectory = logDirectory;
+
+        Set<String> names = new HashSet<>();
+        for(File workbook : workbooks){
+            String name = workbook.getName().replaceFirst("\\.xlsx$", "");
+            for(int i=2;!names.add(name);i++){                                                                          //Workbooks in different directories may have the same name
+                name = workbook.getName().replaceFirst("\\.xlsx$", "")+"-"+i;
+            }
+            runs.add(new Run(workbook, name));
+        }
+    }
+
+    /**
+     * @return Number of workers that fit in the available processors and heap
+     * @param threads Maximum number of workers, or 0 for the number of available processors
+     * @param heapPerRun Expected heap usage of a single simulation (in bytes)
+     */
+    public static int workers(int threads, long heapPerRun){
+        int processors = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        long heap = Runtime.getRuntime().maxMemory() / Math.max(1, heapPerRun);
+        return (int) Math.max(1, Math.min(processors, heap));
+    }
+
+    /**
+     * @return Excel files in <code>paths</code>, where directories are replaced by the Excel files they contain
+     */
+    public static List<File> findWorkbooks(List<String> paths){
+        List<File> workbooks = new ArrayList<>();
+        for(String path : paths){
+            File f = new File(path);
+            if(f.isDirectory()){
+                File[] files = f.listFiles((dir, name) ->
+                        name.toLowerCase().endsWith(".xlsx") && !name.startsWith("~$")                                  //Skip lock files of opened workbooks
+                );
+                if(files != null){
+                    Arrays.sort(files);
+                    workbooks.addAll(Arrays.asList(files));
+                }
+            }else{
+                workbooks.add(f);
+            }
+        }
+        return workbooks;
+    }
+
+    public List<Run> run() throws IOException, InterruptedException {
+        log.infoln(String.format("[INFO]Simulating %d workbooks with %d workers", runs.size(), workers));
+        RunLogAppender appender = RunLogAppender.install(logDirectory);
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<?>> futures = new ArrayList<>();
+        for(Run run : runs){
+            futures.add(pool.submit(() -> simulate(run, appender)));
+        }
+        pool.shutdown();
+        for(Future<?> future : futures){
+            try {
+                future.get();
+            } catch (ExecutionException e) {                                                                            //Errors are caught in simulate, so only an Error ends up here
+                log.errorln("[ERROR]"+e.getCause());
+            }
+        }
+
+        writeSummary();
+        return runs;
+    }
+
+    private void simulate(Run run, RunLogAppender appender){
+        MDC.put(RunLogAppender.RUN_KEY, run.name);
+        long start = System.currentTimeMillis();
+        try {
+            SimulationContext context = ExcelInput.readContext(src, run.workbook, run.outputDirectory);
+            run.seed = context.seed();
+            log.infoln("Random seed: "+run.seed);
+            Random random = context.createRandom(run.seed);
+
+            Simulator<?, ?> sim = Simulator.create(context, random);
+            sim.addSliceListener(run);
+            sim.run();
+        } catch (Exception e) {
+            run.error = e;
+            log.errorln(String.format("[ERROR]Simulation of %s failed: %s", run.workbook, e));
+        } finally {
+            run.wallTime = System.currentTimeMillis() - start;
+            MDC.remove(RunLogAppender.RUN_KEY);
+            try {
+                appender.finish(run.name);
+            } catch (IOException e) {
+                log.errorln("[ERROR]"+e.getMessage());
+            }
+        }
+        log.infoln(String.format(Locale.ROOT, "[INFO]Finished %s in %.1f s (%.0f steps/s)", run.name, run.wallTime / 1000D, run.stepsPerSecond()));
+    }
+
+    private void writeSummary() throws IOException {
+        StringBuilder contents = new StringBuilder();
+        contents.append(String.join(CSV_DELIMITER, "workbook", "status", "wall time (s)", "steps", "steps/s", "species", "% conversion", "seed", "output directory")).append(LINE_END);
+        for(Run run : runs){
+            contents.append(String.join(CSV_DELIMITER,
+                    run.workbook.getPath(),
+                    run.error == null ? "OK" : "FAILED: "+run.error.toString().replace(CSV_DELIMITER, ","),
+                    String.format(Locale.ROOT, "%.3f", run.wallTime / 1000D),
+                    ""+run.steps,
+                    String.format(Locale.ROOT, "%.1f", run.stepsPerSecond()),
+                    ""+run.species,
+                    String.format(Locale.ROOT, "%.2f", run.conversion),
+                    ""+run.seed,
+                    run.outputDirectory
+            )).append(LINE_END);
+        }
+        FileWriter.simpleExport(summaryDirectory, SUMMARY_FILE, "csv", contents.toString());
+    }
+}
@@ -0,0 +1,150 @@
+package nl.utwente.simulator;
+
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.input.ExcelInput;
+import nl.utwente.simulator.input.InputSource;
+import nl.utwente.simulator.output.RunLogAppender;
+import nl.utwente.simulator.output.dynamicoutput.DynamicOutput;
+import org.apache.log4j.MDC;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static nl.utwente.simulator.config.Settings.log;
+
+/**
+ * Simulates the shared prefix of multiple configurations once and branches it into a continuation per configuration,
+ * which run concurrently.
+ *
+ * The first workbook configures the prefix and is continued as the base simulation. When it reaches the branch
+ * conversion it takes a snapshot of its state in memory and continues, while every other workbook resumes the
+ * snapshot in a simulator of its own. These branches may only differ from the base in the steric hindrance and the
+ * reactive volume (interaction radius, monomer length and calibration factor), which apply after the branch point.
+ * Every branch continues with the same random numbers as the base, so the differences between them are caused by
+ * their parameters rather than by chance.
+ *
+ * The base writes its output to <code>[workbook directory]/output/[workbook name]</code>, the branch of workbook
+ * <code>name</code> to <code>branch-[name]</code> in that directory, and every run its log to <code>[run].log</code> there.
+ */
+public class BranchRunner {
+
+    private final InputSource src;
+    private final List<File> workbooks;
+    private final double conversion;
+    private final int workers;
+
+    /**
+     * @param src Type of input of all workbooks
+     * @param workbooks Excel files of the base simulation followed by those of the branches
+     * @param conversion Conversion (in %) at which the branches start
+     * @param workers Maximum number of concurrent simulations
+     */
+    public BranchRunner(InputSource src, List<File> workbooks, double conversion, int workers){
+        if(workbooks.size() < 2){
+            throw new IllegalArgumentException("Branching requires a workbook for the base simulation and at least one for a branch");
+        }
+        if(src == InputSource.STRUCTURED){                                                                              //Snapshots are only supported for unstructured particles
+            throw new IllegalArgumentException("Branching is only supported for unstructured particles");
+        }
+        this.src = src;
+        this.workbooks = workbooks;
+        this.conversion = conversion;
+        this.workers = Math.max(1, Math.min(workers, workbooks.size()));
+    }
+
+    /**
+     * @return Dynamic output of every run that finished, by name
+     * @throws ExecutionException If the base simulation failed, once every branch that started has finished
+     */
+    public Map<String, DynamicOutput> run() throws Exception {
+        File baseWorkbook = workbooks.get(0);
+        String baseName = baseWorkbook.getName().replaceFirst("\\.xlsx$", "");
+        String outputDirectory = baseWorkbook.getAbsoluteFile().getParent()+File.separator+"output"+File.separator+baseName;
+        SimulationContext baseContext = ExcelInput.readContext(src, baseWorkbook, outputDirectory);
+        long seed = baseContext.seed();
+        Simulator<?, ?> base = Simulator.create(baseContext, baseContext.createRandom(seed));
+
+        List<String> names = new ArrayList<>();
+        List<Simulator<?, ?>> branches = new ArrayList<>();
+        Set<String> used = new HashSet<>(Collections.singleton(baseName));
+        for(File workbook : workbooks.subList(1, workbooks.size())){
+            String name = workbook.getName().replaceFirst("\\.xlsx$", "");
+            for(int i=2;!used.add(name);i++){                                                                           //Workbooks in different directories may have the same name
+                name = workbook.getName().replaceFirst("\\.xlsx$", "")+"-"+i;
+            }
+            SimulationContext context = ExcelInput.readContext(src, workbook, outputDirectory+File.separator+"branch-"+name);
+            Simulator<?, ?> branch = Simulator.create(context, context.createRandom(seed));                             //The random state is replaced by the one of the base
+            if(!branch.fingerprint().equals(base.fingerprint())){
+                throw new IllegalArgumentException(workbook+" cannot branch from "+baseWorkbook+", only the steric hindrance and reactive volume may differ");
+            }
+            names.add(name);
+            branches.add(branch);
+        }
+
+        log.infoln(String.format(Locale.ROOT, "[INFO]Simulating %s up to %.2f%% conversion, then %d branches with %d workers, random seed: %d",
+                baseName, conversion, branches.size(), workers, seed));
+        RunLogAppender appender = RunLogAppender.install(outputDirectory);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<?>> futures = new ArrayList<>(Collections.nCopies(branches.size(), null));
+        base.branchAt(conversion, snapshot -> {                                                                         //Called in the thread of the base simulation
+            log.infoln(String.format(Locale.ROOT, "Branching with a snapshot of %.1f MB", snapshot.length / (1024D * 1024D)));
+            for(int i=0;i<branches.size();i++){
+                Simulator<?, ?> branch = branches.get(i);
+                futures.set(i, submit(pool, appender, "branch-"+names.get(i), () -> {
+                    branch.resume(snapshot);
+                    branch.run();
+                }));
+            }
+        });
+
+        Map<String, DynamicOutput> outputs = new LinkedHashMap<>();
+        ExecutionException baseFailure = null;
+        try {
+            submit(pool, appender, baseName, base::run).get();
+            outputs.put(baseName, base.getDynamicOutput());
+        } catch (ExecutionException e) {
+            log.errorln(String.format("[ERROR]Base simulation %s failed: %s", baseName, e.getCause()));
+            baseFailure = e;
+        }
+        pool.shutdown();                                                                                                //Every branch has been submitted once the base has finished
+
+        for(int i=0;i<branches.size();i++){
+            String name = "branch-"+names.get(i);
+            if(futures.get(i) == null){
+                log.errorln(String.format(Locale.ROOT, "[ERROR]%s did not start, the base simulation %s before %.2f%% conversion",
+                        name, baseFailure != null ? "failed" : "ended", conversion));
+                continue;
+            }
+            try {
+                futures.get(i).get();
+                outputs.put(name, branches.get(i).getDynamicOutput());
+            } catch (ExecutionException e) {
+                log.errorln(String.format("[ERROR]%s failed: %s", name, e.getCause()));
+            }
+        }
+        if(baseFailure != null){
+            throw new ExecutionException("Base simulation "+baseName+" failed", baseFailure.getCause());
+        }
+        return outputs;
+    }
+
+    private interface Simulation {
+        void run() throws Exception;
+    }
+
+    private static Future<?> submit(ExecutorService pool, RunLogAppender appender, String name, Simulation simulation){
+        return pool.submit(() -> {
+            MDC.put(RunLogAppender.RUN_KEY, name);
+            long start = System.currentTimeMillis();
+            try {
+                simulation.run();
+            } finally {
+                MDC.remove(RunLogAppender.RUN_KEY);
+                appender.finish(name);
+            }
+            log.infoln(String.format(Locale.ROOT, "[INFO]Finished %s in %.1f s", name, (System.currentTimeMillis() - start) / 1000D));
+            return null;
+        });
+    }
+}
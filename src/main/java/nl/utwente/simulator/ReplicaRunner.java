@@ -0,0 +1,94 @@
+package nl.utwente.simulator;
+
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.output.RunLogAppender;
+import nl.utwente.simulator.output.dynamicoutput.DynamicOutput;
+import nl.utwente.simulator.output.dynamicoutput.EnsembleOutput;
+import nl.utwente.simulator.utils.random.Random;
+import org.apache.log4j.MDC;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+
+import static nl.utwente.simulator.config.Settings.log;
+
+/**
+ * Runs statistically independent replicas of a single configuration concurrently and merges their dynamic output.
+ *
+ * Every replica draws from its own stream, split from a generator seeded with the seed of the configuration,
+ * so the ensemble as a whole can be reproduced with that seed. Replica <code>i</code> writes its own output to
+ * <code>[output directory]/replica-i</code> and its log to <code>[output directory]/replica-i.log</code>;
+ * the merged statistics are written to the output directory itself.
+ */
+public class ReplicaRunner {
+
+    private final SimulationContext context;
+    private final int replicas;
+    private final int workers;
+
+    /**
+     * @param context Configuration of every replica
+     * @param replicas Number of replicas
+     * @param workers Maximum number of concurrent replicas
+     */
+    public ReplicaRunner(SimulationContext context, int replicas, int workers){
+        this.context = context;
+        this.replicas = replicas;
+        this.workers = Math.max(1, Math.min(workers, replicas));
+    }
+
+    public List<DynamicOutput> run() throws IOException, InterruptedException, ParseException {
+        long seed = context.seed();
+        log.infoln(String.format("[INFO]Simulating %d replicas with %d workers, random seed: %d", replicas, workers, seed));
+        RunLogAppender appender = RunLogAppender.install(context.outputDirectory);
+
+        Random random = context.createRandom(seed);
+        List<Simulator<?, ?>> simulators = new ArrayList<>(replicas);
+        for(int i=1;i<=replicas;i++){
+            SimulationContext replicaContext = context.withOutputDirectory(context.outputDirectory+File.separator+"replica-"+i);
+            Simulator<?, ?> sim = Simulator.create(replicaContext, random.split());
+            sim.getDynamicOutput().keepHistory();                                                                       //For the ensemble statistics
+            simulators.add(sim);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<?>> futures = new ArrayList<>();
+        for(int i=0;i<replicas;i++){
+            String name = "replica-"+(i+1);
+            Simulator<?, ?> sim = simulators.get(i);
+            futures.add(pool.submit(() -> {
+                MDC.put(RunLogAppender.RUN_KEY, name);
+                long start = System.currentTimeMillis();
+                try {
+                    sim.run();
+                } finally {
+                    MDC.remove(RunLogAppender.RUN_KEY);
+                    appender.finish(name);
+                }
+                log.infoln(String.format(Locale.ROOT, "[INFO]Finished %s in %.1f s", name, (System.currentTimeMillis() - start) / 1000D));
+                return null;
+            }));
+        }
+        pool.shutdown();
+
+        List<DynamicOutput> outputs = new ArrayList<>(replicas);
+        for(int i=0;i<replicas;i++){
+            try {
+                futures.get(i).get();
+                outputs.add(simulators.get(i).getDynamicOutput());
+            } catch (ExecutionException e) {                                                                            //Leave failed replicas out of the ensemble
+                log.errorln(String.format("[ERROR]Replica %d failed: %s", i+1, e.getCause()));
+            }
+        }
+
+        if(!outputs.isEmpty()){
+            new EnsembleOutput(context, outputs).export();
+        }
+        return outputs;
+    }
+}
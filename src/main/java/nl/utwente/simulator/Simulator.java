@@ -1,6 +1,7 @@
 package nl.utwente.simulator;
 
 import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.entities.RadicalPosition;
 import nl.utwente.simulator.entities.species.structured.StructuredParticle;
 import nl.utwente.simulator.entities.species.structured.StructuredSpeciesFactory;
@@ -8,17 +9,32 @@ import nl.utwente.simulator.entities.species.unstructured.UnstructuredSpeciesFac
 import nl.utwente.simulator.input.ExcelInput;
 import nl.utwente.simulator.input.InputSource;
 import nl.utwente.simulator.output.CSVGenerator;
+import nl.utwente.simulator.output.FileWriter;
 import nl.utwente.simulator.output.MOLGenerator;
 import nl.utwente.simulator.output.PDBGenerator;
+import nl.utwente.simulator.output.PhaseTimer;
+import nl.utwente.simulator.output.PhaseTimer.Phase;
 import nl.utwente.simulator.output.dynamicoutput.DynamicOutput;
+import nl.utwente.simulator.output.dynamicoutput.WeightHistogram;
 import nl.utwente.simulator.simulator.*;
-import nl.utwente.simulator.utils.IntegerFenwickTree;
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+import nl.utwente.simulator.utils.IndexSet;
+import nl.utwente.simulator.utils.IntegerSamplingTree;
 import nl.utwente.simulator.utils.RadicalTracker;
+import nl.utwente.simulator.utils.SamplingTree;
+import nl.utwente.simulator.utils.SpeciesIndex;
 import nl.utwente.simulator.utils.random.Random;
+import nl.utwente.simulator.utils.storage.Storage;
 import org.apache.log4j.Level;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.ParseException;
 import java.util.*;
 
@@ -27,21 +43,34 @@ import static nl.utwente.simulator.config.Settings.CSVColumn.*;
 
 public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends AbstractSpecies> {
 
-    private static final CSVGenerator csvGenerator = new CSVGenerator(CSVColumn.values());
+    private final SimulationContext context;
+    private final CSVGenerator csvGenerator = new CSVGenerator(CSVColumn.values());
 
     private final int maxILength, maxMLength, maxCLength, maxVinylGroupLength, maxWeightLength;                         //Maximum length of variables that will be logged for string formatter
 
     private long biggestParticleSize = 1;
     private SPECIES biggestParticle;
     private DynamicOutput dynamicOutput;
+    private final List<SliceListener> sliceListeners = new ArrayList<>();
 
     private long startTime, stepNumber, sliceStartTime, sliceStartSteps;                                                //Time and progress checking variables
     private double previousConversion;
+    private double maxRelativeDrift;                                                                                    //Largest drift of the sum of all reaction rates found by rebuilding the radical tracker
+    private final long[] events = new long[Event.values().length];                                                      //Number of times each event occurred
+    private final long[] sliceStartEvents = new long[Event.values().length];
+    private final PhaseTimer phaseTimer;                                                                                //Only used when timing is enabled
+    private boolean resumed;                                                                                            //Whether the state was restored from a checkpoint
+    private long resumedDuration;                                                                                       //Duration of the simulation up to that checkpoint in ms
+    private long nextCheckpointTime;
+    private long branchStep = Long.MAX_VALUE;                                                                           //Step at which a snapshot is passed to the branch listener
+    private BranchListener branchListener;
 
     private SpeciesFactory<SPECIES> speciesFactory;
+    private final Random random;
     private AbstractSpeciesFactory<ABSTRACTSPECIES> keyFactory;
     private ABSTRACTSPECIES i, m, c;                                                                                    //Pointers to starting species
-    public static int FIRST_POLYMER_INDEX;                                                                              //Index of first non-starting species
+    private final int firstPolymerIndex;                                                                                //Index of first non-starting species
+    private final SortedSet<Integer> max3DModelSizes;                                                                   //Sizes at which 3D models still have to be generated
 
     private long initialNumberOfHalfInitiators, initialNumberOfMonomers, initialNumberOfCrosslinkers;                   //Initial number of molecules
     private long numberOfHalfInitiators, numberOfMonomers, numberOfCrosslinkers;                                        //Current number of molecules
@@ -50,14 +79,23 @@ public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends Abstract
     private long numberOfVinylGroupsInParticles = 0;                                                                    //Can also be inferred from original number of molecules versus current ones if necessary
     private long numberOfReactiveCentersInPolymers = 0;
 
-    private SortedSet<Integer> emptyIndices               = new TreeSet<>();
-    private List<SPECIES> species                         = new ArrayList<>();
-    private Map<ABSTRACTSPECIES, Integer> speciesIndices  = new HashMap<>();                                            //Molecules and their number of reactive groups
-    private RadicalTracker radicalTracker                 = new RadicalTracker();
-    private IntegerFenwickTree vinylIndices               = new IntegerFenwickTree();
+    private final IndexSet emptyIndices                   = new IndexSet();                                             //Unused indices in species
+    private final SpeciesStore<SPECIES> species;                                                                        //Species, in the same slot as their reactivity in the BITs
+    private final SpeciesIndex speciesIndices;                                                                          //Index of each abstract species in species
+    private final RadicalTracker radicalTracker;                                                                        //Without rejections, only tracks the radicals that are not at a mid-chain cross-linker
+    private final RadicalTracker midChainRadicalTracker;                                                                //Only used without rejections
+    private final RadicalTracker[] radicalTrackers;                                                                     //Trackers that have to be updated
+    private final IntegerSamplingTree vinylIndices;
+    private final WeightHistogram weightHistogram;                                                                      //Weight distribution of all species
 
 
-    public Simulator(long i, long m, long c, AbstractSpeciesFactory<ABSTRACTSPECIES> abstractSpeciesFactory, SpeciesFactory<SPECIES> speciesFactory) throws ParseException {
+    public Simulator(SimulationContext context, AbstractSpeciesFactory<ABSTRACTSPECIES> abstractSpeciesFactory, SpeciesFactory<SPECIES> speciesFactory, Random random) throws ParseException {
+        long i = context.numberHalfInitiators;
+        long m = context.numberMonomers;
+        long c = context.numberCrosslinkers;
+        this.context = context;
+        this.max3DModelSizes = new TreeSet<>(context.max3DModelSizes);
+
         this.initialNumberOfHalfInitiators = i;
         this.initialNumberOfMonomers = m;
         this.initialNumberOfCrosslinkers = c;
@@ -68,6 +106,7 @@ public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends Abstract
 
         this.keyFactory = abstractSpeciesFactory;
         this.speciesFactory = speciesFactory;
+        this.random = random;
 
         SPECIES halfInitiator = speciesFactory.createI(i);
         SPECIES monomer       = speciesFactory.createM(m);
@@ -76,25 +115,50 @@ public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends Abstract
         this.i = abstractSpeciesFactory.abstractSpeciesForInitiatingMolecule();                                         //We add abstract species to species and vice versa to speed up the simulator
         this.m = abstractSpeciesFactory.abstractSpeciesForMonomer();                                                    //but at the cost of a bit more memory usage
         this.c = abstractSpeciesFactory.abstractSpeciesForCrosslinker();
+        this.speciesIndices = new SpeciesIndex(abstractSpeciesFactory.keyMaxima(i, m, c));
+        this.species = speciesFactory.createStore(context);
 
         halfInitiator.setAbstractSpecies(this.i);
         monomer.setAbstractSpecies(this.m);
         crosslinker.setAbstractSpecies(this.c);
 
+        List<SPECIES> startingSpecies = Arrays.asList(halfInitiator, monomer, crosslinker);
+        this.firstPolymerIndex = startingSpecies.size();
+        if(context.rejectionFreeStericHindrance){                                                                       //Radicals at a mid-chain cross-linker have different steric hindrance
+            this.radicalTracker = RadicalTracker.create(context, random, firstPolymerIndex, RadicalTracker.Radicals.CHAIN_END);
+            this.midChainRadicalTracker = RadicalTracker.create(context, random, firstPolymerIndex, RadicalTracker.Radicals.MID_CHAIN_CROSSLINKER);
+            this.radicalTrackers = new RadicalTracker[]{radicalTracker, midChainRadicalTracker};
+        }else{
+            this.radicalTracker = RadicalTracker.create(context, random, firstPolymerIndex);
+            this.midChainRadicalTracker = null;
+            this.radicalTrackers = new RadicalTracker[]{radicalTracker};
+        }
+        this.vinylIndices = IntegerSamplingTree.create(context.samplingTree, context.allocator());
+        this.weightHistogram = new WeightHistogram(context);
+        this.phaseTimer = context.timingInterval > 0 ? new PhaseTimer(context.timingInterval) : null;
+        if((context.checkpointInterval > 0 || context.checkpointMinutes > 0) && !(species instanceof SaveableSpeciesStore)){
+            throw new IllegalArgumentException("Checkpoints are only supported for unstructured particles");
+        }
+        if((context.checkpointInterval > 0 || context.checkpointMinutes > 0) && !random.isSaveable()){
+            throw new IllegalArgumentException("Checkpoints are not supported by the random generator "+random.getClass().getSimpleName());
+        }
+
         this.numberOfVinylGroups = 0;
         int moleculesSpeciesIndex = 0;
-        for(SPECIES p : Arrays.asList(halfInitiator, monomer, crosslinker)){
+        for(SPECIES p : startingSpecies){
             long vinylGroupsInSpecies = p.number() * p.numberOfActiveVinylGroups();
 
             this.species.add(p);
-            this.speciesIndices.put((ABSTRACTSPECIES) p.getAbstractSpecies(), moleculesSpeciesIndex);
-            this.radicalTracker.addAll(p);                                                                              //Add species radical reactivity to BITs
+            this.speciesIndices.put(p.getAbstractSpecies().key(), moleculesSpeciesIndex);
+            for(RadicalTracker tracker : radicalTrackers){
+                tracker.addAll(species, moleculesSpeciesIndex);                                                         //Add species radical reactivity to BITs
+            }
             this.vinylIndices.add(vinylGroupsInSpecies);                                                                //Add species vinyl reactivity to BIT
+            this.weightHistogram.add(species, moleculesSpeciesIndex, p.number());
 
             this.numberOfVinylGroups += vinylGroupsInSpecies;
             moleculesSpeciesIndex++;
         }
-        FIRST_POLYMER_INDEX = moleculesSpeciesIndex;
 
         this.biggestParticle = crosslinker;
 
@@ -102,10 +166,10 @@ public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends Abstract
         this.maxMLength = (""+ initialNumberOfMonomers).length();
         this.maxCLength = (""+ initialNumberOfCrosslinkers).length();
         this.maxVinylGroupLength = (""+(CROSSLINKER_VINYL_GROUPS * initialNumberOfCrosslinkers + initialNumberOfMonomers)).length();
-        this.maxWeightLength = (""+ ((long)(initialNumberOfHalfInitiators * WEIGHT_HALF_INITIATOR + initialNumberOfMonomers* WEIGHT_MONOMER + initialNumberOfCrosslinkers* WEIGHT_CROSSLINKER))).length();
+        this.maxWeightLength = (""+ ((long) context.totalWeight())).length();
 
-        this.dynamicOutput = new DynamicOutput();                                                                       //Create instances of custom output functions
-        for(String f : OUTPUT_FUNCTIONS.split(",")){
+        this.dynamicOutput = new DynamicOutput(context);                                                                //Create instances of custom output functions
+        for(String f : context.outputFunctions.split(",")){
             try {
                 dynamicOutput.addFunc(f);
             }catch(ParseException e){
@@ -113,111 +177,226 @@ public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends Abstract
                 throw e;
             }
         }
+        if(context.checkpointInterval > 0 || context.checkpointMinutes > 0){                                            //Checkpoints contain all output so far
+            dynamicOutput.keepHistory();
+        }
+    }
+
+
+    /**
+     * @return Simulator for <code>context</code>, using structured particles if the input is structured
+     */
+    public static Simulator<?, ?> create(SimulationContext context, Random random) throws ParseException {
+        SpeciesFactory<?> speciesFactory = context.inputSource == InputSource.STRUCTURED
+                ? new StructuredSpeciesFactory(context, random)
+                : new UnstructuredSpeciesFactory(context);
+        return create(context, context.abstractSpeciesFactory, speciesFactory, random);
+    }
+
+    private static <S extends Species, A extends AbstractSpecies> Simulator<S, A> create(SimulationContext context, AbstractSpeciesFactory<A> abstractSpeciesFactory, SpeciesFactory<S> speciesFactory, Random random) throws ParseException {
+        return new Simulator<>(context, abstractSpeciesFactory, speciesFactory, random);
     }
 
 
     public void run() throws Exception {
         this.init();
 
-        ABSTRACTSPECIES abstractRadicalSpecies, abstractVinylSpecies, combinedAbstractSpecies;
-        SPECIES radical, vinyl, combinedSpecies;
-        boolean intraMolecular;
+        ABSTRACTSPECIES abstractRadicalSpecies, abstractVinylSpecies;
+        long[] combinedKey = new long[keyFactory.keyLength()];                                                          //Reused every step, an abstract species is only created for new species
+        boolean intraMolecular, radicalIsPolymer, vinylIsPolymer;
         int radicalIndex;                                                                                               //Index of the radical species that will undergo a reaction
         int reactiveCenterIndexInParticle;                                                                              //Index of the reactive center in the list of reactive centers
         int vinylIndex;                                                                                                 //Index of the vinyl species that will undergo a reaction
+        int combinedIndex;                                                                                              //Index of the reaction product
 
-        stepNumber = 1;
+        if(!resumed){
+            stepNumber = 1;
+        }
         while( !(numberOfPolymers == 1 && numberOfHalfInitiators == 0 && STOP_AT_GEL_POINT) &&
                 numberOfVinylGroups != 0){
 
-            //Step 1: pick active radical
-            radicalIndex = pickRadical();
-            radical  = species.get(radicalIndex);
-
             RadicalPosition rp;
-            if(radical.isPolymer()) {
-
-                reactiveCenterIndexInParticle = (int) Random.getRandom(radical.numberOfRadicals());
-                rp = radical.positionOfNthRadical(reactiveCenterIndexInParticle);
+            boolean timed = phaseTimer != null && phaseTimer.sample();
+            if(context.rejectionFreeStericHindrance){
+                long polymerVinylGroups = numberOfVinylGroupsInParticles;
+                long startingVinylGroups = numberOfVinylGroups - numberOfVinylGroupsInParticles;                        //In monomers and cross-linkers
+                double localFactor = 1 - context.stericHindranceVinylFactor;                                            //Chance that an intramolecular reaction succeeds
+                double chainEndPolymerFactor = 1 - context.stericHindranceVinylFactor;                                  //Chance that a reaction with another polymer succeeds
+                double midChainPolymerFactor = 1 - context.stericHindranceCombinedFactor;
+                double midChainStartingFactor = 1 - context.stericHindranceRadicalFactor;                               //Chance that a reaction with a monomer or cross-linker succeeds
+
+                //Step 1: pick active radical, with every reaction weighted by its chance to succeed
+                double chainEndSum = radicalTracker.totalSum(localFactor, chainEndPolymerFactor*polymerVinylGroups + startingVinylGroups, chainEndPolymerFactor);
+                double midChainSum = midChainRadicalTracker.totalSum(localFactor, midChainPolymerFactor*polymerVinylGroups + midChainStartingFactor*startingVinylGroups, midChainPolymerFactor);
+                boolean midChain = midChainSum > 0 && random.getRandom(chainEndSum + midChainSum) >= chainEndSum;
+                double polymerFactor = midChain ? midChainPolymerFactor : chainEndPolymerFactor;
+                double startingFactor = midChain ? midChainStartingFactor : 1;
+                radicalIndex = (midChain ? midChainRadicalTracker : radicalTracker).pickRadical(localFactor, polymerFactor*polymerVinylGroups + startingFactor*startingVinylGroups, polymerFactor);
+                radicalIsPolymer = species.isPolymer(radicalIndex);
+                if(timed) phaseTimer.lap(Phase.PICK_RADICAL);
+
+                if(radicalIsPolymer){
+                    long radicals = species.numberOfMidChainRadicals(radicalIndex);
+                    if(!midChain) radicals = species.numberOfRadicals(radicalIndex) - radicals;
+                    reactiveCenterIndexInParticle = species.indexOfNthRadical(radicalIndex, midChain, random.getRandom(radicals));
+                    rp = species.positionOfNthRadical(radicalIndex, reactiveCenterIndexInParticle);
+                }else{
+                    reactiveCenterIndexInParticle = 0;
+                    rp = RadicalPosition.CHAIN_END_NON_CROSSLINKER;
+                }
 
-                //Step 2: decide between intermolecular and intramolecular reaction
-                double localConcentration = radical.localConcentration();
-                intraMolecular = Random.getRandom(localConcentration + globalConcentration(radical)) < localConcentration;
+                //Step 2: decide between intramolecular reaction and reaction with a polymer, monomer or cross-linker
+                double localRate = radicalIsPolymer ? localFactor*species.localConcentration(radicalIndex) : 0;
+                double polymerRate = polymerFactor*(polymerVinylGroups - species.numberOfActiveVinylGroups(radicalIndex))/ context.vesselVolume;
+                double startingRate = startingFactor*startingVinylGroups/ context.vesselVolume;
+                double reaction = random.getRandom(localRate + polymerRate + startingRate);
+                intraMolecular = reaction < localRate;
 
                 //Step 3: pick vinyl
-                if(!intraMolecular){
-                    vinylIndex = pickVinylButNotIn(radical, radicalIndex);
-                    vinyl = species.get(vinylIndex);
-
-                    //Step 4: success rate
-                    if(rp == RadicalPosition.MID_CHAIN_CROSSLINKER ){
-                        if(vinyl.isPolymer()){
-                            if(Random.getRandom(1.0) < STERIC_HINDRANCE_COMBINED_FACTOR){
+                if(intraMolecular){
+                    vinylIndex = radicalIndex;
+                    vinylIsPolymer = true;
+                }else if(reaction < localRate + polymerRate){
+                    vinylIndex = pickPolymerVinylButNotIn(radicalIndex);
+                    vinylIsPolymer = true;
+                }else{
+                    vinylIndex = pickStartingVinyl(startingVinylGroups);
+                    vinylIsPolymer = false;
+                }
+                if(timed) phaseTimer.lap(Phase.PICK_VINYL);
+            }else{
+                //Step 1: pick active radical
+                radicalIndex = pickRadical();
+                radicalIsPolymer = species.isPolymer(radicalIndex);
+                if(timed) phaseTimer.lap(Phase.PICK_RADICAL);
+
+                if(radicalIsPolymer) {
+
+                    reactiveCenterIndexInParticle = (int) random.getRandom(species.numberOfRadicals(radicalIndex));
+                    rp = species.positionOfNthRadical(radicalIndex, reactiveCenterIndexInParticle);
+
+                    //Step 2: decide between intermolecular and intramolecular reaction
+                    double localConcentration = species.localConcentration(radicalIndex);
+                    intraMolecular = random.getRandom(localConcentration + globalConcentration(radicalIndex)) < localConcentration;
+
+                    //Step 3: pick vinyl
+                    if(!intraMolecular){
+                        vinylIndex = pickVinylButNotIn(radicalIndex);
+                        vinylIsPolymer = species.isPolymer(vinylIndex);
+                        if(timed) phaseTimer.lap(Phase.PICK_VINYL);                                                     //Before the steric hindrance, so rejected reactions are timed as well
+
+                        //Step 4: success rate
+                        if(rp == RadicalPosition.MID_CHAIN_CROSSLINKER ){
+                            if(vinylIsPolymer){
+                                if(random.getRandom(1.0) < context.stericHindranceCombinedFactor){
+                                    events[Event.REJECTED_COMBINED.ordinal()]++;
+                                    continue;
+                                }
+                            }else if(random.getRandom(1.0) < context.stericHindranceRadicalFactor){
+                                events[Event.REJECTED_RADICAL.ordinal()]++;
+                                continue;
+                            }
+                        }else{
+                            if(vinylIsPolymer && random.getRandom(1.0) < context.stericHindranceVinylFactor){
+                                events[Event.REJECTED_VINYL.ordinal()]++;
                                 continue;
                             }
-                        }else if(Random.getRandom(1.0) < STERIC_HINDRANCE_RADICAL_FACTOR){
-                            continue;
                         }
+
                     }else{
-                        if(vinyl.isPolymer() && Random.getRandom(1.0) < STERIC_HINDRANCE_VINYL_FACTOR){
+                        vinylIndex = radicalIndex;
+                        vinylIsPolymer = true;
+                        if(timed) phaseTimer.lap(Phase.PICK_VINYL);
+
+                        //Step 4: success rate
+                        if(random.getRandom(1.0) < context.stericHindranceVinylFactor){
+                            events[Event.REJECTED_INTRAMOLECULAR.ordinal()]++;
                             continue;
                         }
                     }
-
                 }else{
-                    vinylIndex = radicalIndex;
-                    vinyl = radical;
+                    reactiveCenterIndexInParticle = 0;
+                    rp = RadicalPosition.CHAIN_END_NON_CROSSLINKER;
+
+                    //Step 2: decide between intermolecular and intramolecular reaction
+                    intraMolecular = false;
+
+                    //Step 3: pick vinyl
+                    vinylIndex = pickVinyl();
+                    vinylIsPolymer = species.isPolymer(vinylIndex);
+                    if(timed) phaseTimer.lap(Phase.PICK_VINYL);
 
                     //Step 4: success rate
-                    if(Random.getRandom(1.0) < STERIC_HINDRANCE_VINYL_FACTOR){
+                    if(vinylIsPolymer & random.getRandom(1.0) < context.stericHindranceVinylFactor){
+                        events[Event.REJECTED_INITIATOR.ordinal()]++;
                         continue;
                     }
                 }
-            }else{
-                reactiveCenterIndexInParticle = 0;
-                rp = RadicalPosition.CHAIN_END_NON_CROSSLINKER;
-
-                //Step 2: decide between intermolecular and intramolecular reaction
-                intraMolecular = false;
-
-                //Step 3: pick vinyl
-                vinylIndex = pickVinyl();
-                vinyl = species.get(vinylIndex);
-
-                //Step 4: success rate
-                if(vinyl.isPolymer() & Random.getRandom(1.0) < STERIC_HINDRANCE_VINYL_FACTOR){
-                    continue;
-                }
             }
 
             //Simulate reaction
 
             //Step 1: find abstractions of selected species
-            abstractRadicalSpecies = (ABSTRACTSPECIES) radical.getAbstractSpecies();
-            abstractVinylSpecies   = (ABSTRACTSPECIES) vinyl.getAbstractSpecies();                                      //Here we can access the associated abstract species directly instead of using the particlegroup factory
+            abstractRadicalSpecies = (ABSTRACTSPECIES) species.getAbstractSpecies(radicalIndex);
+            abstractVinylSpecies   = (ABSTRACTSPECIES) species.getAbstractSpecies(vinylIndex);                          //Here we can access the associated abstract species directly instead of using the particlegroup factory
 
             //Step 2: find abstraction of reaction product
-            try{combinedAbstractSpecies = intraMolecular
-                    ? keyFactory.abstractSpeciesAfterIntraMolecularReaction(abstractRadicalSpecies, rp)
-                    : keyFactory.abstractSpeciesAfterInterMolecularReaction(abstractRadicalSpecies, rp, abstractVinylSpecies);
-            }catch(RejectedReaction e){continue;}
+            try{
+                if(intraMolecular)
+                    keyFactory.keyAfterIntraMolecularReaction(abstractRadicalSpecies, rp, combinedKey);
+                else
+                    keyFactory.keyAfterInterMolecularReaction(abstractRadicalSpecies, rp, abstractVinylSpecies, combinedKey);
+            }catch(RejectedReaction e){
+                events[Event.REJECTED_REACTION.ordinal()]++;
+                continue;
+            }
+            if(timed) phaseTimer.lap(Phase.ABSTRACT_KEY);
 
             //Step 3: Check existence of abstraction map
-            Integer combinedIndex = speciesIndices.get(combinedAbstractSpecies);
+            combinedIndex = speciesIndices.get(combinedKey);
+            if(timed) phaseTimer.lap(Phase.SPECIES_INDEX);
 
             //If one exists
-            if(combinedIndex != null){
+            if(combinedIndex != SpeciesIndex.ABSENT){
                 //We use it to obtain the reaction product
-                combinedSpecies = species.get(combinedIndex);
-                this.increaseParticle(combinedIndex, combinedSpecies);
+                this.increaseParticle(combinedIndex);
+                events[Event.EXISTING_SPECIES.ordinal()]++;
             }else{
                 //Step 4: Otherwise we use the associated reaction rule to obtain the reaction product
-                try {combinedSpecies = intraMolecular
-                            ? speciesFactory.createSpecies(radical, reactiveCenterIndexInParticle)
-                            : speciesFactory.createSpecies(radical, reactiveCenterIndexInParticle, vinyl);
-                }catch(RejectedReaction e){continue;}                                                                   //Chosen reaction is not possible (which may not be obvious from selected abstract species)
-                combinedSpecies.setAbstractSpecies(combinedAbstractSpecies);
-                this.addParticle(combinedSpecies);
+                combinedIndex = emptyIndices.isEmpty() ? species.slots() : emptyIndices.first();
+                try {
+                    if(intraMolecular)
+                        species.createSpecies(radicalIndex, reactiveCenterIndexInParticle, combinedIndex);
+                    else
+                        species.createSpecies(radicalIndex, reactiveCenterIndexInParticle, vinylIndex, combinedIndex);
+                }catch(RejectedReaction e){                                                                             //Chosen reaction is not possible (which may not be obvious from selected abstract species)
+                    events[Event.REJECTED_REACTION.ordinal()]++;
+                    continue;
+                }
+                species.setAbstractSpecies(combinedIndex, keyFactory.abstractSpecies(combinedKey));
+                this.addParticle(combinedIndex);
+                events[Event.NEW_SPECIES.ordinal()]++;
+                if(timed) phaseTimer.lap(Phase.CREATE_SPECIES);
+            }
+
+            //Iterate
+
+            long combinedSize = species.size(combinedIndex);                                                            //Before updating the reactants, which may relocate the reaction product
+            if(combinedSize > biggestParticleSize){
+                if( context.inputSource == InputSource.STRUCTURED &&
+                    biggestParticle instanceof StructuredParticle &&
+                    combinedSize+species.numberOfC(combinedIndex) >= max3DModelSizes.first()                            //NOTE: cross-linkers will be represented by two atoms
+                ){
+                    StructuredParticle p = (StructuredParticle) biggestParticle;
+                    PDBGenerator.createDataFile(context, p);
+                    MOLGenerator.createDataFile(context, p);
+                    max3DModelSizes.remove(max3DModelSizes.first());
+
+                    if(max3DModelSizes.isEmpty())
+                        break;
+                }
+                biggestParticleSize = combinedSize;
+                biggestParticle = species.get(combinedIndex);
             }
 
             //Update
@@ -233,11 +412,11 @@ public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends Abstract
                 numberOfCrosslinkers--;
             }
 
-            this.decreaseParticle(radicalIndex, radical);
+            this.decreaseParticle(radicalIndex);
             if(!intraMolecular){                                                                                        //Inter-molecular reaction
-                this.decreaseParticle(vinylIndex, vinyl);
-                if (vinyl.isPolymer()) {
-                    if(radical.isPolymer()) {                                                                           //P• + P=
+                this.decreaseParticle(vinylIndex);
+                if (vinylIsPolymer) {
+                    if(radicalIsPolymer) {                                                                              //P• + P=
                         numberOfPolymers--;
                     }
                 }else if(abstractRadicalSpecies.equals(this.i)){                                                        //I• + M= || I• + =C-C=
@@ -246,41 +425,247 @@ public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends Abstract
             }
             numberOfVinylGroupsInParticles--;                                                                           //In each propagation reaction a vinyl group is consumed
             numberOfVinylGroups--;
+            events[(intraMolecular ? Event.INTRAMOLECULAR : Event.INTERMOLECULAR).ordinal()]++;
+            events[Event.of(rp).ordinal()]++;
             assert(numberOfVinylGroupsInParticles + numberOfCrosslinkers*CROSSLINKER_VINYL_GROUPS + numberOfMonomers == numberOfVinylGroups);
+            if(timed) phaseTimer.lap(Phase.UPDATE);                                                                     //Including the existing species of the reaction product and the 3D models
 
-            //Iterate
-
-            if(combinedSpecies.size() > biggestParticleSize){
-                if( INPUT_SOURCE == InputSource.STRUCTURED &&
-                    biggestParticle instanceof StructuredParticle &&
-                    combinedSpecies.size()+combinedSpecies.numberOfC() >= MAX_3D_MODEL_SIZES.first()                    //NOTE: cross-linkers will be represented by two atoms
-                ){
-                    StructuredParticle p = (StructuredParticle) biggestParticle;
-                    PDBGenerator.createDataFile(p);
-                    MOLGenerator.createDataFile(p);
-                    MAX_3D_MODEL_SIZES.remove(MAX_3D_MODEL_SIZES.first());
-
-                    if(MAX_3D_MODEL_SIZES.isEmpty())
-                        break;
-                }
-                biggestParticleSize = combinedSpecies.size();
-                biggestParticle = combinedSpecies;
+            if(context.rebuildInterval > 0 && stepNumber % context.rebuildInterval == 0){
+                this.rebuildRadicalTracker();
             }
-
             this.log();
             this.checkInvariants();
             stepNumber++;
+            if(checkpointDue()){
+                this.saveCheckpoint();
+            }
+            if(stepNumber == branchStep){
+                branchListener.branch(this.snapshot());
+            }
         }
 
         this.finish();
     }
 
-    private double globalConcentration(SPECIES radical){
-        return (numberOfVinylGroups - radical.numberOfActiveVinylGroups())/ VESSEL_VOLUME;
+    private boolean checkpointDue(){
+        if(context.checkpointInterval > 0 && stepNumber % context.checkpointInterval == 0){
+            return true;
+        }
+        return context.checkpointMinutes > 0 && (stepNumber & 0x3FF) == 0                                               //Only read the clock every 1024 steps
+                && System.currentTimeMillis() >= nextCheckpointTime;
+    }
+
+    /**
+     * @return Description of the simulation, which must be the same for the simulation that resumes a checkpoint
+     */
+    String fingerprint(){
+        return String.join(",",
+                ""+initialNumberOfHalfInitiators,
+                ""+initialNumberOfMonomers,
+                ""+initialNumberOfCrosslinkers,
+                ""+context.weightHalfInitiator,
+                ""+context.weightMonomer,
+                ""+context.weightCrosslinker,
+                ""+context.vesselVolume,
+                ""+context.minMolVolume,
+                species.getClass().getName(),
+                keyFactory.getClass().getName(),
+                random.getClass().getName(),
+                context.samplingTree.name(),
+                context.radicalTrackerLayout.name(),
+                ""+context.rejectionFreeStericHindrance
+        );
+    }
+
+    /**
+     * @return Description of the reactive volume of the species, which may differ for a branch
+     */
+    private String reactiveVolume(){
+        return String.join(",", context.interactionRadiusFormula, ""+context.monomerLength, ""+context.compensationFactor);
+    }
+
+    /**
+     * Writes the complete state of the simulation to the checkpoint file in the output directory, replacing the
+     * previous checkpoint only once it has been written completely. The trees are written as they are, including
+     * their rounding errors, so a resumed simulation continues exactly as this one does.
+     */
+    private void saveCheckpoint() throws IOException {
+        long checkpointStart = System.currentTimeMillis();
+        FileWriter.createDirectoryIfNonExistent(context.outputDirectory);
+        try(CheckpointWriter checkpoint = new CheckpointWriter(Paths.get(context.outputDirectory, CHECKPOINT_FILE))){
+            save(checkpoint);
+            checkpoint.commit();
+        }
+        long checkpointEnd = System.currentTimeMillis();
+        nextCheckpointTime = checkpointEnd + (long) (context.checkpointMinutes * 60_000);
+        log.debugln(String.format("Wrote checkpoint at step %d in %d ms", stepNumber, checkpointEnd - checkpointStart));
+    }
+
+    /**
+     * @return Checkpoint of the complete state of the simulation in memory
+     */
+    public byte[] snapshot() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(CheckpointWriter checkpoint = new CheckpointWriter(Channels.newChannel(bytes))){
+            save(checkpoint);
+            checkpoint.commit();
+        }
+        return bytes.toByteArray();
+    }
+
+    private void save(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putString(fingerprint());
+        checkpoint.putString(reactiveVolume());
+        checkpoint.putLong(stepNumber);
+        checkpoint.putLong(System.currentTimeMillis() - startTime);
+        checkpoint.putLong(biggestParticleSize);
+        checkpoint.putLong(numberOfHalfInitiators);
+        checkpoint.putLong(numberOfMonomers);
+        checkpoint.putLong(numberOfCrosslinkers);
+        checkpoint.putLong(numberOfVinylGroups);
+        checkpoint.putLong(numberOfPolymers);
+        checkpoint.putLong(numberOfVinylGroupsInParticles);
+        checkpoint.putLong(numberOfReactiveCentersInPolymers);
+        checkpoint.putDouble(previousConversion);
+        checkpoint.putDouble(maxRelativeDrift);
+        checkpoint.putLongs(events);
+        checkpoint.putLongs(sliceStartEvents);
+        checkpoint.putLong(sliceStartSteps);
+
+        SaveableSpeciesStore<SPECIES> store = saveableSpecies();
+        store.save(checkpoint);
+        store.save(checkpoint, biggestParticle);
+        for(int index=firstPolymerIndex;index<species.slots();index++){                                                 //The starting species always keep their abstract species
+            boolean empty = emptyIndices.contains(index);
+            checkpoint.putBoolean(empty);
+            if(!empty){
+                checkpoint.putLongs(species.getAbstractSpecies(index).key());
+            }
+        }
+        vinylIndices.save(checkpoint);
+        for(RadicalTracker tracker : radicalTrackers){
+            tracker.save(checkpoint);
+        }
+        weightHistogram.save(checkpoint);
+        dynamicOutput.save(checkpoint);
+        random.save(checkpoint);
+    }
+
+    /**
+     * @return The species store, if it can be written to a checkpoint
+     */
+    @SuppressWarnings("unchecked")
+    private SaveableSpeciesStore<SPECIES> saveableSpecies(){
+        if(!(species instanceof SaveableSpeciesStore)){
+            throw new IllegalStateException("Checkpoints are only supported for unstructured particles");
+        }
+        return (SaveableSpeciesStore<SPECIES>) species;                                                                 //A store holds the species of its own factory
+    }
+
+    /**
+     * Restores the state written to the checkpoint <code>file</code> by a simulation of the same input, after which
+     * <code>run</code> continues that simulation from the step at which the checkpoint was written.
+     * Output files are created anew, starting with the output of the resumed simulation up to the checkpoint.
+     */
+    public void resume(Path file) throws IOException {
+        try(CheckpointReader checkpoint = new CheckpointReader(file)){
+            restore(checkpoint);
+        }
+        log.infoln(String.format("Resumed from %s at step %d", file, stepNumber));
+    }
+
+    /**
+     * Restores the state in <code>snapshot</code> as above, which may have been taken by a simulation with other
+     * steric hindrance and another reactive volume: these only apply to the steps after the snapshot
+     */
+    public void resume(byte[] snapshot) throws IOException {
+        try(CheckpointReader checkpoint = new CheckpointReader(snapshot)){
+            restore(checkpoint);
+        }
+        log.infoln(String.format("Branched at step %d", stepNumber));
+    }
+
+    private void restore(CheckpointReader checkpoint) throws IOException {
+        if(resumed || stepNumber > 0){
+            throw new IllegalStateException("Only a new simulation can resume a checkpoint");
+        }
+        String fingerprint = checkpoint.getString();
+        if(!fingerprint.equals(fingerprint())){
+            throw new IllegalArgumentException("Checkpoint was written by a different simulation ("+fingerprint+" instead of "+fingerprint()+")");
+        }
+        String reactiveVolume = checkpoint.getString();
+        stepNumber = checkpoint.getLong();
+        resumedDuration = checkpoint.getLong();
+        biggestParticleSize = checkpoint.getLong();
+        numberOfHalfInitiators = checkpoint.getLong();
+        numberOfMonomers = checkpoint.getLong();
+        numberOfCrosslinkers = checkpoint.getLong();
+        numberOfVinylGroups = checkpoint.getLong();
+        numberOfPolymers = checkpoint.getLong();
+        numberOfVinylGroupsInParticles = checkpoint.getLong();
+        numberOfReactiveCentersInPolymers = checkpoint.getLong();
+        previousConversion = checkpoint.getDouble();
+        maxRelativeDrift = checkpoint.getDouble();
+        System.arraycopy(checkpoint.getLongs(), 0, events, 0, events.length);
+        System.arraycopy(checkpoint.getLongs(), 0, sliceStartEvents, 0, sliceStartEvents.length);
+        sliceStartSteps = checkpoint.getLong();
+
+        SaveableSpeciesStore<SPECIES> store = saveableSpecies();
+        store.restore(checkpoint);
+        biggestParticle = store.restoreSpecies(checkpoint);
+        species.setAbstractSpecies(0, this.i);
+        species.setAbstractSpecies(1, this.m);
+        species.setAbstractSpecies(2, this.c);
+        for(int index=firstPolymerIndex;index<species.slots();index++){
+            if(checkpoint.getBoolean()){
+                emptyIndices.add(index);
+            }else{
+                ABSTRACTSPECIES abstractSpecies = keyFactory.abstractSpecies(checkpoint.getLongs());
+                species.setAbstractSpecies(index, abstractSpecies);
+                speciesIndices.put(abstractSpecies.key(), index);
+            }
+        }
+        vinylIndices.restore(checkpoint);
+        for(RadicalTracker tracker : radicalTrackers){
+            tracker.restore(checkpoint);
+        }
+        weightHistogram.restore(checkpoint);
+        dynamicOutput.restore(checkpoint);
+        random.restore(checkpoint);
+        checkpoint.finish();
+
+        if(!reactiveVolume.equals(reactiveVolume())){                                                                   //A branch with another interaction radius
+            store.updateLocalConcentrations();
+            for(RadicalTracker tracker : radicalTrackers){
+                tracker.rebuild(species, numberOfVinylGroups);
+            }
+        }
+        resumed = true;
+    }
+
+    /**
+     * Takes a snapshot once <code>conversion</code> (in %) has been reached during <code>run</code> and passes it to
+     * <code>listener</code>, after which the simulation continues
+     */
+    public void branchAt(double conversion, BranchListener listener){
+        if(!(species instanceof SaveableSpeciesStore)){
+            throw new IllegalArgumentException("Branching is only supported for unstructured particles");
+        }
+        if(!random.isSaveable()){
+            throw new IllegalArgumentException("Branching is not supported by the random generator "+random.getClass().getSimpleName());
+        }
+        long vinylGroups = CROSSLINKER_VINYL_GROUPS*initialNumberOfCrosslinkers + initialNumberOfMonomers;
+        this.branchStep = (long) Math.ceil(conversion / 100 * vinylGroups) + 1;                                         //stepNumber is the next step when the snapshot is taken
+        this.branchListener = listener;
+        dynamicOutput.keepHistory();                                                                                    //The branches start with the output up to the snapshot
+    }
+
+    private double globalConcentration(int radicalIndex){
+        return (numberOfVinylGroups - species.numberOfActiveVinylGroups(radicalIndex))/ context.vesselVolume;
     }
 
     private void checkInvariants(){
-        assert(vinylIndices.size == species.size());                                                                    //BIT same size as list of species.
+        assert(vinylIndices.size() == species.slots());                                                                 //BIT same size as list of species.
         assert(numberOfReactiveCentersInPolymers + numberOfHalfInitiators == initialNumberOfHalfInitiators);            //radical groups do not disappear
         assert(numberOfVinylGroupsInParticles + CROSSLINKER_VINYL_GROUPS* numberOfCrosslinkers + numberOfMonomers
                 == (initialNumberOfMonomers +CROSSLINKER_VINYL_GROUPS* initialNumberOfCrosslinkers)- stepNumber);       //only one double bond is consumed in each time step
@@ -290,116 +675,156 @@ public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends Abstract
 
     private int pickRadical(){
         int index = radicalTracker.pickRadical(this.numberOfVinylGroups);
-        assert(species.get(index).numberOfRadicals() >0);
-        assert(species.get(index).number() >0);
+        assert(species.numberOfRadicals(index) >0);
+        assert(species.number(index) >0);
         return index;
     }
 
     private int pickVinyl(){
-        assert(numberOfVinylGroups == vinylIndices.totalSum);
-        long sample = Random.getRandom(numberOfVinylGroups);
-        int index = vinylIndices.indexOf(sample);
-        assert(species.get(index).numberOfActiveVinylGroups() >0);
-        assert(species.get(index).number() >0);
+        assert(numberOfVinylGroups == vinylIndices.totalSum());
+        int index = vinylIndices.sample(random);
+        assert(species.numberOfActiveVinylGroups(index) >0);
+        assert(species.number(index) >0);
         return index;
     }
 
-    private int pickVinylButNotIn(SPECIES radical, int radicalIndex){
-        assert(numberOfVinylGroups == vinylIndices.totalSum);
-        long max = numberOfVinylGroups - radical.numberOfActiveVinylGroups();                                           //Exclude vinyl groups in radical from sampling
-        long sample = Random.getRandom(max);
-        long preRadicalSum = vinylIndices.rsq(radicalIndex);                                                            //Sum of all vinyl groups of species with index < radicalIndex
-        int index;
-        if(sample < preRadicalSum - radical.numberOfActiveVinylGroups()){                                               //return regular index if sample matches vinyl group with index smaller than excluded ones
-            index = vinylIndices.indexOf(sample);
-        }else{
-            index = vinylIndices.indexOf(sample + radical.numberOfActiveVinylGroups());                                 //Include offset to exclude vinyl groups in radical particle
-        }
-        assert(species.get(index).numberOfActiveVinylGroups() >0);
-        assert(species.get(index).number() >0);
+    /**
+     * @return Index of a polymer with a vinyl group, sampled in proportion to its vinyl groups excluding those in <code>radicalIndex</code>
+     */
+    private int pickPolymerVinylButNotIn(int radicalIndex){
+        long radicalVinylGroups = species.numberOfActiveVinylGroups(radicalIndex);
+        int index = vinylIndices.sampleFrom(random, firstPolymerIndex, radicalIndex, radicalVinylGroups);
+        assert(species.isPolymer(index));
+        assert(species.numberOfActiveVinylGroups(index) >0);
+        assert(species.number(index) >0);
+        return index;
+    }
+
+    /**
+     * @return Index of the monomers or cross-linkers, sampled in proportion to their vinyl groups
+     */
+    private int pickStartingVinyl(long startingVinylGroups){
+        assert(startingVinylGroups == vinylIndices.rsq(firstPolymerIndex-1));
+        int index = vinylIndices.indexOf(random.getRandom(startingVinylGroups));                                        //The starting species are in the first slots
+        assert(!species.isPolymer(index));
+        assert(species.numberOfActiveVinylGroups(index) >0);
         return index;
     }
 
+    private int pickVinylButNotIn(int radicalIndex){
+        assert(numberOfVinylGroups == vinylIndices.totalSum());
+        long radicalVinylGroups = species.numberOfActiveVinylGroups(radicalIndex);
+        int index = vinylIndices.sampleExcluding(random, radicalIndex, radicalVinylGroups);                             //Exclude vinyl groups in radical from sampling
+        assert(species.numberOfActiveVinylGroups(index) >0);
+        assert(species.number(index) >0);
+        return index;
+    }
+
+    /**
+     * Rebuilds the radical tracker from the species and reports the drift of the sum of all reaction rates since the last rebuild
+     */
+    private void rebuildRadicalTracker(){
+        for(RadicalTracker tracker : radicalTrackers){
+            double totalSum = tracker.totalSum(numberOfVinylGroups);
+            if(totalSum > 0){                                                                                           //A tracker without radicals has no drift
+                double relativeDrift = Math.abs(tracker.rebuild(species, numberOfVinylGroups)) / totalSum;
+                maxRelativeDrift = Math.max(maxRelativeDrift, relativeDrift);
+                log.debugln(String.format("Rebuilt radical tracker at step %d, relative drift: %.3e", stepNumber, relativeDrift));
+            }
+        }
+    }
+
     private void halfTree(){
         int subtreeSize = vinylIndices.subtreeSize();
-        for(int i = vinylIndices.size-1; i>=subtreeSize; i--){
+        for(int i = vinylIndices.size()-1; i>=subtreeSize; i--){
             if(i== emptyIndices.last()){                                                                                //Already empty
                 emptyIndices.remove(i);
-                species.remove(i);
+                species.removeLast();
             }else{                                                                                                      //Relocate data
-                SPECIES p = species.get(i);
                 int firstIndex = emptyIndices.first();
-                vinylIndices.adj(i, -p.numberOfActiveVinylGroups()*p.number());                                         //Remove from old position
-                radicalTracker.relocate(p, i, firstIndex);
-                species.remove(i);
+                long vinylGroups = species.numberOfActiveVinylGroups(i)*species.number(i);
+                vinylIndices.adj(i, -vinylGroups);                                                                      //Remove from old position
+                for(RadicalTracker tracker : radicalTrackers){
+                    tracker.relocate(species, i, firstIndex);
+                }
+                species.moveLast(firstIndex);
                 emptyIndices.remove(firstIndex);
 
-                vinylIndices.adj(firstIndex, p.numberOfActiveVinylGroups()*p.number());                                 //Add at new position
-                species.set(firstIndex, p);
-                speciesIndices.put((ABSTRACTSPECIES) p.getAbstractSpecies(), firstIndex);
+                vinylIndices.adj(firstIndex, vinylGroups);                                                              //Add at new position
+                speciesIndices.put(species.getAbstractSpecies(firstIndex).key(), firstIndex);
 
-                assert(i==0|| vinylIndices.rsq(i) == vinylIndices.rsq(vinylIndices.size-1));                            //Check whether number of reactive groups at position i is zero
+                assert(i==0|| vinylIndices.rsq(i) == vinylIndices.rsq(vinylIndices.size()-1));                          //Check whether number of reactive groups at position i is zero
             }
         }
         vinylIndices.halfData();
-        radicalTracker.halfData();
-    }
-
-    private void addParticle(SPECIES p){
-        int newIndex;
-        if(emptyIndices.isEmpty()){
-            newIndex = species.size();
-        }else{
-            newIndex = emptyIndices.first();
-            emptyIndices.remove(newIndex);
+        events[Event.HALF_TREE.ordinal()]++;
+        for(RadicalTracker tracker : radicalTrackers){
+            tracker.halfData();
         }
+    }
 
-        speciesIndices.put((ABSTRACTSPECIES) p.getAbstractSpecies(), newIndex);
-        if(newIndex == species.size()){                                                                                 //Add at end of particle list
-            species.add(p);
-            vinylIndices.add(p.numberOfActiveVinylGroups());
-            radicalTracker.addOne(p);
+    /**
+     * Adds the new species that has just been stored in slot <code>newIndex</code>,
+     * which is either the first unused slot or the slot after the last one
+     */
+    private void addParticle(int newIndex){
+        speciesIndices.put(species.getAbstractSpecies(newIndex).key(), newIndex);
+        weightHistogram.add(species, newIndex, species.number(newIndex));
+        if(newIndex == vinylIndices.size()){                                                                            //Add at end of particle list
+            vinylIndices.add(species.numberOfActiveVinylGroups(newIndex));
+            for(RadicalTracker tracker : radicalTrackers){
+                tracker.addOne(species, newIndex);
+            }
         }else {                                                                                                         //Add at unused index
-            species.set(newIndex, p);
-            vinylIndices.adj(newIndex, p.numberOfActiveVinylGroups());
-            radicalTracker.set(p, newIndex);
+            emptyIndices.remove(newIndex);
+            vinylIndices.adj(newIndex, species.numberOfActiveVinylGroups(newIndex));
+            for(RadicalTracker tracker : radicalTrackers){
+                tracker.set(species, newIndex);
+            }
         }
     }
 
     private void removeParticle(int particleIndex, ABSTRACTSPECIES group){
-        assert(particleIndex==0|| vinylIndices.rsq(speciesIndices.get(group)) == vinylIndices.rsq(speciesIndices.get(group)-1));
+        assert(particleIndex==0|| vinylIndices.rsq(speciesIndices.get(group.key())) == vinylIndices.rsq(speciesIndices.get(group.key())-1));
         emptyIndices.add(particleIndex);
-        speciesIndices.remove(group);
-        if(vinylIndices.size-emptyIndices.size() <= vinylIndices.subtreeSize()-SHRINK_THRESHOLD){                       //If data + threshold fits in subtree
+        speciesIndices.remove(group.key());
+        if(vinylIndices.size()-emptyIndices.size() <= vinylIndices.subtreeSize()-SHRINK_THRESHOLD){                     //If data + threshold fits in subtree
             halfTree();
         }
     }
 
-    private void increaseParticle(int particleIndex, SPECIES p){
-        p.increaseNumber();
-        radicalTracker.increaseParticle(p, particleIndex);
-        vinylIndices.adj(particleIndex, p.numberOfActiveVinylGroups());
+    private void increaseParticle(int particleIndex){
+        species.increaseNumber(particleIndex);
+        for(RadicalTracker tracker : radicalTrackers){
+            tracker.increaseParticle(species, particleIndex);
+        }
+        vinylIndices.adj(particleIndex, species.numberOfActiveVinylGroups(particleIndex));
+        weightHistogram.add(species, particleIndex, 1);
     }
 
-    private void decreaseParticle(int particleIndex, SPECIES p){
-        p.decreaseNumber();
-        radicalTracker.decreaseParticle(p, particleIndex);
-        vinylIndices.adj(particleIndex, -p.numberOfActiveVinylGroups());
+    private void decreaseParticle(int particleIndex){
+        species.decreaseNumber(particleIndex);
+        for(RadicalTracker tracker : radicalTrackers){
+            tracker.decreaseParticle(species, particleIndex);
+        }
+        vinylIndices.adj(particleIndex, -species.numberOfActiveVinylGroups(particleIndex));
+        weightHistogram.add(species, particleIndex, -1);
 
-        if(p.number()==0 && p.isPolymer()) {                                                                            //Only remove polymer species
-            removeParticle(particleIndex, (ABSTRACTSPECIES) p.getAbstractSpecies());
+        if(species.number(particleIndex)==0 && species.isPolymer(particleIndex)) {                                      //Only remove polymer species
+            removeParticle(particleIndex, (ABSTRACTSPECIES) species.getAbstractSpecies(particleIndex));
         }
     }
 
 
 
-    private void log(){
+    private void log() throws IOException {
         double conversion =  ((double)(100 * stepNumber) / (CROSSLINKER_VINYL_GROUPS*initialNumberOfCrosslinkers + initialNumberOfMonomers));
 
-        if (conversion < 100 && conversion < previousConversion + PERCENTAGE_PER_SLICE) {                               //Only show output at every percent of conversion
+        if (conversion < 100 && conversion < previousConversion + context.percentagePerSlice) {                         //Only show output at every percent of conversion
             return;
         }
 
+        long logStart = phaseTimer != null ? System.nanoTime() : 0;
         long endTime = System.currentTimeMillis();                                                                      //Calculate all values that will be logged, as they will be used for CSV export as well
         double sliceDuration   = endTime - sliceStartTime;
         double totalDuration   = endTime - startTime;
@@ -416,11 +841,14 @@ public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends Abstract
         log.debug(String.format(SPEED_FORMAT, stepNumber, stepsPerSecond, avgStepsPerSecond));
         log.info( String.format(MOLECULES_FORMAT, conversion, numberOfHalfInitiators, numberOfMonomers, numberOfCrosslinkers));
         log.debug(String.format(REACTIVE_GROUP_FORMAT, numberOfVinylGroupsInParticles));
-        log.infoln( String.format(PARTICLE_FORMAT, speciesIndices.size(), numberOfPolymers, (long)biggestParticle.getWeight()));
+        log.infoln( String.format(PARTICLE_FORMAT, speciesIndices.size(), numberOfPolymers, (long)biggestParticle.getWeight(context)));
 
-        dynamicOutput.addRow(conversion, species, biggestParticle);
+        dynamicOutput.addRow(conversion, species, biggestParticle, weightHistogram);
+        for(SliceListener listener : sliceListeners){
+            listener.slice(conversion, stepNumber, speciesIndices.size());
+        }
 
-        if(LOG_TO_FILE){
+        if(context.logToFile){
             Map<CSVColumn, Object> row = new HashMap<>();
             row.put(CONVERSION, String.format(Locale.ROOT, "%.2f",conversion));
             row.put(NUMBER_I, numberOfHalfInitiators);
@@ -432,15 +860,23 @@ public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends Abstract
             row.put(STEPS_PER_SECOND, stepsPerSecond);
             row.put(STEPS_PER_SECOND_AVG, avgStepsPerSecond);
             row.put(MEMORY_USAGE, this.getMemoryUsage());
+            for(Event event : Event.values()){
+                row.put(event.column, events[event.ordinal()] - sliceStartEvents[event.ordinal()]);
+            }
             csvGenerator.addRow(row);
         }
+        if(phaseTimer != null){
+            phaseTimer.record(Phase.LOG, System.nanoTime() - logStart);
+            phaseTimer.slice(conversion);
+        }
 
+        System.arraycopy(events, 0, sliceStartEvents, 0, events.length);
         sliceStartSteps = stepNumber;                                                                                   //Update slice info
         sliceStartTime = System.currentTimeMillis();
         previousConversion = conversion;
     }
 
-    private void init(){
+    private void init() throws IOException {
         String speciesType = species.get(0).getClass().getSimpleName();
         String abstractSpeciesType = this.i.getClass().getSimpleName();
 
@@ -448,10 +884,22 @@ public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends Abstract
         log.infoln(String.format("Abstract species type: %s", abstractSpeciesType));
         log.infoln(String.format("Species type: %s", speciesType));
 
-        startTime = System.currentTimeMillis();
-        sliceStartTime = startTime+1;
+        long now = System.currentTimeMillis();
+        startTime = now - resumedDuration;                                                                              //Only the total duration includes the run up to the checkpoint
+        sliceStartTime = now+1;
+        nextCheckpointTime = System.currentTimeMillis() + (long) (context.checkpointMinutes * 60_000);
 
-        if(LOG_TO_FILE){
+        dynamicOutput.startExport();                                                                                    //Write output as soon as it is available
+        if(phaseTimer != null){
+            phaseTimer.start(context);
+        }
+        if(context.logToFile){
+            csvGenerator.start(context);
+        }
+        if(resumed){                                                                                                    //The output up to the checkpoint has been restored
+            return;
+        }
+        if(context.logToFile){
             Map<CSVColumn, Object> row = new HashMap<>();
             row.put(CONVERSION, 0);
             row.put(NUMBER_I, numberOfHalfInitiators);
@@ -463,34 +911,89 @@ public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends Abstract
             row.put(STEPS_PER_SECOND, 0);
             row.put(STEPS_PER_SECOND_AVG, 0);
             row.put(MEMORY_USAGE, this.getMemoryUsage());
+            for(Event event : Event.values()){
+                row.put(event.column, 0);
+            }
             row.put(NOTES, String.format("Species type: %s, Abstract Species type: %s", speciesType, abstractSpeciesType));
             csvGenerator.addRow(row);
         }
 
-        dynamicOutput.addRow(0, species, biggestParticle);
+        dynamicOutput.addRow(0, species, biggestParticle, weightHistogram);
+        for(SliceListener listener : sliceListeners){
+            listener.slice(0, 0, speciesIndices.size());
+        }
     }
 
     private void finish(){
         long endTime = System.currentTimeMillis();
         log.debugln(String.format("Execution time: %d seconds",((endTime-startTime)/1000)));
+        if(context.rebuildInterval > 0){
+            log.infoln(String.format("Maximum relative drift of the radical tracker: %.3e", maxRelativeDrift));
+        }
+        log.debugln(String.format("Rejected reactions: %.2f%%", 100 * getRejectionRatio()));
+        if(phaseTimer != null){
+            log.infoln("Time per phase of the timed reactions:\n" + phaseTimer.summary());
+            phaseTimer.finish();
+        }
 
         try {
-            if(LOG_TO_FILE) {
-                csvGenerator.export();
+            if(context.logToFile) {
+                csvGenerator.finish();
             }
 
             dynamicOutput.export();
 
-            if( INPUT_SOURCE == InputSource.STRUCTURED){
+            if( context.inputSource == InputSource.STRUCTURED){
                 StructuredParticle p = (StructuredParticle) biggestParticle;
-                PDBGenerator.createDataFile(p);
-                MOLGenerator.createDataFile(p);
+                PDBGenerator.createDataFile(context, p);
+                MOLGenerator.createDataFile(context, p);
             }
         } catch (IOException e) {
             log.errorln("[ERROR]"+e.getMessage());
         }
     }
 
+    public void addSliceListener(SliceListener listener){
+        sliceListeners.add(listener);
+    }
+
+    public DynamicOutput getDynamicOutput(){
+        return dynamicOutput;
+    }
+
+    /**
+     * @return Largest relative drift of the sum of all reaction rates found by rebuilding the radical tracker, 0 if it was never rebuilt
+     */
+    public double getMaxRelativeDrift(){
+        return maxRelativeDrift;
+    }
+
+    /**
+     * @return Fraction of the picked reactions that were rejected, because of steric hindrance or because they were not possible
+     */
+    public double getRejectionRatio(){
+        long rejected = 0;
+        for(Event event : Event.values()){
+            if(event.isRejection()) rejected += events[event.ordinal()];
+        }
+        long picked = rejected + getEventCount(Event.INTERMOLECULAR) + getEventCount(Event.INTRAMOLECULAR);
+        return picked == 0 ? 0 : rejected / (double) picked;
+    }
+
+    /**
+     * @return Durations of the phases of the timed reactions, null if timing is disabled
+     */
+    public PhaseTimer getPhaseTimer(){
+        return phaseTimer;
+    }
+
+    /**
+     * @return Number of times <code>event</code> occurred so far
+     */
+    public long getEventCount(Event event){
+        return events[event.ordinal()];
+    }
+
     private long getMemoryUsage(){
         return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
     }
@@ -505,11 +1008,17 @@ public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends Abstract
         }
 
         boolean generateExcel = false;
-        boolean customExcel = false;
-        SpeciesFactory speciesFactory = new UnstructuredSpeciesFactory();
-
-        for(String arg : args){
-            arg = arg.toLowerCase();
+        boolean structured = false;
+        boolean batch = false;
+        int threads = 0;
+        int replicas = 1;
+        long heapPerRun = BatchRunner.DEFAULT_HEAP_PER_RUN;
+        String resume = null;                                                                                           //Checkpoint from which a single simulation is resumed
+        double branchAt = 0;                                                                                            //Conversion at which the other workbooks branch from the first
+        List<String> workbooks = new ArrayList<>();
+
+        for(String path : args){
+            String arg = path.toLowerCase();
 
             switch(arg){
                 case "-d" :
@@ -522,53 +1031,119 @@ public class Simulator<SPECIES extends Species, ABSTRACTSPECIES extends Abstract
                 case "-m=structured" :
                     INPUT_SOURCE = InputSource.STRUCTURED;
                     INPUT_FILE = INPUT_SOURCE.defaultFileName();
-                    speciesFactory = new StructuredSpeciesFactory();
+                    structured = true;
                     break;
                 case "--mode=unstructured" :
                 case "-m=unstructured" :
                     INPUT_SOURCE = InputSource.UNSTRUCTURED;
                     INPUT_FILE = INPUT_SOURCE.defaultFileName();
-                    speciesFactory = new UnstructuredSpeciesFactory();
+                    structured = false;
                     break;
                 case "--generate-excel" :                                                                               //Allow excel generation even though excels are already present
                 case "-ge" :
                     generateExcel = true;
                     break;
+                case "--batch" :                                                                                        //Simulate the given workbooks concurrently, even if there is only one
+                case "-b" :
+                    batch = true;
+                    break;
                 default :
                     if((arg.startsWith("--mode") || arg.startsWith("-m")) && arg.split("=").length==2){
                         throw new RuntimeException("Error while reading \""+arg+"\": "+arg.split("=")[1]+" is not a valid option");
-                    }if(arg.endsWith(".xlsx")) {
-                        if(customExcel){
-                            throw new RuntimeException("Error while reading \""+arg+"\": "+arg.split("=")[1]+" Excel file was already specified");
-                        }else{                                                                                          //Use path to provided excel instead of the one in /input
-                            customExcel = true;
-                            File f = new File(arg);
-                            INPUT_DIRECTORY = f.getParent();
-                            INPUT_FILE = f.getName();
-                            OUTPUT_DIRECTORY = f.getParent()+File.separator+"output"+File.separator+INPUT_FILE.split("\\.")[0];
-                        }
+                    }if(arg.startsWith("--replicas=")){
+                        replicas = Integer.parseInt(arg.split("=")[1]);
+                    }else if(arg.startsWith("--threads=")){
+                        threads = Integer.parseInt(arg.split("=")[1]);
+                    }else if(arg.startsWith("--radical-tracker=")){                                                     //separate, interleaved or fixed_point
+                        RADICAL_TRACKER_LAYOUT = RadicalTracker.Layout.valueOf(arg.split("=")[1].toUpperCase());
+                    }else if(arg.startsWith("--rebuild-interval=")){                                                    //in steps
+                        REBUILD_INTERVAL = (long) Double.parseDouble(arg.split("=")[1]);
+                    }else if(arg.equals("--rejection-free")){                                                           //weigh reactions by steric hindrance instead of rejecting them
+                        REJECTION_FREE_STERIC_HINDRANCE = true;
+                    }else if(arg.startsWith("--timing-interval=")){                                                     //in picked reactions
+                        TIMING_INTERVAL = (long) Double.parseDouble(arg.split("=")[1]);
+                    }else if(arg.startsWith("--checkpoint-interval=")){                                                 //in steps
+                        CHECKPOINT_INTERVAL = (long) Double.parseDouble(arg.split("=")[1]);
+                    }else if(arg.startsWith("--checkpoint-minutes=")){
+                        CHECKPOINT_MINUTES = Double.parseDouble(arg.split("=")[1]);
+                    }else if(arg.startsWith("--branch-at=")){                                                           //in % conversion
+                        branchAt = Double.parseDouble(arg.split("=")[1]);
+                    }else if(arg.startsWith("--resume=")){                                                              //checkpoint file of an earlier run with the same input
+                        resume = path.split("=", 2)[1];
+                    }else if(arg.startsWith("--sampling-tree=")){                                                       //fenwick, bary or composition_rejection
+                        SAMPLING_TREE = SamplingTree.valueOf(arg.split("=")[1].toUpperCase());
+                    }else if(arg.startsWith("--storage=")){                                                             //heap, direct or mapped
+                        STORAGE = Storage.valueOf(arg.split("=")[1].toUpperCase());
+                    }else if(arg.startsWith("--storage-directory=")){                                                   //directory of the files of mapped storage
+                        STORAGE_DIRECTORY = path.split("=", 2)[1];
+                    }else if(arg.startsWith("--heap-per-run=")){                                                        //in MB
+                        heapPerRun = Long.parseLong(arg.split("=")[1]) * 1024 * 1024;
+                    }else if(arg.endsWith(".xlsx") || new File(path).isDirectory()) {
+                        workbooks.add(path);
                     }else {
                         log.errorln("[ERROR] Unknown argument "+arg);
                     }
             }
         }
 
+        if(STORAGE == Storage.MAPPED && STORAGE_DIRECTORY != null){                                                     //Fail before any workbook is read
+            Files.createDirectories(Paths.get(STORAGE_DIRECTORY));
+        }
+
+        if(!generateExcel && branchAt > 0){
+            if(replicas > 1 || resume != null){
+                throw new RuntimeException("Branches cannot be combined with replicas or a checkpoint");
+            }
+            new BranchRunner(INPUT_SOURCE, BatchRunner.findWorkbooks(workbooks), branchAt, BatchRunner.workers(threads, heapPerRun)).run();
+            return;
+        }else if(!generateExcel && (batch || workbooks.size() > 1 || (workbooks.size() == 1 && new File(workbooks.get(0)).isDirectory()))){
+            if(replicas > 1){
+                throw new RuntimeException("Replicas cannot be combined with multiple Excel files");
+            }
+            if(resume != null){
+                throw new RuntimeException("A checkpoint can only be resumed by a single simulation");
+            }
+            BatchRunner runner = new BatchRunner(
+                    INPUT_SOURCE,
+                    BatchRunner.findWorkbooks(workbooks),
+                    BatchRunner.workers(threads, heapPerRun),
+                    OUTPUT_DIRECTORY,
+                    "logs"
+            );
+            runner.run();
+            return;
+        }else if(workbooks.size() == 1){                                                                                //Use path to provided excel instead of the one in /input
+            File f = new File(workbooks.get(0));
+            INPUT_DIRECTORY = f.getAbsoluteFile().getParent();
+            INPUT_FILE = f.getName();
+            OUTPUT_DIRECTORY = INPUT_DIRECTORY+File.separator+"output"+File.separator+INPUT_FILE.split("\\.")[0];
+        }
+
         if(generateExcel) {
             ExcelInput.validate(Settings.class);
             ExcelInput.generateExcel(Settings.class, INPUT_SOURCE, false);
         } else {
             ExcelInput.readExcel(Settings.class, INPUT_SOURCE, false);                                                  //Read settings from INPUT_SOURCE and write to Settings.class
             Settings.init();                                                                                            //Calculate other settings
+            SimulationContext context = SimulationContext.fromSettings();                                               //Settings are not used by the simulation itself
 
-            if (INPUT_SOURCE != InputSource.STRUCTURED || speciesFactory instanceof StructuredSpeciesFactory) {
+            if(replicas > 1){
+                if(resume != null){
+                    throw new RuntimeException("A checkpoint can only be resumed by a single simulation");
+                }
+                new ReplicaRunner(context, replicas, BatchRunner.workers(threads, heapPerRun)).run();
+                return;
+            }
 
-                Simulator sim = new Simulator(
-                        NUMBER_HALF_INITIATORS,
-                        NUMBER_MONOMERS,
-                        NUMBER_CROSSLINKERS,
-                        abstractSpeciesFactory,
-                        speciesFactory
-                );
+            long seed = context.seed();                                                                                 //Log the seed so that every run can be reproduced
+            log.infoln("Random seed: "+seed);
+            Random random = context.createRandom(seed);
+
+            if (context.inputSource != InputSource.STRUCTURED || structured) {
+                Simulator<?, ?> sim = Simulator.create(context, random);
+                if(resume != null){
+                    sim.resume(Paths.get(resume));
+                }
                 sim.run();
             } else {
                 log.errorln("[ERROR]Cannot make particle structure when using an unstructured particle representation");
@@ -4,8 +4,14 @@ import nl.utwente.simulator.entities.abstractSpecies.CompositionalSpeciesFactory
 import nl.utwente.simulator.input.Input;
 import nl.utwente.simulator.input.InputSource;
 import nl.utwente.simulator.output.CustomLogger;
+import nl.utwente.simulator.simulator.AbstractSpecies;
 import nl.utwente.simulator.simulator.AbstractSpeciesFactory;
+import nl.utwente.simulator.utils.RadicalTracker;
+import nl.utwente.simulator.utils.SamplingTree;
 import nl.utwente.simulator.utils.codegeneration.ExpressionGenerator;
+import nl.utwente.simulator.utils.random.Random;
+import nl.utwente.simulator.utils.random.SplitMixRandom;
+import nl.utwente.simulator.utils.storage.Storage;
 import org.apache.log4j.Level;
 
 import java.text.ParseException;
@@ -43,6 +49,21 @@ public class Settings {
     public static final boolean STOP_AT_GEL_POINT = true;
     public static final int     SHRINK_THRESHOLD = 10;                                                                  //Shrink Fenwick trees when they contain tree.length/2 - threshold elements;
                                                                                                                         // this prevents doubling immediately afterwards
+    public static RadicalTracker.Layout RADICAL_TRACKER_LAYOUT = RadicalTracker.Layout.SEPARATE;                        //Memory layout of the trees used to pick radicals
+    public static SamplingTree SAMPLING_TREE = SamplingTree.FENWICK;                                                    //Tree from which vinyl groups and radicals are sampled
+    public static long REBUILD_INTERVAL = 0;                                                                            //Steps between exact rebuilds of the radical tracker, which report the floating point drift (0 to disable)
+    public static boolean REJECTION_FREE_STERIC_HINDRANCE = false;                                                      //Weigh reactions by their chance to overcome steric hindrance instead of rejecting them after picking
+    public static long TIMING_INTERVAL = 0;                                                                             //Picked reactions between the ones of which the phases are timed (0 to disable)
+    public static long CHECKPOINT_INTERVAL = 0;                                                                         //Steps between checkpoints from which the simulation can be resumed (0 to disable)
+    public static double CHECKPOINT_MINUTES = 0;                                                                        //Minutes between checkpoints (0 to disable), can be combined with the interval in steps
+    public static final String CHECKPOINT_FILE = "checkpoint.bin";                                                      //In the output directory, replaced by every checkpoint
+    public static Storage STORAGE = Storage.HEAP;                                                                       //Memory of the species and Fenwick trees, see Storage
+    public static String STORAGE_DIRECTORY = null;                                                                      //Directory of the files of MAPPED storage (null for the temporary directory)
+    @Input("Random number generator")
+    public static Random randomGenerator = new SplitMixRandom();
+    @Input("Random seed (0 for a new seed every run)")
+    public static long RANDOM_SEED = 0;
+
     //OUTPUT CONFIGURATION
     @Input("Percent conversion per data point")
     public static double  PERCENTAGE_PER_SLICE = 0.1D;
@@ -60,6 +81,20 @@ public class Settings {
         STEPS_PER_SECOND("steps/s"),
         STEPS_PER_SECOND_AVG("avg steps/s"),
         MEMORY_USAGE("memory (bytes)"),
+        INTERMOLECULAR("#intermolecular"),                                                                              //Number of events in the slice, see Event
+        INTRAMOLECULAR("#intramolecular"),
+        MID_CHAIN_CROSSLINKER("#mid-chain cross-linker radical"),
+        CHAIN_END_NON_CROSSLINKER("#chain-end non-cross-linker radical"),
+        CHAIN_END_CROSSLINKER("#chain-end cross-linker radical"),
+        REJECTED_COMBINED("#rejected (omega)"),
+        REJECTED_RADICAL("#rejected (phi)"),
+        REJECTED_VINYL("#rejected (psi)"),
+        REJECTED_INTRAMOLECULAR("#rejected intramolecular (psi)"),
+        REJECTED_INITIATOR("#rejected initiator (psi)"),
+        REJECTED_REACTION("#rejected impossible"),
+        EXISTING_SPECIES("#existing species"),
+        NEW_SPECIES("#new species"),
+        HALF_TREE("#compactions"),
         NOTES("notes");
 
         private final String s;
@@ -109,7 +144,7 @@ public class Settings {
     public static double STERIC_HINDRANCE_COMBINED_PERCENTAGE = 100.0;
 
     @Input("Group molecules by")
-    public static AbstractSpeciesFactory abstractSpeciesFactory = new CompositionalSpeciesFactory();
+    public static AbstractSpeciesFactory<? extends AbstractSpecies> abstractSpeciesFactory = new CompositionalSpeciesFactory();
 
     @Input("Length of monomer segment in polymer(nm)")
     public static double MONOMER_LENGTH = 0.2487;                                                                       //Default is one C-C-C bond, measured by Chem3D
@@ -136,7 +171,7 @@ public class Settings {
     /**
      * Calculates static parameters which depend on others
      */
-    public static void init() throws ParseException {
+    public static synchronized void init() throws ParseException {
         LOG_TO_FILE = LOG_LEVEL.toInt() <= Level.DEBUG.toInt();                                                         //Only log in debug mode
 
         for(String s : MAX_3D_MODEL_SIZES_TEXT.split(",")){
@@ -0,0 +1,227 @@
+package nl.utwente.simulator.config;
+
+import nl.utwente.simulator.input.InputSource;
+import nl.utwente.simulator.simulator.AbstractSpecies;
+import nl.utwente.simulator.simulator.AbstractSpeciesFactory;
+import nl.utwente.simulator.utils.RadicalTracker;
+import nl.utwente.simulator.utils.SamplingTree;
+import nl.utwente.simulator.utils.codegeneration.ExpressionGenerator;
+import nl.utwente.simulator.utils.random.Random;
+import nl.utwente.simulator.utils.random.SplitMixRandom;
+import nl.utwente.simulator.utils.storage.ArrayAllocator;
+import nl.utwente.simulator.utils.storage.Storage;
+
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static nl.utwente.simulator.config.Settings.*;
+
+/**
+ * Immutable configuration of a single simulation run.
+ *
+ * <code>Settings</code> is only used to read user input; a snapshot of it is taken with <code>fromSettings()</code>
+ * and passed to every part of the simulation, so that multiple simulations can run in the same JVM.
+ */
+public class SimulationContext {
+
+    //EXECUTION MODE AND OUTPUT
+    public final InputSource inputSource;
+    public final String outputDirectory;                                                                                //NOTE: no trailing file separator
+    public final boolean logToFile;
+    public final double percentagePerSlice;
+    public final String outputFunctions;
+    public final SortedSet<Integer> max3DModelSizes;
+
+    //MOLECULES
+    public final double concentrationInitiators;
+    public final double concentrationMonomer;
+    public final double concentrationCrosslinker;
+    public final double concentrationRaft;
+    public final long numberOfMolecules;
+    public final long numberHalfInitiators;
+    public final long numberMonomers;
+    public final long numberCrosslinkers;
+    public final double weightHalfInitiator;
+    public final double weightMonomer;
+    public final double weightCrosslinker;
+
+    //REACTION
+    public final double vesselVolume;                                                                                   //Volume of reaction vessel (in nm^3)
+    public final double minMolVolume;
+    public final double monomerLength;
+    public final double compensationFactor;
+    public final String interactionRadiusFormula;
+    public final Expression radiusExpression;
+    public final double stericHindranceVinylFactor;                                                                     //psi
+    public final double stericHindranceRadicalFactor;                                                                   //phi
+    public final double stericHindranceCombinedFactor;                                                                  //omega
+    public final AbstractSpeciesFactory<? extends AbstractSpecies> abstractSpeciesFactory;
+    public final Class<? extends Random> randomGenerator;
+    public final long randomSeed;                                                                                       //0 if a new seed should be used every run
+    public final RadicalTracker.Layout radicalTrackerLayout;
+    public final SamplingTree samplingTree;
+    public final long rebuildInterval;
+    public final boolean rejectionFreeStericHindrance;
+    public final long timingInterval;
+    public final long checkpointInterval;
+    public final double checkpointMinutes;
+    public final Storage storage;
+    public final String storageDirectory;
+
+    //3D MODELS
+    public final String iRepresentativeAtom;
+    public final String mRepresentativeAtom;
+    public final String cRepresentativeAtom;
+    public final String vinylGroupRepresentativeAtom;
+
+    private SimulationContext() throws ParseException {
+        inputSource = INPUT_SOURCE;
+        outputDirectory = OUTPUT_DIRECTORY;
+        logToFile = LOG_TO_FILE;
+        percentagePerSlice = PERCENTAGE_PER_SLICE;
+        outputFunctions = OUTPUT_FUNCTIONS;
+
+        TreeSet<Integer> sizes = new TreeSet<>();                                                                       //Parse again, as MAX_3D_MODEL_SIZES is consumed by a simulation
+        for(String s : MAX_3D_MODEL_SIZES_TEXT.split(",")){
+            if(!s.trim().isEmpty())
+                sizes.add(Integer.valueOf(s.trim()));
+        }
+        max3DModelSizes = Collections.unmodifiableSortedSet(sizes);
+
+        concentrationInitiators = CONCENTRATION_INITIATORS;
+        concentrationMonomer = CONCENTRATION_MONOMER;
+        concentrationCrosslinker = CONCENTRATION_CROSSLINKER;
+        concentrationRaft = CONCENTRATION_RAFT;
+        numberOfMolecules = NUMBER_OF_MOLECULES;
+        numberHalfInitiators = NUMBER_HALF_INITIATORS;
+        numberMonomers = NUMBER_MONOMERS;
+        numberCrosslinkers = NUMBER_CROSSLINKERS;
+        weightHalfInitiator = WEIGHT_HALF_INITIATOR;
+        weightMonomer = WEIGHT_MONOMER;
+        weightCrosslinker = WEIGHT_CROSSLINKER;
+
+        vesselVolume = VESSEL_VOLUME;
+        minMolVolume = MIN_MOL_VOLUME;
+        monomerLength = MONOMER_LENGTH;
+        compensationFactor = COMPENSATION_FACTOR;
+        interactionRadiusFormula = INTERACTION_RADIUS_FORMULA;
+        stericHindranceVinylFactor = STERIC_HINDRANCE_VINYL_FACTOR;
+        stericHindranceRadicalFactor = STERIC_HINDRANCE_RADICAL_FACTOR;
+        stericHindranceCombinedFactor = STERIC_HINDRANCE_COMBINED_FACTOR;
+        abstractSpeciesFactory = Settings.abstractSpeciesFactory;
+        randomGenerator = Settings.randomGenerator.getClass();
+        randomSeed = RANDOM_SEED;
+        radicalTrackerLayout = RADICAL_TRACKER_LAYOUT;
+        samplingTree = SAMPLING_TREE;
+        rebuildInterval = REBUILD_INTERVAL;
+        rejectionFreeStericHindrance = REJECTION_FREE_STERIC_HINDRANCE;
+        timingInterval = TIMING_INTERVAL;
+        checkpointInterval = CHECKPOINT_INTERVAL;
+        checkpointMinutes = CHECKPOINT_MINUTES;
+        storage = STORAGE;
+        storageDirectory = STORAGE_DIRECTORY;
+
+        iRepresentativeAtom = I_REPRESENTATIVE_ATOM;
+        mRepresentativeAtom = M_REPRESENTATIVE_ATOM;
+        cRepresentativeAtom = C_REPRESENTATIVE_ATOM;
+        vinylGroupRepresentativeAtom = VINYL_GROUP_REPRESENTATIVE_ATOM;
+
+        radiusExpression = ExpressionGenerator.generate(interactionRadiusFormula, this);                                //Generate function for gyration radius using the values above
+    }
+
+    private SimulationContext(SimulationContext other, String outputDirectory) {
+        inputSource = other.inputSource;
+        this.outputDirectory = outputDirectory;
+        logToFile = other.logToFile;
+        percentagePerSlice = other.percentagePerSlice;
+        outputFunctions = other.outputFunctions;
+        max3DModelSizes = other.max3DModelSizes;
+        concentrationInitiators = other.concentrationInitiators;
+        concentrationMonomer = other.concentrationMonomer;
+        concentrationCrosslinker = other.concentrationCrosslinker;
+        concentrationRaft = other.concentrationRaft;
+        numberOfMolecules = other.numberOfMolecules;
+        numberHalfInitiators = other.numberHalfInitiators;
+        numberMonomers = other.numberMonomers;
+        numberCrosslinkers = other.numberCrosslinkers;
+        weightHalfInitiator = other.weightHalfInitiator;
+        weightMonomer = other.weightMonomer;
+        weightCrosslinker = other.weightCrosslinker;
+        vesselVolume = other.vesselVolume;
+        minMolVolume = other.minMolVolume;
+        monomerLength = other.monomerLength;
+        compensationFactor = other.compensationFactor;
+        interactionRadiusFormula = other.interactionRadiusFormula;
+        radiusExpression = other.radiusExpression;
+        stericHindranceVinylFactor = other.stericHindranceVinylFactor;
+        stericHindranceRadicalFactor = other.stericHindranceRadicalFactor;
+        stericHindranceCombinedFactor = other.stericHindranceCombinedFactor;
+        abstractSpeciesFactory = other.abstractSpeciesFactory;
+        randomGenerator = other.randomGenerator;
+        randomSeed = other.randomSeed;
+        radicalTrackerLayout = other.radicalTrackerLayout;
+        samplingTree = other.samplingTree;
+        rebuildInterval = other.rebuildInterval;
+        rejectionFreeStericHindrance = other.rejectionFreeStericHindrance;
+        timingInterval = other.timingInterval;
+        checkpointInterval = other.checkpointInterval;
+        checkpointMinutes = other.checkpointMinutes;
+        storage = other.storage;
+        storageDirectory = other.storageDirectory;
+        iRepresentativeAtom = other.iRepresentativeAtom;
+        mRepresentativeAtom = other.mRepresentativeAtom;
+        cRepresentativeAtom = other.cRepresentativeAtom;
+        vinylGroupRepresentativeAtom = other.vinylGroupRepresentativeAtom;
+    }
+
+    /**
+     * @return Snapshot of the current <code>Settings</code>, which should have been initialized with <code>Settings.init()</code>
+     */
+    public static SimulationContext fromSettings() throws ParseException {
+        synchronized (Settings.class) {
+            return new SimulationContext();
+        }
+    }
+
+    /**
+     * @return Copy of this context that writes its output to <code>outputDirectory</code>
+     */
+    public SimulationContext withOutputDirectory(String outputDirectory){
+        return new SimulationContext(this, outputDirectory);
+    }
+
+    /**
+     * @return <code>randomSeed</code>, or a new seed if it is 0
+     */
+    public long seed(){
+        return randomSeed != 0 ? randomSeed : new SplitMixRandom().nextLong();
+    }
+
+    /**
+     * @return New instance of the selected random number generator, seeded with <code>seed</code>
+     */
+    public Random createRandom(long seed){
+        try {
+            Random random = randomGenerator.getConstructor().newInstance();
+            random.setSeed(seed);
+            return random;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create random number generator "+randomGenerator.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * @return Allocator of the arrays of the species and Fenwick trees in <code>storage</code>
+     */
+    public ArrayAllocator allocator(){
+        return storage == Storage.HEAP ? ArrayAllocator.HEAP : new ArrayAllocator(storage, storageDirectory);
+    }
+
+    public double totalWeight(){
+        return numberHalfInitiators * weightHalfInitiator +
+               numberMonomers       * weightMonomer +
+               numberCrosslinkers   * weightCrosslinker;
+    }
+}
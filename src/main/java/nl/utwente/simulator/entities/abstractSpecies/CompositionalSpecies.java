@@ -29,10 +29,22 @@ public class CompositionalSpecies implements AbstractSpecies {
      */
     public final long[] key;
 
+    public static final int KEY_LENGTH = 7;
+
     protected CompositionalSpecies(long i, long m, long c, long v, long en, long ec, long mc){
         this.key = new long[]{i,m,c,v,en,ec,mc};
     }
 
+    protected CompositionalSpecies(long[] key){
+        assert(key.length == KEY_LENGTH);
+        this.key = key;
+    }
+
+    @Override
+    public long[] key(){
+        return key;
+    }
+
     @Override
     public String toString(){
         return "["+key[I]+","+key[M]+","+key[C]+","+key[V]+","+key[EN]+","+key[EC]+","+key[MC]+"]";
@@ -31,7 +31,24 @@ public class CompositionalSpeciesFactory implements AbstractSpeciesFactory<Compo
     }
 
     @Override
-    public CompositionalSpecies abstractSpeciesAfterInterMolecularReaction(CompositionalSpecies radical, RadicalPosition pos, CompositionalSpecies vinyl) throws RejectedReaction {
+    public long[] keyMaxima(long i, long m, long c) {
+        long vinylGroups = m + CROSSLINKER_VINYL_GROUPS * c;
+        long reactiveCenters = i + vinylGroups;                                                                         //Every reactive center is located on a half-initiator or a former vinyl group
+        return new long[]{i, m, c, vinylGroups, reactiveCenters, reactiveCenters, reactiveCenters};
+    }
+
+    @Override
+    public int keyLength() {
+        return KEY_LENGTH;
+    }
+
+    @Override
+    public CompositionalSpecies abstractSpecies(long[] key) {
+        return new CompositionalSpecies(key.clone());
+    }
+
+    @Override
+    public void keyAfterInterMolecularReaction(CompositionalSpecies radical, RadicalPosition pos, CompositionalSpecies vinyl, long[] key) throws RejectedReaction {
         byte diffEC = 0;
         byte diffEN = 0;
         byte diffMC = 0;
@@ -61,54 +78,33 @@ public class CompositionalSpeciesFactory implements AbstractSpeciesFactory<Compo
 
         assert(diffEC+diffMC+diffEN == 0);                                                                              //Radicals do not disappear
 
-        return createGroup(
-            radical.key[I] + vinyl.key[I],
-            radical.key[M] + vinyl.key[M],
-            radical.key[C] + vinyl.key[C],
-            radical.key[V] + vinyl.key[V] - 1,
-            radical.key[EN] + vinyl.key[EN] + diffEN,
-            radical.key[EC] + vinyl.key[EC] + diffEC,
-            radical.key[MC] + vinyl.key[MC] + diffMC
-        );
+        key[I]  = radical.key[I] + vinyl.key[I];
+        key[M]  = radical.key[M] + vinyl.key[M];
+        key[C]  = radical.key[C] + vinyl.key[C];
+        key[V]  = radical.key[V] + vinyl.key[V] - 1;
+        key[EN] = radical.key[EN] + vinyl.key[EN] + diffEN;
+        key[EC] = radical.key[EC] + vinyl.key[EC] + diffEC;
+        key[MC] = radical.key[MC] + vinyl.key[MC] + diffMC;
     }
 
     @Override
-    public CompositionalSpecies abstractSpeciesAfterIntraMolecularReaction(CompositionalSpecies group, RadicalPosition pos) throws RejectedReaction {
+    public void keyAfterIntraMolecularReaction(CompositionalSpecies group, RadicalPosition pos, long[] key) throws RejectedReaction {
+        System.arraycopy(group.key, 0, key, 0, KEY_LENGTH);
+        key[V]--;
         switch(pos){
             case MID_CHAIN_CROSSLINKER:
-                return createGroup(
-                    group.key[I],
-                    group.key[M],
-                    group.key[C],
-                    group.key[V] - 1,
-                    group.key[EN],
-                    group.key[EC],
-                    group.key[MC]
-                );
+                break;
             case CHAIN_END_CROSSLINKER:
-                return createGroup(
-                        group.key[I],
-                        group.key[M],
-                        group.key[C],
-                        group.key[V] - 1,
-                        group.key[EN],
-                        group.key[EC] - 1,
-                        group.key[MC] + 1
-                );
+                key[EC]--;
+                key[MC]++;
+                break;
             case CHAIN_END_NON_CROSSLINKER:
-                return createGroup(
-                        group.key[I],
-                        group.key[M],
-                        group.key[C],
-                        group.key[V] - 1,
-                        group.key[EN] - 1,
-                        group.key[EC],
-                        group.key[MC] + 1
-                );
+                key[EN]--;
+                key[MC]++;
+                break;
             default:
                 throw new NotImplementedException();
         }
-
     }
 
     /**
@@ -23,10 +23,22 @@ public class SizeSpecies implements AbstractSpecies {
      */
     public final long[] key;
 
+    public static final int KEY_LENGTH = 5;
+
     protected SizeSpecies(long size, long v, long en, long ec, long mc){
         this.key = new long[]{size,v,en,ec,mc};
     }
 
+    protected SizeSpecies(long[] key){
+        assert(key.length == KEY_LENGTH);
+        this.key = key;
+    }
+
+    @Override
+    public long[] key(){
+        return key;
+    }
+
     @Override
     public String toString(){
         return "["+key[SIZE]+","+key[V]+","+key[EN]+","+key[EC]+","+key[MC]+"]";
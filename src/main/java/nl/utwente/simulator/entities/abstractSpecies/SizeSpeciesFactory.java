@@ -31,7 +31,24 @@ public class SizeSpeciesFactory implements AbstractSpeciesFactory<SizeSpecies> {
     }
 
     @Override
-    public SizeSpecies abstractSpeciesAfterInterMolecularReaction(SizeSpecies radical, RadicalPosition pos, SizeSpecies vinyl) throws RejectedReaction {
+    public long[] keyMaxima(long i, long m, long c) {
+        long vinylGroups = m + CROSSLINKER_VINYL_GROUPS * c;
+        long reactiveCenters = i + vinylGroups;                                                                         //Every reactive center is located on a half-initiator or a former vinyl group
+        return new long[]{i + m + c, vinylGroups, reactiveCenters, reactiveCenters, reactiveCenters};
+    }
+
+    @Override
+    public int keyLength() {
+        return KEY_LENGTH;
+    }
+
+    @Override
+    public SizeSpecies abstractSpecies(long[] key) {
+        return new SizeSpecies(key.clone());
+    }
+
+    @Override
+    public void keyAfterInterMolecularReaction(SizeSpecies radical, RadicalPosition pos, SizeSpecies vinyl, long[] key) throws RejectedReaction {
         byte diffEC = 0;
         byte diffEN = 0;
         byte diffMC = 0;
@@ -48,7 +65,7 @@ public class SizeSpeciesFactory implements AbstractSpeciesFactory<SizeSpecies> {
                 break;
         }
 
-        if(vinyl.key[SIZE] == 1){                                                            //If not polymer
+        if(vinyl.key[SIZE] == 1){                                                                                       //If not polymer
             if(vinyl.key[V] == 1){                                                                                      //If monomer
                 diffEN++;
             }else{
@@ -61,46 +78,31 @@ public class SizeSpeciesFactory implements AbstractSpeciesFactory<SizeSpecies> {
 
         assert(diffEC+diffMC+diffEN == 0);                                                                              //Radicals do not disappear
 
-        return new SizeSpecies(
-                radical.key[SIZE] + vinyl.key[SIZE],
-                radical.key[V] + vinyl.key[V] - 1,
-                radical.key[EN] + vinyl.key[EN] + diffEN,
-                radical.key[EC] + vinyl.key[EC] + diffEC,
-                radical.key[MC] + vinyl.key[MC] + diffMC
-        );
+        key[SIZE] = radical.key[SIZE] + vinyl.key[SIZE];
+        key[V]    = radical.key[V] + vinyl.key[V] - 1;
+        key[EN]   = radical.key[EN] + vinyl.key[EN] + diffEN;
+        key[EC]   = radical.key[EC] + vinyl.key[EC] + diffEC;
+        key[MC]   = radical.key[MC] + vinyl.key[MC] + diffMC;
     }
 
     @Override
-    public SizeSpecies abstractSpeciesAfterIntraMolecularReaction(SizeSpecies group, RadicalPosition pos) throws RejectedReaction {
+    public void keyAfterIntraMolecularReaction(SizeSpecies group, RadicalPosition pos, long[] key) throws RejectedReaction {
+        System.arraycopy(group.key, 0, key, 0, KEY_LENGTH);
+        key[V]--;
         switch(pos){
             case MID_CHAIN_CROSSLINKER:
-                return new SizeSpecies(
-                        group.key[SIZE],
-                        group.key[V] - 1,
-                        group.key[EN],
-                        group.key[EC],
-                        group.key[MC]
-                );
+                break;
             case CHAIN_END_CROSSLINKER:
-                return new SizeSpecies(
-                        group.key[SIZE],
-                        group.key[V] - 1,
-                        group.key[EN],
-                        group.key[EC] - 1,
-                        group.key[MC] + 1
-                );
+                key[EC]--;
+                key[MC]++;
+                break;
             case CHAIN_END_NON_CROSSLINKER:
-                return new SizeSpecies(
-                        group.key[SIZE],
-                        group.key[V] - 1,
-                        group.key[EN] - 1,
-                        group.key[EC],
-                        group.key[MC] + 1
-                );
+                key[EN]--;
+                key[MC]++;
+                break;
             default:
                 throw new NotImplementedException();
         }
-
     }
 
 }
@@ -1,12 +1,12 @@
 package nl.utwente.simulator.entities.species.structured;
 
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.entities.RadicalPosition;
 import nl.utwente.simulator.simulator.RejectedReaction;
 import nl.utwente.simulator.simulator.Species;
+import nl.utwente.simulator.utils.PersistentVector;
 import nl.utwente.simulator.utils.random.Random;
 
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
 import static nl.utwente.simulator.config.Settings.CROSSLINKER_VINYL_GROUPS;
@@ -14,18 +14,21 @@ import static nl.utwente.simulator.config.Settings.CROSSLINKER_VINYL_GROUPS;
 /**
  * This particle class keeps track of the exact structure of the particle it represents. The structure is described
  * in terms of monomer chains and the way they are linked together.
+ *
+ * The reactive centers and active vinyl groups are kept in persistent vectors, which a product shares with the
+ * particles it was formed from, so a reaction takes logarithmic rather than linear time in the size of the particles.
  */
 public class StructuredParticle extends Species {
 
     public final double localConcentration;
-    protected final Molecule[] reactiveCenters;
+    protected final PersistentVector<Molecule> reactiveCenters;
     public final long numberOfI;
     public final long numberOfM;
     public final long numberOfC;
     public final long numberOfENRadicals;//chain end non-cross-linker reactiveCenters
     public final long numberOfECRadicals;//chain end cross-linker reactiveCenters
     public final long numberOfMCRadicals;//mid-chain (cross-linker) reactiveCenters
-    protected final CrossLink.Pointer[] activeVinylGroups;
+    protected final PersistentVector<CrossLink.Pointer> activeVinylGroups;                                              //Chain numbers shift lazily when particles are combined
 
     protected CrossLinkTree crosslinks;
     
@@ -33,7 +36,14 @@ public class StructuredParticle extends Species {
         return this.crosslinks;
     }
 
-    protected StructuredParticle(long number, Type type, long numberOfI, long numberOfM, long numberOfC, long numberOfActiveVinylGroups, long numberOfENRadicals, long numberOfECRadicals, long numberOfMCRadicals) {
+    protected StructuredParticle(SimulationContext context, long number, Type type, long numberOfI, long numberOfM, long numberOfC, long numberOfActiveVinylGroups, long numberOfENRadicals, long numberOfECRadicals, long numberOfMCRadicals) {
+        this(context, number, type, numberOfI, numberOfM, numberOfC, numberOfENRadicals, numberOfECRadicals, numberOfMCRadicals,
+                PersistentVector.filled((int)(numberOfMCRadicals + numberOfENRadicals + numberOfECRadicals), type == Type.I ? Initiating.getInstance() : null, null),
+                PersistentVector.filled((int) numberOfActiveVinylGroups, null, CrossLink.Pointer::new)
+        );
+    }
+
+    protected StructuredParticle(SimulationContext context, long number, Type type, long numberOfI, long numberOfM, long numberOfC, long numberOfENRadicals, long numberOfECRadicals, long numberOfMCRadicals, PersistentVector<Molecule> reactiveCenters, PersistentVector<CrossLink.Pointer> activeVinylGroups) {
         super(number, type);
         this.numberOfI = numberOfI;
         this.numberOfM = numberOfM;
@@ -43,41 +53,41 @@ public class StructuredParticle extends Species {
         this.numberOfECRadicals = numberOfECRadicals;
         this.crosslinks = new CrossLinkTree.EMPTYLIST();
 
-        reactiveCenters = new Molecule[(int)(numberOfMCRadicals + numberOfENRadicals + numberOfECRadicals)];
-        activeVinylGroups = new CrossLink.Pointer[(int) numberOfActiveVinylGroups];
+        this.reactiveCenters = reactiveCenters;
+        this.activeVinylGroups = activeVinylGroups;
 
-        if(type == Type.I){
-            reactiveCenters[0] = Initiating.getInstance();
-        }
-
-        this.localConcentration = calculateLocalConcentration();
+        this.localConcentration = calculateLocalConcentration(context);
 
         assert(localConcentration >= 0 || type != Type.POLYMER);
-        assert(!(type== Type.I && ((int)(numberOfMCRadicals + numberOfENRadicals + numberOfECRadicals) != 1 || numberOfActiveVinylGroups != 0)));
-        assert(!(type== Type.M && ((int)(numberOfMCRadicals + numberOfENRadicals + numberOfECRadicals) != 0 || numberOfActiveVinylGroups != 1)));
-        assert(!(type== Type.C && ((int)(numberOfMCRadicals + numberOfENRadicals + numberOfECRadicals) != 0 || numberOfActiveVinylGroups != CROSSLINKER_VINYL_GROUPS)));
+        assert(reactiveCenters.size() == numberOfMCRadicals + numberOfENRadicals + numberOfECRadicals);
+        assert(!(type== Type.I && (reactiveCenters.size() != 1 || activeVinylGroups.size() != 0)));
+        assert(!(type== Type.M && (reactiveCenters.size() != 0 || activeVinylGroups.size() != 1)));
+        assert(!(type== Type.C && (reactiveCenters.size() != 0 || activeVinylGroups.size() != CROSSLINKER_VINYL_GROUPS)));
     }
 
     public long size() { return numberOfM + numberOfC + numberOfI; }
     public long numberOfI() { return numberOfI; }
     public long numberOfC() { return numberOfC; }
     public long numberOfM() { return numberOfM; }
-    public long numberOfActiveVinylGroups() { return activeVinylGroups.length; }
-    public long numberOfRadicals() { return reactiveCenters.length; }
-
-    public int randomVinylGroupIndex(){ return Random.getRandom(activeVinylGroups.length); }
-    public CrossLink.Pointer randomVinylGroup(){ return activeVinylGroups[randomVinylGroupIndex()]; }
-    public CrossLink.Pointer randomVinylGroup(int radicalIndex) throws RejectedReaction {
-        int r = randomVinylGroupIndex();
-        if (reactiveCenters[radicalIndex] instanceof Crosslinker.FirstHalf && activeVinylGroups[r].chainNr == radicalIndex) {               //We should not propagate CrossLinkerSecondHalf to the cross-linked CrossLinkerFirstHalf
+    public long numberOfActiveVinylGroups() { return activeVinylGroups.size(); }
+    public long numberOfRadicals() { return reactiveCenters.size(); }
+
+    public int randomVinylGroupIndex(Random random){ return random.getRandom(activeVinylGroups.size()); }
+    public CrossLink.Pointer randomVinylGroup(Random random){ return activeVinylGroups.get(randomVinylGroupIndex(random)); }
+    public int randomVinylGroupIndex(int radicalIndex, Random random) throws RejectedReaction {
+        int r = randomVinylGroupIndex(random);
+        if (reactiveCenters.get(radicalIndex) instanceof Crosslinker.FirstHalf && activeVinylGroups.get(r).chainNr == radicalIndex) {       //We should not propagate CrossLinkerSecondHalf to the cross-linked CrossLinkerFirstHalf
             throw new RejectedReaction();
         }
-        return activeVinylGroups[randomVinylGroupIndex()];
+        return randomVinylGroupIndex(random);
+    }
+    public CrossLink.Pointer randomVinylGroup(int radicalIndex, Random random) throws RejectedReaction {
+        return activeVinylGroups.get(randomVinylGroupIndex(radicalIndex, random));
     }
     
     @Override
     public RadicalPosition positionOfNthRadical(int n) {
-        Molecule selectedRadical = reactiveCenters[n];
+        Molecule selectedRadical = reactiveCenters.get(n);
         if(selectedRadical instanceof Crosslinker.FirstHalf)
             return RadicalPosition.CHAIN_END_CROSSLINKER;
         else if(selectedRadical instanceof Crosslinker.SecondHalf)
@@ -87,11 +97,11 @@ public class StructuredParticle extends Species {
     }
 
     public List<Molecule> getReactiveCenters(){
-        return Collections.unmodifiableList(Arrays.asList(reactiveCenters));
+        return reactiveCenters.asList();
     }
 
     public List<CrossLink.Pointer> getActiveVinylGroups(){
-        return Collections.unmodifiableList(Arrays.asList(activeVinylGroups));
+        return activeVinylGroups.asList();
     }
 
 
@@ -1,10 +1,13 @@
 package nl.utwente.simulator.entities.species.structured;
 
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.entities.RadicalPosition;
 import nl.utwente.simulator.input.InputValue;
 import nl.utwente.simulator.simulator.Species;
 import nl.utwente.simulator.simulator.SpeciesFactory;
 import nl.utwente.simulator.simulator.RejectedReaction;
+import nl.utwente.simulator.utils.PersistentVector;
+import nl.utwente.simulator.utils.random.Random;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 import static nl.utwente.simulator.config.Settings.ASSERTIONS_ENABLED;
@@ -14,14 +17,22 @@ import static nl.utwente.simulator.input.InputSource.STRUCTURED;
 @InputValue(value = "A structured particle representation", src = {STRUCTURED})
 public class StructuredSpeciesFactory implements SpeciesFactory<StructuredParticle> {
 
+    private final SimulationContext context;
+    private final Random random;                                                                                        //Used to select the pendent group of a particle that reacts
+
+    public StructuredSpeciesFactory(SimulationContext context, Random random) {
+        this.context = context;
+        this.random = random;
+    }
+
     @Override
-    public StructuredParticle createI(long number) { return new StructuredParticle(number, Species.Type.I, 1, 0, 0, 0, 1, 0, 0); }
+    public StructuredParticle createI(long number) { return new StructuredParticle(context, number, Species.Type.I, 1, 0, 0, 0, 1, 0, 0); }
 
     @Override
-    public StructuredParticle createM(long number) { return new StructuredParticle(number, Species.Type.M, 0, 1, 0, 1, 0, 0, 0); }
+    public StructuredParticle createM(long number) { return new StructuredParticle(context, number, Species.Type.M, 0, 1, 0, 1, 0, 0, 0); }
 
     @Override
-    public StructuredParticle createC(long number) { return new StructuredParticle(number, Species.Type.C, 0, 0, 1, CROSSLINKER_VINYL_GROUPS, 0, 0, 0); }
+    public StructuredParticle createC(long number) { return new StructuredParticle(context, number, Species.Type.C, 0, 0, 1, CROSSLINKER_VINYL_GROUPS, 0, 0, 0); }
 
     @Override
     public StructuredParticle createSpecies(StructuredParticle radical, int radIndexInParticle, StructuredParticle vinyl) {
@@ -58,64 +69,50 @@ public class StructuredSpeciesFactory implements SpeciesFactory<StructuredPartic
 
         assert(diffEC+diffMC+diffEN == 0);                                                                              //Radicals do not disappear
 
-        StructuredParticle result = new StructuredParticle(1, Species.Type.POLYMER,
-                radical.numberOfI + vinyl.numberOfI,
-                radical.numberOfM + vinyl.numberOfM,
-                radical.numberOfC + vinyl.numberOfC,
-                radical.activeVinylGroups.length + vinyl.activeVinylGroups.length - 1,
-                radical.numberOfENRadicals + vinyl.numberOfENRadicals + diffEN,
-                radical.numberOfECRadicals + vinyl.numberOfECRadicals + diffEC,
-                radical.numberOfMCRadicals + vinyl.numberOfMCRadicals + diffMC
-        );
-
-        Molecule radicalSite = radical.reactiveCenters[radIndexInParticle];
+        Molecule radicalSite = radical.reactiveCenters.get(radIndexInParticle);
         Molecule vinylSite;
-        int vinylIndexInParticle = 0;
+        PersistentVector<CrossLink.Pointer> vinylGroups;                                                                //Vinyl groups that the vinyl particle contributes
+        CrossLinkTree crosslinks;
                                                                                                                         //First we need to create the new vinyl group within the molecule
         if(vinyl.type == Species.Type.M){                                                                              //else create new M with length 1
             vinylSite = new Monomer(1, radicalSite);
-            result.crosslinks = radical.crosslinks;
+            vinylGroups = PersistentVector.empty(CrossLink.Pointer::new);
+            crosslinks = radical.crosslinks;
         }else if(vinyl.type == Species.Type.C){                                                                        //create new CL1stHalf
             vinylSite = new Crosslinker.FirstHalf(radicalSite);                                                         //When we react with a new Crosslinker we haven't initiated the second half
-            result.activeVinylGroups[vinylIndexInParticle] = new CrossLink.Pointer( (Crosslinker.FirstHalf) vinylSite, radIndexInParticle);      //so we refer to its position by pointing to the first half
-            vinylIndexInParticle++;
-            result.crosslinks = radical.crosslinks;
+            CrossLink.Pointer firstHalf = new CrossLink.Pointer((Crosslinker.FirstHalf) vinylSite, radIndexInParticle); //so we refer to its position by pointing to the first half
+            vinylGroups = PersistentVector.filled(1, firstHalf, CrossLink.Pointer::new);
+            crosslinks = radical.crosslinks;
         }else{
-            assert(vinyl.activeVinylGroups.length > 0);                                                                 //create new CL2ndHalf and refer to vinyl group as molecule
-            CrossLink.Pointer crosslinker = vinyl.randomVinylGroup();
+            assert(vinyl.activeVinylGroups.size() > 0);                                                                 //create new CL2ndHalf and refer to vinyl group as molecule
+            int crosslinkerIndex = vinyl.randomVinylGroupIndex(random);
+            CrossLink.Pointer crosslinker = vinyl.activeVinylGroups.get(crosslinkerIndex);
             vinylSite = new Crosslinker.SecondHalf(radicalSite);
-            for (CrossLink.Pointer vg: vinyl.activeVinylGroups) {
-                if (vg!=crosslinker) {
-                    result.activeVinylGroups[vinylIndexInParticle] = new CrossLink.Pointer(vg, radical.reactiveCenters.length);
-                    vinylIndexInParticle++;
-                }
-            }
+            vinylGroups = vinyl.activeVinylGroups.remove(crosslinkerIndex).shift(radical.reactiveCenters.size());       //The chains of the vinyl particle follow those of the radical
             CrossLinkTree temp = new CrossLinkTree(radical.crosslinks, new CrossLink(                                   //We first extend the list of cross-links of the radical
-                    new CrossLink.Pointer(crosslinker, radical.reactiveCenters.length),
+                    new CrossLink.Pointer(crosslinker, radical.reactiveCenters.size()),
                     new CrossLink.Pointer((Crosslinker.SecondHalf) vinylSite, radIndexInParticle)
             ));
-            result.crosslinks = new CrossLinkTree(temp, vinyl.crosslinks, radical.reactiveCenters.length);                     //We then combine the two lists
+            crosslinks = new CrossLinkTree(temp, vinyl.crosslinks, radical.reactiveCenters.size());                     //We then combine the two lists
         }
                                                                                                                         //Now we create the list of vinylGroups and rads for the new molecule
+        StructuredParticle result = new StructuredParticle(context, 1, Species.Type.POLYMER,
+                radical.numberOfI + vinyl.numberOfI,
+                radical.numberOfM + vinyl.numberOfM,
+                radical.numberOfC + vinyl.numberOfC,
+                radical.numberOfENRadicals + vinyl.numberOfENRadicals + diffEN,
+                radical.numberOfECRadicals + vinyl.numberOfECRadicals + diffEC,
+                radical.numberOfMCRadicals + vinyl.numberOfMCRadicals + diffMC,
+                radical.reactiveCenters.concat(vinyl.reactiveCenters).set(radIndexInParticle, vinylSite),
+                vinylGroups.concat(radical.activeVinylGroups)                                                           //The vinyl groups of the radical follow those we have already added
+        );
+        result.crosslinks = crosslinks;
 
-        for(int i = 0; i<radical.reactiveCenters.length; i++){
-            result.reactiveCenters[i] = radical.reactiveCenters[i];
-        }
-        for(int i = 0; i<vinyl.reactiveCenters.length; i++){
-            result.reactiveCenters[i+radical.reactiveCenters.length] = vinyl.reactiveCenters[i];
-        }
-        result.reactiveCenters[radIndexInParticle] = vinylSite;
-
-        for(CrossLink.Pointer p : radical.activeVinylGroups){                                                           //Now we create the list of vinylGroups. We have already added some vinylGroups
-            result.activeVinylGroups[vinylIndexInParticle] = p;                                                         //if the vinyl group was located on a Monomer or Species
-            vinylIndexInParticle++;
-        }
-
-        assert(vinylIndexInParticle == result.activeVinylGroups.length);
+        assert(result.activeVinylGroups.size() == radical.activeVinylGroups.size() + vinyl.activeVinylGroups.size() - 1);
         if(ASSERTIONS_ENABLED) {                                                                                        //Do not enter for-loop unless assertions are enabled
             for(CrossLink c : result.crosslinks){
-                assert(result.reactiveCenters[c.firstHalf.chainNr].contains(c.firstHalf.molecule));
-                assert(result.reactiveCenters[c.secondHalf.chainNr].contains(c.secondHalf.molecule));
+                assert(result.reactiveCenters.get(c.firstHalf.chainNr).contains(c.firstHalf.molecule));
+                assert(result.reactiveCenters.get(c.secondHalf.chainNr).contains(c.secondHalf.molecule));
             }
         }
         return result;
@@ -125,70 +122,48 @@ public class StructuredSpeciesFactory implements SpeciesFactory<StructuredPartic
     public StructuredParticle createSpecies(StructuredParticle particle, int radIndexInParticle) throws RejectedReaction {
 
         RadicalPosition pos = particle.positionOfNthRadical(radIndexInParticle);
-        StructuredParticle result;
+        long diffEN = 0;
+        long diffEC = 0;
+        long diffMC = 0;
         switch(pos) {
             case MID_CHAIN_CROSSLINKER:
-                result = new StructuredParticle(1, Species.Type.POLYMER,
-                        particle.numberOfI,
-                        particle.numberOfM,
-                        particle.numberOfC,
-                        particle.activeVinylGroups.length - 1,
-                        particle.numberOfENRadicals,
-                        particle.numberOfECRadicals,
-                        particle.numberOfMCRadicals
-                );
                 break;
             case CHAIN_END_CROSSLINKER:
-                result = new StructuredParticle(1, Species.Type.POLYMER,
-                        particle.numberOfI,
-                        particle.numberOfM,
-                        particle.numberOfC,
-                        particle.activeVinylGroups.length - 1,
-                        particle.numberOfENRadicals,
-                        particle.numberOfECRadicals - 1,
-                        particle.numberOfMCRadicals + 1
-                );
+                diffEC--;
+                diffMC++;
                 break;
             case CHAIN_END_NON_CROSSLINKER:
-                result = new StructuredParticle(1, Species.Type.POLYMER,
-                        particle.numberOfI,
-                        particle.numberOfM,
-                        particle.numberOfC,
-                        particle.activeVinylGroups.length - 1,
-                        particle.numberOfENRadicals - 1,
-                        particle.numberOfECRadicals,
-                        particle.numberOfMCRadicals + 1
-                );
+                diffEN--;
+                diffMC++;
                 break;
             default:
                 throw new NotImplementedException();
         }
 
-        Molecule radicalSite = particle.reactiveCenters[radIndexInParticle];
+        Molecule radicalSite = particle.reactiveCenters.get(radIndexInParticle);
 
-        CrossLink.Pointer vinyl = particle.randomVinylGroup(radIndexInParticle);                                        //create new CL2ndHalf and refer to vinyl group as molecule
+        int vinylIndex = particle.randomVinylGroupIndex(radIndexInParticle, random);
+        CrossLink.Pointer vinyl = particle.activeVinylGroups.get(vinylIndex);                                           //create new CL2ndHalf and refer to vinyl group as molecule
         Crosslinker.SecondHalf crosslinkSite = new Crosslinker.SecondHalf(radicalSite);
 
-        for (int i = 0; i < particle.reactiveCenters.length; i++) {
-            result.reactiveCenters[i] = particle.reactiveCenters[i];
-        }
-        result.reactiveCenters[radIndexInParticle] = crosslinkSite;
-
-        int vinylIndex = 0;
-        for (CrossLink.Pointer vg : particle.activeVinylGroups) {
-            if (vg != vinyl) {
-                result.activeVinylGroups[vinylIndex] = vg;
-                vinylIndex++;
-            }
-        }
+        StructuredParticle result = new StructuredParticle(context, 1, Species.Type.POLYMER,
+                particle.numberOfI,
+                particle.numberOfM,
+                particle.numberOfC,
+                particle.numberOfENRadicals + diffEN,
+                particle.numberOfECRadicals + diffEC,
+                particle.numberOfMCRadicals + diffMC,
+                particle.reactiveCenters.set(radIndexInParticle, crosslinkSite),
+                particle.activeVinylGroups.remove(vinylIndex)
+        );
         result.crosslinks = new CrossLinkTree(particle.crosslinks, new CrossLink(vinyl, new CrossLink.Pointer(crosslinkSite, radIndexInParticle)));
 
 
-        assert (vinylIndex == particle.activeVinylGroups.length - 1);
+        assert (result.activeVinylGroups.size() == particle.activeVinylGroups.size() - 1);
         if(ASSERTIONS_ENABLED) {                                                                                        //Do not enter for-loop unless assertions are enabled
             for (CrossLink c : result.crosslinks) {
-                assert (result.reactiveCenters[c.firstHalf.chainNr].contains(c.firstHalf.molecule));
-                assert (result.reactiveCenters[c.secondHalf.chainNr].contains(c.secondHalf.molecule));
+                assert (result.reactiveCenters.get(c.firstHalf.chainNr).contains(c.firstHalf.molecule));
+                assert (result.reactiveCenters.get(c.secondHalf.chainNr).contains(c.secondHalf.molecule));
             }
         }
         return result;
@@ -1,5 +1,6 @@
 package nl.utwente.simulator.entities.species.unstructured;
 
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.entities.RadicalPosition;
 import nl.utwente.simulator.simulator.Species;
 
@@ -21,8 +22,8 @@ public class UnstructuredParticle extends Species {
     public final long numberOfMCRadicals;//mid-chain (cross-linker) reactiveCenters
     public final long totalNumberOfRadicals;//total number of reactiveCenters
 
-    //                                                     I               A               C               P                               X                        Y                        M
-    protected UnstructuredParticle(long number, Type type, long numberOfI, long numberOfM, long numberOfC, long numberOfActiveVinylGroups, long numberOfENRadicals, long numberOfECRadicals, long numberOfMCRadicals) {
+    //                                                                                I               A               C               P                               X                        Y                        M
+    protected UnstructuredParticle(SimulationContext context, long number, Type type, long numberOfI, long numberOfM, long numberOfC, long numberOfActiveVinylGroups, long numberOfENRadicals, long numberOfECRadicals, long numberOfMCRadicals) {
         super(number, type);
 
         this.totalNumberOfRadicals = numberOfMCRadicals + numberOfENRadicals + numberOfECRadicals;
@@ -33,7 +34,7 @@ public class UnstructuredParticle extends Species {
         this.numberOfM = numberOfM;
         this.numberOfC = numberOfC;
         this.numberOfI = numberOfI;
-        this.localConcentration = calculateLocalConcentration();
+        this.localConcentration = calculateLocalConcentration(context);
         assert(this.localConcentration >= 0 );
 
         assert(!(type== Type.I && (numberOfRadicals() != 1 || numberOfActiveVinylGroups != 0)));
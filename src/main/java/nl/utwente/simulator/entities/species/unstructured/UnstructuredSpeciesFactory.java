@@ -1,9 +1,11 @@
 package nl.utwente.simulator.entities.species.unstructured;
 
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.entities.RadicalPosition;
 import nl.utwente.simulator.input.InputValue;
 import nl.utwente.simulator.simulator.Species;
 import nl.utwente.simulator.simulator.SpeciesFactory;
+import nl.utwente.simulator.simulator.SpeciesStore;
 import nl.utwente.simulator.simulator.RejectedReaction;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
@@ -13,19 +15,33 @@ import static nl.utwente.simulator.input.InputSource.UNSTRUCTURED;
 @InputValue(value = "An unstructured particle representation which tracks radical positions", src = {UNSTRUCTURED})
 public class UnstructuredSpeciesFactory implements SpeciesFactory<UnstructuredParticle> {
 
+    private final SimulationContext context;
+
+    public UnstructuredSpeciesFactory(SimulationContext context) {
+        this.context = context;
+    }
+
+    /**
+     * @return Store keeping the species in primitive arrays
+     */
+    @Override
+    public SpeciesStore<UnstructuredParticle> createStore(SimulationContext context) {
+        return new UnstructuredSpeciesStore(context);
+    }
+
     @Override
     public UnstructuredParticle createI(long number) {
-        return new UnstructuredParticle(number, Species.Type.I, 1, 0, 0, 0, 1, 0, 0);
+        return new UnstructuredParticle(context, number, Species.Type.I, 1, 0, 0, 0, 1, 0, 0);
     }
 
     @Override
     public UnstructuredParticle createM(long number) {
-        return new UnstructuredParticle(number, Species.Type.M, 0, 1, 0, 1, 0, 0, 0);
+        return new UnstructuredParticle(context, number, Species.Type.M, 0, 1, 0, 1, 0, 0, 0);
     }
 
     @Override
     public UnstructuredParticle createC(long number) {
-        return new UnstructuredParticle(number, Species.Type.C, 0, 0, 1, CROSSLINKER_VINYL_GROUPS, 0, 0, 0);
+        return new UnstructuredParticle(context, number, Species.Type.C, 0, 0, 1, CROSSLINKER_VINYL_GROUPS, 0, 0, 0);
     }
 
     @Override
@@ -59,7 +75,7 @@ public class UnstructuredSpeciesFactory implements SpeciesFactory<UnstructuredPa
 
         assert(diffEC+diffMC+diffEN == 0);                                                                              //Radicals do not disappear
 
-        return new UnstructuredParticle(1, Species.Type.POLYMER,
+        return new UnstructuredParticle(context, 1, Species.Type.POLYMER,
                 radical.numberOfI + vinyl.numberOfI,
                 radical.numberOfM + vinyl.numberOfM,
                 radical.numberOfC + vinyl.numberOfC,
@@ -76,7 +92,7 @@ public class UnstructuredSpeciesFactory implements SpeciesFactory<UnstructuredPa
 
         switch(pos){
             case MID_CHAIN_CROSSLINKER:
-                return new UnstructuredParticle(1, Species.Type.POLYMER,
+                return new UnstructuredParticle(context, 1, Species.Type.POLYMER,
                     particle.numberOfI,
                     particle.numberOfM,
                     particle.numberOfC,
@@ -86,7 +102,7 @@ public class UnstructuredSpeciesFactory implements SpeciesFactory<UnstructuredPa
                     particle.numberOfMCRadicals
                 );
             case CHAIN_END_CROSSLINKER:
-                return new UnstructuredParticle(1, Species.Type.POLYMER,
+                return new UnstructuredParticle(context, 1, Species.Type.POLYMER,
                     particle.numberOfI,
                     particle.numberOfM,
                     particle.numberOfC,
@@ -96,7 +112,7 @@ public class UnstructuredSpeciesFactory implements SpeciesFactory<UnstructuredPa
                     particle.numberOfMCRadicals + 1
                 );
             case CHAIN_END_NON_CROSSLINKER:
-                return new UnstructuredParticle(1, Species.Type.POLYMER,
+                return new UnstructuredParticle(context, 1, Species.Type.POLYMER,
                     particle.numberOfI,
                     particle.numberOfM,
                     particle.numberOfC,
@@ -0,0 +1,460 @@
+package nl.utwente.simulator.entities.species.unstructured;
+
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.entities.RadicalPosition;
+import nl.utwente.simulator.simulator.AbstractSpecies;
+import nl.utwente.simulator.simulator.RejectedReaction;
+import nl.utwente.simulator.simulator.SaveableSpeciesStore;
+import nl.utwente.simulator.simulator.Species;
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+import nl.utwente.simulator.utils.storage.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Stores the unstructured particles in parallel primitive arrays instead of an object per species.
+ *
+ * Per species this takes 8 longs, a double, an int, a byte and a reference, against about 100 bytes for an
+ * <code>UnstructuredParticle</code> and its reference in a list. More importantly, the simulator and output functions
+ * read the fields they need from consecutive memory instead of following a pointer per species.
+ *
+ * The arrays are created in the <code>Storage</code> of the simulation, so that all fields except the reference to
+ * the abstract species can be kept outside the heap.
+ */
+public class UnstructuredSpeciesStore implements SaveableSpeciesStore<UnstructuredParticle> {
+
+    private static final Species.Type[] TYPES = Species.Type.values();
+
+    private final SimulationContext context;
+    private final Cursor scratch = new Cursor();                                                                        //Used to calculate the local concentration of new species
+
+    private int slots;
+    private final LongArray numbers;
+    private final LongArray numbersOfI;
+    private final LongArray numbersOfM;
+    private final LongArray numbersOfC;
+    private final LongArray activeVinylGroups;
+    private final LongArray enRadicals;                                                                                 //Chain end non-cross-linker radicals
+    private final LongArray ecRadicals;                                                                                 //Chain end cross-linker radicals
+    private final LongArray mcRadicals;                                                                                 //Mid-chain (cross-linker) radicals
+    private final DoubleArray localConcentrations;
+    private final IntArray weightBins;
+    private final ByteArray types;
+    private AbstractSpecies[] abstractSpecies = new AbstractSpecies[0];
+
+    public UnstructuredSpeciesStore(SimulationContext context){
+        this.context = context;
+        ArrayAllocator allocator = context.allocator();
+        numbers = allocator.longs(0);
+        numbersOfI = allocator.longs(0);
+        numbersOfM = allocator.longs(0);
+        numbersOfC = allocator.longs(0);
+        activeVinylGroups = allocator.longs(0);
+        enRadicals = allocator.longs(0);
+        ecRadicals = allocator.longs(0);
+        mcRadicals = allocator.longs(0);
+        localConcentrations = allocator.doubles(0);
+        weightBins = allocator.ints(0);
+        types = allocator.bytes(0);
+    }
+
+    @Override
+    public int slots() {
+        return slots;
+    }
+
+    @Override
+    public void add(UnstructuredParticle p) {
+        int index = append();
+        set(index, p.number(), p.type, p.numberOfI, p.numberOfM, p.numberOfC, p.numberOfActiveVinylGroups,
+                p.numberOfENRadicals, p.numberOfECRadicals, p.numberOfMCRadicals);
+        localConcentrations.set(index, p.localConcentration);
+        weightBins.set(index, p.getWeightBin());
+        abstractSpecies[index] = p.getAbstractSpecies();
+    }
+
+    @Override
+    public void createSpecies(int radical, int radIndexInParticle, int vinyl, int index) throws RejectedReaction {
+        byte diffEC = 0;
+        byte diffEN = 0;
+        byte diffMC = 0;
+
+        switch(positionOfNthRadical(radical, radIndexInParticle)){
+            case MID_CHAIN_CROSSLINKER:
+                diffMC--;
+                break;
+            case CHAIN_END_NON_CROSSLINKER:
+                diffEN--;
+                break;
+            case CHAIN_END_CROSSLINKER:
+                diffEC--;
+                break;
+        }
+
+        Species.Type vinylType = TYPES[types.get(vinyl)];
+        if(vinylType == Species.Type.M){
+            diffEN++;
+        }else if(vinylType == Species.Type.C){
+            diffEC++;
+        }else{
+            assert(vinylType == Species.Type.POLYMER);
+            diffMC++;
+        }
+
+        assert(diffEC+diffMC+diffEN == 0);                                                                              //Radicals do not disappear
+
+        if(index == slots)
+            append();
+        set(index, 1, Species.Type.POLYMER,
+                numbersOfI.get(radical) + numbersOfI.get(vinyl),
+                numbersOfM.get(radical) + numbersOfM.get(vinyl),
+                numbersOfC.get(radical) + numbersOfC.get(vinyl),
+                activeVinylGroups.get(radical) + activeVinylGroups.get(vinyl) - 1,
+                enRadicals.get(radical) + enRadicals.get(vinyl) + diffEN,
+                ecRadicals.get(radical) + ecRadicals.get(vinyl) + diffEC,
+                mcRadicals.get(radical) + mcRadicals.get(vinyl) + diffMC
+        );
+        initialize(index);
+    }
+
+    @Override
+    public void createSpecies(int particle, int radIndexInParticle, int index) throws RejectedReaction {
+        long diffEC = 0;
+        long diffEN = 0;
+        long diffMC = 0;
+
+        switch(positionOfNthRadical(particle, radIndexInParticle)){
+            case MID_CHAIN_CROSSLINKER:
+                break;
+            case CHAIN_END_CROSSLINKER:
+                diffEC--;
+                diffMC++;
+                break;
+            case CHAIN_END_NON_CROSSLINKER:
+                diffEN--;
+                diffMC++;
+                break;
+            default:
+                throw new IllegalStateException("Unknown position of radical "+radIndexInParticle+" of species "+particle);
+        }
+
+        if(index == slots)
+            append();
+        set(index, 1, Species.Type.POLYMER,
+                numbersOfI.get(particle),
+                numbersOfM.get(particle),
+                numbersOfC.get(particle),
+                activeVinylGroups.get(particle) - 1,
+                enRadicals.get(particle) + diffEN,
+                ecRadicals.get(particle) + diffEC,
+                mcRadicals.get(particle) + diffMC
+        );
+        initialize(index);
+    }
+
+    private void set(int index, long number, Species.Type type, long numberOfI, long numberOfM, long numberOfC,
+                     long numberOfActiveVinylGroups, long numberOfENRadicals, long numberOfECRadicals, long numberOfMCRadicals){
+        numbers.set(index, number);
+        types.set(index, (byte) type.ordinal());
+        numbersOfI.set(index, numberOfI);
+        numbersOfM.set(index, numberOfM);
+        numbersOfC.set(index, numberOfC);
+        activeVinylGroups.set(index, numberOfActiveVinylGroups);
+        enRadicals.set(index, numberOfENRadicals);
+        ecRadicals.set(index, numberOfECRadicals);
+        mcRadicals.set(index, numberOfMCRadicals);
+    }
+
+    /**
+     * Calculates the derived data of the new species in slot <code>index</code>
+     */
+    private void initialize(int index){
+        localConcentrations.set(index, scratch.at(index).localConcentrationOf());
+        assert(localConcentrations.get(index) >= 0);
+        weightBins.set(index, -1);
+        abstractSpecies[index] = null;
+    }
+
+    /**
+     * @return Index of a new slot after the last one, growing the arrays if necessary
+     */
+    private int append(){
+        if(slots == numbers.length()){
+            int capacity = Math.max(16, slots + (slots >> 1));                                                          //Grow by 50%, like an ArrayList
+            numbers.resize(capacity);
+            numbersOfI.resize(capacity);
+            numbersOfM.resize(capacity);
+            numbersOfC.resize(capacity);
+            activeVinylGroups.resize(capacity);
+            enRadicals.resize(capacity);
+            ecRadicals.resize(capacity);
+            mcRadicals.resize(capacity);
+            localConcentrations.resize(capacity);
+            weightBins.resize(capacity);
+            types.resize(capacity);
+            abstractSpecies = Arrays.copyOf(abstractSpecies, capacity);
+        }
+        return slots++;
+    }
+
+    @Override
+    public void moveLast(int index) {
+        int last = slots-1;
+        set(index, numbers.get(last), TYPES[types.get(last)], numbersOfI.get(last), numbersOfM.get(last), numbersOfC.get(last),
+                activeVinylGroups.get(last), enRadicals.get(last), ecRadicals.get(last), mcRadicals.get(last));
+        localConcentrations.set(index, localConcentrations.get(last));
+        weightBins.set(index, weightBins.get(last));
+        abstractSpecies[index] = abstractSpecies[last];
+        removeLast();
+    }
+
+    @Override
+    public void removeLast() {
+        abstractSpecies[--slots] = null;                                                                                //Allow the abstract species to be garbage collected
+    }
+
+    /**
+     * @return Copy of the species in slot <code>index</code>
+     */
+    @Override
+    public UnstructuredParticle get(int index) {
+        UnstructuredParticle p = new UnstructuredParticle(context, numbers.get(index), TYPES[types.get(index)],
+                numbersOfI.get(index), numbersOfM.get(index), numbersOfC.get(index), activeVinylGroups.get(index),
+                enRadicals.get(index), ecRadicals.get(index), mcRadicals.get(index));
+        p.setAbstractSpecies(abstractSpecies[index]);
+        p.setWeightBin(weightBins.get(index));
+        return p;
+    }
+
+    @Override
+    public AbstractSpecies getAbstractSpecies(int index) {
+        return abstractSpecies[index];
+    }
+
+    @Override
+    public void setAbstractSpecies(int index, AbstractSpecies abstractSpecies) {
+        this.abstractSpecies[index] = abstractSpecies;
+    }
+
+    @Override
+    public int getWeightBin(int index) {
+        return weightBins.get(index);
+    }
+
+    @Override
+    public void setWeightBin(int index, int weightBin) {
+        weightBins.set(index, weightBin);
+    }
+
+    @Override
+    public long number(int index) {
+        return numbers.get(index);
+    }
+
+    @Override
+    public void increaseNumber(int index) {
+        numbers.add(index, 1);
+    }
+
+    @Override
+    public void decreaseNumber(int index) {
+        numbers.add(index, -1);
+    }
+
+    @Override
+    public boolean isPolymer(int index) {
+        return types.get(index) == Species.Type.POLYMER.ordinal();
+    }
+
+    @Override
+    public long size(int index) {
+        return numbersOfI.get(index) + numbersOfM.get(index) + numbersOfC.get(index);
+    }
+
+    @Override
+    public long numberOfC(int index) {
+        return numbersOfC.get(index);
+    }
+
+    @Override
+    public double getWeight(int index) {
+        return                                                                                                          //Same order of operations as Species.getWeight
+            numbersOfI.get(index) * context.weightHalfInitiator +
+            numbersOfC.get(index) * context.weightCrosslinker +
+            numbersOfM.get(index) * context.weightMonomer;
+    }
+
+    @Override
+    public long numberOfActiveVinylGroups(int index) {
+        return activeVinylGroups.get(index);
+    }
+
+    @Override
+    public long numberOfRadicals(int index) {
+        return mcRadicals.get(index) + enRadicals.get(index) + ecRadicals.get(index);
+    }
+
+    @Override
+    public long numberOfMidChainRadicals(int index) {
+        return mcRadicals.get(index);
+    }
+
+    @Override
+    public RadicalPosition positionOfNthRadical(int index, int n) {
+        if(n<mcRadicals.get(index))
+            return RadicalPosition.MID_CHAIN_CROSSLINKER;
+        if(n<mcRadicals.get(index)+ecRadicals.get(index))
+            return RadicalPosition.CHAIN_END_CROSSLINKER;
+        else
+            return RadicalPosition.CHAIN_END_NON_CROSSLINKER;
+    }
+
+    @Override
+    public int indexOfNthRadical(int index, boolean midChain, long n) {
+        return (int) (midChain ? n : mcRadicals.get(index) + n);                                                        //Mid-chain radicals come first, see positionOfNthRadical
+    }
+
+    @Override
+    public double localConcentration(int index) {
+        return localConcentrations.get(index);
+    }
+
+    @Override
+    public void updateLocalConcentrations() {
+        for(int index=0;index<slots;index++){
+            localConcentrations.set(index, scratch.at(index).localConcentrationOf());
+        }
+    }
+
+    @Override
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putInt(slots);
+        numbers.save(checkpoint, slots);
+        numbersOfI.save(checkpoint, slots);
+        numbersOfM.save(checkpoint, slots);
+        numbersOfC.save(checkpoint, slots);
+        activeVinylGroups.save(checkpoint, slots);
+        enRadicals.save(checkpoint, slots);
+        ecRadicals.save(checkpoint, slots);
+        mcRadicals.save(checkpoint, slots);
+        localConcentrations.save(checkpoint, slots);                                                                    //Not recalculated, so the restored reactivity is exactly the same
+        weightBins.save(checkpoint, slots);
+        types.save(checkpoint, slots);
+    }
+
+    @Override
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        slots = checkpoint.getInt();
+        numbers.restore(checkpoint);
+        numbersOfI.restore(checkpoint);
+        numbersOfM.restore(checkpoint);
+        numbersOfC.restore(checkpoint);
+        activeVinylGroups.restore(checkpoint);
+        enRadicals.restore(checkpoint);
+        ecRadicals.restore(checkpoint);
+        mcRadicals.restore(checkpoint);
+        localConcentrations.restore(checkpoint);
+        weightBins.restore(checkpoint);
+        types.restore(checkpoint);
+        abstractSpecies = new AbstractSpecies[slots];
+        if(numbers.length() != slots || types.length() != slots){
+            throw new IOException("Checkpoint contains an inconsistent number of species");
+        }
+    }
+
+    @Override
+    public void save(CheckpointWriter checkpoint, UnstructuredParticle p) throws IOException {
+        checkpoint.putLong(p.number());
+        checkpoint.putByte((byte) p.type.ordinal());
+        checkpoint.putLong(p.numberOfI);
+        checkpoint.putLong(p.numberOfM);
+        checkpoint.putLong(p.numberOfC);
+        checkpoint.putLong(p.numberOfActiveVinylGroups);
+        checkpoint.putLong(p.numberOfENRadicals);
+        checkpoint.putLong(p.numberOfECRadicals);
+        checkpoint.putLong(p.numberOfMCRadicals);
+    }
+
+    @Override
+    public UnstructuredParticle restoreSpecies(CheckpointReader checkpoint) throws IOException {
+        return new UnstructuredParticle(context, checkpoint.getLong(), TYPES[checkpoint.getByte()], checkpoint.getLong(),
+                checkpoint.getLong(), checkpoint.getLong(), checkpoint.getLong(), checkpoint.getLong(), checkpoint.getLong(),
+                checkpoint.getLong());
+    }
+
+    /**
+     * Iterates over all slots, returning the same <code>Species</code> for each slot
+     */
+    @Override
+    public Iterator<Species> iterator() {
+        Cursor cursor = new Cursor();
+        return new Iterator<Species>() {
+            int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < slots;
+            }
+
+            @Override
+            public Species next() {
+                if(next >= slots)
+                    throw new NoSuchElementException();
+                return cursor.at(next++);
+            }
+        };
+    }
+
+    /**
+     * View of a single slot as a <code>Species</code>, so that expressions and output functions can evaluate it
+     */
+    private class Cursor extends Species {
+
+        private int index;
+
+        private Cursor(){
+            super(0, Type.POLYMER);
+        }
+
+        private Cursor at(int index){
+            this.index = index;
+            return this;
+        }
+
+        private double localConcentrationOf(){
+            return calculateLocalConcentration(context);
+        }
+
+        @Override public long number(){return numbers.get(index);}
+        @Override public void increaseNumber(){numbers.add(index, 1);}
+        @Override public void decreaseNumber(){numbers.add(index, -1);}
+
+        @Override public AbstractSpecies getAbstractSpecies(){return abstractSpecies[index];}
+        @Override public void setAbstractSpecies(AbstractSpecies a){abstractSpecies[index] = a;}
+        @Override public int getWeightBin(){return weightBins.get(index);}
+        @Override public void setWeightBin(int weightBin){weightBins.set(index, weightBin);}
+
+        @Override public boolean isPolymer(){return types.get(index) == Type.POLYMER.ordinal();}
+        @Override public boolean isI(){return types.get(index) == Type.I.ordinal();}
+        @Override public boolean isM(){return types.get(index) == Type.M.ordinal();}
+        @Override public boolean isC(){return types.get(index) == Type.C.ordinal();}
+
+        @Override public long size(){return UnstructuredSpeciesStore.this.size(index);}
+        @Override public long numberOfI(){return numbersOfI.get(index);}
+        @Override public long numberOfC(){return numbersOfC.get(index);}
+        @Override public long numberOfM(){return numbersOfM.get(index);}
+
+        @Override public long numberOfActiveVinylGroups(){return activeVinylGroups.get(index);}
+        @Override public long numberOfChainEndCrosslinkerRadicals(){return ecRadicals.get(index);}
+        @Override public long numberOfChainEndNonCrosslinkerRadicals(){return enRadicals.get(index);}
+        @Override public long numberOfMidChainRadicals(){return mcRadicals.get(index);}
+        @Override public long numberOfRadicals(){return UnstructuredSpeciesStore.this.numberOfRadicals(index);}
+        @Override public RadicalPosition positionOfNthRadical(int n){return UnstructuredSpeciesStore.this.positionOfNthRadical(index, n);}
+
+        @Override public double localConcentration(){return localConcentrations.get(index);}
+    }
+}
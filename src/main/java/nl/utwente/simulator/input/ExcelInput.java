@@ -1,5 +1,7 @@
 package nl.utwente.simulator.input;
 
+import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.input.ExcelGenerationException.EmptyOptionListException;
 import nl.utwente.simulator.input.ExcelGenerationException.FieldModifierException;
 import nl.utwente.simulator.input.ExcelGenerationException.NonInstantiableClassException;
@@ -20,6 +22,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.text.ParseException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -37,6 +40,8 @@ public class ExcelInput {
     public static final int HEADER_COLUMN = 0;
     public static final int DATA_COLUMN = 1;
 
+    private static final Map<Field, Object> declaredValues = new HashMap<>();                                           //Values of the input fields before the first workbook was read
+
     /**
      * Converts column index to the column name used in Excel (e.g. A,B,C,D,...)
      */
@@ -337,6 +342,25 @@ public class ExcelInput {
         }
     }
 
+    /**
+     * Reads <code>workbook</code> into <code>Settings</code> and returns a snapshot of the resulting settings.
+     * <code>Settings</code> is locked while doing so, which allows simulations to read their input concurrently
+     * @param src Type of input
+     * @param workbook Excel file containing the input
+     * @param outputDirectory Directory the simulation should write its output to
+     */
+    public static SimulationContext readContext(InputSource src, File workbook, String outputDirectory) throws ReflectiveOperationException, IOException, ParseException {
+        synchronized (Settings.class) {
+            Settings.INPUT_SOURCE = src;
+            Settings.INPUT_DIRECTORY = workbook.getAbsoluteFile().getParent();
+            Settings.INPUT_FILE = workbook.getName();
+            Settings.OUTPUT_DIRECTORY = outputDirectory;
+            readExcel(Settings.class, src, false);
+            Settings.init();
+            return SimulationContext.fromSettings();
+        }
+    }
+
     public static void readExcel(Class inputClass, InputSource src, boolean allowNullValues) throws ReflectiveOperationException, IOException {
         String inputFile = INPUT_DIRECTORY + File.separator + INPUT_FILE;
 
@@ -345,6 +369,7 @@ public class ExcelInput {
             XSSFSheet inputSheet = wb.getSheet("input");
 
             Map<String, Field> inputFields = getInputFields(inputClass, src);                                           //Read out fields of inputSrc Class and filter ones annotated with InputSource src
+            recordDeclaredValues(inputClass);
             Map<String, XSSFCell> inputValues = new TreeMap<>();
 
             int rowNumber = 0;
@@ -368,6 +393,14 @@ public class ExcelInput {
                 Object value;
 
 
+                if (cell == null && (declaredValues.get(field) != null || (allowNullValues && !fieldType.isPrimitive()))) {
+                    log.warnln(String.format(                                                                           //The workbook was made before the field existed
+                            "[WARNING]MISSING FIELD '%s'. USING DECLARED VALUE '%s'",
+                            fieldDescription, declaredValues.get(field)
+                    ));
+                    field.set(null, declaredValues.get(field));
+                    continue;
+                }
                 if (cell == null || cell.toString() == null || (cell.toString().isEmpty() && fieldType!=String.class)) {
                     if (allowNullValues && !fieldType.isPrimitive()) {                                                  //if null allowed and possible to set to null
                         log.debugln("[DEBUG]WRITING 'null' TO "+fieldDescription);
@@ -378,14 +411,14 @@ public class ExcelInput {
                                 "[WARNING]EMPTY VALUE FOR FIELD '%s'. REVERTING TO DEFAULT VALUE",
                                 fieldDescription
                         ));
-                        if (Number.class.isAssignableFrom(fieldType)) {
+                        if (Number.class.isAssignableFrom(fieldType) || (fieldType.isPrimitive() && fieldType != boolean.class && fieldType != char.class)) {
                             if (fieldType == BigInteger.class || fieldType == BigDecimal.class)
                                 value = "0";
                             else
                                 value = 0;
-                        } else if (fieldType == Boolean.class) {
+                        } else if (fieldType == Boolean.class || fieldType == boolean.class) {
                             value = false;
-                        } else if (fieldType == Character.class) {
+                        } else if (fieldType == Character.class || fieldType == char.class) {
                             value = "" + Character.MIN_VALUE;
                         } else if (fieldType.isEnum()) {
                             Object[] allowedValues = fieldType.getEnumConstants();
@@ -491,6 +524,18 @@ public class ExcelInput {
         }
     }
 
+    /**
+     * Stores the values of the input fields of <code>inputClass</code> the first time a workbook is read into it, so
+     * fields that a workbook does not contain get their declared value rather than the value of a previous workbook
+     */
+    private static synchronized void recordDeclaredValues(Class<?> inputClass) throws IllegalAccessException {
+        for(Field field : findAnnotatedFields(inputClass, Input.class)){
+            if(!declaredValues.containsKey(field)){
+                declaredValues.put(field, field.get(null));
+            }
+        }
+    }
+
     public static void deleteExcel(InputSource src){
         String inputFile = INPUT_DIRECTORY + File.separator + src.defaultFileName();
         File file = new File(inputFile);
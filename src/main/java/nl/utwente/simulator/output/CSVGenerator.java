@@ -1,42 +1,50 @@
 package nl.utwente.simulator.output;
 
+import nl.utwente.simulator.config.SimulationContext;
+
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 import static nl.utwente.simulator.config.Settings.*;
 
+/**
+ * Writes the log of a simulation to a CSV file, a row at a time as soon as it is added
+ */
 public class CSVGenerator {
 
     private CSVColumn[] columnNames;
-    private List<Map<CSVColumn, Object>> data = new LinkedList<>();
+    private FileWriter writer;
 
     public CSVGenerator(CSVColumn[] columnNames){
         this.columnNames = columnNames;
     }
 
-    public void addRow(Map<CSVColumn, Object> columnValues){
-        data.add(columnValues);
-    }
-
-    public void export() throws IOException {
-        String contents = Arrays.asList(columnNames).stream()
+    /**
+     * Creates the file and writes the column headers
+     */
+    public void start(SimulationContext context) throws IOException {
+        writer = new FileWriter(context, "log", "csv");
+        writer.append(Arrays.asList(columnNames).stream()
                 .map(CSVColumn::toString)
                 .collect(Collectors.joining(CSV_DELIMITER))
-                +LINE_END;
-
-        for(Map<CSVColumn, Object> entry : data){
-            for(CSVColumn column : columnNames){
-                String s = entry.get(column) == null
-                        ? ""
-                        : ""+entry.get(column);
-                contents += s+ CSV_DELIMITER;
-            }
-            contents += LINE_END;
+                +LINE_END);
+    }
+
+    public void addRow(Map<CSVColumn, Object> columnValues) throws IOException {
+        StringBuilder row = new StringBuilder();
+        for(CSVColumn column : columnNames){
+            Object value = columnValues.get(column);
+            if(value != null)
+                row.append(value);
+            row.append(CSV_DELIMITER);
         }
-        FileWriter.export("log", "csv", contents);
+        writer.append(row.append(LINE_END).toString());
+        writer.flush();
+    }
+
+    public void finish(){
+        writer.finish();
     }
 }
@@ -1,53 +1,72 @@
 package nl.utwente.simulator.output;
 
+import nl.utwente.simulator.config.SimulationContext;
+
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TimeZone;
 
-import static nl.utwente.simulator.config.Settings.*;
+import static nl.utwente.simulator.config.Settings.log;
 
 
 public class FileWriter {
 
     /**
      * Creates file with name indicating number of each type of molecule in the simulator, steric hindrance factor, particle type, particle group type and dateTime of execution (in chinese format)
+     * @param context Simulation that is exported
      * @param fileName Partial name of the file
      * @param extension Extension indicating file type
      * @param contents Contents of file
      */
-    public static void export(String fileName, String extension, String contents) throws IOException {
-        String file = createFileName(fileName, extension);
-        write(file, contents);
+    public static void export(SimulationContext context, String fileName, String extension, String contents) throws IOException {
+        String file = createFileName(context, fileName, extension);
+        write(context.outputDirectory, file, contents);
     }
 
     /**
      * Creates file at <code>EXPORT_FOLDER/fileName.extension</code>
+     * @param context Simulation that is exported
      * @param fileName  Name of the file
      * @param extension Extension indicating file type
      * @param contents Contents of file
      */
-    public static void simpleExport(String fileName, String extension, String contents) throws IOException {
+    public static void simpleExport(SimulationContext context, String fileName, String extension, String contents) throws IOException {
         String file = createSimpleFileName(fileName,extension);
-        write(file, contents);
+        write(context.outputDirectory, file, contents);
+    }
+
+    /**
+     * Creates file at <code>directory/fileName.extension</code>
+     * @param directory Directory of the file, for output that does not belong to a single simulation
+     * @param fileName  Name of the file
+     * @param extension Extension indicating file type
+     * @param contents Contents of file
+     */
+    public static void simpleExport(String directory, String fileName, String extension, String contents) throws IOException {
+        String file = createSimpleFileName(fileName,extension);
+        write(directory, file, contents);
     }
 
     private static String createSimpleFileName(String fileName, String extension){
         return String.format("%s.%s",fileName, extension);
     }
 
-    private static String createFileName(String fileName, String extension){
+    private static String createFileName(SimulationContext context, String fileName, String extension){
         DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH-mm");
         format.setTimeZone(TimeZone.getTimeZone("Europe/Amsterdam"));
 
-        return String.format("%s (RAFT[%f] M[%f] C[%f])%s.%s",fileName, CONCENTRATION_RAFT,  CONCENTRATION_MONOMER, CONCENTRATION_CROSSLINKER, format.format(new Date()),extension);
+        return String.format("%s (RAFT[%f] M[%f] C[%f])%s.%s",fileName, context.concentrationRaft,  context.concentrationMonomer, context.concentrationCrosslinker, format.format(new Date()),extension);
     }
 
-    private static void write(String file, String contents) throws IOException {
-        log.infoln(String.format("[INFO]Exporting %s to %s", file, OUTPUT_DIRECTORY));
-        createDirectoryIfNonExistent(OUTPUT_DIRECTORY);
-        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(OUTPUT_DIRECTORY+ File.separator+file), "utf-8"));
+    private static void write(String directory, String file, String contents) throws IOException {
+        log.infoln(String.format("[INFO]Exporting %s to %s", file, directory));
+        createDirectoryIfNonExistent(directory);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(directory+ File.separator+file), "utf-8"));
         writer.write(contents);
         writer.close();
     }
@@ -67,13 +86,13 @@ public class FileWriter {
 
     /**
      * For bigger files it would be more efficient to appendLine than to keep the full content in memory;
-     * for this purpose an instance of FileWriter can be created, which allows appending
+     * for this purpose an instance of FileWriter can be created, which allows appending to a buffered channel
      */
-    public FileWriter(String fileName, String extension) throws IOException {
-        String file = createFileName(fileName, extension);
-        log.infoln(String.format("[INFO]Exporting %s to %s", file, OUTPUT_DIRECTORY));
-        createDirectoryIfNonExistent(OUTPUT_DIRECTORY);
-        writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(OUTPUT_DIRECTORY+File.separator+file), "utf-8")));
+    public FileWriter(SimulationContext context, String fileName, String extension) throws IOException {
+        String file = createFileName(context, fileName, extension);
+        log.infoln(String.format("[INFO]Exporting %s to %s", file, context.outputDirectory));
+        createDirectoryIfNonExistent(context.outputDirectory);
+        writer = new PrintWriter(Files.newBufferedWriter(Paths.get(context.outputDirectory, file), StandardCharsets.UTF_8));
     }
 
     public void appendLine(String line){
@@ -84,6 +103,15 @@ public class FileWriter {
         writer.print(line);
     }
 
+    /**
+     * Writes everything appended so far to the file, so that it is not lost if the simulation does not finish
+     */
+    public void flush() throws IOException {
+        writer.flush();
+        if(writer.checkError())
+            throw new IOException("Unable to write to file");
+    }
+
     public void finish(){
         writer.close();
     }
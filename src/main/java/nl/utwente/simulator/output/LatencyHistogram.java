@@ -0,0 +1,72 @@
+package nl.utwente.simulator.output;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of durations in nanoseconds with a bucket per power of 2, so that recording a duration takes constant
+ * time and does not allocate. Bucket 0 holds durations of 0 ns, bucket b the durations in [2^(b-1), 2^b) ns and the
+ * last bucket all longer durations.
+ */
+public class LatencyHistogram {
+
+    public static final int BUCKETS = 40;                                                                               //The last bucket starts at 2^38 ns, about 4.6 minutes
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long totalNanos;
+
+    public void record(long nanos){
+        counts[bucket(nanos)]++;
+        count++;
+        totalNanos += nanos;
+    }
+
+    /**
+     * @return Bucket of a duration of <code>nanos</code>
+     */
+    public static int bucket(long nanos){
+        return Math.min(BUCKETS-1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+    }
+
+    /**
+     * @return Exclusive upper bound of the durations in <code>bucket</code>, except for the last bucket
+     */
+    public static long upperBound(int bucket){
+        return 1L << bucket;
+    }
+
+    public long count(){
+        return count;
+    }
+
+    public long count(int bucket){
+        return counts[bucket];
+    }
+
+    public long totalNanos(){
+        return totalNanos;
+    }
+
+    public double meanNanos(){
+        return count == 0 ? 0 : totalNanos / (double) count;
+    }
+
+    /**
+     * @return Upper bound of the bucket that contains the <code>quantile</code> (between 0 and 1) of the durations, 0 if there are none
+     */
+    public long quantileNanos(double quantile){
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for(int b=0;b<BUCKETS;b++){
+            seen += counts[b];
+            if(seen >= rank && seen > 0) return upperBound(b);
+        }
+        return 0;
+    }
+
+    public void clear(){
+        Arrays.fill(counts, 0);
+        count = 0;
+        totalNanos = 0;
+    }
+}
@@ -1,6 +1,6 @@
 package nl.utwente.simulator.output;
 
-import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.entities.species.structured.*;
 
 import java.io.IOException;
@@ -76,15 +76,15 @@ public class MOLGenerator {
         return molecule+"@"+chain;
     }
 
-    private static String getType(Molecule molecule){
-        if(molecule instanceof Initiating)             return Settings.I_REPRESENTATIVE_ATOM;
-        if(molecule instanceof Monomer)                return Settings.M_REPRESENTATIVE_ATOM;
-        if(molecule instanceof Crosslinker.FirstHalf)  return Settings.C_REPRESENTATIVE_ATOM;
-        if(molecule instanceof Crosslinker.SecondHalf) return Settings.C_REPRESENTATIVE_ATOM;
+    private static String getType(SimulationContext context, Molecule molecule){
+        if(molecule instanceof Initiating)             return context.iRepresentativeAtom;
+        if(molecule instanceof Monomer)                return context.mRepresentativeAtom;
+        if(molecule instanceof Crosslinker.FirstHalf)  return context.cRepresentativeAtom;
+        if(molecule instanceof Crosslinker.SecondHalf) return context.cRepresentativeAtom;
         return null;
     }
 
-    public static void createDataFile(StructuredParticle p) throws IOException {
+    public static void createDataFile(SimulationContext context, StructuredParticle p) throws IOException {
         if(p.size() + p.numberOfC > 999){
             log.error("Cannot create MOL file for particle with more than 999 molecules");
             return;
@@ -110,7 +110,7 @@ public class MOLGenerator {
             while (molecule != null) {
 
                 float z = (molecule instanceof Crosslinker.SecondHalf) ? 0F : 2F;
-                nodes += String.format(atomFormat, 0F + i, 0F + j, z, getType(molecule));
+                nodes += String.format(atomFormat, 0F + i, 0F + j, z, getType(context, molecule));
 
                 molecules.put(id(i, molecule), molecule);
                 molAliases.put(id(i, molecule), amountOfMolecules);
@@ -148,7 +148,7 @@ public class MOLGenerator {
                     0F + vinylGroup.chainNr,
                     0F + y,
                     4F,
-                    Settings.VINYL_GROUP_REPRESENTATIVE_ATOM
+                    context.vinylGroupRepresentativeAtom
             );
             edges += String.format(bondFormat,
                     molAliases.get(id(vinylGroup.chainNr,vinylGroup.molecule)),
@@ -161,6 +161,6 @@ public class MOLGenerator {
         amountOfMolecules--;
         //Create PDB file
         String contents = String.format(fileFormat, amountOfMolecules, amountOfBonds, nodes, edges);
-        FileWriter.export("nanogel "+p.size()+" monomers", "mol", contents);
+        FileWriter.export(context, "nanogel "+p.size()+" monomers", "mol", contents);
     }
 }
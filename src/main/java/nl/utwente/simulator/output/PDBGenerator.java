@@ -1,6 +1,6 @@
 package nl.utwente.simulator.output;
 
-import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.entities.species.structured.*;
 
 import java.io.IOException;
@@ -73,17 +73,17 @@ public class PDBGenerator {
         return molecule+"@"+chain;
     }
 
-    private static String getType(Molecule molecule){
-        if(molecule instanceof Initiating)             return Settings.I_REPRESENTATIVE_ATOM;
-        if(molecule instanceof Monomer)                return Settings.M_REPRESENTATIVE_ATOM;
-        if(molecule instanceof Crosslinker.FirstHalf)  return Settings.C_REPRESENTATIVE_ATOM;
-        if(molecule instanceof Crosslinker.SecondHalf) return Settings.C_REPRESENTATIVE_ATOM;
+    private static String getType(SimulationContext context, Molecule molecule){
+        if(molecule instanceof Initiating)             return context.iRepresentativeAtom;
+        if(molecule instanceof Monomer)                return context.mRepresentativeAtom;
+        if(molecule instanceof Crosslinker.FirstHalf)  return context.cRepresentativeAtom;
+        if(molecule instanceof Crosslinker.SecondHalf) return context.cRepresentativeAtom;
         return null;
     }
 
-    public static void createDataFile(StructuredParticle p) throws IOException {
+    public static void createDataFile(SimulationContext context, StructuredParticle p) throws IOException {
         Locale.setDefault(new Locale("en", "US"));                                                                      //We want to use point separator instead of comma
-        FileWriter exporter = new FileWriter("nanogel "+p.size()+" monomers", "pdb");
+        FileWriter exporter = new FileWriter(context, "nanogel "+p.size()+" monomers", "pdb");
 
         int amountOfMolecules = 1;
 
@@ -111,7 +111,7 @@ public class PDBGenerator {
             while (molecule != null) {
 
                 float z = (molecule instanceof Crosslinker.SecondHalf) ? 0F : 2F;
-                exporter.appendLine(String.format(atomFormat, amountOfMolecules, 0F + i, 0F + j, z, getType(molecule)));
+                exporter.appendLine(String.format(atomFormat, amountOfMolecules, 0F + i, 0F + j, z, getType(context, molecule)));
 
                 molecules.put(id(i, molecule), molecule);
                 molAliases.put(id(i, molecule), amountOfMolecules);
@@ -170,7 +170,7 @@ public class PDBGenerator {
                     0F + vinylGroup.chainNr,
                     0F + y,
                     4F,
-                    Settings.VINYL_GROUP_REPRESENTATIVE_ATOM
+                    context.vinylGroupRepresentativeAtom
             ));
             vinylGroups.append(String.format(bondFormat,
                     molAliases.get(id(vinylGroup.chainNr,vinylGroup.molecule)),
@@ -0,0 +1,142 @@
+package nl.utwente.simulator.output;
+
+import nl.utwente.simulator.config.SimulationContext;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import static nl.utwente.simulator.config.Settings.CSV_DELIMITER;
+
+/**
+ * Times the phases of the main loop of the simulator in a sample of its steps, so that the time spent per phase can
+ * be followed during a long simulation without attaching a profiler. The steps are timed by laps: every lap ends a
+ * phase and records the time since the previous lap.
+ *
+ * The durations are kept per output slice, which is written as a row per phase to the timings file, and for the
+ * complete simulation.
+ */
+public class PhaseTimer {
+
+    public enum Phase {
+        PICK_RADICAL,
+        PICK_VINYL,                                                                                                     //Including the choice between an intermolecular and intramolecular reaction
+        ABSTRACT_KEY,
+        SPECIES_INDEX,
+        CREATE_SPECIES,                                                                                                 //Only for reaction products that are new species
+        UPDATE,                                                                                                         //Updating the trees and bookkeeping of the reactants and product
+        LOG                                                                                                             //Output of a slice, timed at every slice
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long interval;                                                                                        //Picked reactions between timed ones
+    private long countdown = 1;
+    private long lapStart;
+
+    private final LatencyHistogram[] slice = new LatencyHistogram[PHASES.length];
+    private final LatencyHistogram[] total = new LatencyHistogram[PHASES.length];
+    private FileWriter writer;
+
+    public PhaseTimer(long interval) {
+        this.interval = interval;
+        for(Phase phase : PHASES){
+            slice[phase.ordinal()] = new LatencyHistogram();
+            total[phase.ordinal()] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @return Whether the picked reaction should be timed, in which case its first lap starts now
+     */
+    public boolean sample(){
+        if(--countdown > 0){
+            return false;
+        }
+        countdown = interval;
+        lapStart = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * Ends <code>phase</code> and records the time since the previous lap
+     */
+    public void lap(Phase phase){
+        long now = System.nanoTime();
+        record(phase, now - lapStart);
+        lapStart = now;
+    }
+
+    public void record(Phase phase, long nanos){
+        slice[phase.ordinal()].record(nanos);
+        total[phase.ordinal()].record(nanos);
+    }
+
+    public LatencyHistogram total(Phase phase){
+        return total[phase.ordinal()];
+    }
+
+    /**
+     * Creates the timings file and writes the column headers
+     */
+    public void start(SimulationContext context) throws IOException {
+        writer = new FileWriter(context, "timings", "csv");
+        StringBuilder header = new StringBuilder(String.join(CSV_DELIMITER, "% conversion", "phase", "count", "mean (ns)", "p50 (ns)", "p90 (ns)", "p99 (ns)"));
+        for(int b=0;b<LatencyHistogram.BUCKETS;b++){
+            header.append(CSV_DELIMITER).append(b < LatencyHistogram.BUCKETS-1 ? "<"+LatencyHistogram.upperBound(b)+" ns" : "longer");
+        }
+        writer.appendLine(header.toString());
+        writer.flush();
+    }
+
+    /**
+     * Writes the durations of the slice that ends at <code>conversion</code> and starts a new slice
+     */
+    public void slice(double conversion) throws IOException {
+        for(Phase phase : PHASES){
+            LatencyHistogram histogram = slice[phase.ordinal()];
+            StringBuilder row = new StringBuilder(String.join(CSV_DELIMITER,
+                    String.format(Locale.ROOT, "%.2f", conversion),
+                    phase.name(),
+                    ""+histogram.count(),
+                    String.format(Locale.ROOT, "%.1f", histogram.meanNanos()),
+                    ""+histogram.quantileNanos(0.5),
+                    ""+histogram.quantileNanos(0.9),
+                    ""+histogram.quantileNanos(0.99)
+            ));
+            for(int b=0;b<LatencyHistogram.BUCKETS;b++){
+                row.append(CSV_DELIMITER).append(histogram.count(b));
+            }
+            writer.appendLine(row.toString());
+            histogram.clear();
+        }
+        writer.flush();
+    }
+
+    public void finish(){
+        writer.finish();
+    }
+
+    /**
+     * @return Table of the durations of every phase in the complete simulation
+     */
+    public String summary(){
+        StringBuilder summary = new StringBuilder(String.format(Locale.ROOT, "%-15s %10s %12s %10s %10s %10s %8s", "Phase", "Count", "Mean (ns)", "p50 (ns)", "p90 (ns)", "p99 (ns)", "Share"));
+        double totalNanos = 0;
+        for(Phase phase : PHASES){
+            if(phase != Phase.LOG) totalNanos += total[phase.ordinal()].totalNanos();
+        }
+        for(Phase phase : PHASES){
+            LatencyHistogram histogram = total[phase.ordinal()];
+            summary.append(String.format(Locale.ROOT, "%n%-15s %10d %12.1f %10d %10d %10d %7.1f%%",
+                    phase.name(),
+                    histogram.count(),
+                    histogram.meanNanos(),
+                    histogram.quantileNanos(0.5),
+                    histogram.quantileNanos(0.9),
+                    histogram.quantileNanos(0.99),
+                    phase == Phase.LOG || totalNanos == 0 ? 0 : 100 * histogram.totalNanos() / totalNanos               //The log is timed at every slice rather than sampled
+            ));
+        }
+        return summary.toString();
+    }
+}
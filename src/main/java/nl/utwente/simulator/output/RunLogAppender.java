@@ -0,0 +1,94 @@
+package nl.utwente.simulator.output;
+
+import org.apache.log4j.*;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.io.*;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static nl.utwente.simulator.config.Settings.LOG_FORMAT;
+
+/**
+ * Writes the log of every run in a batch to its own file, as simulations running concurrently would otherwise
+ * interleave their output on the console.
+ *
+ * A thread is assigned to a run with <code>MDC.put(RUN_KEY, name)</code>; the console only shows warnings and errors of runs.
+ */
+public class RunLogAppender extends AppenderSkeleton {
+
+    public static final String RUN_KEY = "run";
+
+    private final String directory;
+    private final Map<String, Writer> writers = new HashMap<>();
+
+    private RunLogAppender(String directory) {
+        this.directory = directory;
+        this.layout = new PatternLayout(LOG_FORMAT);
+    }
+
+    /**
+     * Adds an appender writing to <code>directory/run.log</code> to the root logger
+     */
+    public static RunLogAppender install(String directory) throws IOException {
+        FileWriter.createDirectoryIfNonExistent(directory);
+        Logger root = Logger.getRootLogger();
+        Enumeration<?> appenders = root.getAllAppenders();
+        while(appenders.hasMoreElements()){
+            ((Appender) appenders.nextElement()).addFilter(new Filter() {                                               //Keep progress of runs off the console
+                @Override
+                public int decide(LoggingEvent event) {
+                    return event.getMDC(RUN_KEY) != null && !event.getLevel().isGreaterOrEqual(Level.WARN) ? DENY : NEUTRAL;
+                }
+            });
+        }
+        RunLogAppender appender = new RunLogAppender(directory);
+        root.addAppender(appender);
+        return appender;
+    }
+
+    @Override
+    protected synchronized void append(LoggingEvent event) {
+        Object run = event.getMDC(RUN_KEY);
+        if(run == null)
+            return;
+        try {
+            Writer writer = writers.get(run.toString());
+            if(writer == null){
+                writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(directory+File.separator+run+".log"), "utf-8"));
+                writers.put(run.toString(), writer);
+            }
+            writer.write(layout.format(event));
+            writer.flush();                                                                                             //Logs are written at most once per slice, keep them readable during the run
+        } catch (IOException e) {
+            errorHandler.error("Unable to write log of run "+run, e, 0, event);
+        }
+    }
+
+    /**
+     * Closes the log file of <code>run</code>, which should not log anything afterwards
+     */
+    public synchronized void finish(String run) throws IOException {
+        Writer writer = writers.remove(run);
+        if(writer != null)
+            writer.close();
+    }
+
+    @Override
+    public synchronized void close() {
+        for(Writer writer : writers.values()){
+            try {
+                writer.close();
+            } catch (IOException ignored) {}
+        }
+        writers.clear();
+        closed = true;
+    }
+
+    @Override
+    public boolean requiresLayout() {
+        return false;
+    }
+}
@@ -1,40 +1,74 @@
 package nl.utwente.simulator.output.dynamicoutput;
 
 import nl.utwente.simulator.config.Expression;
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.output.FileWriter;
+import nl.utwente.simulator.simulator.Species;
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
 
 import java.io.IOException;
-import java.util.*;
+import java.util.Locale;
 
 import static java.lang.Math.*;
 import static java.lang.Math.log;
 import static java.lang.StrictMath.round;
-import static nl.utwente.simulator.config.Settings.*;
+import static nl.utwente.simulator.config.Settings.CSV_DELIMITER;
+import static nl.utwente.simulator.config.Settings.LINE_END;
 
 /**
  * Custom function that calculates <code>expression</code> for each particle
  * per weight category per conversion point.
+ *
+ * Every conversion point adds a row with a data point per bin, which is appended to the output file as soon as it is
+ * added once the export has started. Earlier rows are only kept if the ensemble statistics or checkpoints need them.
  */
 public abstract class BinnedFunc extends CustomFunc{
 
     public static final double G = 10;
     public static final double POINTS = 10;                                                                             //Amount of points between G^i and G^(i+1)
-    public static final int MAX_BINS = (int) ceil(log(
-            NUMBER_HALF_INITIATORS * WEIGHT_HALF_INITIATOR +
-            NUMBER_MONOMERS           * WEIGHT_MONOMER +
-            NUMBER_CROSSLINKERS       * WEIGHT_CROSSLINKER
-        )/log(pow(G, 1/POINTS)));
-
-    protected final List<Double> keys;                                                                                  //Keep these separate for ordering
-    protected final Map<Double, Double[]> dataTable;
+
+    protected final int maxBins;                                                                                        //Enough bins to contain all molecules combined
+    protected final Rows rows;                                                                                          //Data point per bin, NaN if there is none
     protected final long[] cachedBinMinimums;                                                                           //Makes lookups faster than calculating bin number each time
+    private FileWriter writer;                                                                                          //Output file, once the export has started
+
+    protected BinnedFunc(SimulationContext context, String f, Expression e, boolean includeInitialMolecules, boolean excludeBiggestMolecule) {
+        super(context, f,e, includeInitialMolecules, excludeBiggestMolecule);
+
+        cachedBinMinimums = binMinimums(context);
+        maxBins = cachedBinMinimums.length;
+        rows = new Rows(maxBins);
+    }
+
+    /**
+     * @param row Data point per bin, NaN if there is none
+     */
+    protected void addData(double conversion, double[] row) throws IOException {
+        rows.add(conversion, row);
+        if(writer != null){
+            exportRow(rows.size()-1);
+            writer.flush();
+        }
+    }
 
-    protected BinnedFunc(String f, Expression e, boolean includeInitialMolecules, boolean excludeBiggestMolecule) {
-        super(f,e, includeInitialMolecules, excludeBiggestMolecule);
+    /**
+     * @return Data point of <code>bin</code> at <code>conversion</code>, or null if there is none
+     */
+    public Double getData(double conversion, int bin){
+        int index = rows.indexOf(conversion);
+        if(index < 0)
+            return null;
+        double datapoint = rows.get(index, bin);
+        return Double.isNaN(datapoint) ? null : datapoint;
+    }
 
-        keys = new LinkedList<>();
-        dataTable = new TreeMap<>();
-        cachedBinMinimums = new long[MAX_BINS];
+    /**
+     * @return Minimum weight of each bin, enough bins to contain all molecules combined
+     */
+    public static long[] binMinimums(SimulationContext context){
+        int maxBins = (int) ceil(log(context.totalWeight())/log(pow(G, 1/POINTS)));
+        long[] cachedBinMinimums = new long[maxBins];
 
         double G2 = pow(G, 1/POINTS);
         double prev = 1;
@@ -50,13 +84,34 @@ public abstract class BinnedFunc extends CustomFunc{
             cachedBinMinimums[i-1] = i;
         }
 
-        for(int i=max;i<MAX_BINS;i++){                                                                                  //We then continue as expected by increasing the exponent for each bin value
+        for(int i=max;i<maxBins;i++){                                                                                   //We then continue as expected by increasing the exponent for each bin value
             cachedBinMinimums[i] = round(tmp);
             tmp *= G2;
         }
+        return cachedBinMinimums;
+    }
+
+    public int getBinNumber(long i){
+        return getBinNumber(cachedBinMinimums, i);
     }
 
-    public int getBinNumber(long i){                                                                                    //Perform a binary search to get the right bin numbers
+    /**
+     * @return Bin of species <code>p</code>, which is only looked up the first time and then cached in the species
+     */
+    public int getBinNumber(Species p){
+        return getBinNumber(cachedBinMinimums, p, context);
+    }
+
+    public static int getBinNumber(long[] cachedBinMinimums, Species p, SimulationContext context){
+        int bin = p.getWeightBin();
+        if(bin < 0){
+            bin = getBinNumber(cachedBinMinimums, (long) p.getWeight(context));
+            p.setWeightBin(bin);
+        }
+        return bin;
+    }
+
+    public static int getBinNumber(long[] cachedBinMinimums, long i){                                                   //Perform a binary search to get the right bin numbers
         int low = 0;
         int high = cachedBinMinimums.length-1;
         int index = (high+low)/2;
@@ -72,29 +127,53 @@ public abstract class BinnedFunc extends CustomFunc{
         return index;
     }
 
-    protected void exportCSV() throws IOException {
-        String contents = "'min weight(Da)\\conversion(%)'"+ CSV_DELIMITER;                                             //Add column headers
-        for(double key : keys){
-            contents += String.format("%3.2f%s", key, CSV_DELIMITER);
+    /**
+     * Creates the output file and writes all rows added so far, after which rows are written as soon as they are added
+     */
+    protected void startExport() throws IOException {
+        writer = new FileWriter(context, fileName(), "csv");
+        StringBuilder header = new StringBuilder("'conversion(%)\\min weight(Da)'").append(CSV_DELIMITER);              //Add column headers
+        for(long binMinimum : cachedBinMinimums){
+            header.append(binMinimum).append(CSV_DELIMITER);
         }
-        contents += LINE_END;
+        writer.append(header.append(LINE_END).toString());
 
-        for(int i=0;i<MAX_BINS;i++){                                                                                    //Per bin
-            String row = cachedBinMinimums[i] + CSV_DELIMITER;                                                          //add row headers
-            for(double key : keys) {                                                                                    //add data for each conversion point
-                Double datapoint = dataTable.get(key)[i];
+        for(int i=0;i<rows.size();i++){
+            exportRow(i);
+        }
+        writer.flush();
+        rows.trim();
+    }
 
-                row += datapoint != null
-                    ? datapoint + CSV_DELIMITER
-                    : CSV_DELIMITER;
-            }
-            contents += row+LINE_END;
+    private void exportRow(int i){
+        StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "%3.2f%s", rows.key(i), CSV_DELIMITER));       //Add row header
+        for(int bin=0;bin<maxBins;bin++){                                                                               //Add data for each bin
+            double datapoint = rows.get(i, bin);
+            if(!Double.isNaN(datapoint))
+                row.append(datapoint);
+            row.append(CSV_DELIMITER);
         }
+        writer.append(row.append(LINE_END).toString());
+    }
+
+    void keepHistory(){
+        rows.keepHistory();
+    }
+
+    void save(CheckpointWriter checkpoint) throws IOException {
+        rows.save(checkpoint);
+    }
+
+    void restore(CheckpointReader checkpoint) throws IOException {
+        rows.restore(checkpoint);
+    }
+
+    protected void finishExport() {
+        writer.finish();
+        writer = null;
+    }
 
-        FileWriter.export(
-            function.equals("MWD") || function.equals("MZD") || function.equals("MND") ? function : "CUSTOM "+convertToFileName(function),
-            "csv",
-            contents
-        );
+    protected String fileName(){
+        return function.equals("MWD") || function.equals("MZD") || function.equals("MND") ? function : "CUSTOM "+convertToFileName(function);
     }
 }
@@ -1,32 +1,50 @@
 package nl.utwente.simulator.output.dynamicoutput;
 
 import nl.utwente.simulator.config.Expression;
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.simulator.Species;
 
-import java.util.List;
+import java.io.IOException;
 
 /**
  * A custom function with string representation <code>function</code> and implementation <code>expression</code>.
  * This expression evaluates a single particle.
  *
  * For every point of conversion this expression is used to add a single row of output, given the whole set of species
- * at that point of conversion as input.
+ * at that point of conversion as input. A row is built by <code>startRow</code>, followed by <code>accumulate</code>
+ * for every species included in the data, and <code>finishRow</code>; this allows <code>DynamicOutput</code>
+ * to feed all functions in a single pass over the species.
  */
 public abstract class CustomFunc {
 
+    protected final SimulationContext context;
     protected final String function;
     protected final Expression expression;
     protected final boolean includeInitialMolecules;
     protected final boolean excludeBiggestMolecule;
 
-    protected CustomFunc(String function, Expression expression, boolean includeInitialMolecules, boolean excludeBiggestMolecule){
+    protected CustomFunc(SimulationContext context, String function, Expression expression, boolean includeInitialMolecules, boolean excludeBiggestMolecule){
+        this.context = context;
         this.function = function;
         this.expression = expression;
         this.includeInitialMolecules = includeInitialMolecules;
         this.excludeBiggestMolecule = excludeBiggestMolecule;
     }
 
-    protected abstract void addRow(double conversion, List<? extends Species> particles, Species biggestParticle);
+    /**
+     * Starts a new row of output
+     */
+    protected abstract void startRow();
+
+    /**
+     * Adds the <code>number</code> particles of species <code>p</code>, each of weight <code>weight</code>, to the current row
+     */
+    protected abstract void accumulate(Species p, long number, double weight);
+
+    /**
+     * Excludes the biggest particle if requested and stores the current row as the data at <code>conversion</code>
+     */
+    protected abstract void finishRow(double conversion, Species biggestParticle) throws IOException;
 
     public static String convertToFileName(String f){
         return f
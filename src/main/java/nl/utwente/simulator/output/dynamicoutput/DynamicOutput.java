@@ -1,9 +1,12 @@
 package nl.utwente.simulator.output.dynamicoutput;
 
 import nl.utwente.simulator.config.Expression;
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.output.FileWriter;
 import nl.utwente.simulator.output.dynamicoutput.functions.*;
 import nl.utwente.simulator.simulator.Species;
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
 import nl.utwente.simulator.utils.codegeneration.ExpressionGenerator;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
@@ -66,9 +69,17 @@ public class DynamicOutput {
     public static final String[] ALIASES = {"MW", "MN", "MZ", "MND", "MWD", "MZD", "PDI"};                              //SIZE is substituted during desugaring in ExpressionGenerator
     public static final String[] MODIFIERS = {"AVG", "BIN", "INC", "SUM", "WAV", "ZAV", "EXC"};
 
+    protected final SimulationContext context;
     protected List<NonBinnedFunc> nonBinnedFuncs = new ArrayList<>();
     protected List<BinnedFunc> binnedFuncs = new ArrayList<>();
-    protected List<Double> keys = new ArrayList<>();
+    protected Rows keys = new Rows(0);                                                                                  //Conversion of each row
+
+    private boolean exporting;
+    private FileWriter writer;                                                                                          //Output file of the non-binned functions
+
+    public DynamicOutput(SimulationContext context){
+        this.context = context;
+    }
 
     public void addFunc(String f) throws ParseException {
         f = f.replaceAll("\\s", "");                                                                                    //Strip whitespace
@@ -95,25 +106,25 @@ public class DynamicOutput {
         if(Arrays.asList(ALIASES).contains(f.toUpperCase())){
             switch(f.toUpperCase()){
                 case "MW" :                                                                                             //WAV(w)
-                    nonBinnedFuncs.add(new AverageFunc(name, ExpressionGenerator.generate("w"), inc, exc, AverageType.WEIGHT));
+                    nonBinnedFuncs.add(new WeightAverageFunc(context, name, ExpressionGenerator.generate("w", context), inc, exc, AverageType.WEIGHT));
                     return;
                 case "MN" :                                                                                             //AVG(w)
-                    nonBinnedFuncs.add(new AverageFunc(name, ExpressionGenerator.generate("w"), inc, exc, AverageType.NUMBER));
+                    nonBinnedFuncs.add(new WeightAverageFunc(context, name, ExpressionGenerator.generate("w", context), inc, exc, AverageType.NUMBER));
                     return;
                 case "MZ" :                                                                                             //ZAV(w)
-                    nonBinnedFuncs.add(new AverageFunc(name, ExpressionGenerator.generate("w"), inc, exc, AverageType.Z));
+                    nonBinnedFuncs.add(new WeightAverageFunc(context, name, ExpressionGenerator.generate("w", context), inc, exc, AverageType.Z));
                     return;
                 case "MND" :                                                                                            //BIN(SUM(1))
-                    binnedFuncs.add(new BinnedSumFunc(name, ExpressionGenerator.generate("1"), inc, exc));
+                    binnedFuncs.add(new WeightDistributionFunc(context, name, ExpressionGenerator.generate("1", context), inc, exc, 0));
                     return;
                 case "MWD" :                                                                                            //BIN(SUM(w))
-                    binnedFuncs.add(new BinnedSumFunc(name, ExpressionGenerator.generate("w"), inc, exc));
+                    binnedFuncs.add(new WeightDistributionFunc(context, name, ExpressionGenerator.generate("w", context), inc, exc, 1));
                     return;
                 case "MZD" :                                                                                            //BIN(SUM(w^2))
-                    binnedFuncs.add(new BinnedSumFunc(name, ExpressionGenerator.generate("w^2"), inc, exc));
+                    binnedFuncs.add(new WeightDistributionFunc(context, name, ExpressionGenerator.generate("w^2", context), inc, exc, 2));
                     return;
                 case "PDI" :                                                                                            //BIN(WAV(w))/AVG(w)
-                    nonBinnedFuncs.add(new PDIFunc(inc, exc));
+                    nonBinnedFuncs.add(new PDIFunc(context, inc, exc));
                     return;
                 default:
                     throw new NotImplementedException();
@@ -175,70 +186,218 @@ public class DynamicOutput {
         } else if (sum && avg){
             throw new ParseException("Custom function cannot contain both SUM(), ZAV(), WAV() and AVG() modifier.", 0);
         }
-        Expression e = ExpressionGenerator.generate(f);
+        Expression e = ExpressionGenerator.generate(f, context);
 
         if(binned) {
             if(avg) {
-                binnedFuncs.add(new BinnedAverageFunc(name, e, inc, exc, averageType));
+                binnedFuncs.add(new BinnedAverageFunc(context, name, e, inc, exc, averageType));
             }else {
-                binnedFuncs.add(new BinnedSumFunc(name, e, inc, exc));
+                binnedFuncs.add(new BinnedSumFunc(context, name, e, inc, exc));
             }
         }else {
             if(avg) {
-                nonBinnedFuncs.add(new AverageFunc(name, e, inc, exc, averageType));
+                nonBinnedFuncs.add(new AverageFunc(context, name, e, inc, exc, averageType));
             }else {
-                nonBinnedFuncs.add(new SumFunc(name, e, inc, exc));
+                nonBinnedFuncs.add(new SumFunc(context, name, e, inc, exc));
             }
         }
     }
 
+    /**
+     * Keeps every row of output in memory instead of only the last one, which the ensemble statistics and checkpoints
+     * need. Must be called before the first row is added
+     */
+    public void keepHistory(){
+        keys.keepHistory();
+        for(NonBinnedFunc nbf : nonBinnedFuncs){
+            nbf.keepHistory();
+        }
+        for(BinnedFunc bf : binnedFuncs){
+            bf.keepHistory();
+        }
+    }
+
     /**
      * Adds another row of output for each output function
      */
-    public void addRow(double conversion, List<? extends Species> particles, Species biggestParticle){
+    public void addRow(double conversion, Iterable<? extends Species> particles, Species biggestParticle) throws IOException {
         keys.add(conversion);
 
+        List<CustomFunc> funcs = new ArrayList<>(nonBinnedFuncs);
+        funcs.addAll(binnedFuncs);
+        addRow(conversion, funcs, particles, biggestParticle);
+        exportRow();
+    }
+
+    /**
+     * Adds another row of output for each output function,
+     * reading the functions of the weight distribution off <code>histogram</code> instead of iterating over all particles
+     * @param histogram Weight distribution of <code>particles</code>
+     */
+    public void addRow(double conversion, Iterable<? extends Species> particles, Species biggestParticle, WeightHistogram histogram) throws IOException {
+        keys.add(conversion);
+
+        List<CustomFunc> funcs = new ArrayList<>();
         for(NonBinnedFunc nbf : nonBinnedFuncs){
-            nbf.addRow(conversion, particles, biggestParticle);
+            if(nbf instanceof MomentFunc){
+                ((MomentFunc) nbf).addRow(conversion, histogram.polymers(), histogram.initialMolecules(), biggestParticle);
+            }else{
+                funcs.add(nbf);
+            }
         }
 
         for(BinnedFunc bf : binnedFuncs){
-            bf.addRow(conversion, particles, biggestParticle);
+            if(bf instanceof HistogramFunc){
+                ((HistogramFunc) bf).addRow(conversion, histogram, biggestParticle);
+            }else{
+                funcs.add(bf);
+            }
+        }
+        addRow(conversion, funcs, particles, biggestParticle);
+        exportRow();
+    }
+
+    /**
+     * Adds another row of output for each function in <code>funcs</code> in a single pass over the particles,
+     * calculating the number, weight and type of each species only once for all functions
+     */
+    private void addRow(double conversion, List<CustomFunc> funcs, Iterable<? extends Species> particles, Species biggestParticle) throws IOException {
+        if(funcs.isEmpty())
+            return;
+        CustomFunc[] fs = funcs.toArray(new CustomFunc[0]);
+
+        for(CustomFunc f : fs){
+            f.startRow();
+        }
+
+        for(Species p : particles){
+            long number = p.number();
+            if(number == 0)                                                                                             //Removed species, contributes nothing
+                continue;
+            double weight = p.getWeight(context);
+            boolean polymer = p.isPolymer();
+            for(CustomFunc f : fs){
+                if(polymer || f.includeInitialMolecules){
+                    f.accumulate(p, number, weight);
+                }
+            }
+        }
+
+        for(CustomFunc f : fs){
+            f.finishRow(conversion, biggestParticle);
         }
     }
 
     /**
      * Creates an output file for each binned output function
-     * and a single file containing all the non-binned output functions
+     * and a single file containing all the non-binned output functions, and writes all rows added so far;
+     * from then on every row is appended to these files as soon as it is added,
+     * so that the output up to the last conversion point is available even if the simulation does not finish
      */
-    public void export() throws IOException {
+    public void startExport() throws IOException {
         for(BinnedFunc bf : binnedFuncs) {
-            bf.exportCSV();                                                                                             //For binned functions simply export one per function
+            bf.startExport();                                                                                           //For binned functions simply export one per function
         }
 
         if(!nonBinnedFuncs.isEmpty()) {
-            String contents = "'conversion(%)'" + CSV_DELIMITER;                                                        //Add column headers
-            for (double key : keys) {
-                contents += String.format(Locale.ROOT, "%3.2f%s", key, CSV_DELIMITER);
+            writer = new FileWriter(context, "OTHER", "csv");
+            StringBuilder header = new StringBuilder("'conversion(%)'").append(CSV_DELIMITER);                          //Add column headers
+            for (NonBinnedFunc nbf : nonBinnedFuncs) {
+                header.append(nbf.function).append(CSV_DELIMITER);
             }
-            contents += LINE_END;
+            writer.append(header.append(LINE_END).toString());
 
-            Double data;
-            for (NonBinnedFunc nbf : nonBinnedFuncs) {
-                String row = nbf.function + CSV_DELIMITER;
-                for (double key : keys) {                                                                               //add data per conversion
-                    data = nbf.getData(key);
-                    row += data != null
-                        ? nbf.getData(key) + CSV_DELIMITER
-                        : CSV_DELIMITER;
-                }
-                contents += row + LINE_END;
+            for(int i=0;i<keys.size();i++){
+                exportRow(i);
+            }
+            writer.flush();
+            for(NonBinnedFunc nbf : nonBinnedFuncs){
+                nbf.trim();
             }
-            FileWriter.export("OTHER", "csv", contents);
         }
+        keys.trim();
+        exporting = true;
     }
 
+    private void exportRow() throws IOException {
+        if(exporting && writer != null){
+            exportRow(keys.size()-1);
+            writer.flush();
+        }
+    }
 
-}
+    private void exportRow(int i){
+        double key = keys.key(i);
+        StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "%3.2f%s", key, CSV_DELIMITER));               //Add row header
+        for (NonBinnedFunc nbf : nonBinnedFuncs) {                                                                      //Add data per function
+            Double data = nbf.getData(key);
+            if(data != null)
+                row.append(data);
+            row.append(CSV_DELIMITER);
+        }
+        writer.append(row.append(LINE_END).toString());
+    }
+
+    /**
+     * Writes the rows added so far to <code>checkpoint</code>, with the name of every function
+     */
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        keys.save(checkpoint);
+        checkpoint.putInt(nonBinnedFuncs.size());
+        for(NonBinnedFunc nbf : nonBinnedFuncs){
+            checkpoint.putString(nbf.function);
+            nbf.save(checkpoint);
+        }
+        checkpoint.putInt(binnedFuncs.size());
+        for(BinnedFunc bf : binnedFuncs){
+            checkpoint.putString(bf.function);
+            bf.save(checkpoint);
+        }
+    }
+
+    /**
+     * Replaces the rows by the ones written by <code>save</code>, which must have been written for the same functions.
+     * Must be called before the export starts
+     */
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        keys.restore(checkpoint);
+        if(checkpoint.getInt() != nonBinnedFuncs.size()){
+            throw new IOException("Checkpoint was written for different output functions");
+        }
+        for(NonBinnedFunc nbf : nonBinnedFuncs){
+            checkFunction(checkpoint, nbf);
+            nbf.restore(checkpoint);
+        }
+        if(checkpoint.getInt() != binnedFuncs.size()){
+            throw new IOException("Checkpoint was written for different output functions");
+        }
+        for(BinnedFunc bf : binnedFuncs){
+            checkFunction(checkpoint, bf);
+            bf.restore(checkpoint);
+        }
+    }
+
+    private static void checkFunction(CheckpointReader checkpoint, CustomFunc f) throws IOException {
+        String function = checkpoint.getString();
+        if(!function.equals(f.function)){
+            throw new IOException("Checkpoint was written for output function "+function+" instead of "+f.function);
+        }
+    }
 
+    /**
+     * Finishes the output files, creating them first if the export has not started yet
+     */
+    public void export() throws IOException {
+        if(!exporting)
+            startExport();
 
+        for(BinnedFunc bf : binnedFuncs) {
+            bf.finishExport();
+        }
+        if(writer != null) {
+            writer.finish();
+            writer = null;
+        }
+        exporting = false;
+    }
+}
@@ -0,0 +1,171 @@
+package nl.utwente.simulator.output.dynamicoutput;
+
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.output.FileWriter;
+import org.apache.commons.math3.distribution.TDistribution;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static nl.utwente.simulator.config.Settings.CSV_DELIMITER;
+import static nl.utwente.simulator.config.Settings.LINE_END;
+
+/**
+ * Merges the dynamic output of statistically independent replicas of the same simulation
+ * into the mean, standard deviation and half-width of the confidence interval of the mean per data point.
+ *
+ * Replicas of the same configuration create their data points at the same conversions, as these only depend on the
+ * number of steps. A data point that is missing in a replica (e.g. an empty bin of an average, or a conversion
+ * that was not reached) is left out of the statistics of that data point. The replicas must have kept their history,
+ * see <code>DynamicOutput.keepHistory</code>.
+ */
+public class EnsembleOutput {
+
+    public static final double CONFIDENCE = 0.95;
+
+    public enum Statistic { MEAN, SD, CI }
+
+    private final SimulationContext context;
+    private final List<DynamicOutput> replicas;
+    private final SortedSet<Double> keys = new TreeSet<>();
+
+    public EnsembleOutput(SimulationContext context, List<DynamicOutput> replicas){
+        this.context = context;
+        this.replicas = replicas;
+        for(DynamicOutput replica : replicas){
+            for(int i=0;i<replica.keys.size();i++){
+                keys.add(replica.keys.key(i));
+            }
+        }
+    }
+
+    /**
+     * @return <code>statistic</code> of the non-null <code>values</code>, or null if there are too few values
+     */
+    public static Double statistic(List<Double> values, Statistic statistic){
+        SummaryStatistics summary = new SummaryStatistics();
+        for(Double value : values){
+            if(value != null)
+                summary.addValue(value);
+        }
+        long n = summary.getN();
+        switch(statistic){
+            case MEAN:
+                return n > 0 ? summary.getMean() : null;
+            case SD:
+                return n > 1 ? summary.getStandardDeviation() : null;
+            case CI:                                                                                                    //Student's t-interval, as the number of replicas is typically small
+                if(n < 2)
+                    return null;
+                double t = new TDistribution(n - 1).inverseCumulativeProbability(0.5 + CONFIDENCE / 2);
+                return t * summary.getStandardDeviation() / Math.sqrt(n);
+            default:
+                throw new IllegalArgumentException("Unknown statistic "+statistic);
+        }
+    }
+
+    /**
+     * @return Values of non-binned function <code>f</code> at <code>conversion</code> in every replica
+     */
+    protected List<Double> nonBinnedValues(int f, double conversion){
+        List<Double> values = new ArrayList<>(replicas.size());
+        for(DynamicOutput replica : replicas){
+            values.add(replica.nonBinnedFuncs.get(f).getData(conversion));
+        }
+        return values;
+    }
+
+    /**
+     * @return Values of binned function <code>f</code> in bin <code>bin</code> at <code>conversion</code> in every replica
+     */
+    protected List<Double> binnedValues(int f, int bin, double conversion){
+        List<Double> values = new ArrayList<>(replicas.size());
+        for(DynamicOutput replica : replicas){
+            values.add(replica.binnedFuncs.get(f).getData(conversion, bin));
+        }
+        return values;
+    }
+
+    /**
+     * Creates an output file per statistic for each binned output function
+     * and a single file containing the statistics of all the non-binned output functions
+     */
+    public void export() throws IOException {
+        DynamicOutput first = replicas.get(0);
+
+        for(int f=0;f<first.binnedFuncs.size();f++){
+            BinnedFunc bf = first.binnedFuncs.get(f);
+            for(Statistic statistic : Statistic.values()){
+                StringBuilder contents = new StringBuilder("'conversion(%)\\min weight(Da)'").append(CSV_DELIMITER);    //Add column headers
+                for(long binMinimum : bf.cachedBinMinimums){
+                    contents.append(binMinimum).append(CSV_DELIMITER);
+                }
+                contents.append(LINE_END);
+
+                for(double key : keys){
+                    List<List<Double>> values = new ArrayList<>(bf.maxBins);
+                    boolean data = false;
+                    for(int bin=0;bin<bf.maxBins;bin++){
+                        values.add(binnedValues(f, bin, key));
+                        data |= hasData(values.get(bin));
+                    }
+                    if(!data)                                                                                           //No replica has a data point at this conversion
+                        continue;
+                    contents.append(String.format(Locale.ROOT, "%3.2f%s", key, CSV_DELIMITER));
+                    for(List<Double> binValues : values){
+                        contents.append(format(statistic(binValues, statistic))).append(CSV_DELIMITER);
+                    }
+                    contents.append(LINE_END);
+                }
+                FileWriter.export(context, "ENSEMBLE "+statistic+" "+bf.fileName(), "csv", contents.toString());
+            }
+        }
+
+        if(!first.nonBinnedFuncs.isEmpty()){
+            StringBuilder contents = new StringBuilder("'conversion(%)'").append(CSV_DELIMITER).append("replicas").append(CSV_DELIMITER);
+            for(NonBinnedFunc nbf : first.nonBinnedFuncs){
+                for(Statistic statistic : Statistic.values()){
+                    contents.append(nbf.function).append(' ').append(statistic).append(CSV_DELIMITER);
+                }
+            }
+            contents.append(LINE_END);
+
+            for(double key : keys){
+                List<List<Double>> values = new ArrayList<>(first.nonBinnedFuncs.size());
+                boolean data = false;
+                for(int f=0;f<first.nonBinnedFuncs.size();f++){
+                    values.add(nonBinnedValues(f, key));
+                    data |= hasData(values.get(f));
+                }
+                if(!data)                                                                                               //No replica has a data point at this conversion
+                    continue;
+                contents.append(String.format(Locale.ROOT, "%3.2f%s", key, CSV_DELIMITER));
+                contents.append(values.get(0).stream().filter(v -> v != null).count()).append(CSV_DELIMITER);
+                for(List<Double> functionValues : values){
+                    for(Statistic statistic : Statistic.values()){
+                        contents.append(format(statistic(functionValues, statistic))).append(CSV_DELIMITER);
+                    }
+                }
+                contents.append(LINE_END);
+            }
+            FileWriter.export(context, "ENSEMBLE OTHER", "csv", contents.toString());
+        }
+    }
+
+    private static boolean hasData(List<Double> values){
+        for(Double value : values){
+            if(value != null)
+                return true;
+        }
+        return false;
+    }
+
+    private static String format(Double value){
+        return value != null ? ""+value : "";
+    }
+}
@@ -0,0 +1,17 @@
+package nl.utwente.simulator.output.dynamicoutput;
+
+import nl.utwente.simulator.simulator.Species;
+
+import java.io.IOException;
+
+/**
+ * Binned function of the weight of the particles only, which can therefore be read off the <code>WeightHistogram</code>
+ * maintained by the simulator instead of iterating over all species
+ */
+public interface HistogramFunc {
+
+    /**
+     * Adds a row of output
+     */
+    void addRow(double conversion, WeightHistogram histogram, Species biggestParticle) throws IOException;
+}
@@ -0,0 +1,17 @@
+package nl.utwente.simulator.output.dynamicoutput;
+
+import nl.utwente.simulator.simulator.Species;
+
+/**
+ * Non-binned function of the moments of the weight distribution only, which can therefore be calculated in constant
+ * time from the <code>WeightMoments</code> maintained by the simulator instead of iterating over all species
+ */
+public interface MomentFunc {
+
+    /**
+     * Adds a row of output
+     * @param polymers Moments of all polymer species
+     * @param initialMolecules Moments of the half-initiators, monomers and crosslinkers
+     */
+    void addRow(double conversion, WeightMoments polymers, WeightMoments initialMolecules, Species biggestParticle);
+}
@@ -1,27 +1,50 @@
 package nl.utwente.simulator.output.dynamicoutput;
 
 import nl.utwente.simulator.config.Expression;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
 
-import java.util.Map;
-import java.util.TreeMap;
+import java.io.IOException;
 
 /**
- * This is a custom function that has only a single data point for all species per conversion point
+ * This is a custom function that has only a single data point for all species per conversion point.
+ * Only the last data point is kept, unless the ensemble statistics or checkpoints need the earlier ones.
  */
 public abstract class NonBinnedFunc extends CustomFunc{
 
-    private final Map<Double, Double> dataTable;
+    private final Rows dataTable;
 
-    protected NonBinnedFunc(String f, Expression e,boolean includeInitialMolecules, boolean excludeBiggestMolecule) {
-        super(f,e,includeInitialMolecules, excludeBiggestMolecule);
-        dataTable = new TreeMap<>();
+    protected NonBinnedFunc(SimulationContext context, String f, Expression e,boolean includeInitialMolecules, boolean excludeBiggestMolecule) {
+        super(context, f,e,includeInitialMolecules, excludeBiggestMolecule);
+        dataTable = new Rows(1);
     }
 
     protected void addData(double conversion, double data){
-        dataTable.put(conversion, data);
+        dataTable.add(conversion, data);
     }
 
     protected Double getData(double conversion){
-        return dataTable.get(conversion);
+        int index = dataTable.indexOf(conversion);
+        return index < 0 ? null : dataTable.get(index, 0);
+    }
+
+    void keepHistory(){
+        dataTable.keepHistory();
+    }
+
+    /**
+     * Drops every data point but the last one, unless the history is kept
+     */
+    void trim(){
+        dataTable.trim();
+    }
+
+    void save(CheckpointWriter checkpoint) throws IOException {
+        dataTable.save(checkpoint);
+    }
+
+    void restore(CheckpointReader checkpoint) throws IOException {
+        dataTable.restore(checkpoint);
     }
 }
@@ -0,0 +1,127 @@
+package nl.utwente.simulator.output.dynamicoutput;
+
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Rows of dynamic output, each consisting of a conversion and a value per column, in order of increasing conversion.
+ *
+ * Once a row has been written to the output file only the ensemble statistics and checkpoints read it again, so
+ * only the last row is kept unless <code>keepHistory</code> has been called. The history is stored column by column
+ * in primitive arrays, so that it takes 8 bytes per value and a handful of objects per column, however many rows it has.
+ */
+final class Rows {
+
+    private double[] keys;                                                                                              //Conversion of each row
+    private final double[][] columns;
+    private int size;
+    private boolean history;
+
+    Rows(int columns){
+        this.keys = new double[1];
+        this.columns = new double[columns][1];
+    }
+
+    /**
+     * Keeps every row from now on instead of only the last one
+     */
+    void keepHistory(){
+        history = true;
+    }
+
+    boolean keepsHistory(){
+        return history;
+    }
+
+    int size(){
+        return size;
+    }
+
+    double key(int row){
+        return keys[row];
+    }
+
+    double get(int row, int column){
+        return columns[column][row];
+    }
+
+    /**
+     * @return Row with conversion <code>key</code>, or a negative number if there is none
+     */
+    int indexOf(double key){
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    /**
+     * Adds a row with a value per column, which replaces the last row if that has the same conversion
+     */
+    void add(double key, double... row){
+        assert(row.length == columns.length);
+        if(!history){
+            size = 0;
+        }else if(size > 0 && keys[size-1] == key){
+            size--;
+        }
+        append(key, row);
+    }
+
+    /**
+     * Adds a row after the last one, whether the history is kept or not
+     */
+    private void append(double key, double... row){
+        if(size == keys.length){                                                                                        //Double the capacity, like an ArrayList
+            keys = Arrays.copyOf(keys, 2 * size);
+            for(int c=0;c<columns.length;c++){
+                columns[c] = Arrays.copyOf(columns[c], 2 * size);
+            }
+        }
+        keys[size] = key;
+        for(int c=0;c<columns.length;c++){
+            columns[c][size] = row[c];
+        }
+        size++;
+    }
+
+    /**
+     * Drops every row but the last one, unless the history is kept
+     */
+    void trim(){
+        if(history || size <= 1)
+            return;
+        keys[0] = keys[size-1];
+        for(double[] column : columns){
+            column[0] = column[size-1];
+        }
+        size = 1;
+    }
+
+    void save(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putDoubles(keys, size);
+        for(double[] column : columns){
+            checkpoint.putDoubles(column, size);
+        }
+    }
+
+    /**
+     * Replaces the rows by the ones written by <code>save</code>, all of which are kept until they are trimmed
+     */
+    void restore(CheckpointReader checkpoint) throws IOException {
+        keys = checkpoint.getDoubles();
+        size = keys.length;
+        for(int c=0;c<columns.length;c++){
+            columns[c] = checkpoint.getDoubles();
+            if(columns[c].length != size){
+                throw new IOException("Checkpoint has "+columns[c].length+" values in a column of "+size+" rows");
+            }
+        }
+        if(size == 0){                                                                                                  //Keep room for a row
+            keys = new double[1];
+            for(int c=0;c<columns.length;c++){
+                columns[c] = new double[1];
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package nl.utwente.simulator.output.dynamicoutput;
+
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.simulator.Species;
+import nl.utwente.simulator.simulator.SpeciesStore;
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+
+import java.io.IOException;
+
+/**
+ * Weight distribution of all species, kept up to date by the simulator whenever the number of particles of a species
+ * changes. Holds the <code>WeightMoments</code> of the polymers and of the initial molecules, both in total and per
+ * bin of <code>BinnedFunc</code>, so that the molecular weight averages and distributions can be read off at every
+ * conversion point instead of being recalculated from all species.
+ *
+ * The bin of a species is looked up once, when the species is first added, and cached in the species (or its slot).
+ */
+public class WeightHistogram {
+
+    private final SimulationContext context;
+    private final long[] binMinimums;
+
+    private final WeightMoments polymers = new WeightMoments();
+    private final WeightMoments initialMolecules = new WeightMoments();
+    private final WeightMoments[] polymerBins;
+    private final WeightMoments[] initialMoleculeBins;
+
+    public WeightHistogram(SimulationContext context){
+        this.context = context;
+        this.binMinimums = BinnedFunc.binMinimums(context);
+        this.polymerBins = new WeightMoments[binMinimums.length];
+        this.initialMoleculeBins = new WeightMoments[binMinimums.length];
+        for(int i=0;i<binMinimums.length;i++){
+            polymerBins[i] = new WeightMoments();
+            initialMoleculeBins[i] = new WeightMoments();
+        }
+    }
+
+    /**
+     * Adds <code>delta</code> particles of species <code>p</code>, or removes them if <code>delta</code> is negative
+     */
+    public void add(Species p, long delta){
+        double weight = p.getWeight(context);
+        int bin = binNumber(p);
+        if(p.isPolymer()){
+            polymers.add(weight, delta);
+            polymerBins[bin].add(weight, delta);
+        }else{
+            initialMolecules.add(weight, delta);
+            initialMoleculeBins[bin].add(weight, delta);
+        }
+    }
+
+    /**
+     * Adds <code>delta</code> particles of the species in slot <code>index</code> of <code>species</code>,
+     * or removes them if <code>delta</code> is negative
+     */
+    public void add(SpeciesStore<?> species, int index, long delta){
+        double weight = species.getWeight(index);
+        int bin = species.getWeightBin(index);
+        if(bin < 0){
+            bin = BinnedFunc.getBinNumber(binMinimums, (long) weight);
+            species.setWeightBin(index, bin);
+        }
+        if(species.isPolymer(index)){
+            polymers.add(weight, delta);
+            polymerBins[bin].add(weight, delta);
+        }else{
+            initialMolecules.add(weight, delta);
+            initialMoleculeBins[bin].add(weight, delta);
+        }
+    }
+
+    /**
+     * @return Bin of species <code>p</code>
+     */
+    public int binNumber(Species p){
+        return BinnedFunc.getBinNumber(binMinimums, p, context);
+    }
+
+    public int bins(){
+        return binMinimums.length;
+    }
+
+    /**
+     * @return Moments of all polymer species
+     */
+    public WeightMoments polymers(){
+        return polymers;
+    }
+
+    /**
+     * @return Moments of the half-initiators, monomers and crosslinkers
+     */
+    public WeightMoments initialMolecules(){
+        return initialMolecules;
+    }
+
+    /**
+     * @return Σn·w^k of the polymers in <code>bin</code>, including the initial molecules if requested
+     */
+    public double moment(int bin, int k, boolean includeInitialMolecules){
+        double moment = polymerBins[bin].moment(k);
+        if(includeInitialMolecules){
+            moment += initialMoleculeBins[bin].moment(k);
+        }
+        return moment;
+    }
+
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putInt(bins());
+        polymers.save(checkpoint);
+        initialMolecules.save(checkpoint);
+        for(int i=0;i<bins();i++){
+            polymerBins[i].save(checkpoint);
+            initialMoleculeBins[i].save(checkpoint);
+        }
+    }
+
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        if(checkpoint.getInt() != bins()){
+            throw new IOException("Checkpoint contains a different number of weight bins");
+        }
+        polymers.restore(checkpoint);
+        initialMolecules.restore(checkpoint);
+        for(int i=0;i<bins();i++){
+            polymerBins[i].restore(checkpoint);
+            initialMoleculeBins[i].restore(checkpoint);
+        }
+    }
+}
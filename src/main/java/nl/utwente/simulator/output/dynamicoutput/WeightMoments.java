@@ -0,0 +1,132 @@
+package nl.utwente.simulator.output.dynamicoutput;
+
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.simulator.Species;
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+
+import java.io.IOException;
+
+/**
+ * Moments Σn·w^k (k = 0..3) of the weight distribution of a set of species, where n is the number of particles of
+ * a species and w their weight.
+ *
+ * The simulator updates these moments whenever the number of particles of a species changes, so that averages of the
+ * weight can be calculated without iterating over all species. The same terms are added and removed many times
+ * while the sums are dominated by the biggest particle, so every sum is kept as an unevaluated sum of two doubles
+ * (double-double arithmetic); this gives about 106 bits of precision and keeps the small remainder of the
+ * distribution accurate when the biggest particle is excluded.
+ *
+ * Dekker, A floating-point technique for extending the available precision (1971)
+ */
+public class WeightMoments {
+
+    public static final int ORDER = 3;
+
+    private static final double SPLITTER = 134217729.0;                                                                 //2^27 + 1, used to split a double into two halves of 26 bits
+
+    private long number;                                                                                                //Σn
+    private final double[] high = new double[ORDER+1];                                                                  //Σn·w^k = high[k] + low[k]
+    private final double[] low  = new double[ORDER+1];
+
+    public WeightMoments(){}
+
+    public WeightMoments(WeightMoments other){
+        this.number = other.number;
+        System.arraycopy(other.high, 0, high, 0, high.length);
+        System.arraycopy(other.low, 0, low, 0, low.length);
+    }
+
+    /**
+     * Adds <code>delta</code> particles of weight <code>weight</code>, or removes them if <code>delta</code> is negative
+     */
+    public void add(double weight, long delta){
+        number += delta;
+        double power = 1;
+        for(int k=1;k<=ORDER;k++){
+            power *= weight;                                                                                            //Rounded the same way every time the species is added or removed
+            addProduct(k, delta, power);
+        }
+    }
+
+    public void add(WeightMoments other){
+        number += other.number;
+        for(int k=1;k<=ORDER;k++){
+            addTerm(k, other.high[k]);
+            addTerm(k, other.low[k]);
+        }
+    }
+
+    /**
+     * @return Moments of <code>polymers</code>, including the <code>initialMolecules</code> and excluding the <code>biggestParticle</code> if requested
+     */
+    public static WeightMoments select(WeightMoments polymers, WeightMoments initialMolecules, boolean includeInitialMolecules,
+                                       Species biggestParticle, boolean excludeBiggestMolecule, SimulationContext context){
+        WeightMoments moments = new WeightMoments(polymers);
+        if(includeInitialMolecules){
+            moments.add(initialMolecules);
+        }
+        if(excludeBiggestMolecule){
+            moments.add(biggestParticle.getWeight(context), -1);
+        }
+        return moments;
+    }
+
+    /**
+     * @return Σn
+     */
+    public long number(){
+        return number;
+    }
+
+    /**
+     * @return Σn·w^k
+     */
+    public double moment(int k){
+        return k == 0 ? number : high[k] + low[k];
+    }
+
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putLong(number);
+        checkpoint.putDoubles(high);
+        checkpoint.putDoubles(low);
+    }
+
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        number = checkpoint.getLong();
+        double[] high = checkpoint.getDoubles();
+        double[] low = checkpoint.getDoubles();
+        if(high.length != this.high.length || low.length != this.low.length){
+            throw new IOException("Checkpoint contains moments of a different order");
+        }
+        System.arraycopy(high, 0, this.high, 0, high.length);
+        System.arraycopy(low, 0, this.low, 0, low.length);
+    }
+
+    private void addProduct(int k, long delta, double power){
+        if(delta == 1 || delta == -1){
+            addTerm(k, delta * power);
+            return;
+        }
+        double a = delta;                                                                                               //Exact as long as |delta| < 2^53
+        double p = a * power;                                                                                           //Dekker's two-product: a·power = p + e exactly
+        double t = SPLITTER * a;
+        double aHigh = t - (t - a);
+        double aLow = a - aHigh;
+        t = SPLITTER * power;
+        double bHigh = t - (t - power);
+        double bLow = power - bHigh;
+        double e = ((aHigh * bHigh - p) + aHigh * bLow + aLow * bHigh) + aLow * bLow;
+        addTerm(k, p);
+        addTerm(k, e);
+    }
+
+    private void addTerm(int k, double term){
+        double s = high[k] + term;                                                                                      //Knuth's two-sum: high + term = s + e exactly
+        double v = s - high[k];
+        double e = (high[k] - (s - v)) + (term - v);
+        double l = low[k] + e;
+        high[k] = s + l;                                                                                                //Renormalize, so |low| stays below half an ulp of high
+        low[k] = l - (high[k] - s);
+    }
+}
@@ -1,61 +1,57 @@
 package nl.utwente.simulator.output.dynamicoutput.functions;
 
 import nl.utwente.simulator.config.Expression;
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.output.dynamicoutput.DynamicOutput;
 import nl.utwente.simulator.output.dynamicoutput.NonBinnedFunc;
 import nl.utwente.simulator.simulator.Species;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
-import java.util.List;
-
 public class AverageFunc extends NonBinnedFunc {
 
     public final DynamicOutput.AverageType type;
 
-    public AverageFunc(String f, Expression e, boolean includeInitialMolecules, boolean excludeBiggestMolecule, DynamicOutput.AverageType type) {
-        super(f,e, includeInitialMolecules, excludeBiggestMolecule);
+    private long count;
+    private double datapoint;
+
+    public AverageFunc(SimulationContext context, String f, Expression e, boolean includeInitialMolecules, boolean excludeBiggestMolecule, DynamicOutput.AverageType type) {
+        super(context, f,e, includeInitialMolecules, excludeBiggestMolecule);
         this.type = type;
     }
 
     @Override
-    protected void addRow(double conversion, List<? extends Species> particles, Species biggestParticle) {
-        long count = 0;
-        double datapoint = 0;
-
-        long num;
-        double val;
-        double weight;
-
-        for(Species p : particles){
+    protected void startRow() {
+        count = 0;
+        datapoint = 0;
+    }
 
-            if(super.includeInitialMolecules || (p.isPolymer())){
-                num = p.number();
-                val = expression.evaluate(p);
+    @Override
+    protected void accumulate(Species p, long num, double weight) {
+        double val = expression.evaluate(p);
 
-                switch(type){
-                    case NUMBER:
-                        count += num;
-                        datapoint += num * val;
-                        break;
-                    case WEIGHT:
-                        weight = p.getWeight();
-                        count += num * weight;
-                        datapoint += num * weight * val;
-                        break;
-                    case Z:
-                        weight = p.getWeight();
-                        count += num * weight * weight;
-                        datapoint += num * weight * weight * val;
-                        break;
-                    default:
-                        throw new NotImplementedException();
-                }
-            }
+        switch(type){
+            case NUMBER:
+                count += num;
+                datapoint += num * val;
+                break;
+            case WEIGHT:
+                count += num * weight;
+                datapoint += num * weight * val;
+                break;
+            case Z:
+                count += num * weight * weight;
+                datapoint += num * weight * weight * val;
+                break;
+            default:
+                throw new NotImplementedException();
         }
+    }
 
+    @Override
+    protected void finishRow(double conversion, Species biggestParticle) {
         if(super.excludeBiggestMolecule){
-            weight = biggestParticle.getWeight();
-            val = expression.evaluate(biggestParticle);
+            double weight = biggestParticle.getWeight(context);
+            double val = expression.evaluate(biggestParticle);
 
             switch(type) {
                 case NUMBER:
@@ -75,7 +71,7 @@ public class AverageFunc extends NonBinnedFunc {
             }
         }
 
-        if(count >= 1) {                                                                                                 //only data points
+        if(count >= 1) {                                                                                                //only data points
             addData(conversion, datapoint / count);
         }
     }
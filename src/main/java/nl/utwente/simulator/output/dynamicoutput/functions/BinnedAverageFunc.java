@@ -1,12 +1,13 @@
 package nl.utwente.simulator.output.dynamicoutput.functions;
 
 import nl.utwente.simulator.config.Expression;
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.output.dynamicoutput.BinnedFunc;
 import nl.utwente.simulator.output.dynamicoutput.DynamicOutput;
 import nl.utwente.simulator.simulator.Species;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
-import java.util.List;
+import java.io.IOException;
 
 
 /**
@@ -17,77 +18,76 @@ public class BinnedAverageFunc extends BinnedFunc {
 
     public final DynamicOutput.AverageType type;
 
-    public BinnedAverageFunc(String f, Expression e, boolean includeInitialMolecules, boolean excludeBiggestMolecule, DynamicOutput.AverageType type) {
-        super(f,e, includeInitialMolecules, excludeBiggestMolecule);
+    private double[] row;
+    private double[] countsRow;
+
+    public BinnedAverageFunc(SimulationContext context, String f, Expression e, boolean includeInitialMolecules, boolean excludeBiggestMolecule, DynamicOutput.AverageType type) {
+        super(context, f,e, includeInitialMolecules, excludeBiggestMolecule);
         this.type = type;
     }
 
     @Override
-    protected void addRow(double conversion, List<? extends Species> particles, Species biggestParticle) {
-        keys.add(conversion);
-        double[] row       = new double[MAX_BINS];
-        double[] countsRow = new double[MAX_BINS];
-        Double[] data      = new Double[MAX_BINS];
-
-        double val;
-        double weight;
-        long num;
-
-        for(Species p : particles){
-            if(super.includeInitialMolecules || (p.isPolymer())) {
-
-                weight = p.getWeight();
-                num = p.number();
-                val = expression.evaluate(p);
-
-                switch(type) {
-                    case NUMBER:
-                        row[getBinNumber((long) weight)] += num * val;
-                        countsRow[getBinNumber((long) weight)] += num;
-                        break;
-                    case WEIGHT:
-                        row[getBinNumber((long) weight)] += num * weight * val;
-                        countsRow[getBinNumber((long) weight)] += num * weight;
-                        break;
-                    case Z:
-                        row[getBinNumber((long) weight)] += num * weight * weight * val;
-                        countsRow[getBinNumber((long) weight)] += num * weight * weight;
-                        break;
-                    default:
-                        throw new NotImplementedException();
-                }
-            }
+    protected void startRow() {
+        row       = new double[maxBins];
+        countsRow = new double[maxBins];
+    }
+
+    @Override
+    protected void accumulate(Species p, long num, double weight) {
+        int bin = getBinNumber(p);
+        double val = expression.evaluate(p);
+
+        switch(type) {
+            case NUMBER:
+                row[bin] += num * val;
+                countsRow[bin] += num;
+                break;
+            case WEIGHT:
+                row[bin] += num * weight * val;
+                countsRow[bin] += num * weight;
+                break;
+            case Z:
+                row[bin] += num * weight * weight * val;
+                countsRow[bin] += num * weight * weight;
+                break;
+            default:
+                throw new NotImplementedException();
         }
+    }
 
+    @Override
+    protected void finishRow(double conversion, Species biggestParticle) throws IOException {
 
         if(super.excludeBiggestMolecule){
 
-            weight = biggestParticle.getWeight();
-            val = expression.evaluate(biggestParticle);
+            double weight = biggestParticle.getWeight(context);
+            double val = expression.evaluate(biggestParticle);
+            int bin = getBinNumber(biggestParticle);
 
             switch(type) {
                 case NUMBER:
-                    row[getBinNumber((long) weight)] -= val;
-                    countsRow[getBinNumber((long) weight)] --;
+                    row[bin] -= val;
+                    countsRow[bin] --;
                     break;
                 case WEIGHT:
-                    row[getBinNumber((long) weight)] -= weight * val;
-                    countsRow[getBinNumber((long) weight)] -= weight;
+                    row[bin] -= weight * val;
+                    countsRow[bin] -= weight;
                     break;
                 case Z:
-                    row[getBinNumber((long) weight)] -= weight * weight * val;
-                    countsRow[getBinNumber((long) weight)] -= weight * weight;
+                    row[bin] -= weight * weight * val;
+                    countsRow[bin] -= weight * weight;
                     break;
                 default:
                     throw new NotImplementedException();
             }
         }
 
-        for(int i=0;i<data.length;i++){
-            if(countsRow[i] >=1)
-                data[i] = row[i]/countsRow[i];
+        for(int i=0;i<maxBins;i++){
+            row[i] = countsRow[i] >=1
+                ? row[i]/countsRow[i]
+                : Double.NaN;
         }
 
-        dataTable.put(conversion, data);
+        addData(conversion, row);
     }
 }
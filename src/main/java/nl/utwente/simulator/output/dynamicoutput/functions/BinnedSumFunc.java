@@ -1,36 +1,36 @@
 package nl.utwente.simulator.output.dynamicoutput.functions;
 
 import nl.utwente.simulator.config.Expression;
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.output.dynamicoutput.BinnedFunc;
 import nl.utwente.simulator.simulator.Species;
 
-import java.util.List;
+import java.io.IOException;
 
 public class BinnedSumFunc extends BinnedFunc {
 
-    public BinnedSumFunc(String f, Expression e, boolean includeInitialMolecules, boolean excludeBiggestMolecule) {
-        super(f,e, includeInitialMolecules, excludeBiggestMolecule);
+    private double[] row;
+
+    public BinnedSumFunc(SimulationContext context, String f, Expression e, boolean includeInitialMolecules, boolean excludeBiggestMolecule) {
+        super(context, f,e, includeInitialMolecules, excludeBiggestMolecule);
     }
 
     @Override
-    protected void addRow(double conversion, List<? extends Species> particles, Species biggestParticle) {
-        keys.add(conversion);
-        double[] row = new double[MAX_BINS];
-        Double[] data = new Double[MAX_BINS];
-
-        for(Species p : particles){
-            if(super.includeInitialMolecules || (p.isPolymer())) {
-                row[getBinNumber((long) p.getWeight())] += p.number() * expression.evaluate(p);
-            }
-        }
+    protected void startRow() {
+        row = new double[maxBins];
+    }
+
+    @Override
+    protected void accumulate(Species p, long number, double weight) {
+        row[getBinNumber(p)] += number * expression.evaluate(p);
+    }
 
+    @Override
+    protected void finishRow(double conversion, Species biggestParticle) throws IOException {
         if(super.excludeBiggestMolecule){
-            row[getBinNumber((long) biggestParticle.getWeight())] -= expression.evaluate(biggestParticle);
+            row[getBinNumber(biggestParticle)] -= expression.evaluate(biggestParticle);
         }
 
-        for(int i=0;i<MAX_BINS;i++){                                                                                    //Alternatively we could check if a bin has been initialized
-            data[i] = row[i];                                                                                           //and set value to zero if not
-        }
-        dataTable.put(conversion, data);
+        addData(conversion, row);                                                                                       //Bins without particles sum to zero
     }
 }
@@ -1,14 +1,20 @@
 package nl.utwente.simulator.output.dynamicoutput.functions;
 
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.output.dynamicoutput.MomentFunc;
 import nl.utwente.simulator.output.dynamicoutput.NonBinnedFunc;
+import nl.utwente.simulator.output.dynamicoutput.WeightMoments;
 import nl.utwente.simulator.simulator.Species;
 
-import java.util.List;
+public class PDIFunc extends NonBinnedFunc implements MomentFunc {
 
-public class PDIFunc extends NonBinnedFunc{
+    private double number;
+    private double numberTimesMass;
+    private double numberTimesMassSquared;
 
-    public PDIFunc(boolean includeInitialMolecules, boolean excludeBiggestMolecule) {
+    public PDIFunc(SimulationContext context, boolean includeInitialMolecules, boolean excludeBiggestMolecule) {
         super(
+                context,
                 includeInitialMolecules
                         ? excludeBiggestMolecule
                             ? "EXC(INC(PDI))"
@@ -21,30 +27,40 @@ public class PDIFunc extends NonBinnedFunc{
     }
 
     @Override
-    protected void addRow(double conversion, List<? extends Species> particles, Species biggestParticle) {
-        double number = 0;
-        double numberTimesMass = 0;
-        double numberTimesMassSquared = 0;
-
-        for(Species p : particles){
-            if(super.includeInitialMolecules || (p.isPolymer())) {
-                double mass = p.getWeight();
-                double nr = p.number();
-
-                number += nr;
-                numberTimesMass += nr * mass;
-                numberTimesMassSquared += nr * mass * mass;
-            }
-        }
+    protected void startRow() {
+        number = 0;
+        numberTimesMass = 0;
+        numberTimesMassSquared = 0;
+    }
+
+    @Override
+    protected void accumulate(Species p, long nr, double mass) {
+        number += nr;
+        numberTimesMass += nr * mass;
+        numberTimesMassSquared += nr * mass * mass;
+    }
 
+    @Override
+    protected void finishRow(double conversion, Species biggestParticle) {
         if(super.excludeBiggestMolecule){
-            double w = biggestParticle.getWeight();
+            double w = biggestParticle.getWeight(context);
             number--;
             numberTimesMass -= w;
             numberTimesMassSquared -= w*w;
         }
 
         if(number != 0)
-            addData(conversion,(numberTimesMassSquared/numberTimesMass)/ (numberTimesMass/number));                     //Mn/Mw
+            addData(conversion,(numberTimesMassSquared/numberTimesMass)/ (numberTimesMass/number));                     //Mw/Mn
+    }
+
+    @Override
+    public void addRow(double conversion, WeightMoments polymers, WeightMoments initialMolecules, Species biggestParticle) {
+        WeightMoments moments = WeightMoments.select(polymers, initialMolecules, super.includeInitialMolecules, biggestParticle, super.excludeBiggestMolecule, context);
+        double number = moments.moment(0);
+        double numberTimesMass = moments.moment(1);
+        double numberTimesMassSquared = moments.moment(2);
+
+        if(number != 0)
+            addData(conversion,(numberTimesMassSquared/numberTimesMass)/ (numberTimesMass/number));                     //Mw/Mn
     }
 }
@@ -1,28 +1,30 @@
 package nl.utwente.simulator.output.dynamicoutput.functions;
 
 import nl.utwente.simulator.config.Expression;
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.output.dynamicoutput.NonBinnedFunc;
 import nl.utwente.simulator.simulator.Species;
 
-import java.util.List;
-
 public class SumFunc extends NonBinnedFunc {
 
+    private double datapoint;
 
-    public SumFunc(String f, Expression e, boolean includeInitialMolecules, boolean excludeBiggestMolecule) {
-        super(f,e,includeInitialMolecules, excludeBiggestMolecule);
+    public SumFunc(SimulationContext context, String f, Expression e, boolean includeInitialMolecules, boolean excludeBiggestMolecule) {
+        super(context, f,e,includeInitialMolecules, excludeBiggestMolecule);
     }
 
     @Override
-    protected void addRow(double conversion, List<? extends Species> particles, Species biggestParticle) {
+    protected void startRow() {
+        datapoint = 0;
+    }
 
-        Double datapoint = 0d;
-        for(Species p : particles){
-            if(super.includeInitialMolecules || (p.isPolymer())) {
-                datapoint += p.number() * (long) expression.evaluate(p);
-            }
-        }
+    @Override
+    protected void accumulate(Species p, long number, double weight) {
+        datapoint += number * (long) expression.evaluate(p);
+    }
 
+    @Override
+    protected void finishRow(double conversion, Species biggestParticle) {
         if(super.excludeBiggestMolecule){
             datapoint-= (long) expression.evaluate(biggestParticle);
         }
@@ -0,0 +1,46 @@
+package nl.utwente.simulator.output.dynamicoutput.functions;
+
+import nl.utwente.simulator.config.Expression;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.output.dynamicoutput.DynamicOutput;
+import nl.utwente.simulator.output.dynamicoutput.MomentFunc;
+import nl.utwente.simulator.output.dynamicoutput.WeightMoments;
+import nl.utwente.simulator.simulator.Species;
+
+/**
+ * Number (MN), weight (MW) or z-average (MZ) molecular weight, an <code>AverageFunc</code> of w
+ * that can be calculated from the moments of the weight distribution
+ */
+public class WeightAverageFunc extends AverageFunc implements MomentFunc {
+
+    /**
+     * @param e Expression for w, used when no moments are available
+     */
+    public WeightAverageFunc(SimulationContext context, String f, Expression e, boolean includeInitialMolecules, boolean excludeBiggestMolecule, DynamicOutput.AverageType type) {
+        super(context, f, e, includeInitialMolecules, excludeBiggestMolecule, type);
+    }
+
+    @Override
+    public void addRow(double conversion, WeightMoments polymers, WeightMoments initialMolecules, Species biggestParticle) {
+        WeightMoments moments = WeightMoments.select(polymers, initialMolecules, super.includeInitialMolecules, biggestParticle, super.excludeBiggestMolecule, context);
+        int k;
+        switch(type){
+            case NUMBER:
+                k = 0;
+                break;
+            case WEIGHT:
+                k = 1;
+                break;
+            case Z:
+                k = 2;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown average type "+type);
+        }
+
+        double count = moments.moment(k);
+        if(count >= 1) {                                                                                                //only data points
+            addData(conversion, moments.moment(k+1) / count);
+        }
+    }
+}
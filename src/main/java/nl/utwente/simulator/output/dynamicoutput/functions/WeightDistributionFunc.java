@@ -0,0 +1,41 @@
+package nl.utwente.simulator.output.dynamicoutput.functions;
+
+import nl.utwente.simulator.config.Expression;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.output.dynamicoutput.HistogramFunc;
+import nl.utwente.simulator.output.dynamicoutput.WeightHistogram;
+import nl.utwente.simulator.simulator.Species;
+
+import java.io.IOException;
+
+/**
+ * Number (MND), weight (MWD) or z (MZD) distribution of the molecular weight, a <code>BinnedSumFunc</code> of w^k
+ * that can be read off the <code>WeightHistogram</code>
+ */
+public class WeightDistributionFunc extends BinnedSumFunc implements HistogramFunc {
+
+    public final int order;                                                                                             //k
+
+    /**
+     * @param e Expression for w^<code>order</code>, used when no histogram is available
+     */
+    public WeightDistributionFunc(SimulationContext context, String f, Expression e, boolean includeInitialMolecules, boolean excludeBiggestMolecule, int order) {
+        super(context, f, e, includeInitialMolecules, excludeBiggestMolecule);
+        this.order = order;
+    }
+
+    @Override
+    public void addRow(double conversion, WeightHistogram histogram, Species biggestParticle) throws IOException {
+        double[] data = new double[maxBins];
+
+        for(int i=0;i<maxBins;i++){
+            data[i] = histogram.moment(i, order, super.includeInitialMolecules);
+        }
+
+        if(super.excludeBiggestMolecule){
+            int bin = histogram.binNumber(biggestParticle);
+            data[bin] -= Math.pow(biggestParticle.getWeight(context), order);
+        }
+        addData(conversion, data);
+    }
+}
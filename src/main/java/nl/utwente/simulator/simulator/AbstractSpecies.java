@@ -3,4 +3,10 @@ package nl.utwente.simulator.simulator;
 /**
  * This class will function as a description of a certain group of species
  */
-public interface AbstractSpecies {}
+public interface AbstractSpecies {
+
+    /**
+     * @return Non-negative numbers describing the group, equal for equal groups
+     */
+    long[] key();
+}
@@ -12,19 +12,64 @@ public interface AbstractSpeciesFactory<PARTICLEGROUP> {
     PARTICLEGROUP abstractSpeciesForMonomer();
     PARTICLEGROUP abstractSpeciesForCrosslinker();
 
+    /**
+     * @param i Initial number of half-initiators
+     * @param m Initial number of monomers
+     * @param c Initial number of crosslinkers
+     * @return Upper bound of each number in the key of any group that can be formed from these molecules
+     */
+    long[] keyMaxima(long i, long m, long c);
+
+    /**
+     * @return Number of values in the key of a group
+     */
+    int keyLength();
+
+    /**
+     * @return Group with a copy of <code>key</code> as key
+     */
+    PARTICLEGROUP abstractSpecies(long[] key);
+
+    /**
+     * Calculates the key of the group for the combined particle without creating the group,
+     * as the group usually already exists
+     * @param radical ParticleGroup in which the radical is located
+     * @param pos Position of active radical in polymer
+     * @param vinyl ParticleGroup in which the double bond is located
+     * @param key Buffer of length <code>keyLength()</code> in which the key is stored
+     */
+    void keyAfterInterMolecularReaction(PARTICLEGROUP radical, RadicalPosition pos, PARTICLEGROUP vinyl, long[] key) throws RejectedReaction;
+
+    /**
+     * Calculates the key of the group for the new particle without creating the group,
+     * as the group usually already exists
+     * @param group ParticleGroup in which intramolecular propagation occurs
+     * @param pos Position of active radical in polymer
+     * @param key Buffer of length <code>keyLength()</code> in which the key is stored
+     */
+    void keyAfterIntraMolecularReaction(PARTICLEGROUP group, RadicalPosition pos, long[] key) throws RejectedReaction;
+
     /**
      * @param radical ParticleGroup in which the radical is located
      * @param pos Position of active radical in polymer
      * @param vinyl ParticleGroup in which the double bond is located
      * @return Group for the combined particle, can be used to check whether combined particle group already exists
      */
-    PARTICLEGROUP abstractSpeciesAfterInterMolecularReaction(PARTICLEGROUP radical, RadicalPosition pos, PARTICLEGROUP vinyl) throws RejectedReaction;
+    default PARTICLEGROUP abstractSpeciesAfterInterMolecularReaction(PARTICLEGROUP radical, RadicalPosition pos, PARTICLEGROUP vinyl) throws RejectedReaction {
+        long[] key = new long[keyLength()];
+        keyAfterInterMolecularReaction(radical, pos, vinyl, key);
+        return abstractSpecies(key);
+    }
 
     /**
      * @param group ParticleGroup in which intramolecular propagation occurs
      * @param pos Position of active radical in polymer
      * @return Group for the new particle, can be used to check whether combined particle group already exists
      */
-    PARTICLEGROUP abstractSpeciesAfterIntraMolecularReaction(PARTICLEGROUP group, RadicalPosition pos) throws RejectedReaction;
+    default PARTICLEGROUP abstractSpeciesAfterIntraMolecularReaction(PARTICLEGROUP group, RadicalPosition pos) throws RejectedReaction {
+        long[] key = new long[keyLength()];
+        keyAfterIntraMolecularReaction(group, pos, key);
+        return abstractSpecies(key);
+    }
 
 }
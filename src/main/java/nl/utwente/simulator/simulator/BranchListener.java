@@ -0,0 +1,13 @@
+package nl.utwente.simulator.simulator;
+
+/**
+ * Receives the state of a simulation at its branch point, from which branches with other reaction parameters can be
+ * resumed while the simulation itself continues
+ */
+public interface BranchListener {
+
+    /**
+     * @param snapshot Checkpoint of the state in memory, which is not changed afterwards and can be shared by all branches
+     */
+    void branch(byte[] snapshot);
+}
@@ -0,0 +1,53 @@
+package nl.utwente.simulator.simulator;
+
+import nl.utwente.simulator.config.Settings.CSVColumn;
+import nl.utwente.simulator.entities.RadicalPosition;
+
+/**
+ * Events in the steps of a simulation, which are counted to show which paths of the simulator take up its time.
+ * Every event is logged per output slice in its own column.
+ */
+public enum Event {
+    INTERMOLECULAR(CSVColumn.INTERMOLECULAR),                                                                           //Successful steps
+    INTRAMOLECULAR(CSVColumn.INTRAMOLECULAR),
+    MID_CHAIN_CROSSLINKER(CSVColumn.MID_CHAIN_CROSSLINKER),                                                             //Successful steps per RadicalPosition of the radical
+    CHAIN_END_NON_CROSSLINKER(CSVColumn.CHAIN_END_NON_CROSSLINKER),
+    CHAIN_END_CROSSLINKER(CSVColumn.CHAIN_END_CROSSLINKER),
+    REJECTED_COMBINED(CSVColumn.REJECTED_COMBINED),                                                                     //Mid-chain radical and vinyl group in a polymer, omega
+    REJECTED_RADICAL(CSVColumn.REJECTED_RADICAL),                                                                       //Mid-chain radical and monomer or cross-linker, phi
+    REJECTED_VINYL(CSVColumn.REJECTED_VINYL),                                                                           //Other radical and vinyl group in another polymer, psi
+    REJECTED_INTRAMOLECULAR(CSVColumn.REJECTED_INTRAMOLECULAR),                                                         //psi
+    REJECTED_INITIATOR(CSVColumn.REJECTED_INITIATOR),                                                                   //Initiator radical and vinyl group in a polymer, psi
+    REJECTED_REACTION(CSVColumn.REJECTED_REACTION),                                                                     //RejectedReaction thrown by the species factories
+    EXISTING_SPECIES(CSVColumn.EXISTING_SPECIES),                                                                       //Reaction product found in the species index
+    NEW_SPECIES(CSVColumn.NEW_SPECIES),
+    HALF_TREE(CSVColumn.HALF_TREE);                                                                                     //Compactions of the trees
+
+    public final CSVColumn column;
+
+    Event(CSVColumn column){
+        this.column = column;
+    }
+
+    /**
+     * @return Event of a successful step of a radical at <code>position</code>
+     */
+    public static Event of(RadicalPosition position){
+        switch(position){
+            case MID_CHAIN_CROSSLINKER:
+                return MID_CHAIN_CROSSLINKER;
+            case CHAIN_END_CROSSLINKER:
+                return CHAIN_END_CROSSLINKER;
+            case CHAIN_END_NON_CROSSLINKER:
+            default:
+                return CHAIN_END_NON_CROSSLINKER;
+        }
+    }
+
+    /**
+     * @return Whether this event is a picked reaction that was rejected
+     */
+    public boolean isRejection(){
+        return name().startsWith("REJECTED");
+    }
+}
@@ -0,0 +1,173 @@
+package nl.utwente.simulator.simulator;
+
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.entities.RadicalPosition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Stores every species as an object created by <code>factory</code>
+ */
+public class ObjectSpeciesStore<SPECIES extends Species> implements SpeciesStore<SPECIES> {
+
+    private final SimulationContext context;
+    private final SpeciesFactory<SPECIES> factory;
+    private final List<SPECIES> species = new ArrayList<>();
+
+    public ObjectSpeciesStore(SimulationContext context, SpeciesFactory<SPECIES> factory){
+        this.context = context;
+        this.factory = factory;
+    }
+
+    @Override
+    public int slots() {
+        return species.size();
+    }
+
+    @Override
+    public void add(SPECIES p) {
+        species.add(p);
+    }
+
+    @Override
+    public void createSpecies(int radical, int radicalIndexInParticle, int vinyl, int index) throws RejectedReaction {
+        set(index, factory.createSpecies(species.get(radical), radicalIndexInParticle, species.get(vinyl)));
+    }
+
+    @Override
+    public void createSpecies(int particle, int radicalIndexInParticle, int index) throws RejectedReaction {
+        set(index, factory.createSpecies(species.get(particle), radicalIndexInParticle));
+    }
+
+    private void set(int index, SPECIES p){
+        if(index == species.size()){
+            species.add(p);
+        }else{
+            species.set(index, p);
+        }
+    }
+
+    @Override
+    public void moveLast(int index) {
+        species.set(index, species.remove(species.size()-1));
+    }
+
+    @Override
+    public void removeLast() {
+        species.remove(species.size()-1);
+    }
+
+    @Override
+    public SPECIES get(int index) {
+        return species.get(index);
+    }
+
+    @Override
+    public AbstractSpecies getAbstractSpecies(int index) {
+        return species.get(index).getAbstractSpecies();
+    }
+
+    @Override
+    public void setAbstractSpecies(int index, AbstractSpecies abstractSpecies) {
+        species.get(index).setAbstractSpecies(abstractSpecies);
+    }
+
+    @Override
+    public int getWeightBin(int index) {
+        return species.get(index).getWeightBin();
+    }
+
+    @Override
+    public void setWeightBin(int index, int weightBin) {
+        species.get(index).setWeightBin(weightBin);
+    }
+
+    @Override
+    public long number(int index) {
+        return species.get(index).number();
+    }
+
+    @Override
+    public void increaseNumber(int index) {
+        species.get(index).increaseNumber();
+    }
+
+    @Override
+    public void decreaseNumber(int index) {
+        species.get(index).decreaseNumber();
+    }
+
+    @Override
+    public boolean isPolymer(int index) {
+        return species.get(index).isPolymer();
+    }
+
+    @Override
+    public long size(int index) {
+        return species.get(index).size();
+    }
+
+    @Override
+    public long numberOfC(int index) {
+        return species.get(index).numberOfC();
+    }
+
+    @Override
+    public double getWeight(int index) {
+        return species.get(index).getWeight(context);
+    }
+
+    @Override
+    public long numberOfActiveVinylGroups(int index) {
+        return species.get(index).numberOfActiveVinylGroups();
+    }
+
+    @Override
+    public long numberOfRadicals(int index) {
+        return species.get(index).numberOfRadicals();
+    }
+
+    @Override
+    public long numberOfMidChainRadicals(int index) {
+        return species.get(index).numberOfMidChainRadicals();
+    }
+
+    @Override
+    public RadicalPosition positionOfNthRadical(int index, int n) {
+        return species.get(index).positionOfNthRadical(n);
+    }
+
+    /**
+     * Takes the position from the counts if every radical is of the requested kind, and otherwise scans the radicals
+     * from the end nearest to the <code>n</code>th one, which takes time linear in the number of radicals of the species
+     */
+    @Override
+    public int indexOfNthRadical(int index, boolean midChain, long n){
+        SPECIES p = species.get(index);
+        long radicals = p.numberOfRadicals();
+        long matching = midChain ? p.numberOfMidChainRadicals() : radicals - p.numberOfMidChainRadicals();
+        if(matching == radicals)
+            return (int) n;
+        if(2*n < matching)
+            return SpeciesStore.super.indexOfNthRadical(index, midChain, n);
+        long after = matching - 1 - n;                                                                                  //Radicals of the requested kind after the nth one
+        for(int i=(int) radicals-1;;i--){
+            if((p.positionOfNthRadical(i) == RadicalPosition.MID_CHAIN_CROSSLINKER) == midChain && after-- == 0){
+                return i;
+            }
+        }
+    }
+
+    @Override
+    public double localConcentration(int index) {
+        return species.get(index).localConcentration();
+    }
+
+    @Override
+    public Iterator<Species> iterator() {
+        return Collections.<Species>unmodifiableList(species).iterator();
+    }
+}
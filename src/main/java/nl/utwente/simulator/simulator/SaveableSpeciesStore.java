@@ -0,0 +1,39 @@
+package nl.utwente.simulator.simulator;
+
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+
+import java.io.IOException;
+
+/**
+ * Species store that can be written to a checkpoint and restored from it, which checkpoints and branches require.
+ * A branch may have another reactive volume than the simulation it branched from, so the local concentrations of a
+ * restored store can be recalculated.
+ */
+public interface SaveableSpeciesStore<SPECIES extends Species> extends SpeciesStore<SPECIES> {
+
+    /**
+     * Recalculates the local concentration of every slot, after the reactive volume of the species has changed
+     */
+    void updateLocalConcentrations();
+
+    /**
+     * Writes every slot to <code>checkpoint</code>, except its abstract species
+     */
+    void save(CheckpointWriter checkpoint) throws IOException;
+
+    /**
+     * Replaces every slot by the ones written by <code>save</code>, which have no abstract species yet
+     */
+    void restore(CheckpointReader checkpoint) throws IOException;
+
+    /**
+     * Writes species <code>p</code>, which does not have to be stored in a slot, to <code>checkpoint</code>
+     */
+    void save(CheckpointWriter checkpoint, SPECIES p) throws IOException;
+
+    /**
+     * @return Species written by <code>save(checkpoint, p)</code>
+     */
+    SPECIES restoreSpecies(CheckpointReader checkpoint) throws IOException;
+}
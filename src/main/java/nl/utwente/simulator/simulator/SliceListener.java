@@ -0,0 +1,15 @@
+package nl.utwente.simulator.simulator;
+
+/**
+ * Receives the progress of a simulation at every output slice (every <code>PERCENTAGE_PER_SLICE</code> of conversion),
+ * for instance to monitor the simulation without parsing its log
+ */
+public interface SliceListener {
+
+    /**
+     * @param conversion Percentage of vinyl groups that have been consumed
+     * @param stepNumber Number of successful propagation steps so far
+     * @param numberOfSpecies Number of distinct species currently in the simulation
+     */
+    void slice(double conversion, long stepNumber, int numberOfSpecies);
+}
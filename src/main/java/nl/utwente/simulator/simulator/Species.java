@@ -1,9 +1,8 @@
 package nl.utwente.simulator.simulator;
 
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.entities.RadicalPosition;
 
-import static nl.utwente.simulator.config.Settings.*;
-
 public abstract class Species {
 
     public Species(long number, Type type){this.number = number; this.type = type;}
@@ -19,6 +18,16 @@ public abstract class Species {
         this.abstractSpecies = abstractSpecies;
     }
 
+    private int weightBin = -1;                                                                                         //Bin in the weight distribution, -1 if not yet known
+
+    public int getWeightBin() {
+        return this.weightBin;
+    }
+
+    public void setWeightBin(int weightBin) {
+        this.weightBin = weightBin;
+    }
+
     private long number;
     public final Type type;
 
@@ -48,32 +57,32 @@ public abstract class Species {
     public boolean isM(){ return type== Type.M; }
     public boolean isC(){ return type== Type.C; }
 
-    public double getWeight(){
+    public double getWeight(SimulationContext context){
         return
-            numberOfI() * WEIGHT_HALF_INITIATOR +
-            numberOfC() * WEIGHT_CROSSLINKER +
-            numberOfM() * WEIGHT_MONOMER;
+            numberOfI() * context.weightHalfInitiator +
+            numberOfC() * context.weightCrosslinker +
+            numberOfM() * context.weightMonomer;
     }
 
     /**
      * Returns the local concentration of vinyl groups per nm3
      */
-    protected double calculateLocalConcentration(){
-        assert(reactiveVolume() > 0);
-        return numberOfActiveVinylGroups() / reactiveVolume();
+    protected double calculateLocalConcentration(SimulationContext context){
+        assert(reactiveVolume(context) > 0);
+        return numberOfActiveVinylGroups() / reactiveVolume(context);
     }
 
-    protected double reactiveVolume(){
+    protected double reactiveVolume(SimulationContext context){
         if(isPolymer())
             return Math.max(                                                                                            //Species can not be smaller than single unit
-                MIN_MOL_VOLUME,
+                context.minMolVolume,
                 Math.min(                                                                                               //Species can not be larger than vessel
-                    COMPENSATION_FACTOR*4.1887902*Math.pow(RADIUS_EXPRESSION.evaluate(this),3),
-                    VESSEL_VOLUME
+                    context.compensationFactor*4.1887902*Math.pow(context.radiusExpression.evaluate(this),3),
+                    context.vesselVolume
                 )
         );
         else{                                                                                                           //A single segment only has half the length of the repeating backbone
-            return MIN_MOL_VOLUME;
+            return context.minMolVolume;
         }
     }
 }
@@ -1,5 +1,7 @@
 package nl.utwente.simulator.simulator;
 
+import nl.utwente.simulator.config.SimulationContext;
+
 public interface SpeciesFactory<P extends Species> {
 
     P createI(long number);
@@ -17,4 +19,11 @@ public interface SpeciesFactory<P extends Species> {
      * Creates a new particle which links <code>particle</code> at position <code>radicalIndexInParticle</code> to itself
      */
     P createSpecies(P particle, int radicalIndexInParticle) throws RejectedReaction;
+
+    /**
+     * @return Empty store for the species created by this factory
+     */
+    default SpeciesStore<P> createStore(SimulationContext context){
+        return new ObjectSpeciesStore<>(context, this);
+    }
 }
@@ -0,0 +1,82 @@
+package nl.utwente.simulator.simulator;
+
+import nl.utwente.simulator.entities.RadicalPosition;
+
+/**
+ * The species of a simulation, each stored in a slot with the same index as its reactivity in the Fenwick trees of
+ * the simulator. The simulator reads and updates species through their slot only, so that a store does not need to
+ * keep an object per species.
+ *
+ * A slot of a species without particles keeps its data until it is reused.
+ * Iterating over all slots may reuse the same object for every species, which is only valid until the next one is returned.
+ */
+public interface SpeciesStore<SPECIES extends Species> extends Iterable<Species> {
+
+    /**
+     * @return Number of slots, including unused ones
+     */
+    int slots();
+
+    /**
+     * Adds <code>p</code> in a new slot after the last one
+     */
+    void add(SPECIES p);
+
+    /**
+     * Stores a new particle which links the species in slot <code>radical</code> at position <code>radicalIndexInParticle</code>
+     * and the species in slot <code>vinyl</code> in slot <code>index</code>, which is either unused or directly after the last slot
+     */
+    void createSpecies(int radical, int radicalIndexInParticle, int vinyl, int index) throws RejectedReaction;
+
+    /**
+     * Stores a new particle which links the species in slot <code>particle</code> at position <code>radicalIndexInParticle</code>
+     * to itself in slot <code>index</code>, which is either unused or directly after the last slot
+     */
+    void createSpecies(int particle, int radicalIndexInParticle, int index) throws RejectedReaction;
+
+    /**
+     * Moves the species in the last slot to the unused slot <code>index</code> and removes the last slot
+     */
+    void moveLast(int index);
+
+    void removeLast();
+
+    /**
+     * @return Species in slot <code>index</code>, which is not changed by the store afterwards if it is a copy
+     */
+    SPECIES get(int index);
+
+    AbstractSpecies getAbstractSpecies(int index);
+    void setAbstractSpecies(int index, AbstractSpecies abstractSpecies);
+
+    int getWeightBin(int index);
+    void setWeightBin(int index, int weightBin);
+
+    long number(int index);
+    void increaseNumber(int index);
+    void decreaseNumber(int index);
+
+    boolean isPolymer(int index);
+    long size(int index);
+    long numberOfC(int index);
+    double getWeight(int index);
+
+    long numberOfActiveVinylGroups(int index);
+    long numberOfRadicals(int index);
+    long numberOfMidChainRadicals(int index);
+    RadicalPosition positionOfNthRadical(int index, int n);
+
+    /**
+     * @return Position in the particle of the <code>n</code>th radical that is (<code>midChain</code>) or is not a
+     * <code>MID_CHAIN_CROSSLINKER</code> radical
+     */
+    default int indexOfNthRadical(int index, boolean midChain, long n){
+        for(int i=0;;i++){
+            if((positionOfNthRadical(index, i) == RadicalPosition.MID_CHAIN_CROSSLINKER) == midChain && n-- == 0){
+                return i;
+            }
+        }
+    }
+
+    double localConcentration(int index);
+}
@@ -0,0 +1,233 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.utils.random.Random;
+
+import java.io.IOException;
+
+import static nl.utwente.simulator.config.Settings.log;
+import static nl.utwente.simulator.utils.IntegerBAryTree.B;
+import static nl.utwente.simulator.utils.IntegerBAryTree.SHIFT;
+
+/**
+ * Keeps the reactivity of the radicals in a tree in which every node holds the sum of 8 nodes of the level below it,
+ * see <code>IntegerBAryTree</code>. As in <code>InterleavedRadicalTracker</code>, the local reactivity, global
+ * reactivity and exclusion of a node are stored next to each other, with the local reactivity as the raw bits of a double.
+ */
+public class BAryRadicalTracker extends RadicalTracker {
+
+    private static final int LOCAL = 0;
+    private static final int GLOBAL = 1;
+    private static final int EXCLUSION = 2;
+    private static final int STRIDE = 3;                                                                                //Longs per node
+
+    private final double inverseVesselVolume;
+
+    private long[][] levels;                                                                                            //levels[0] holds the species, levels[k] the sums of B nodes of levels[k-1]
+    private int capacity = 1;                                                                                           //Number of species, always a power of 2
+    private int size;
+
+    private double localTotal;
+    private long globalTotal;
+    private long exclusionTotal;
+
+    public BAryRadicalTracker(SimulationContext context, Random random, int firstPolymerIndex) {
+        super(context, random, firstPolymerIndex);
+        this.inverseVesselVolume = 1 / context.vesselVolume;
+        this.levels = buildLevels(new long[capacity*STRIDE]);
+    }
+
+    @Override
+    public double totalSum(long activeVinylGroups){
+        return localTotal + (((double)(activeVinylGroups*globalTotal)) - exclusionTotal) * inverseVesselVolume;
+    }
+
+    @Override
+    protected int indexOf(double partialSum, long activeVinylGroups){
+        assert(partialSum>=0);
+        long[][] levels = this.levels;
+        double sum = 0;
+        int pos = 0;
+        for(int k=levels.length-1;k>=0;k--){
+            long[] level = levels[k];
+            int end = Math.min(level.length/STRIDE, pos+B) - 1;                                                         //Never step past the last child of this node
+            for(;pos<end;pos++){
+                int node = pos*STRIDE;
+                double newSum = sum + Double.longBitsToDouble(level[node+LOCAL]) + (activeVinylGroups*level[node+GLOBAL]-level[node+EXCLUSION])*inverseVesselVolume;
+                if(newSum > partialSum) break;                                                                          //descend when the value lies within this node
+                sum = newSum;
+            }
+            pos <<= SHIFT;
+        }
+        return pos >> SHIFT;
+    }
+
+    @Override
+    public double totalSum(double localFactor, double globalFactor, double exclusionFactor){
+        return localFactor*localTotal + (globalFactor*globalTotal - exclusionFactor*exclusionTotal) * inverseVesselVolume;
+    }
+
+    @Override
+    protected int indexOf(double partialSum, double localFactor, double globalFactor, double exclusionFactor){
+        assert(partialSum>=0);
+        long[][] levels = this.levels;
+        double sum = 0;
+        int pos = 0;
+        for(int k=levels.length-1;k>=0;k--){
+            long[] level = levels[k];
+            int end = Math.min(level.length/STRIDE, pos+B) - 1;                                                         //Never step past the last child of this node
+            for(;pos<end;pos++){
+                int node = pos*STRIDE;
+                double newSum = sum + localFactor*Double.longBitsToDouble(level[node+LOCAL]) + (globalFactor*level[node+GLOBAL]-exclusionFactor*level[node+EXCLUSION])*inverseVesselVolume;
+                if(newSum > partialSum) break;                                                                          //descend when the value lies within this node
+                sum = newSum;
+            }
+            pos <<= SHIFT;
+        }
+        return pos >> SHIFT;
+    }
+
+    @Override
+    protected int size() {
+        return size;
+    }
+
+    @Override
+    protected int lastRadical() {
+        int pos = 0;
+        for(int k=levels.length-1;k>=0;k--){                                                                            //Descend into the last node that contains a radical
+            long[] level = levels[k];
+            int last = Math.min(level.length/STRIDE, pos+B) - 1;
+            while(last > pos && level[last*STRIDE+GLOBAL] <= 0)
+                last--;
+            pos = last << SHIFT;
+        }
+        return pos >> SHIFT;
+    }
+
+    @Override
+    protected long globalRsq(int index) {
+        return rsq(index, GLOBAL);
+    }
+
+    @Override
+    protected long exclusionRsq(int index) {
+        return rsq(index, EXCLUSION);
+    }
+
+    private long rsq(int b, int component){
+        long sum = 0;
+        for(int k=0;k<levels.length && b>=0;k++){
+            long[] level = levels[k];
+            for(int i=b & -B;i<=b;i++) sum += level[i*STRIDE+component];
+            b = (b >> SHIFT) - 1;
+        }
+        return sum;
+    }
+
+    @Override
+    protected void add(double local, long global, long exclusion) {
+        if(size >= capacity-1){
+            resize(2*capacity);
+            log.debugln("Doubling radical tracker");
+        }
+        adj(size, local, global, exclusion);
+        size++;
+    }
+
+    @Override
+    protected void adj(int index, double local, long global, long exclusion) {
+        assert(index < capacity);
+        long[][] levels = this.levels;
+        for(int k=0;k<levels.length;k++){
+            long[] level = levels[k];
+            int node = index*STRIDE;
+            level[node+LOCAL] = Double.doubleToRawLongBits(Double.longBitsToDouble(level[node+LOCAL]) + local);
+            level[node+GLOBAL] += global;
+            level[node+EXCLUSION] += exclusion;
+            assert(level[node+GLOBAL] >= 0 && level[node+EXCLUSION] >= 0);
+            index >>= SHIFT;
+        }
+        localTotal += local;
+        globalTotal += global;
+        exclusionTotal += exclusion;
+    }
+
+    @Override
+    public void halfData(){
+        resize(capacity/2);
+        log.debugln("Halving radical tracker");
+        size = capacity-1;
+    }
+
+    @Override
+    protected void rebuild(double[] local, long[] global, long[] exclusion) {
+        long[] species = new long[capacity*STRIDE];
+        localTotal = 0;
+        globalTotal = 0;
+        exclusionTotal = 0;
+        for(int i=0;i<size;i++){
+            species[i*STRIDE+LOCAL] = Double.doubleToRawLongBits(local[i]);
+            species[i*STRIDE+GLOBAL] = global[i];
+            species[i*STRIDE+EXCLUSION] = exclusion[i];
+            localTotal += local[i];
+            globalTotal += global[i];
+            exclusionTotal += exclusion[i];
+        }
+        levels = buildLevels(species);
+    }
+
+    private void resize(int newCapacity){
+        long[] species = new long[newCapacity*STRIDE];
+        System.arraycopy(levels[0], 0, species, 0, Math.min(capacity, newCapacity)*STRIDE);
+        levels = buildLevels(species);
+        capacity = newCapacity;
+    }
+
+    /**
+     * @return Levels of a tree of which the bottom level is <code>species</code>, up to the first level with at most B nodes
+     */
+    private static long[][] buildLevels(long[] species){
+        int depth = 1;
+        for(int n=species.length/STRIDE;n>B;n=(n+B-1) >> SHIFT) depth++;
+        long[][] levels = new long[depth][];
+        levels[0] = species;
+        for(int k=1;k<depth;k++){
+            long[] below = levels[k-1];
+            long[] level = new long[((below.length/STRIDE+B-1) >> SHIFT)*STRIDE];
+            for(int i=0;i<below.length/STRIDE;i++){
+                int node = (i >> SHIFT)*STRIDE;
+                level[node+LOCAL] = Double.doubleToRawLongBits(Double.longBitsToDouble(level[node+LOCAL]) + Double.longBitsToDouble(below[i*STRIDE+LOCAL]));
+                level[node+GLOBAL] += below[i*STRIDE+GLOBAL];
+                level[node+EXCLUSION] += below[i*STRIDE+EXCLUSION];
+            }
+            levels[k] = level;
+        }
+        return levels;
+    }
+
+    @Override
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putInt(levels.length);                                                                               //The sums of the local reactivity in the higher levels have their own rounding errors
+        for(long[] level : levels){
+            checkpoint.putLongs(level);
+        }
+        checkpoint.putInt(size);
+        checkpoint.putDouble(localTotal);
+        checkpoint.putLong(globalTotal);
+        checkpoint.putLong(exclusionTotal);
+    }
+
+    @Override
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        levels = new long[checkpoint.getInt()][];
+        for(int k=0;k<levels.length;k++){
+            levels[k] = checkpoint.getLongs();
+        }
+        capacity = levels[0].length/STRIDE;
+        size = checkpoint.getInt();
+        localTotal = checkpoint.getDouble();
+        globalTotal = checkpoint.getLong();
+        exclusionTotal = checkpoint.getLong();
+    }
+}
@@ -0,0 +1,209 @@
+package nl.utwente.simulator.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import static nl.utwente.simulator.utils.CheckpointWriter.BUFFER_SIZE;
+
+/**
+ * Reads the values written by <code>CheckpointWriter</code>, in the same order.
+ *
+ * The checksum of the complete file is verified before the first value is returned, so a damaged or incomplete
+ * checkpoint is rejected before any state has been restored from it.
+ */
+public class CheckpointReader implements Closeable {
+
+    private final String name;                                                                                          //Describes the checkpoint in messages
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long unread;                                                                                                //Bytes of the contents that are not in the buffer yet
+
+    public CheckpointReader(Path file) throws IOException {
+        this.name = "Checkpoint "+file;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.channel = channel;
+        try {
+            long contents = channel.size() - Long.BYTES;
+            checkSize(contents);
+            verifyChecksum(channel, contents);
+            channel.position(0);
+            start(contents);
+        }catch(IOException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a checkpoint that was written to memory
+     */
+    public CheckpointReader(byte[] checkpoint) throws IOException {
+        this.name = "Checkpoint in memory";
+        int contents = checkpoint.length - Long.BYTES;
+        checkSize(contents);
+        CRC32 crc = new CRC32();
+        crc.update(checkpoint, 0, contents);
+        if(ByteBuffer.wrap(checkpoint, contents, Long.BYTES).getLong() != crc.getValue()){
+            throw new IOException(name+" is damaged, its checksum does not match");
+        }
+        this.channel = Channels.newChannel(new ByteArrayInputStream(checkpoint, 0, contents));
+        start(contents);
+    }
+
+    private void checkSize(long contents) throws IOException {
+        if(contents < Long.BYTES + Integer.BYTES){
+            throw new IOException(name+" is incomplete");
+        }
+    }
+
+    private void start(long contents) throws IOException {
+        unread = contents;
+        buffer.limit(0);
+        if(getLong() != CheckpointWriter.MAGIC){
+            throw new IOException(name+" is not a checkpoint");
+        }
+        int version = getInt();
+        if(version != CheckpointWriter.VERSION){
+            throw new IOException(name+" has version "+version+", expected "+CheckpointWriter.VERSION);
+        }
+    }
+
+    private void verifyChecksum(FileChannel channel, long contents) throws IOException {
+        CRC32 crc = new CRC32();
+        for(long remaining = contents; remaining > 0;){
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, remaining));
+            if(channel.read(buffer) < 0){
+                throw new EOFException(name+" is incomplete");
+            }
+            buffer.flip();
+            remaining -= buffer.remaining();
+            crc.update(buffer);
+        }
+        buffer.clear();
+        buffer.limit(Long.BYTES);
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer) < 0){
+                throw new EOFException(name+" is incomplete");
+            }
+        }
+        buffer.flip();
+        if(buffer.getLong() != crc.getValue()){
+            throw new IOException(name+" is damaged, its checksum does not match");
+        }
+    }
+
+    public boolean getBoolean() throws IOException {
+        return getByte() != 0;
+    }
+
+    public byte getByte() throws IOException {
+        ensure(Byte.BYTES);
+        return buffer.get();
+    }
+
+    public int getInt() throws IOException {
+        ensure(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    public long getLong() throws IOException {
+        ensure(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    public double getDouble() throws IOException {
+        ensure(Double.BYTES);
+        return buffer.getDouble();
+    }
+
+    public String getString() throws IOException {
+        return new String(getBytes(), StandardCharsets.UTF_8);
+    }
+
+    public byte[] getBytes() throws IOException {
+        byte[] values = new byte[getLength()];
+        for(int i=0;i<values.length;i++){
+            values[i] = getByte();
+        }
+        return values;
+    }
+
+    public int[] getInts() throws IOException {
+        int[] values = new int[getLength()];
+        for(int i=0;i<values.length;i++){
+            values[i] = getInt();
+        }
+        return values;
+    }
+
+    public long[] getLongs() throws IOException {
+        long[] values = new long[getLength()];
+        for(int i=0;i<values.length;i++){
+            values[i] = getLong();
+        }
+        return values;
+    }
+
+    public double[] getDoubles() throws IOException {
+        double[] values = new double[getLength()];
+        for(int i=0;i<values.length;i++){
+            values[i] = getDouble();
+        }
+        return values;
+    }
+
+    /**
+     * @return Length written in front of an array of values, which is then read value by value
+     */
+    public int getLength() throws IOException {
+        int length = getInt();
+        if(length < 0 || length > unread + buffer.remaining()){                                                         //Prevents allocating a huge array for a wrong value
+            throw new IOException(name+" contains an invalid length");
+        }
+        return length;
+    }
+
+    /**
+     * Checks that every value in the checkpoint has been read
+     */
+    public void finish() throws IOException {
+        if(unread > 0 || buffer.hasRemaining()){
+            throw new IOException(name+" contains more data than was read");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if(buffer.remaining() >= bytes){
+            return;
+        }
+        buffer.compact();
+        while(buffer.position() < bytes){
+            if(unread == 0){
+                throw new EOFException(name+" ends unexpectedly");
+            }
+            buffer.limit((int) Math.min(BUFFER_SIZE, buffer.position() + unread));                                      //Never read the checksum
+            int read = channel.read(buffer);
+            if(read < 0){
+                throw new EOFException(name+" ends unexpectedly");
+            }
+            unread -= read;
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,187 @@
+package nl.utwente.simulator.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the state of a simulation as binary values to a checkpoint file, through a direct buffer and a file channel.
+ *
+ * The values are written to a temporary file next to the checkpoint, which replaces the checkpoint only after it has
+ * been written completely and forced to disk. A crash while writing therefore leaves the previous checkpoint intact.
+ * The file ends with a CRC-32 of its contents, which is verified by <code>CheckpointReader</code>.
+ *
+ * A checkpoint can also be written to any other channel, such as a stream in memory, in which case it is only
+ * completed by the checksum.
+ */
+public class CheckpointWriter implements Closeable {
+
+    public static final long MAGIC = 0x434C2D5241465443L;                                                               //"CL-RAFTC"
+    public static final int VERSION = 3;
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path file;                                                                                            //Null if written to another channel
+    private final Path temporary;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private boolean committed;
+
+    public CheckpointWriter(Path file) throws IOException {
+        this.file = file;
+        this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        putLong(MAGIC);
+        putInt(VERSION);
+    }
+
+    /**
+     * Writes the checkpoint to <code>channel</code>, which is not closed by this writer
+     */
+    public CheckpointWriter(WritableByteChannel channel) throws IOException {
+        this.file = null;
+        this.temporary = null;
+        this.channel = channel;
+        putLong(MAGIC);
+        putInt(VERSION);
+    }
+
+    public void putBoolean(boolean value) throws IOException {
+        putByte((byte) (value ? 1 : 0));
+    }
+
+    public void putByte(byte value) throws IOException {
+        ensure(Byte.BYTES);
+        buffer.put(value);
+    }
+
+    public void putInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    public void putLong(long value) throws IOException {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    public void putDouble(double value) throws IOException {
+        ensure(Double.BYTES);
+        buffer.putDouble(value);
+    }
+
+    public void putString(String value) throws IOException {
+        putBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the length of <code>values</code> followed by the values
+     */
+    public void putBytes(byte[] values) throws IOException {
+        putBytes(values, values.length);
+    }
+
+    /**
+     * Writes <code>length</code> followed by the first <code>length</code> values
+     */
+    public void putBytes(byte[] values, int length) throws IOException {
+        putInt(length);
+        for(int i=0;i<length;i++){
+            putByte(values[i]);
+        }
+    }
+
+    public void putInts(int[] values, int length) throws IOException {
+        putInt(length);
+        for(int i=0;i<length;i++){
+            putInt(values[i]);
+        }
+    }
+
+    public void putLongs(long[] values, int length) throws IOException {
+        putInt(length);
+        for(int i=0;i<length;i++){
+            putLong(values[i]);
+        }
+    }
+
+    public void putDoubles(double[] values, int length) throws IOException {
+        putInt(length);
+        for(int i=0;i<length;i++){
+            putDouble(values[i]);
+        }
+    }
+
+    public void putInts(int[] values) throws IOException {
+        putInts(values, values.length);
+    }
+
+    public void putLongs(long[] values) throws IOException {
+        putLongs(values, values.length);
+    }
+
+    public void putDoubles(double[] values) throws IOException {
+        putDoubles(values, values.length);
+    }
+
+    /**
+     * Writes the checksum, forces the file to disk and replaces the checkpoint by it
+     */
+    public void commit() throws IOException {
+        flush();
+        buffer.putLong(crc.getValue());                                                                                 //Not part of the checksum itself
+        write();
+        committed = true;
+        if(file == null){
+            return;
+        }
+        ((FileChannel) channel).force(true);
+        channel.close();
+        try{
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }catch(AtomicMoveNotSupportedException e){
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Discards the temporary file if the checkpoint was not committed
+     */
+    @Override
+    public void close() throws IOException {
+        if(!committed && file != null){
+            channel.close();
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if(buffer.remaining() < bytes){
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        ByteBuffer contents = buffer.duplicate();
+        contents.flip();
+        crc.update(contents);
+        write();
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,202 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.utils.random.Random;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static nl.utwente.simulator.config.Settings.log;
+
+/**
+ * Picks radicals with composition-rejection samplers instead of trees, in constant expected time.
+ *
+ * A radical is picked by first choosing between the local and the global reaction rate in proportion to their sums.
+ * The local reactivity is sampled directly. The global reactivity of species i, n_i*r_i*(V_T-v_i), depends on the
+ * total number of vinyl groups V_T, which changes every step. So we sample species proportional to n_i*r_i and
+ * accept them with probability (V_T-v_i)/V_T instead.
+ *
+ * The sums of the trees are not kept, so <code>indexOf</code> and the range sums take linear time and should only be
+ * used for validation.
+ */
+public class CompositionRejectionRadicalTracker extends RadicalTracker {
+
+    private static final int MAX_ATTEMPTS = 1 << 16;                                                                    //Of the global branch, which only fails this often if it cannot succeed
+    private static final double ROUNDING = 1e-12;                                                                       //Relative error below which the global reactivity is zero
+
+    private final DecimalCompositionRejectionSampler local = new DecimalCompositionRejectionSampler();
+    private final IntegerCompositionRejectionSampler global = new IntegerCompositionRejectionSampler();
+    private long[] exclusion = new long[1];
+    private long exclusionTotal;
+
+    public CompositionRejectionRadicalTracker(SimulationContext context, Random random, int firstPolymerIndex) {
+        super(context, random, firstPolymerIndex);
+    }
+
+    @Override
+    public double totalSum(long activeVinylGroups){
+        return local.totalSum() + (((double)(activeVinylGroups*global.totalSum())) - exclusionTotal)/ vesselVolume;
+    }
+
+    @Override
+    public int pickRadical(long activeVinylGroups){
+        double max = totalSum(activeVinylGroups);
+        if (!(max > 0)){                                                                                                //In last steps this may become negative, due to accumulated floating point errors
+            log.warnln("[WARN] Out of bounds due to floating point error");
+            return firstPolymerIndex;                                                                                   //In which case we return the first polymer in the molecules list
+        }
+        boolean pickLocal = random.getRandom(max) < local.totalSum();
+        if(pickLocal || activeVinylGroups*global.totalSum() <= exclusionTotal){                                         //Every sample of the global reactivity would be rejected
+            return pickLocal();
+        }
+        for(int attempt=0;attempt<MAX_ATTEMPTS;attempt++){
+            int index = global.sample(random);                                                                          //Sample proportional to n_i*r_i*V_T, then reject n_i*r_i*v_i
+            if(random.getRandom(activeVinylGroups*global.value(index)) >= exclusion[index]){
+                return index;
+            }
+        }
+        return pickLocal();
+    }
+
+    @Override
+    protected int indexOf(double partialSum, long activeVinylGroups){
+        double sum = 0;
+        int index = 0;
+        for(;index<size()-1;index++){
+            sum += local.value(index) + (activeVinylGroups*global.value(index)-exclusion[index])/vesselVolume;
+            if(sum > partialSum) break;
+        }
+        return index;
+    }
+
+    @Override
+    public double totalSum(double localFactor, double globalFactor, double exclusionFactor){
+        return localFactor*local.totalSum() + (globalFactor*global.totalSum() - exclusionFactor*exclusionTotal)/ vesselVolume;
+    }
+
+    @Override
+    public int pickRadical(double localFactor, double globalFactor, double exclusionFactor){
+        double max = totalSum(localFactor, globalFactor, exclusionFactor);
+        if (!(max > 0)){                                                                                                //In last steps this may become negative, due to accumulated floating point errors
+            log.warnln("[WARN] Out of bounds due to floating point error");
+            return firstPolymerIndex;                                                                                   //In which case we return the first polymer in the molecules list
+        }
+        boolean pickLocal = random.getRandom(max) < localFactor*local.totalSum();
+        double globalSum = globalFactor*global.totalSum();
+        if(pickLocal || globalSum - exclusionFactor*exclusionTotal <= ROUNDING*globalSum){                              //Every sample of the global reactivity would be rejected
+            return pickLocal();
+        }
+        for(int attempt=0;attempt<MAX_ATTEMPTS;attempt++){
+            int index = global.sample(random);                                                                          //Sample proportional to n_i*r_i*g, then reject n_i*r_i*v_i*e
+            if(random.getRandom(globalFactor*global.value(index)) >= exclusionFactor*exclusion[index]){
+                return index;
+            }
+        }
+        return pickLocal();
+    }
+
+    /**
+     * @return Radical picked by its local reactivity only, for when the global reactivity is zero
+     */
+    private int pickLocal(){
+        if(!(local.totalSum() > 0)){
+            log.warnln("[WARN] Out of bounds due to floating point error");
+            return firstPolymerIndex;
+        }
+        return local.sample(random);
+    }
+
+    @Override
+    protected int indexOf(double partialSum, double localFactor, double globalFactor, double exclusionFactor){
+        double sum = 0;
+        int index = 0;
+        for(;index<size()-1;index++){
+            sum += localFactor*local.value(index) + (globalFactor*global.value(index)-exclusionFactor*exclusion[index])/vesselVolume;
+            if(sum > partialSum) break;
+        }
+        return index;
+    }
+
+    @Override
+    protected int size() {
+        return global.size();
+    }
+
+    @Override
+    protected int lastRadical() {
+        int index = size()-1;
+        while(index > 0 && global.value(index) <= 0)
+            index--;
+        return index;
+    }
+
+    @Override
+    protected long globalRsq(int index) {
+        return global.rsq(index);
+    }
+
+    @Override
+    protected long exclusionRsq(int index) {
+        long sum = 0;
+        for(int i=0;i<=index;i++) sum += exclusion[i];
+        return sum;
+    }
+
+    @Override
+    protected void add(double local, long global, long exclusion) {
+        if(size() >= this.exclusion.length-1){                                                                          //Same capacity as the samplers
+            this.exclusion = Arrays.copyOf(this.exclusion, 2*this.exclusion.length);
+        }
+        this.exclusion[size()] = exclusion;
+        this.exclusionTotal += exclusion;
+        this.global.add(global);
+        this.local.add(global == 0 ? 0 : local);
+    }
+
+    @Override
+    protected void adj(int index, double local, long global, long exclusion) {
+        this.exclusion[index] += exclusion;
+        this.exclusionTotal += exclusion;
+        this.global.adj(index, global);
+        if(this.global.value(index) == 0){                                                                              //Without radicals the local reactivity is 0, rather than a rounding error
+            this.local.set(index, 0);
+        }else{
+            this.local.set(index, Math.max(0, this.local.value(index) + local));
+        }
+    }
+
+    @Override
+    public void halfData(){
+        local.halfData();
+        global.halfData();
+        exclusion = Arrays.copyOf(exclusion, exclusion.length/2);
+    }
+
+    @Override
+    protected void rebuild(double[] local, long[] global, long[] exclusion) {
+        exclusionTotal = 0;
+        for(int i=0;i<size();i++){
+            this.global.adj(i, global[i]-this.global.value(i));
+            this.exclusion[i] = exclusion[i];
+            exclusionTotal += exclusion[i];
+            if(global[i] == 0) local[i] = 0;
+        }
+        this.local.rebuild(local);
+    }
+
+    @Override
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        local.save(checkpoint);
+        global.save(checkpoint);
+        checkpoint.putLongs(exclusion);
+        checkpoint.putLong(exclusionTotal);
+    }
+
+    @Override
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        local.restore(checkpoint);
+        global.restore(checkpoint);
+        exclusion = checkpoint.getLongs();
+        exclusionTotal = checkpoint.getLong();
+    }
+}
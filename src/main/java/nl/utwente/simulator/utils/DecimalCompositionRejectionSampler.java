@@ -0,0 +1,175 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.utils.random.Random;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static nl.utwente.simulator.config.Settings.log;
+
+/**
+ * Composition-rejection sampler for non-negative decimal values, see <code>IntegerCompositionRejectionSampler</code>.
+ * Values are bucketed by their binary exponent. Values are set rather than adjusted, so that a value that should be
+ * 0 does not remain in a bucket as a rounding error.
+ */
+public class DecimalCompositionRejectionSampler {                                                                       //No generics, we don't want boxing and unboxing
+
+    private static final int BUCKETS = Double.MAX_EXPONENT - Double.MIN_EXPONENT + 2;                                   //Bucket b holds the values in [2^(b-1023), 2^(b-1022)), bucket 0 also the subnormal values
+    private static final int OFFSET = -Double.MIN_EXPONENT + 1;
+
+    private double[] values = new double[1];
+    private int[] positions = new int[1];                                                                               //Position of each index in the members of its bucket
+    private int capacity = 1;                                                                                           //Always a power of 2
+    private int size;
+    private double totalSum;
+
+    private final int[][] members = new int[BUCKETS][];
+    private final int[] bucketSizes = new int[BUCKETS];
+    private final double[] bucketSums = new double[BUCKETS];
+    private int highestBucket = -1;                                                                                     //All higher buckets are empty
+    private int lowestBucket = BUCKETS;                                                                                 //All lower buckets are empty
+
+    public int size(){
+        return size;
+    }
+
+    public double totalSum(){
+        return totalSum;
+    }
+
+    public double value(int index){
+        return values[index];
+    }
+
+    /**
+     * @return Index sampled with a probability proportional to its value
+     */
+    public int sample(Random random){
+        double sample = random.getRandom(totalSum);
+        int bucket = highestBucket;
+        while(bucket > lowestBucket && sample >= bucketSums[bucket]){                                                   //Rounding errors in the sums may leave us in the lowest bucket
+            sample -= bucketSums[bucket];
+            bucket--;
+        }
+        int[] members = this.members[bucket];
+        int bucketSize = bucketSizes[bucket];
+        double bound = Math.scalb(1.0, bucket - OFFSET + 1);
+        while(true){
+            int index = members[random.getRandom(bucketSize)];
+            if(random.getRandom(bound) < values[index]){                                                                //Accept with probability value/2^(e+1), which is at least 1/2
+                return index;
+            }
+        }
+    }
+
+    public void add(double value){
+        if(size >= capacity-1){
+            resize(2*capacity);
+            log.debugln("Doubling composition-rejection sampler");
+        }
+        set(size, value);
+        size++;
+    }
+
+    public void set(int index, double value){
+        assert(index < capacity && value >= 0);
+        double oldValue = values[index];
+        values[index] = value;
+        int oldBucket = bucket(oldValue);
+        int newBucket = bucket(value);
+        if(oldBucket != newBucket){
+            if(oldBucket >= 0) remove(index, oldBucket);
+            if(newBucket >= 0) insert(index, newBucket);
+        }
+        if(oldBucket >= 0) bucketSums[oldBucket] = bucketSizes[oldBucket] == 0 ? 0 : bucketSums[oldBucket] - oldValue;  //Reset the sum of empty buckets to prevent accumulating rounding errors
+        if(newBucket >= 0) bucketSums[newBucket] += value;
+        totalSum += value - oldValue;
+    }
+
+    /**
+     * Replaces the values of this sampler with <code>values</code>, and recalculates the sums to discard accumulated rounding errors
+     */
+    public void rebuild(double[] values){
+        assert(values.length == size);
+        for(int i=0;i<values.length;i++) set(i, values[i]);
+        Arrays.fill(bucketSums, 0);
+        totalSum = 0;
+        for(int i=0;i<values.length;i++){
+            if(values[i] > 0) bucketSums[bucket(values[i])] += values[i];
+            totalSum += values[i];
+        }
+    }
+
+    public int subtreeSize(){
+        return capacity/2 - 1;
+    }
+
+    public void halfData(){
+        for(int i=capacity/2;i<capacity;i++) assert(values[i] == 0);
+        resize(capacity/2);
+        log.debugln("Halving composition-rejection sampler");
+        size = capacity-1;
+    }
+
+    private void resize(int newCapacity){
+        values = Arrays.copyOf(values, newCapacity);
+        positions = Arrays.copyOf(positions, newCapacity);
+        capacity = newCapacity;
+    }
+
+    /**
+     * @return Bucket of <code>value</code>, or -1 if the value is 0
+     */
+    private static int bucket(double value){
+        return value == 0 ? -1 : Math.getExponent(value) + OFFSET;
+    }
+
+    private void insert(int index, int bucket){
+        int[] members = this.members[bucket];
+        if(members == null || bucketSizes[bucket] == members.length){
+            members = this.members[bucket] = members == null ? new int[8] : Arrays.copyOf(members, 2*members.length);
+        }
+        positions[index] = bucketSizes[bucket];
+        members[bucketSizes[bucket]++] = index;
+        if(bucket > highestBucket) highestBucket = bucket;
+        if(bucket < lowestBucket) lowestBucket = bucket;
+    }
+
+    private void remove(int index, int bucket){
+        int[] members = this.members[bucket];
+        int last = members[--bucketSizes[bucket]];                                                                      //Move the last member to the position of the removed one
+        members[positions[index]] = last;
+        positions[last] = positions[index];
+        while(highestBucket >= 0 && bucketSizes[highestBucket] == 0) highestBucket--;
+        while(lowestBucket < BUCKETS && bucketSizes[lowestBucket] == 0) lowestBucket++;
+    }
+
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putDoubles(values);
+        checkpoint.putInts(positions);
+        checkpoint.putInt(size);
+        checkpoint.putDouble(totalSum);
+        for(int b=0;b<BUCKETS;b++){
+            checkpoint.putInts(members[b] == null ? new int[0] : members[b], bucketSizes[b]);
+        }
+        checkpoint.putDoubles(bucketSums);
+        checkpoint.putInt(highestBucket);
+        checkpoint.putInt(lowestBucket);
+    }
+
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        values = checkpoint.getDoubles();
+        positions = checkpoint.getInts();
+        capacity = values.length;
+        size = checkpoint.getInt();
+        totalSum = checkpoint.getDouble();
+        for(int b=0;b<BUCKETS;b++){
+            int[] members = checkpoint.getInts();
+            this.members[b] = members.length == 0 ? null : members;                                                     //Grows on the next insert
+            bucketSizes[b] = members.length;
+        }
+        System.arraycopy(checkpoint.getDoubles(), 0, bucketSums, 0, BUCKETS);
+        highestBucket = checkpoint.getInt();
+        lowestBucket = checkpoint.getInt();
+    }
+}
@@ -1,10 +1,15 @@
 package nl.utwente.simulator.utils;
 
+import nl.utwente.simulator.utils.storage.ArrayAllocator;
+import nl.utwente.simulator.utils.storage.DoubleArray;
+
+import java.io.IOException;
+
 import static nl.utwente.simulator.config.Settings.log;
 
 public class DecimalFenwickTree {                                                                                       //No generics, we don't want boxing and unboxing
 
-    protected double[] data;
+    protected DoubleArray data;
     public int size;
     public double totalSum;
 
@@ -16,33 +21,40 @@ public class DecimalFenwickTree {
      */
     public DecimalFenwickTree(int depth){
         int size = (int) Math.pow(2, depth);
-        data = new double[size];                                                                                        //1-indexed, so we need another place for the 0
+        data = ArrayAllocator.HEAP.doubles(size);                                                                       //1-indexed, so we need another place for the 0
         this.size=0;
         this.totalSum=0;
     }
 
     public DecimalFenwickTree(){
-        data = new double[1];                                                                                           //1-indexed, so we need another place for the 0
+        this(ArrayAllocator.HEAP);
+    }
+
+    /**
+     * Creates an empty tree of which the nodes are stored by <code>allocator</code>
+     */
+    public DecimalFenwickTree(ArrayAllocator allocator){
+        data = allocator.doubles(1);                                                                                    //1-indexed, so we need another place for the 0
         this.size=0;
         this.totalSum=0;
     }
 
     public int root(){
-        return data.length/2;
+        return data.length()/2;
     }
 
     public double node(int index){
-        return data[index];
+        return data.get(index);
     }
 
     public int indexOf(double prob){
-        int mask = data.length/2;
+        int mask = data.length()/2;
         int index = mask;
 
         double sum = 0;                                                                                                 //slight variation of Fenwick's algorithm
         while(mask > 1) {
             mask /= 2;
-            double newSum = sum + data[index];
+            double newSum = sum + data.get(index);
             if(prob >= newSum){                                                                                         //go right when intermediate sum < value
                 index |= mask;
                 sum = newSum;
@@ -51,14 +63,14 @@ public class DecimalFenwickTree {
             }
         }
 
-        if(sum + data[index] <= prob)                                                                                   //increase index if value is on non-leaf node
+        if(sum + data.get(index) <= prob)                                                                               //increase index if value is on non-leaf node
             index++;
         assert(index-1<size);
         return index-1;                                                                                                 //convert result to zero-indexed
     }
 
     public void add(double value){
-        if(size >= data.length-1){
+        if(size >= data.length()-1){
             doubleData();
         }
         adjust(size+1, value);
@@ -68,7 +80,7 @@ public class DecimalFenwickTree {
 
     public void adj(int index, double value){
         index++;                                                                                                        //1-indexed
-        assert(index < data.length);
+        assert(index < data.length());
         adjust(index, value);
         totalSum+=value;
     }
@@ -76,41 +88,51 @@ public class DecimalFenwickTree {
     public double rsq(int b){
         b++;                                                                                                            //1-indexed
         double sum = 0;
-        for(;b>0;b-=(b & -b)) sum += data[b];
+        for(;b>0;b-=(b & -b)) sum += data.get(b);
         return sum;
     }
 
     private void adjust(int k, double v){
-        for(;k<data.length;k+= (k & -k)){
-            data[k] += v;
+        for(;k<data.length();k+= (k & -k)){
+            data.add(k, v);
         }
     }
 
     private void doubleData(){
-        double[] tmp = new double[2*data.length];
-        for(int i=0;i<data.length;i++){
-            tmp[i] = data[i];
-        }
-        tmp[data.length] = totalSum;
+        int length = data.length();
+        data.resize(2*length);                                                                                          //Keeps the values, without copying them if the tree is stored in segments
+        data.set(length, totalSum);
         log.debugln("Doubling Fenwick tree");
-        data = tmp;
     }
 
     public void halfData(){
-        double[] tmp = new double[data.length/2];
-        for(int i=0;i<data.length/2;i++){
-            tmp[i] = data[i];
-        }
+        data.resize(data.length()/2);
         log.debugln("Halving Fenwick tree");
-        data = tmp;
-        size = data.length-1;
+        size = data.length()-1;
+    }
+
+    /**
+     * Replaces the values of this tree with <code>values</code> in linear time, discarding accumulated rounding errors
+     */
+    public void rebuild(double[] values){
+        assert(values.length == size);
+        data.clear();
+        totalSum = 0;
+        for(int i=0;i<values.length;i++){
+            data.set(i+1, values[i]);
+            totalSum += values[i];
+        }
+        for(int k=1;k<data.length();k++){                                                                               //Add every node to its parent
+            int parent = k + (k & -k);
+            if(parent < data.length()) data.add(parent, data.get(k));
+        }
     }
 
     @Override
     public String toString(){
-        String r = "VALS: ("+data[0]+"), ";
-        for(int i=1;i<data.length;i++){
-            r +=data[i]+", ";
+        String r = "VALS: ("+data.get(0)+"), ";
+        for(int i=1;i<data.length();i++){
+            r +=data.get(i)+", ";
         }
 
         r+="\nRSQ:";
@@ -121,6 +143,18 @@ public class DecimalFenwickTree {
     }
 
     public int subtreeSize(){
-        return (data.length/2) -1;
+        return (data.length()/2) -1;
+    }
+
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        data.save(checkpoint);
+        checkpoint.putInt(size);
+        checkpoint.putDouble(totalSum);
+    }
+
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        data.restore(checkpoint);
+        size = checkpoint.getInt();
+        totalSum = checkpoint.getDouble();
     }
 }
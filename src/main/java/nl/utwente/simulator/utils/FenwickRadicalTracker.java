@@ -0,0 +1,146 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.utils.random.Random;
+import nl.utwente.simulator.utils.storage.ArrayAllocator;
+
+import java.io.IOException;
+
+/**
+ * Keeps the local reactivity, global reactivity and exclusion in a separate Fenwick tree each
+ */
+public class FenwickRadicalTracker extends RadicalTracker {
+
+    final DecimalFenwickTree localBIT;
+    final IntegerFenwickTree globalBIT;
+    final IntegerFenwickTree exclusionBIT;
+
+    public FenwickRadicalTracker(SimulationContext context, Random random, int firstPolymerIndex) {
+        super(context, random, firstPolymerIndex);
+        ArrayAllocator allocator = context.allocator();
+        localBIT = new DecimalFenwickTree(allocator);
+        globalBIT = new IntegerFenwickTree(allocator);
+        exclusionBIT = new IntegerFenwickTree(allocator);
+    }
+
+    @Override
+    public double totalSum(long activeVinylGroups){
+        return localBIT.totalSum + (((double)(activeVinylGroups*globalBIT.totalSum)) - exclusionBIT.totalSum)/ vesselVolume;
+    }
+
+    @Override
+    protected int indexOf(double partialSum, long activeVinylGroups){
+        assert(partialSum>=0);
+        int root = localBIT.root();
+        int depth = 1;
+        int pos = root;
+        double sum = 0;
+        while(pos % 2 == 0) {                                                                                           //while not on a leaf
+            assert(pos>0);
+            double newSum = sum + localBIT.node(pos)+(activeVinylGroups*globalBIT.node(pos)-exclusionBIT.node(pos))/vesselVolume;
+            if(newSum <= partialSum){                                                                                   //go right when intermediate sum < value
+                pos |= root >> depth;
+                sum = newSum;
+            }else{                                                                                                      //go left otherwise
+                pos -= root >> depth;
+            }
+            depth++;
+        }
+        if(sum + localBIT.node(pos)+(activeVinylGroups*globalBIT.node(pos)-exclusionBIT.node(pos))/vesselVolume <= partialSum)//increase index if value is on non-leaf node
+            pos++;
+        return pos-1;                                                                                                   //convert result to zero-indexed
+    }
+
+    @Override
+    public double totalSum(double localFactor, double globalFactor, double exclusionFactor){
+        return localFactor*localBIT.totalSum + (globalFactor*globalBIT.totalSum - exclusionFactor*exclusionBIT.totalSum)/ vesselVolume;
+    }
+
+    @Override
+    protected int indexOf(double partialSum, double localFactor, double globalFactor, double exclusionFactor){
+        assert(partialSum>=0);
+        int root = localBIT.root();
+        int depth = 1;
+        int pos = root;
+        double sum = 0;
+        while(pos % 2 == 0) {                                                                                           //while not on a leaf
+            assert(pos>0);
+            double newSum = sum + localFactor*localBIT.node(pos)+(globalFactor*globalBIT.node(pos)-exclusionFactor*exclusionBIT.node(pos))/vesselVolume;
+            if(newSum <= partialSum){                                                                                   //go right when intermediate sum < value
+                pos |= root >> depth;
+                sum = newSum;
+            }else{                                                                                                      //go left otherwise
+                pos -= root >> depth;
+            }
+            depth++;
+        }
+        if(sum + localFactor*localBIT.node(pos)+(globalFactor*globalBIT.node(pos)-exclusionFactor*exclusionBIT.node(pos))/vesselVolume <= partialSum)
+            pos++;                                                                                                      //increase index if value is on non-leaf node
+        return pos-1;                                                                                                   //convert result to zero-indexed
+    }
+
+    @Override
+    protected int size() {
+        return globalBIT.size;
+    }
+
+    @Override
+    protected int lastRadical() {
+        int index = globalBIT.size-1;
+        while(globalBIT.node(index) <=0)
+            index++;
+        return index;
+    }
+
+    @Override
+    protected long globalRsq(int index) {
+        return globalBIT.rsq(index);
+    }
+
+    @Override
+    protected long exclusionRsq(int index) {
+        return exclusionBIT.rsq(index);
+    }
+
+    @Override
+    protected void add(double local, long global, long exclusion) {
+        localBIT.add(local);
+        globalBIT.add(global);
+        exclusionBIT.add(exclusion);
+    }
+
+    @Override
+    protected void adj(int index, double local, long global, long exclusion) {
+        localBIT.adj(index, local);
+        globalBIT.adj(index, global);
+        exclusionBIT.adj(index, exclusion);
+    }
+
+    @Override
+    public void halfData(){
+        localBIT.halfData();
+        globalBIT.halfData();
+        exclusionBIT.halfData();
+    }
+
+    @Override
+    protected void rebuild(double[] local, long[] global, long[] exclusion) {
+        localBIT.rebuild(local);
+        globalBIT.rebuild(global);
+        exclusionBIT.rebuild(exclusion);
+    }
+
+    @Override
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        localBIT.save(checkpoint);
+        globalBIT.save(checkpoint);
+        exclusionBIT.save(checkpoint);
+    }
+
+    @Override
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        localBIT.restore(checkpoint);
+        globalBIT.restore(checkpoint);
+        exclusionBIT.restore(checkpoint);
+    }
+}
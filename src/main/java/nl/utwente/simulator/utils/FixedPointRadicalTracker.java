@@ -0,0 +1,266 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.utils.random.Random;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static nl.utwente.simulator.config.Settings.CROSSLINKER_VINYL_GROUPS;
+import static nl.utwente.simulator.config.Settings.log;
+
+/**
+ * Interleaved layout, see <code>InterleavedRadicalTracker</code>, in which the local reactivity is stored as an
+ * integer multiple of <code>localUnit</code> instead of as a double.
+ *
+ * The local concentration of a species is rounded to a multiple of the unit before it is multiplied with the number
+ * of radicals, so adding and removing the same radicals always cancels out exactly. The local reactivity therefore
+ * does not drift, no matter how many updates are made, and the trees are updated with integer arithmetic only.
+ */
+public class FixedPointRadicalTracker extends RadicalTracker {
+
+    private static final int LOCAL = 0;
+    private static final int GLOBAL = 1;
+    private static final int EXCLUSION = 2;
+    private static final int STRIDE = 3;                                                                                //Longs per node
+    private static final int PRECISION = 52;                                                                            //Bits used for the estimated maximum local reactivity, leaving 11 bits of headroom
+    private static final double RANGE = 0x1p63;                                                                         //Local reactivity that no longer fits in a long
+
+    private final double inverseVesselVolume;
+    private final double localUnit;                                                                                     //Local reactivity of a single fixed-point step, a power of 2
+    private final double inverseLocalUnit;
+
+    private long[] nodes = new long[STRIDE];                                                                            //1-indexed, so the node at 0 is unused
+    private int capacity = 1;                                                                                           //Number of nodes, always a power of 2
+    private int size;
+
+    private long localTotal;                                                                                            //We track the total sums separately to prevent adding an extra layer of depth
+    private long globalTotal;
+    private long exclusionTotal;
+
+    public FixedPointRadicalTracker(SimulationContext context, Random random, int firstPolymerIndex) {
+        super(context, random, firstPolymerIndex);
+        this.inverseVesselVolume = 1 / context.vesselVolume;
+        double bound = Math.max(1, context.numberHalfInitiators) * CROSSLINKER_VINYL_GROUPS / context.minMolVolume;     //Every radical in a cross-linker in the smallest possible volume
+        this.localUnit = Math.scalb(1.0, Math.getExponent(bound) + 1 - PRECISION);
+        this.inverseLocalUnit = 1 / localUnit;
+    }
+
+    /**
+     * @return Integer multiple of the unit, so that adding it to the trees is exact
+     * @throws ArithmeticException If the local concentration is so far above the estimated bound that the local
+     * reactivity does not fit in a long
+     */
+    @Override
+    protected double localReactivity(long radicals, double localConcentration){
+        double local = radicals * Math.rint(localConcentration * inverseLocalUnit);
+        if(!(Math.abs(local) < RANGE))                                                                                  //Casting to a long would silently saturate
+            throw outOfRange();
+        return local;
+    }
+
+    private static ArithmeticException outOfRange(){
+        return new ArithmeticException("Local concentration exceeds the fixed-point range, use --radical-tracker=separate or --radical-tracker=interleaved");
+    }
+
+    /**
+     * @return <code>sum + local</code>, as every partial sum of the local reactivity is at most the total
+     * @throws ArithmeticException If the total local reactivity does not fit in a long
+     */
+    private static long addLocal(long sum, long local){
+        try{
+            return Math.addExact(sum, local);
+        }catch(ArithmeticException e){
+            throw outOfRange();
+        }
+    }
+
+    @Override
+    public double totalSum(long activeVinylGroups){
+        return localTotal * localUnit + (((double)(activeVinylGroups*globalTotal)) - exclusionTotal) * inverseVesselVolume;
+    }
+
+    @Override
+    protected int indexOf(double partialSum, long activeVinylGroups){
+        assert(partialSum>=0);
+        long[] nodes = this.nodes;
+        int root = capacity/2;
+        int depth = 1;
+        int pos = root;
+        double sum = 0;
+        while((pos & 1) == 0) {                                                                                         //while not on a leaf
+            assert(pos>0);
+            int node = pos*STRIDE;
+            double newSum = sum + nodes[node+LOCAL]*localUnit + (activeVinylGroups*nodes[node+GLOBAL]-nodes[node+EXCLUSION])*inverseVesselVolume;
+            if(newSum <= partialSum){                                                                                   //go right when intermediate sum < value
+                pos |= root >> depth;
+                sum = newSum;
+            }else{                                                                                                      //go left otherwise
+                pos -= root >> depth;
+            }
+            depth++;
+        }
+        int node = pos*STRIDE;
+        if(sum + nodes[node+LOCAL]*localUnit + (activeVinylGroups*nodes[node+GLOBAL]-nodes[node+EXCLUSION])*inverseVesselVolume <= partialSum)
+            pos++;                                                                                                      //increase index if value is on non-leaf node
+        return pos-1;                                                                                                   //convert result to zero-indexed
+    }
+
+    @Override
+    public double totalSum(double localFactor, double globalFactor, double exclusionFactor){
+        return localFactor*localTotal*localUnit + (globalFactor*globalTotal - exclusionFactor*exclusionTotal) * inverseVesselVolume;
+    }
+
+    @Override
+    protected int indexOf(double partialSum, double localFactor, double globalFactor, double exclusionFactor){
+        assert(partialSum>=0);
+        long[] nodes = this.nodes;
+        double localUnitFactor = localFactor*localUnit;
+        int root = capacity/2;
+        int depth = 1;
+        int pos = root;
+        double sum = 0;
+        while((pos & 1) == 0) {                                                                                         //while not on a leaf
+            assert(pos>0);
+            int node = pos*STRIDE;
+            double newSum = sum + localUnitFactor*nodes[node+LOCAL] + (globalFactor*nodes[node+GLOBAL]-exclusionFactor*nodes[node+EXCLUSION])*inverseVesselVolume;
+            if(newSum <= partialSum){                                                                                   //go right when intermediate sum < value
+                pos |= root >> depth;
+                sum = newSum;
+            }else{                                                                                                      //go left otherwise
+                pos -= root >> depth;
+            }
+            depth++;
+        }
+        int node = pos*STRIDE;
+        if(sum + localUnitFactor*nodes[node+LOCAL] + (globalFactor*nodes[node+GLOBAL]-exclusionFactor*nodes[node+EXCLUSION])*inverseVesselVolume <= partialSum)
+            pos++;                                                                                                      //increase index if value is on non-leaf node
+        return pos-1;                                                                                                   //convert result to zero-indexed
+    }
+
+    @Override
+    protected int size() {
+        return size;
+    }
+
+    @Override
+    protected int lastRadical() {
+        int index = size-1;
+        while(nodes[index*STRIDE+GLOBAL] <=0)
+            index++;
+        return index;
+    }
+
+    @Override
+    protected long globalRsq(int index) {
+        return rsq(index, GLOBAL);
+    }
+
+    @Override
+    protected long exclusionRsq(int index) {
+        return rsq(index, EXCLUSION);
+    }
+
+    private long rsq(int b, int component){
+        b++;                                                                                                            //1-indexed
+        long sum = 0;
+        for(;b>0;b-=(b & -b)) sum += nodes[b*STRIDE+component];
+        return sum;
+    }
+
+    @Override
+    protected void add(double local, long global, long exclusion) {
+        if(size >= capacity-1){
+            doubleData();
+        }
+        adjust(size+1, (long) local, global, exclusion);
+        size++;
+    }
+
+    @Override
+    protected void adj(int index, double local, long global, long exclusion) {
+        index++;                                                                                                        //1-indexed
+        assert(index < capacity);
+        adjust(index, (long) local, global, exclusion);
+    }
+
+    private void adjust(int k, long local, long global, long exclusion){
+        long localTotal = addLocal(this.localTotal, local);                                                             //Check the total before changing any node
+        long[] nodes = this.nodes;
+        for(;k<capacity;k+= (k & -k)){
+            int node = k*STRIDE;
+            nodes[node+LOCAL] += local;
+            nodes[node+GLOBAL] += global;
+            nodes[node+EXCLUSION] += exclusion;
+            assert(nodes[node+LOCAL] >= 0 && nodes[node+GLOBAL] >= 0 && nodes[node+EXCLUSION] >= 0);
+        }
+        this.localTotal = localTotal;
+        globalTotal += global;
+        exclusionTotal += exclusion;
+    }
+
+    private void doubleData(){
+        long[] tmp = new long[2*capacity*STRIDE];
+        System.arraycopy(nodes, 0, tmp, 0, nodes.length);
+        int node = capacity*STRIDE;                                                                                     //The new root covers all current nodes
+        tmp[node+LOCAL] = localTotal;
+        tmp[node+GLOBAL] = globalTotal;
+        tmp[node+EXCLUSION] = exclusionTotal;
+        log.debugln("Doubling radical tracker");
+        nodes = tmp;
+        capacity *= 2;
+    }
+
+    @Override
+    public void halfData(){
+        capacity /= 2;
+        long[] tmp = new long[capacity*STRIDE];
+        System.arraycopy(nodes, 0, tmp, 0, tmp.length);
+        log.debugln("Halving radical tracker");
+        nodes = tmp;
+        size = capacity-1;
+    }
+
+    @Override
+    protected void rebuild(double[] local, long[] global, long[] exclusion) {
+        long[] nodes = this.nodes;
+        Arrays.fill(nodes, 0);
+        localTotal = 0;
+        globalTotal = 0;
+        exclusionTotal = 0;
+        for(int i=0;i<size;i++){
+            int node = (i+1)*STRIDE;
+            nodes[node+LOCAL] = (long) local[i];
+            nodes[node+GLOBAL] = global[i];
+            nodes[node+EXCLUSION] = exclusion[i];
+            localTotal = addLocal(localTotal, (long) local[i]);
+            globalTotal += global[i];
+            exclusionTotal += exclusion[i];
+        }
+        for(int k=1;k<capacity;k++){                                                                                    //Add every node to its parent
+            int parent = k + (k & -k);
+            if(parent < capacity){
+                for(int c=0;c<STRIDE;c++) nodes[parent*STRIDE+c] += nodes[k*STRIDE+c];
+            }
+        }
+    }
+
+    @Override
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putLongs(nodes);
+        checkpoint.putInt(size);
+        checkpoint.putLong(localTotal);
+        checkpoint.putLong(globalTotal);
+        checkpoint.putLong(exclusionTotal);
+    }
+
+    @Override
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        nodes = checkpoint.getLongs();
+        capacity = nodes.length/STRIDE;
+        size = checkpoint.getInt();
+        localTotal = checkpoint.getLong();
+        globalTotal = checkpoint.getLong();
+        exclusionTotal = checkpoint.getLong();
+    }
+}
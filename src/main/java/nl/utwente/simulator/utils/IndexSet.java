@@ -0,0 +1,122 @@
+package nl.utwente.simulator.utils;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of non-negative indices, used to keep track of the unused indices of the species.
+ *
+ * The indices are stored as a bitset with a hierarchical summary: bit j of level k+1 is set if word j of level k
+ * contains any index. The top level is a single word, so the first and last index are found by descending
+ * the levels, and all operations take O(log_64 n) time without boxing or allocation (except to grow).
+ */
+public class IndexSet {                                                                                                 //No generics, we don't want boxing and unboxing
+
+    public static final int NONE = -1;
+
+    private static final int BITS = 6;                                                                                  //64 = 2^6 indices per word
+    private static final int MASK = 63;
+
+    private long[][] levels;                                                                                            //levels[0] contains the indices themselves
+    private int size;
+
+    public IndexSet(){
+        levels = new long[][]{new long[1]};
+    }
+
+    public void add(int index){
+        assert(index >= 0);
+        while(index >= capacity()){
+            grow();
+        }
+        for(int k=0;k<levels.length;k++){
+            int word = index >>> BITS;
+            long before = levels[k][word];
+            levels[k][word] = before | (1L << (index & MASK));
+            if(k == 0){
+                if(before == levels[0][word])                                                                           //Already present
+                    return;
+                size++;
+            }
+            if(before != 0)                                                                                             //Higher levels already know about this word
+                return;
+            index = word;
+        }
+    }
+
+    public void remove(int index){
+        if(!contains(index))
+            return;
+        size--;
+        for(int k=0;k<levels.length;k++){
+            int word = index >>> BITS;
+            levels[k][word] &= ~(1L << (index & MASK));
+            if(levels[k][word] != 0)                                                                                    //Word still contains other indices
+                return;
+            index = word;
+        }
+    }
+
+    public boolean contains(int index){
+        return index >= 0 && index < capacity() && (levels[0][index >>> BITS] & (1L << (index & MASK))) != 0;
+    }
+
+    /**
+     * @return Lowest index in this set, or <code>NONE</code> if it is empty
+     */
+    public int first(){
+        if(size == 0)
+            return NONE;
+        int index = 0;
+        for(int k=levels.length-1;k>=0;k--){
+            index = (index << BITS) + Long.numberOfTrailingZeros(levels[k][index]);
+        }
+        return index;
+    }
+
+    /**
+     * @return Highest index in this set, or <code>NONE</code> if it is empty
+     */
+    public int last(){
+        if(size == 0)
+            return NONE;
+        int index = 0;
+        for(int k=levels.length-1;k>=0;k--){
+            index = (index << BITS) + MASK - Long.numberOfLeadingZeros(levels[k][index]);
+        }
+        return index;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    private int capacity(){
+        return levels[0].length << BITS;
+    }
+
+    /**
+     * Doubles the capacity and rebuilds the summary levels
+     */
+    private void grow(){
+        long[] indices = Arrays.copyOf(levels[0], levels[0].length * 2);
+
+        int depth = 1;
+        for(int words = indices.length; words > 1; words = (words + MASK) >>> BITS){
+            depth++;
+        }
+        levels = new long[depth][];
+        levels[0] = indices;
+        for(int k=1;k<depth;k++){
+            long[] below = levels[k-1];
+            levels[k] = new long[(below.length + MASK) >>> BITS];
+            for(int word=0;word<below.length;word++){
+                if(below[word] != 0)
+                    levels[k][word >>> BITS] |= 1L << (word & MASK);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package nl.utwente.simulator.utils;
+
+import java.io.IOException;
+
+import static nl.utwente.simulator.config.Settings.log;
+
+/**
+ * Sampling tree in which every node holds the sum of 8 nodes of the level below it, so that the children of a node
+ * fill a single cache line. Compared to a Fenwick tree, a sample descends 3 times fewer levels, at the cost of a short
+ * linear scan on each level.
+ *
+ * Grows and shrinks like <code>IntegerFenwickTree</code>, so both can be used interchangeably by the simulator.
+ */
+public class IntegerBAryTree implements IntegerSamplingTree {                                                           //No generics, we don't want boxing and unboxing
+
+    static final int SHIFT = 3;
+    static final int B = 1 << SHIFT;                                                                                    //Children per node
+
+    private long[][] levels;                                                                                            //levels[0] holds the values, levels[k][j] the sum of levels[k-1][B*j .. B*j+B-1]
+    private int capacity = 1;                                                                                           //Number of values, always a power of 2
+    private int size;
+    private long totalSum;
+
+    public IntegerBAryTree(){
+        levels = buildLevels(new long[capacity]);
+    }
+
+    @Override
+    public int size(){
+        return size;
+    }
+
+    @Override
+    public long totalSum(){
+        return totalSum;
+    }
+
+    @Override
+    public int indexOf(long prob){
+        assert(prob >= 0 && prob < totalSum);
+        long[][] levels = this.levels;
+        int pos = 0;
+        for(int k=levels.length-1;k>=0;k--){
+            long[] level = levels[k];
+            int end = Math.min(level.length, pos+B) - 1;                                                                //Never step past the last child of this node
+            for(;pos<end && prob >= level[pos];pos++){
+                prob -= level[pos];
+            }
+            pos <<= SHIFT;
+        }
+        return pos >> SHIFT;
+    }
+
+    @Override
+    public void add(long value){
+        if(size >= capacity-1){
+            resize(2*capacity);
+            log.debugln("Doubling B-ary tree");
+        }
+        adj(size, value);
+        size++;
+    }
+
+    @Override
+    public void adj(int index, long value){
+        assert(index < capacity);
+        long[][] levels = this.levels;
+        for(int k=0;k<levels.length;k++){
+            levels[k][index] += value;
+            assert(levels[k][index] >= 0);
+            index >>= SHIFT;
+        }
+        totalSum += value;
+    }
+
+    @Override
+    public long rsq(int b){
+        long[][] levels = this.levels;
+        long sum = 0;
+        for(int k=0;k<levels.length && b>=0;k++){                                                                       //Add the siblings up to b, then continue with the nodes before its parent
+            long[] level = levels[k];
+            for(int i=b & -B;i<=b;i++) sum += level[i];
+            b = (b >> SHIFT) - 1;
+        }
+        return sum;
+    }
+
+    @Override
+    public int subtreeSize(){
+        return capacity/2 - 1;
+    }
+
+    @Override
+    public void halfData(){
+        assert(rsq(capacity/2 - 1) == totalSum);
+        resize(capacity/2);
+        log.debugln("Halving B-ary tree");
+        size = capacity-1;
+    }
+
+    private void resize(int newCapacity){
+        long[] values = new long[newCapacity];
+        System.arraycopy(levels[0], 0, values, 0, Math.min(capacity, newCapacity));
+        levels = buildLevels(values);
+        capacity = newCapacity;
+    }
+
+    /**
+     * @return Levels of a tree of which the bottom level is <code>values</code>, up to the first level with at most B nodes
+     */
+    private static long[][] buildLevels(long[] values){
+        int depth = 1;
+        for(int n=values.length;n>B;n=(n+B-1) >> SHIFT) depth++;
+        long[][] levels = new long[depth][];
+        levels[0] = values;
+        for(int k=1;k<depth;k++){
+            long[] below = levels[k-1];
+            long[] level = new long[(below.length+B-1) >> SHIFT];
+            for(int i=0;i<below.length;i++) level[i >> SHIFT] += below[i];
+            levels[k] = level;
+        }
+        return levels;
+    }
+
+    @Override
+    public String toString(){
+        String r = "VALS: ";
+        for(int i=0;i<capacity;i++){
+            r +=levels[0][i]+", ";
+        }
+
+        r+="\nRSQ:";
+        for(int i=0;i<size;i++) {
+            r+=rsq(i)+", ";
+        }
+        return r;
+    }
+
+    @Override
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putLongs(levels[0]);                                                                                 //The other levels are sums of it
+        checkpoint.putInt(size);
+        checkpoint.putLong(totalSum);
+    }
+
+    @Override
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        long[] values = checkpoint.getLongs();
+        levels = buildLevels(values);
+        capacity = values.length;
+        size = checkpoint.getInt();
+        totalSum = checkpoint.getLong();
+    }
+}
@@ -0,0 +1,215 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.utils.random.Random;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static nl.utwente.simulator.config.Settings.log;
+
+/**
+ * Composition-rejection sampler (SSA-CR): every non-zero value is kept in the bucket of values within the same power
+ * of 2. A sample picks a bucket proportional to its sum and then rejection-samples a value within it, which succeeds
+ * with a probability of at least 1/2. Sampling and updating thus take constant expected time, independent of the
+ * number of values, whereas a Fenwick tree takes logarithmic time for both.
+ *
+ * Prefix sums are not kept, so <code>rsq</code> and <code>indexOf</code> take linear time and should only be used
+ * for validation. Grows and shrinks like <code>IntegerFenwickTree</code>, so both can be used interchangeably by
+ * the simulator.
+ */
+public class IntegerCompositionRejectionSampler implements IntegerSamplingTree {                                        //No generics, we don't want boxing and unboxing
+
+    private static final int BUCKETS = 62;                                                                              //Bucket b holds the values in [2^b, 2^(b+1))
+
+    private long[] values = new long[1];
+    private int[] positions = new int[1];                                                                               //Position of each index in the members of its bucket
+    private int capacity = 1;                                                                                           //Always a power of 2
+    private int size;
+    private long totalSum;
+
+    private final int[][] members = new int[BUCKETS][];
+    private final int[] bucketSizes = new int[BUCKETS];
+    private final long[] bucketSums = new long[BUCKETS];
+    private int highestBucket = -1;                                                                                     //All higher buckets are empty
+
+    @Override
+    public int size(){
+        return size;
+    }
+
+    @Override
+    public long totalSum(){
+        return totalSum;
+    }
+
+    /**
+     * @return Value at <code>index</code>
+     */
+    public long value(int index){
+        return values[index];
+    }
+
+    @Override
+    public int sample(Random random){
+        long sample = random.getRandom(totalSum);
+        int bucket = highestBucket;
+        while(sample >= bucketSums[bucket]){                                                                            //Most of the sum is usually in the highest buckets
+            sample -= bucketSums[bucket];
+            bucket--;
+        }
+        int[] members = this.members[bucket];
+        int bucketSize = bucketSizes[bucket];
+        long bound = 2L << bucket;
+        while(true){
+            int index = members[random.getRandom(bucketSize)];
+            if(random.getRandom(bound) < values[index]){                                                                //Accept with probability value/2^(b+1), which is at least 1/2
+                return index;
+            }
+        }
+    }
+
+    @Override
+    public int sampleExcluding(Random random, int excludedIndex, long excludedValue){
+        assert(totalSum > excludedValue);
+        while(true){
+            int index = sample(random);
+            if(index != excludedIndex || random.getRandom(values[index]) >= excludedValue){                             //Reject the excluded part of the value
+                return index;
+            }
+        }
+    }
+
+    /**
+     * Rejects the indices below <code>firstIndex</code>. The simulator only samples from polymers in proportion to
+     * the vinyl groups in polymers, so the expected number of attempts per step stays bounded.
+     */
+    @Override
+    public int sampleFrom(Random random, int firstIndex, int excludedIndex, long excludedValue){
+        while(true){
+            int index = sampleExcluding(random, excludedIndex, excludedValue);
+            if(index >= firstIndex){
+                return index;
+            }
+        }
+    }
+
+    @Override
+    public int indexOf(long prob){
+        int index = 0;
+        while(prob >= values[index]){
+            prob -= values[index];
+            index++;
+        }
+        return index;
+    }
+
+    @Override
+    public long rsq(int b){
+        long sum = 0;
+        for(int i=0;i<=b;i++) sum += values[i];
+        return sum;
+    }
+
+    @Override
+    public void add(long value){
+        if(size >= capacity-1){
+            resize(2*capacity);
+            log.debugln("Doubling composition-rejection sampler");
+        }
+        adj(size, value);
+        size++;
+    }
+
+    @Override
+    public void adj(int index, long value){
+        assert(index < capacity);
+        long oldValue = values[index];
+        long newValue = oldValue + value;
+        assert(newValue >= 0);
+        values[index] = newValue;
+        int oldBucket = bucket(oldValue);
+        int newBucket = bucket(newValue);
+        if(oldBucket != newBucket){                                                                                     //Most updates change a value by 1, which rarely moves it to another bucket
+            if(oldBucket >= 0) remove(index, oldBucket);
+            if(newBucket >= 0) insert(index, newBucket);
+        }
+        if(oldBucket >= 0) bucketSums[oldBucket] -= oldValue;
+        if(newBucket >= 0) bucketSums[newBucket] += newValue;
+        totalSum += value;
+    }
+
+    @Override
+    public int subtreeSize(){
+        return capacity/2 - 1;
+    }
+
+    @Override
+    public void halfData(){
+        for(int i=capacity/2;i<capacity;i++) assert(values[i] == 0);
+        resize(capacity/2);
+        log.debugln("Halving composition-rejection sampler");
+        size = capacity-1;
+    }
+
+    private void resize(int newCapacity){
+        values = Arrays.copyOf(values, newCapacity);
+        positions = Arrays.copyOf(positions, newCapacity);
+        capacity = newCapacity;
+    }
+
+    /**
+     * @return Bucket of <code>value</code>, or -1 if the value is 0
+     */
+    private static int bucket(long value){
+        int bucket = 63 - Long.numberOfLeadingZeros(value);
+        assert(bucket < BUCKETS);
+        return bucket;
+    }
+
+    private void insert(int index, int bucket){
+        int[] members = this.members[bucket];
+        if(members == null || bucketSizes[bucket] == members.length){
+            members = this.members[bucket] = members == null ? new int[8] : Arrays.copyOf(members, 2*members.length);
+        }
+        positions[index] = bucketSizes[bucket];
+        members[bucketSizes[bucket]++] = index;
+        if(bucket > highestBucket) highestBucket = bucket;
+    }
+
+    private void remove(int index, int bucket){
+        int[] members = this.members[bucket];
+        int last = members[--bucketSizes[bucket]];                                                                      //Move the last member to the position of the removed one
+        members[positions[index]] = last;
+        positions[last] = positions[index];
+        while(highestBucket >= 0 && bucketSizes[highestBucket] == 0) highestBucket--;
+    }
+
+    @Override
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putLongs(values);
+        checkpoint.putInts(positions);
+        checkpoint.putInt(size);
+        checkpoint.putLong(totalSum);
+        for(int b=0;b<BUCKETS;b++){
+            checkpoint.putInts(members[b] == null ? new int[0] : members[b], bucketSizes[b]);
+        }
+        checkpoint.putLongs(bucketSums);
+        checkpoint.putInt(highestBucket);
+    }
+
+    @Override
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        values = checkpoint.getLongs();
+        positions = checkpoint.getInts();
+        capacity = values.length;
+        size = checkpoint.getInt();
+        totalSum = checkpoint.getLong();
+        for(int b=0;b<BUCKETS;b++){
+            int[] members = checkpoint.getInts();
+            this.members[b] = members.length == 0 ? null : members;                                                     //Grows on the next insert
+            bucketSizes[b] = members.length;
+        }
+        System.arraycopy(checkpoint.getLongs(), 0, bucketSums, 0, BUCKETS);
+        highestBucket = checkpoint.getInt();
+    }
+}
@@ -1,10 +1,15 @@
 package nl.utwente.simulator.utils;
 
+import nl.utwente.simulator.utils.storage.ArrayAllocator;
+import nl.utwente.simulator.utils.storage.LongArray;
+
+import java.io.IOException;
+
 import static nl.utwente.simulator.config.Settings.log;
 
-public class IntegerFenwickTree {                                                                                       //No generics, we don't want boxing and unboxing
+public class IntegerFenwickTree implements IntegerSamplingTree {                                                        //No generics, we don't want boxing and unboxing
 
-    protected long[] data;
+    protected LongArray data;
     public int size;
 
     /**
@@ -20,37 +25,55 @@ public class IntegerFenwickTree {
      */
     public IntegerFenwickTree(int depth){
         int size = (int) Math.pow(2, depth);
-        data = new long[size];                                                                                          //1-indexed, so we need another place for the 0
+        data = ArrayAllocator.HEAP.longs(size);                                                                         //1-indexed, so we need another place for the 0
         this.size=0;
         this.totalSum=0;
     }
 
     public IntegerFenwickTree(){
-        data = new long[1];                                                                                             //1-indexed, so we need another place for the 0
+        this(ArrayAllocator.HEAP);
+    }
+
+    /**
+     * Creates an empty tree of which the nodes are stored by <code>allocator</code>
+     */
+    public IntegerFenwickTree(ArrayAllocator allocator){
+        data = allocator.longs(1);                                                                                      //1-indexed, so we need another place for the 0
         this.size=0;
         this.totalSum=0;
     }
 
+    @Override
+    public int size(){
+        return size;
+    }
+
+    @Override
+    public long totalSum(){
+        return totalSum;
+    }
+
     public int root(){
-        return data.length/2;
+        return data.length()/2;
     }
 
     public long node(int index){
-        return data[index];
+        return data.get(index);
     }
 
+    @Override
     public int indexOf(long prob){
         prob++;                                                                                                         //convert input to 1-indexed (expression.g. first 8 values have indices 1..8 instead of 0..7)
 
-        int mask = data.length/2;
+        int mask = data.length()/2;
         int index = 0;
         int textIx;
-        if(prob > data[0]){
+        if(prob > data.get(0)){
             while(mask != 0){
                 textIx = index + mask;
-                if(prob > data[textIx]){                                                                                //replace <= with < to correct for 1-indexing
+                if(prob > data.get(textIx)){                                                                            //replace <= with < to correct for 1-indexing
                     index = textIx;
-                    prob -= data[index];
+                    prob -= data.get(index);
                 }
                 mask /=2;
             }
@@ -58,64 +81,78 @@ public class IntegerFenwickTree {
         return index;
     }
 
+    @Override
     public void add(long value){
-        if(size >= data.length-1){
+        if(size >= data.length()-1){
             doubleData();
         }
         adjust(size+1, value);
         totalSum+=value;
         size++;
-        assert(totalSum == rsq(data.length-2));
+        assert(totalSum == rsq(data.length()-2));
     }
 
+    @Override
     public void adj(int index, long value){
         index++;                                                                                                        //1-indexed
-        assert(index < data.length);
+        assert(index < data.length());
         adjust(index, value);
         totalSum+=value;
-        assert(totalSum == rsq(data.length-2));                                                                         //extra -1 to compensate for 1-indexing
+        assert(totalSum == rsq(data.length()-2));                                                                       //extra -1 to compensate for 1-indexing
     }
 
+    @Override
     public long rsq(int b){
         b++;                                                                                                            //1-indexed
         long sum = 0;
-        for(;b>0;b-=(b & -b)) sum += data[b];
+        for(;b>0;b-=(b & -b)) sum += data.get(b);
         return sum;
     }
 
     private void adjust(int k, long v){
-        for(;k<data.length;k+= (k & -k)){
-            data[k] += v;
-            assert(data[k] >= 0);
+        for(;k<data.length();k+= (k & -k)){
+            data.add(k, v);
+            assert(data.get(k) >= 0);
         }
     }
 
     private void doubleData(){
-        long[] tmp = new long[2*data.length];
-        for(int i=0;i<data.length;i++){
-            tmp[i] = data[i];
-        }
-        tmp[data.length] = totalSum;
+        int length = data.length();
+        data.resize(2*length);                                                                                          //Keeps the values, without copying them if the tree is stored in segments
+        data.set(length, totalSum);
         log.debugln("Doubling Fenwick tree");
-        data = tmp;
     }
 
+    @Override
     public void halfData(){
-        assert(rsq((data.length/2) -1)== rsq(size-1));
-        long[] tmp = new long[data.length/2];
-        for(int i=0;i<data.length/2;i++){
-            tmp[i] = data[i];
-        }
+        assert(rsq((data.length()/2) -1)== rsq(size-1));
+        data.resize(data.length()/2);
         log.debugln("Halving Fenwick tree");
-        data = tmp;
-        size = data.length-1;
+        size = data.length()-1;
+    }
+
+    /**
+     * Replaces the values of this tree with <code>values</code> in linear time
+     */
+    public void rebuild(long[] values){
+        assert(values.length == size);
+        data.clear();
+        totalSum = 0;
+        for(int i=0;i<values.length;i++){
+            data.set(i+1, values[i]);
+            totalSum += values[i];
+        }
+        for(int k=1;k<data.length();k++){                                                                               //Add every node to its parent
+            int parent = k + (k & -k);
+            if(parent < data.length()) data.add(parent, data.get(k));
+        }
     }
 
     @Override
     public String toString(){
-        String r = "VALS: ("+data[0]+"), ";
-        for(int i=1;i<data.length;i++){
-            r +=data[i]+", ";
+        String r = "VALS: ("+data.get(0)+"), ";
+        for(int i=1;i<data.length();i++){
+            r +=data.get(i)+", ";
         }
 
         r+="\nRSQ:";
@@ -125,7 +162,22 @@ public class IntegerFenwickTree {
         return r;
     }
 
+    @Override
     public int subtreeSize(){
-        return (data.length/2) -1;
+        return (data.length()/2) -1;
+    }
+
+    @Override
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        data.save(checkpoint);
+        checkpoint.putInt(size);
+        checkpoint.putLong(totalSum);
+    }
+
+    @Override
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        data.restore(checkpoint);
+        size = checkpoint.getInt();
+        totalSum = checkpoint.getLong();
     }
 }
@@ -0,0 +1,114 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.utils.random.Random;
+import nl.utwente.simulator.utils.storage.ArrayAllocator;
+
+import java.io.IOException;
+
+/**
+ * Prefix sums over a growing list of non-negative integers, from which an index can be sampled with a probability
+ * proportional to its value
+ */
+public interface IntegerSamplingTree {
+
+    /**
+     * @return Empty tree with layout <code>type</code>
+     */
+    static IntegerSamplingTree create(SamplingTree type){
+        return create(type, ArrayAllocator.HEAP);
+    }
+
+    /**
+     * @return Empty tree with layout <code>type</code>, of which a Fenwick tree is stored by <code>allocator</code>
+     */
+    static IntegerSamplingTree create(SamplingTree type, ArrayAllocator allocator){
+        switch(type){
+            case BARY:
+                return new IntegerBAryTree();
+            case COMPOSITION_REJECTION:
+                return new IntegerCompositionRejectionSampler();
+            case FENWICK:
+            default:
+                return new IntegerFenwickTree(allocator);
+        }
+    }
+
+    /**
+     * Adds <code>value</code> at the end of the list
+     */
+    void add(long value);
+
+    /**
+     * Adds <code>value</code> to the value at <code>index</code>
+     */
+    void adj(int index, long value);
+
+    /**
+     * @return Sum of the values up to and including <code>index</code>
+     */
+    long rsq(int index);
+
+    /**
+     * @return Index of which the range of prefix sums contains <code>prob</code>, which should be smaller than <code>totalSum()</code>
+     */
+    int indexOf(long prob);
+
+    /**
+     * @return Index sampled with a probability proportional to its value
+     */
+    default int sample(Random random){
+        return indexOf(random.getRandom(totalSum()));
+    }
+
+    /**
+     * @return Index sampled with a probability proportional to its value, where <code>excludedValue</code> is
+     * subtracted from the value at <code>excludedIndex</code>
+     */
+    default int sampleExcluding(Random random, int excludedIndex, long excludedValue){
+        long sample = random.getRandom(totalSum() - excludedValue);
+        long preExcludedSum = rsq(excludedIndex);                                                                       //Sum of all values with index <= excludedIndex
+        if(sample < preExcludedSum - excludedValue){                                                                    //return regular index if sample matches value with index smaller than excluded one
+            return indexOf(sample);
+        }else{
+            return indexOf(sample + excludedValue);                                                                     //Include offset to skip the excluded value
+        }
+    }
+
+    /**
+     * @return Index of at least <code>firstIndex</code>, which should be positive, sampled as by <code>sampleExcluding</code>
+     */
+    default int sampleFrom(Random random, int firstIndex, int excludedIndex, long excludedValue){
+        assert(firstIndex > 0);
+        long offset = rsq(firstIndex-1);                                                                                //Sum of all values that may not be sampled
+        long sample = offset + random.getRandom(totalSum() - offset - excludedValue);
+        if(excludedIndex < firstIndex || sample < rsq(excludedIndex) - excludedValue){
+            return indexOf(sample);
+        }else{
+            return indexOf(sample + excludedValue);                                                                     //Include offset to skip the excluded value
+        }
+    }
+
+    int size();
+
+    long totalSum();
+
+    /**
+     * @return Number of values that are kept by <code>halfData</code>
+     */
+    int subtreeSize();
+
+    /**
+     * Halves the capacity of the tree, dropping all values from index <code>subtreeSize()</code> onwards, which should be zero
+     */
+    void halfData();
+
+    /**
+     * Writes the values and the layout of the tree to <code>checkpoint</code>
+     */
+    void save(CheckpointWriter checkpoint) throws IOException;
+
+    /**
+     * Replaces the values and the layout of the tree by the ones written by <code>save</code>
+     */
+    void restore(CheckpointReader checkpoint) throws IOException;
+}
@@ -0,0 +1,230 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.utils.random.Random;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static nl.utwente.simulator.config.Settings.log;
+
+/**
+ * Keeps the local reactivity, global reactivity and exclusion of each Fenwick tree node next to each other in a
+ * single array, so that descending the tree to pick a radical touches one cache line per level instead of three.
+ * The local reactivity is stored as the raw bits of a double.
+ *
+ * Divides by the vessel volume by multiplying with its reciprocal, so the picked radicals are not bit-for-bit
+ * the same as those of <code>FenwickRadicalTracker</code>, although they are drawn from the same distribution.
+ */
+public class InterleavedRadicalTracker extends RadicalTracker {
+
+    private static final int LOCAL = 0;
+    private static final int GLOBAL = 1;
+    private static final int EXCLUSION = 2;
+    private static final int STRIDE = 3;                                                                                //Longs per node
+
+    private final double inverseVesselVolume;
+
+    private long[] nodes = new long[STRIDE];                                                                            //1-indexed, so the node at 0 is unused
+    private int capacity = 1;                                                                                           //Number of nodes, always a power of 2
+    private int size;
+
+    private double localTotal;                                                                                          //We track the total sums separately to prevent adding an extra layer of depth
+    private long globalTotal;
+    private long exclusionTotal;
+
+    public InterleavedRadicalTracker(SimulationContext context, Random random, int firstPolymerIndex) {
+        super(context, random, firstPolymerIndex);
+        this.inverseVesselVolume = 1 / context.vesselVolume;
+    }
+
+    @Override
+    public double totalSum(long activeVinylGroups){
+        return localTotal + (((double)(activeVinylGroups*globalTotal)) - exclusionTotal) * inverseVesselVolume;
+    }
+
+    @Override
+    protected int indexOf(double partialSum, long activeVinylGroups){
+        assert(partialSum>=0);
+        long[] nodes = this.nodes;
+        int root = capacity/2;
+        int depth = 1;
+        int pos = root;
+        double sum = 0;
+        while((pos & 1) == 0) {                                                                                         //while not on a leaf
+            assert(pos>0);
+            int node = pos*STRIDE;
+            double newSum = sum + Double.longBitsToDouble(nodes[node+LOCAL]) + (activeVinylGroups*nodes[node+GLOBAL]-nodes[node+EXCLUSION])*inverseVesselVolume;
+            if(newSum <= partialSum){                                                                                   //go right when intermediate sum < value
+                pos |= root >> depth;
+                sum = newSum;
+            }else{                                                                                                      //go left otherwise
+                pos -= root >> depth;
+            }
+            depth++;
+        }
+        int node = pos*STRIDE;
+        if(sum + Double.longBitsToDouble(nodes[node+LOCAL]) + (activeVinylGroups*nodes[node+GLOBAL]-nodes[node+EXCLUSION])*inverseVesselVolume <= partialSum)
+            pos++;                                                                                                      //increase index if value is on non-leaf node
+        return pos-1;                                                                                                   //convert result to zero-indexed
+    }
+
+    @Override
+    public double totalSum(double localFactor, double globalFactor, double exclusionFactor){
+        return localFactor*localTotal + (globalFactor*globalTotal - exclusionFactor*exclusionTotal) * inverseVesselVolume;
+    }
+
+    @Override
+    protected int indexOf(double partialSum, double localFactor, double globalFactor, double exclusionFactor){
+        assert(partialSum>=0);
+        long[] nodes = this.nodes;
+        int root = capacity/2;
+        int depth = 1;
+        int pos = root;
+        double sum = 0;
+        while((pos & 1) == 0) {                                                                                         //while not on a leaf
+            assert(pos>0);
+            int node = pos*STRIDE;
+            double newSum = sum + localFactor*Double.longBitsToDouble(nodes[node+LOCAL]) + (globalFactor*nodes[node+GLOBAL]-exclusionFactor*nodes[node+EXCLUSION])*inverseVesselVolume;
+            if(newSum <= partialSum){                                                                                   //go right when intermediate sum < value
+                pos |= root >> depth;
+                sum = newSum;
+            }else{                                                                                                      //go left otherwise
+                pos -= root >> depth;
+            }
+            depth++;
+        }
+        int node = pos*STRIDE;
+        if(sum + localFactor*Double.longBitsToDouble(nodes[node+LOCAL]) + (globalFactor*nodes[node+GLOBAL]-exclusionFactor*nodes[node+EXCLUSION])*inverseVesselVolume <= partialSum)
+            pos++;                                                                                                      //increase index if value is on non-leaf node
+        return pos-1;                                                                                                   //convert result to zero-indexed
+    }
+
+    @Override
+    protected int size() {
+        return size;
+    }
+
+    @Override
+    protected int lastRadical() {
+        int index = size-1;
+        while(nodes[index*STRIDE+GLOBAL] <=0)
+            index++;
+        return index;
+    }
+
+    @Override
+    protected long globalRsq(int index) {
+        return rsq(index, GLOBAL);
+    }
+
+    @Override
+    protected long exclusionRsq(int index) {
+        return rsq(index, EXCLUSION);
+    }
+
+    private long rsq(int b, int component){
+        b++;                                                                                                            //1-indexed
+        long sum = 0;
+        for(;b>0;b-=(b & -b)) sum += nodes[b*STRIDE+component];
+        return sum;
+    }
+
+    @Override
+    protected void add(double local, long global, long exclusion) {
+        if(size >= capacity-1){
+            doubleData();
+        }
+        adjust(size+1, local, global, exclusion);
+        size++;
+    }
+
+    @Override
+    protected void adj(int index, double local, long global, long exclusion) {
+        index++;                                                                                                        //1-indexed
+        assert(index < capacity);
+        adjust(index, local, global, exclusion);
+    }
+
+    private void adjust(int k, double local, long global, long exclusion){
+        long[] nodes = this.nodes;
+        for(;k<capacity;k+= (k & -k)){
+            int node = k*STRIDE;
+            nodes[node+LOCAL] = Double.doubleToRawLongBits(Double.longBitsToDouble(nodes[node+LOCAL]) + local);
+            nodes[node+GLOBAL] += global;
+            nodes[node+EXCLUSION] += exclusion;
+            assert(nodes[node+GLOBAL] >= 0 && nodes[node+EXCLUSION] >= 0);
+        }
+        localTotal += local;
+        globalTotal += global;
+        exclusionTotal += exclusion;
+    }
+
+    private void doubleData(){
+        long[] tmp = new long[2*capacity*STRIDE];
+        System.arraycopy(nodes, 0, tmp, 0, nodes.length);
+        int node = capacity*STRIDE;                                                                                     //The new root covers all current nodes
+        tmp[node+LOCAL] = Double.doubleToRawLongBits(localTotal);
+        tmp[node+GLOBAL] = globalTotal;
+        tmp[node+EXCLUSION] = exclusionTotal;
+        log.debugln("Doubling radical tracker");
+        nodes = tmp;
+        capacity *= 2;
+    }
+
+    @Override
+    public void halfData(){
+        capacity /= 2;
+        long[] tmp = new long[capacity*STRIDE];
+        System.arraycopy(nodes, 0, tmp, 0, tmp.length);
+        log.debugln("Halving radical tracker");
+        nodes = tmp;
+        size = capacity-1;
+    }
+
+    @Override
+    protected void rebuild(double[] local, long[] global, long[] exclusion) {
+        long[] nodes = this.nodes;
+        double[] localNodes = new double[capacity];                                                                     //Sum the local reactivity as doubles rather than as raw bits
+        Arrays.fill(nodes, 0);
+        localTotal = 0;
+        globalTotal = 0;
+        exclusionTotal = 0;
+        for(int i=0;i<size;i++){
+            localNodes[i+1] = local[i];
+            nodes[(i+1)*STRIDE+GLOBAL] = global[i];
+            nodes[(i+1)*STRIDE+EXCLUSION] = exclusion[i];
+            localTotal += local[i];
+            globalTotal += global[i];
+            exclusionTotal += exclusion[i];
+        }
+        for(int k=1;k<capacity;k++){                                                                                    //Add every node to its parent
+            int parent = k + (k & -k);
+            if(parent < capacity){
+                localNodes[parent] += localNodes[k];
+                nodes[parent*STRIDE+GLOBAL] += nodes[k*STRIDE+GLOBAL];
+                nodes[parent*STRIDE+EXCLUSION] += nodes[k*STRIDE+EXCLUSION];
+            }
+            nodes[k*STRIDE+LOCAL] = Double.doubleToRawLongBits(localNodes[k]);
+        }
+    }
+
+    @Override
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putLongs(nodes);
+        checkpoint.putInt(size);
+        checkpoint.putDouble(localTotal);
+        checkpoint.putLong(globalTotal);
+        checkpoint.putLong(exclusionTotal);
+    }
+
+    @Override
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        nodes = checkpoint.getLongs();
+        capacity = nodes.length/STRIDE;
+        size = checkpoint.getInt();
+        localTotal = checkpoint.getDouble();
+        globalTotal = checkpoint.getLong();
+        exclusionTotal = checkpoint.getLong();
+    }
+}
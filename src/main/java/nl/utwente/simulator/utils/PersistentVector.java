@@ -0,0 +1,330 @@
+package nl.utwente.simulator.utils;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable list that shares its structure with the lists it was derived from.
+ *
+ * The elements are kept in list order in an AVL tree of which every node knows the size of its subtree. Concatenating
+ * two vectors, replacing an element and removing an element take O(log n) time and only copy the nodes on the paths
+ * they change, so the result shares all other nodes with its operands, which remain unchanged.
+ *
+ * Like the offsets of <code>CrossLinkTree</code>, every node carries an offset that applies to its whole subtree, so a
+ * vector can be shifted in constant time. The offset is only applied to an element, by <code>Shift</code>, when the
+ * element is read.
+ */
+public final class PersistentVector<E> implements Iterable<E> {
+
+    /**
+     * Applies an offset to an element
+     */
+    public interface Shift<E> {
+        E shift(E element, int offset);
+    }
+
+    private final Node<E> root;                                                                                         //Null if the vector is empty
+    private final Shift<E> shift;                                                                                       //Null if the elements cannot be shifted
+
+    private PersistentVector(Node<E> root, Shift<E> shift){
+        this.root = root;
+        this.shift = shift;
+    }
+
+    public static <E> PersistentVector<E> empty(Shift<E> shift){
+        return new PersistentVector<>(null, shift);
+    }
+
+    /**
+     * @return Vector of <code>size</code> times <code>element</code>
+     */
+    public static <E> PersistentVector<E> filled(int size, E element, Shift<E> shift){
+        return new PersistentVector<>(build(size, element), shift);
+    }
+
+    public int size(){
+        return size(root);
+    }
+
+    public E get(int index){
+        checkIndex(index);
+        Node<E> n = root;
+        int offset = 0;
+        while(true){
+            offset += n.offset;
+            int leftSize = size(n.left);
+            if(index < leftSize){
+                n = n.left;
+            }else if(index > leftSize){
+                index -= leftSize + 1;
+                n = n.right;
+            }else{
+                return offset == 0 ? n.element : shift.shift(n.element, offset);
+            }
+        }
+    }
+
+    /**
+     * @return Copy of this vector in which the element at <code>index</code> is replaced by <code>element</code>
+     */
+    public PersistentVector<E> set(int index, E element){
+        checkIndex(index);
+        return new PersistentVector<>(set(root, index, element), shift);
+    }
+
+    /**
+     * @return Copy of this vector without the element at <code>index</code>
+     */
+    public PersistentVector<E> remove(int index){
+        checkIndex(index);
+        return new PersistentVector<>(remove(root, index), shift);
+    }
+
+    /**
+     * @return Elements of this vector followed by the elements of <code>other</code>
+     */
+    public PersistentVector<E> concat(PersistentVector<E> other){
+        return new PersistentVector<>(concat(root, other.root), shift != null ? shift : other.shift);
+    }
+
+    /**
+     * @return Copy of this vector in which <code>offset</code> is applied to every element
+     */
+    public PersistentVector<E> shift(int offset){
+        assert(shift != null);
+        return new PersistentVector<>(offset(root, offset), shift);
+    }
+
+    /**
+     * @return Unmodifiable view of this vector
+     */
+    public List<E> asList(){
+        return new AbstractList<E>() {
+            @Override public E get(int index){return PersistentVector.this.get(index);}
+            @Override public int size(){return PersistentVector.this.size();}
+            @Override public Iterator<E> iterator(){return PersistentVector.this.iterator();}
+        };
+    }
+
+    /**
+     * Iterates over the elements in order, in linear time
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<E> iterator(){
+        return new Iterator<E>() {
+            private final Node<E>[] nodes = (Node<E>[]) new Node<?>[height(root)];                                      //Ancestors of which the element has not been returned yet
+            private final int[] offsets = new int[height(root)];
+            private int depth = 0;
+
+            {
+                descend(root, 0);
+            }
+
+            private void descend(Node<E> n, int offset){
+                for(;n != null;n = n.left){
+                    offset += n.offset;
+                    nodes[depth] = n;
+                    offsets[depth++] = offset;
+                }
+            }
+
+            @Override
+            public boolean hasNext(){
+                return depth > 0;
+            }
+
+            @Override
+            public E next(){
+                if(depth == 0)
+                    throw new NoSuchElementException();
+                Node<E> n = nodes[--depth];
+                int offset = offsets[depth];
+                descend(n.right, offset);
+                return offset == 0 ? n.element : shift.shift(n.element, offset);
+            }
+        };
+    }
+
+    /**
+     * @return Height of the tree, which is at most 1.44 log2(n+2)
+     */
+    int height(){
+        return height(root);
+    }
+
+    private void checkIndex(int index){
+        if(index < 0 || index >= size()){
+            throw new IndexOutOfBoundsException("Index: "+index+", size: "+size());
+        }
+    }
+
+    private static final class Node<E> {
+        final Node<E> left;
+        final E element;
+        final Node<E> right;
+        final int offset;                                                                                               //Applies to the element and both subtrees
+        final int size;
+        final int height;
+
+        Node(Node<E> left, E element, Node<E> right, int offset){
+            this.left = left;
+            this.element = element;
+            this.right = right;
+            this.offset = offset;
+            this.size = size(left) + 1 + size(right);
+            this.height = Math.max(height(left), height(right)) + 1;
+        }
+    }
+
+    private static final class Split<E> {
+        Node<E> left;                                                                                                   //Elements before the one at the index
+        final E element;
+        Node<E> right;                                                                                                  //Elements after the one at the index
+
+        Split(Node<E> left, E element, Node<E> right){
+            this.left = left;
+            this.element = element;
+            this.right = right;
+        }
+    }
+
+    private static int size(Node<?> n){
+        return n == null ? 0 : n.size;
+    }
+
+    private static int height(Node<?> n){
+        return n == null ? 0 : n.height;
+    }
+
+    private static <E> Node<E> build(int size, E element){
+        if(size == 0)
+            return null;
+        int leftSize = (size - 1) / 2;                                                                                  //Subtrees differ at most one in size, and therefore in height
+        return new Node<>(build(leftSize, element), element, build(size - 1 - leftSize, element), 0);
+    }
+
+    /**
+     * @return <code>n</code> with <code>offset</code> added to its whole subtree
+     */
+    private static <E> Node<E> offset(Node<E> n, int offset){
+        return n == null || offset == 0 ? n : new Node<>(n.left, n.element, n.right, n.offset + offset);
+    }
+
+    //A node is taken apart into its left subtree, element and right subtree with the offset of the node applied to each,
+    //so that they can be combined into new nodes without an offset of their own
+
+    private static <E> Node<E> left(Node<E> n){
+        return offset(n.left, n.offset);
+    }
+
+    private static <E> Node<E> right(Node<E> n){
+        return offset(n.right, n.offset);
+    }
+
+    private E element(Node<E> n){
+        return n.offset == 0 ? n.element : shift.shift(n.element, n.offset);
+    }
+
+    private Node<E> set(Node<E> n, int index, E element){
+        int leftSize = size(n.left);
+        if(index < leftSize)
+            return new Node<>(set(left(n), index, element), element(n), right(n), 0);
+        if(index > leftSize)
+            return new Node<>(left(n), element(n), set(right(n), index - leftSize - 1, element), 0);
+        return new Node<>(left(n), element, right(n), 0);
+    }
+
+    private Node<E> remove(Node<E> n, int index){
+        int leftSize = size(n.left);
+        if(index < leftSize)
+            return join(remove(left(n), index), element(n), right(n));                                                  //The heights differ at most two, so join rebalances in constant time
+        if(index > leftSize)
+            return join(left(n), element(n), remove(right(n), index - leftSize - 1));
+        return concat(left(n), right(n));
+    }
+
+    private Node<E> concat(Node<E> left, Node<E> right){
+        if(left == null)
+            return right;
+        if(right == null)
+            return left;
+        if(height(left) < height(right)){                                                                               //Take the element that joins both trees from the lower one
+            Split<E> last = split(left, size(left) - 1);
+            return join(last.left, last.element, right);
+        }
+        Split<E> first = split(right, 0);
+        return join(left, first.element, first.right);
+    }
+
+    /**
+     * @return Elements of <code>n</code> before, at and after <code>index</code>
+     */
+    private Split<E> split(Node<E> n, int index){
+        Node<E> left = left(n);
+        Node<E> right = right(n);
+        int leftSize = size(left);
+        if(index < leftSize){
+            Split<E> split = split(left, index);
+            split.right = join(split.right, element(n), right);
+            return split;
+        }else if(index > leftSize){
+            Split<E> split = split(right, index - leftSize - 1);
+            split.left = join(left, element(n), split.left);
+            return split;
+        }
+        return new Split<>(left, element(n), right);
+    }
+
+    /**
+     * @return Balanced tree of the elements of <code>left</code>, <code>element</code> and the elements of
+     * <code>right</code>, in time proportional to the difference in height of both trees
+     */
+    private Node<E> join(Node<E> left, E element, Node<E> right){
+        if(height(left) > height(right) + 1)
+            return joinRight(left, element, right);
+        if(height(right) > height(left) + 1)
+            return joinLeft(left, element, right);
+        return new Node<>(left, element, right, 0);
+    }
+
+    private Node<E> joinRight(Node<E> left, E element, Node<E> right){                                                  //Descend along the right spine of the higher left tree
+        Node<E> outer = left(left);
+        Node<E> inner = right(left);
+        if(height(inner) <= height(right) + 1){
+            Node<E> joined = new Node<>(inner, element, right, 0);
+            if(height(joined) <= height(outer) + 1)
+                return new Node<>(outer, element(left), joined, 0);
+            return rotateLeft(new Node<>(outer, element(left), rotateRight(joined), 0));
+        }
+        Node<E> joined = joinRight(inner, element, right);
+        Node<E> result = new Node<>(outer, element(left), joined, 0);
+        return height(joined) <= height(outer) + 1 ? result : rotateLeft(result);
+    }
+
+    private Node<E> joinLeft(Node<E> left, E element, Node<E> right){                                                   //Descend along the left spine of the higher right tree
+        Node<E> outer = right(right);
+        Node<E> inner = left(right);
+        if(height(inner) <= height(left) + 1){
+            Node<E> joined = new Node<>(left, element, inner, 0);
+            if(height(joined) <= height(outer) + 1)
+                return new Node<>(joined, element(right), outer, 0);
+            return rotateRight(new Node<>(rotateLeft(joined), element(right), outer, 0));
+        }
+        Node<E> joined = joinLeft(left, element, inner);
+        Node<E> result = new Node<>(joined, element(right), outer, 0);
+        return height(joined) <= height(outer) + 1 ? result : rotateRight(result);
+    }
+
+    private Node<E> rotateLeft(Node<E> n){
+        Node<E> right = right(n);
+        return new Node<>(new Node<>(left(n), element(n), left(right), 0), element(right), right(right), 0);
+    }
+
+    private Node<E> rotateRight(Node<E> n){
+        Node<E> left = left(n);
+        return new Node<>(left(left), element(left), new Node<>(right(left), element(n), right(n), 0), 0);
+    }
+}
@@ -1,14 +1,19 @@
 package nl.utwente.simulator.utils;
 
 
-import nl.utwente.simulator.simulator.Species;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.simulator.SpeciesStore;
 import nl.utwente.simulator.utils.random.Random;
 
-import static nl.utwente.simulator.Simulator.FIRST_POLYMER_INDEX;
-import static nl.utwente.simulator.config.Settings.VESSEL_VOLUME;
+import java.io.IOException;
+
 import static nl.utwente.simulator.config.Settings.log;
 
-public class RadicalTracker {
+/**
+ * Keeps track of the reactivity of the radicals of every species, so that a radical can be picked with a probability
+ * proportional to its reaction rate. Implementations differ in how the three trees below are laid out in memory.
+ */
+public abstract class RadicalTracker {
 
 
     //    k_prop         ( K  n_i*r_i*v_i        1     (     K           K            ))
@@ -17,105 +22,247 @@ public class RadicalTracker {
 
     //BIT:                local reactivity             global reactivity    exclusion
 
-    DecimalFenwickTree localBIT = new DecimalFenwickTree();
-    IntegerFenwickTree globalBIT = new IntegerFenwickTree();
-    IntegerFenwickTree exclusionBIT = new IntegerFenwickTree();
+    public enum Layout {
+        SEPARATE,                                                                                                       //A Fenwick tree per component
+        INTERLEAVED,                                                                                                    //The three components of each node next to each other in a single array
+        FIXED_POINT                                                                                                     //As INTERLEAVED, with the local reactivity in fixed-point, which does not drift
+    }
+
+    public enum Radicals {
+        ALL,
+        MID_CHAIN_CROSSLINKER,                                                                                          //Only the radicals at RadicalPosition.MID_CHAIN_CROSSLINKER
+        CHAIN_END                                                                                                       //Only the radicals at the other positions
+    }
+
+    protected final double vesselVolume;
+    protected final Random random;
+    protected final int firstPolymerIndex;                                                                              //Index of first non-starting species
+    private Radicals radicals = Radicals.ALL;                                                                           //Radicals of which the reactivity is tracked
+
+    protected RadicalTracker(SimulationContext context, Random random, int firstPolymerIndex) {
+        this.vesselVolume = context.vesselVolume;
+        this.random = random;
+        this.firstPolymerIndex = firstPolymerIndex;
+    }
+
+    /**
+     * @return Tracker with the sampling tree and layout selected in <code>context</code>
+     */
+    public static RadicalTracker create(SimulationContext context, Random random, int firstPolymerIndex){
+        switch(context.samplingTree){
+            case BARY:
+                return new BAryRadicalTracker(context, random, firstPolymerIndex);
+            case COMPOSITION_REJECTION:
+                return new CompositionRejectionRadicalTracker(context, random, firstPolymerIndex);
+        }
+        switch(context.radicalTrackerLayout){
+            case INTERLEAVED:
+                return new InterleavedRadicalTracker(context, random, firstPolymerIndex);
+            case FIXED_POINT:
+                return new FixedPointRadicalTracker(context, random, firstPolymerIndex);
+            case SEPARATE:
+            default:
+                return new FenwickRadicalTracker(context, random, firstPolymerIndex);
+        }
+    }
+
+    /**
+     * @return Tracker as above, which only tracks the reactivity of <code>radicals</code>
+     */
+    public static RadicalTracker create(SimulationContext context, Random random, int firstPolymerIndex, Radicals radicals){
+        RadicalTracker tracker = create(context, random, firstPolymerIndex);
+        tracker.radicals = radicals;
+        return tracker;
+    }
 
     //K  n_i*r_i*v_i        1     (     K           K            )
     //∑ ------------- + --------- ( V_T ∑ n_i*r_i - ∑ n_i*r_i*v_i)
     //i    vol_i          vol_T   (     i           i            )
-    public double totalSum(long activeVinylGroups){
-        return localBIT.totalSum + (((double)(activeVinylGroups*globalBIT.totalSum)) - exclusionBIT.totalSum)/ VESSEL_VOLUME;
-    }
+    public abstract double totalSum(long activeVinylGroups);
 
     public int pickRadical(long activeVinylGroups){
         int index;
         double max = totalSum(activeVinylGroups);
         if (max > 0){                                                                                                   //In last steps this may become negative, due to accumulated floating point errors
-            index = indexOf(Random.getRandom(max),activeVinylGroups);
+            index = indexOf(random.getRandom(max),activeVinylGroups);
+        }else{
+            log.warnln("[WARN] Out of bounds due to floating point error");
+            index = firstPolymerIndex;                                                                                  //In which case we return the first polymer in the molecules list
+        }
+        if(index >= size()){
+            index = lastRadical();
+        }
+        return index;
+    }
+
+    /**
+     * @return Zero-indexed position of the species containing the radical at <code>partialSum</code>
+     */
+    protected abstract int indexOf(double partialSum, long activeVinylGroups);
+
+    //  K  n_i*r_i*v_i        1     (   K             K            )
+    //l ∑ ------------- + --------- ( g ∑ n_i*r_i - e ∑ n_i*r_i*v_i)
+    //  i    vol_i          vol_T   (   i             i            )
+    public abstract double totalSum(double localFactor, double globalFactor, double exclusionFactor);
+
+    /**
+     * Picks a radical as <code>pickRadical(long)</code>, with the three components weighted by the given factors
+     * instead of by 1, the number of vinyl groups and 1. The global factor should be at least the exclusion factor
+     * times the number of vinyl groups in any species with radicals, so that no species has a negative reactivity.
+     */
+    public int pickRadical(double localFactor, double globalFactor, double exclusionFactor){
+        int index;
+        double max = totalSum(localFactor, globalFactor, exclusionFactor);
+        if (max > 0){                                                                                                   //In last steps this may become negative, due to accumulated floating point errors
+            index = indexOf(random.getRandom(max), localFactor, globalFactor, exclusionFactor);
         }else{
             log.warnln("[WARN] Out of bounds due to floating point error");
-            index = FIRST_POLYMER_INDEX;                                                                                //In which case we return the first polymer in the molecules list
+            index = firstPolymerIndex;                                                                                  //In which case we return the first polymer in the molecules list
         }
-        if(index >= globalBIT.size){
-            index = globalBIT.size-1;
-            while(globalBIT.data[index] <=0)
-                index++;
+        if(index >= size()){
+            index = lastRadical();
         }
         return index;
     }
 
-    private int indexOf(double partialSum, long activeVinylGroups){
-        assert(partialSum>=0);
-        int root = localBIT.root();
-        int depth = 1;
-        int pos = root;
-        double sum = 0;
-        while(pos % 2 == 0) {                                                                                           //while not on a leaf
-            assert(pos>0);
-            double newSum = sum + localBIT.data[pos]+(activeVinylGroups*globalBIT.data[pos]-exclusionBIT.data[pos])/VESSEL_VOLUME;
-            if(newSum <= partialSum){                                                                                   //go right when intermediate sum < value
-                pos |= root >> depth;
-                sum = newSum;
-            }else{                                                                                                      //go left otherwise
-                pos -= root >> depth;
-            }
-            depth++;
+    /**
+     * @return Zero-indexed position of the species containing the radical at <code>partialSum</code> of the weighted reactivity
+     */
+    protected abstract int indexOf(double partialSum, double localFactor, double globalFactor, double exclusionFactor);
+
+    /**
+     * @return Number of species in the trees
+     */
+    protected abstract int size();
+
+    /**
+     * @return Index to fall back on when <code>indexOf</code> ends up beyond the last species
+     */
+    protected abstract int lastRadical();
+
+    /**
+     * @return Sum of the global reactivity and of the exclusion of species 0 up to and including <code>index</code>
+     */
+    protected abstract long globalRsq(int index);
+    protected abstract long exclusionRsq(int index);
+
+    /**
+     * Adds a species with the given reactivity at the end of the trees
+     */
+    protected abstract void add(double local, long global, long exclusion);
+
+    /**
+     * Adjusts the reactivity of the species at <code>index</code>
+     */
+    protected abstract void adj(int index, double local, long global, long exclusion);
+
+    public abstract void halfData();
+
+    /**
+     * @return Local reactivity of <code>radicals</code> radicals in a species with local concentration <code>localConcentration</code>
+     */
+    protected double localReactivity(long radicals, double localConcentration){
+        return radicals*localConcentration;
+    }
+
+    /**
+     * @return Number of tracked radicals in a single particle of the species in slot <code>index</code>
+     */
+    protected long numberOfRadicals(SpeciesStore<?> species, int index){
+        switch(radicals){
+            case MID_CHAIN_CROSSLINKER:
+                return species.numberOfMidChainRadicals(index);
+            case CHAIN_END:
+                return species.numberOfRadicals(index) - species.numberOfMidChainRadicals(index);
+            case ALL:
+            default:
+                return species.numberOfRadicals(index);
         }
-        if(sum + localBIT.data[pos]+(activeVinylGroups*globalBIT.data[pos]-exclusionBIT.data[pos])/VESSEL_VOLUME <= partialSum)//increase index if value is on non-leaf node
-            pos++;
-        return pos-1;                                                                                                   //convert result to zero-indexed
     }
 
-    public void decreaseParticle(Species p, int index){
-        localBIT.adj(index, -(p.numberOfRadicals()*p.localConcentration()));
-        globalBIT.adj(index, -p.numberOfRadicals());
-        exclusionBIT.adj(index, -(p.numberOfRadicals()*p.numberOfActiveVinylGroups()));
+    public void decreaseParticle(SpeciesStore<?> species, int index){
+        long radicals = numberOfRadicals(species, index);
+        adj(index, -localReactivity(radicals, species.localConcentration(index)), -radicals, -(radicals*species.numberOfActiveVinylGroups(index)));
     }
 
-    public void increaseParticle(Species p, int index){
-        localBIT.adj(index, p.numberOfRadicals()*p.localConcentration());
-        globalBIT.adj(index, p.numberOfRadicals());
-        exclusionBIT.adj(index, p.numberOfRadicals()*p.numberOfActiveVinylGroups());
+    public void increaseParticle(SpeciesStore<?> species, int index){
+        long radicals = numberOfRadicals(species, index);
+        adj(index, localReactivity(radicals, species.localConcentration(index)), radicals, radicals*species.numberOfActiveVinylGroups(index));
     }
 
-    public void relocate(Species p, int oldIndex, int newIndex){
-        localBIT.adj(    oldIndex, -p.number()*p.numberOfRadicals()*p.localConcentration());                            //Remove from old position
-        globalBIT.adj(   oldIndex, -p.number()*p.numberOfRadicals());
-        exclusionBIT.adj(oldIndex, -p.number()*p.numberOfRadicals()*p.numberOfActiveVinylGroups());
+    /**
+     * Moves the reactivity of the species in slot <code>oldIndex</code> to <code>newIndex</code>, before the species itself is moved
+     */
+    public void relocate(SpeciesStore<?> species, int oldIndex, int newIndex){
+        long radicals = species.number(oldIndex)*numberOfRadicals(species, oldIndex);
+        double local = localReactivity(radicals, species.localConcentration(oldIndex));
+        long vinylGroups = species.numberOfActiveVinylGroups(oldIndex);
 
-        assert(oldIndex == 0 || globalBIT.rsq(oldIndex)   == globalBIT.rsq(oldIndex-1));                                //old location now empty
-        assert(oldIndex == 0 || exclusionBIT.rsq(oldIndex)== exclusionBIT.rsq(oldIndex-1));
+        adj(oldIndex, -local, -radicals, -radicals*vinylGroups);                                                        //Remove from old position
 
-        assert(newIndex == 0 || globalBIT.rsq(newIndex)   == globalBIT.rsq(newIndex-1));
-        assert(newIndex == 0 || exclusionBIT.rsq(newIndex)== exclusionBIT.rsq(newIndex-1));
+        assert(oldIndex == 0 || globalRsq(oldIndex)   == globalRsq(oldIndex-1));                                        //old location now empty
+        assert(oldIndex == 0 || exclusionRsq(oldIndex)== exclusionRsq(oldIndex-1));
 
-        localBIT.adj(    newIndex, p.number()*p.numberOfRadicals()*p.localConcentration());                             //Add at new position
-        globalBIT.adj(   newIndex, p.number()*p.numberOfRadicals());
-        exclusionBIT.adj(newIndex, p.number()*p.numberOfRadicals()*p.numberOfActiveVinylGroups());
+        assert(newIndex == 0 || globalRsq(newIndex)   == globalRsq(newIndex-1));
+        assert(newIndex == 0 || exclusionRsq(newIndex)== exclusionRsq(newIndex-1));
+
+        adj(newIndex, local, radicals, radicals*vinylGroups);                                                           //Add at new position
     }
 
-    public void halfData(){
-        localBIT.halfData();
-        globalBIT.halfData();
-        exclusionBIT.halfData();
+    /**
+     * Adds all particles of the species in slot <code>index</code> at the end of the trees
+     */
+    public void addAll(SpeciesStore<?> species, int index){
+        long radicals = species.number(index)*numberOfRadicals(species, index);
+        add(localReactivity(radicals, species.localConcentration(index)), radicals, radicals*species.numberOfActiveVinylGroups(index));
     }
 
-    public void addAll(Species p){
-        localBIT.add(p.number()*p.numberOfRadicals()*p.localConcentration());
-        globalBIT.add(p.number()*p.numberOfRadicals());
-        exclusionBIT.add(p.number()*p.numberOfRadicals()*p.numberOfActiveVinylGroups());
+    /**
+     * Adds a single particle of the species in slot <code>index</code> at the end of the trees
+     */
+    public void addOne(SpeciesStore<?> species, int index){
+        long radicals = numberOfRadicals(species, index);
+        add(localReactivity(radicals, species.localConcentration(index)), radicals, radicals*species.numberOfActiveVinylGroups(index));
     }
 
-    public void addOne(Species p){
-        localBIT.add(p.numberOfRadicals()*p.localConcentration());
-        globalBIT.add(p.numberOfRadicals());
-        exclusionBIT.add(p.numberOfRadicals()*p.numberOfActiveVinylGroups());
+    public void set(SpeciesStore<?> species, int index){
+        increaseParticle(species, index);
     }
 
-    public void set(Species p, int index){
-        localBIT.adj(index, p.numberOfRadicals()*p.localConcentration());
-        globalBIT.adj(index, p.numberOfRadicals());
-        exclusionBIT.adj(index, p.numberOfRadicals()*p.numberOfActiveVinylGroups());
+    /**
+     * Recalculates the reactivity of every species in <code>species</code> and rebuilds the trees from it in linear time,
+     * discarding the rounding errors accumulated by updating the local reactivity
+     * @return Difference between the sum of all reaction rates before and after rebuilding
+     */
+    public double rebuild(SpeciesStore<?> species, long activeVinylGroups){
+        int size = size();
+        assert(size == species.slots());
+        double[] local = new double[size];
+        long[] global = new long[size];
+        long[] exclusion = new long[size];
+        for(int i=0;i<size;i++){
+            long radicals = species.number(i)*numberOfRadicals(species, i);
+            local[i] = localReactivity(radicals, species.localConcentration(i));
+            global[i] = radicals;
+            exclusion[i] = radicals*species.numberOfActiveVinylGroups(i);
+        }
+        double before = totalSum(activeVinylGroups);
+        rebuild(local, global, exclusion);
+        return before - totalSum(activeVinylGroups);
     }
+
+    /**
+     * Replaces the reactivity of every species, of which there are <code>size()</code>
+     */
+    protected abstract void rebuild(double[] local, long[] global, long[] exclusion);
+    /**
+     * Writes the trees to <code>checkpoint</code> as they are, including the rounding errors of the local reactivity,
+     * so that a restored tracker picks exactly the same radicals
+     */
+    public abstract void save(CheckpointWriter checkpoint) throws IOException;
+
+    /**
+     * Replaces the trees by the ones written by <code>save</code>
+     */
+    public abstract void restore(CheckpointReader checkpoint) throws IOException;
 }
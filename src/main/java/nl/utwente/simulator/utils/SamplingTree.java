@@ -0,0 +1,10 @@
+package nl.utwente.simulator.utils;
+
+/**
+ * Layout of the trees from which vinyl groups and radicals are sampled
+ */
+public enum SamplingTree {
+    FENWICK,                                                                                                            //Binary indexed tree, see IntegerFenwickTree
+    BARY,                                                                                                               //Prefix sums of blocks of 8 nodes per level, see IntegerBAryTree
+    COMPOSITION_REJECTION                                                                                               //Buckets of values within a factor 2 of each other, see IntegerCompositionRejectionSampler
+}
@@ -0,0 +1,167 @@
+package nl.utwente.simulator.utils;
+
+import java.util.Arrays;
+
+/**
+ * Index of every abstract species in the simulator, keyed by the numbers of <code>AbstractSpecies.key()</code>.
+ *
+ * The numbers of a key are packed into <code>width</code> longs, each number taking only the bits needed for its
+ * maximum, and kept in a single open-addressing table with linear probing, so a lookup neither allocates nor boxes.
+ * A removal shifts the following entries of its probe sequence back into the freed slot instead of leaving a
+ * tombstone, so the table does not degrade as species are created and removed.
+ */
+public class SpeciesIndex {                                                                                             //No generics, we don't want boxing and unboxing
+
+    public static final int ABSENT = -1;
+
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int width;                                                                                            //Number of longs per packed key
+    private final int[] words;                                                                                          //Long in which each number is stored
+    private final int[] shifts;                                                                                         //Offset of each number within that long
+    private final long[] maxima;
+    private final long[] packed;                                                                                        //Scratch space for the key that is looked up
+
+    private long[] keys;                                                                                                //Packed key of slot i at [i*width, (i+1)*width)
+    private int[] values;
+    private int mask;                                                                                                   //Capacity - 1, capacity is a power of 2
+    private int size;
+
+    /**
+     * @param maxima Upper bound of each number in a key
+     */
+    public SpeciesIndex(long[] maxima){
+        this.maxima = maxima.clone();
+        this.words = new int[maxima.length];
+        this.shifts = new int[maxima.length];
+
+        int word = 0, shift = 0;
+        for(int n=0;n<maxima.length;n++){
+            int bits = 64 - Long.numberOfLeadingZeros(maxima[n]);
+            if(shift + bits > 64){                                                                                      //Numbers do not cross the boundary between two longs
+                word++;
+                shift = 0;
+            }
+            words[n] = word;
+            shifts[n] = shift;
+            shift += bits;
+        }
+        this.width = word + 1;
+        this.packed = new long[width];
+
+        this.keys = new long[INITIAL_CAPACITY * width];
+        this.values = new int[INITIAL_CAPACITY];
+        Arrays.fill(values, EMPTY);
+        this.mask = INITIAL_CAPACITY - 1;
+    }
+
+    /**
+     * @return Index of the species with <code>key</code>, or <code>ABSENT</code>
+     */
+    public int get(long[] key){
+        pack(key);
+        int slot = find();
+        return values[slot];
+    }
+
+    public void put(long[] key, int value){
+        assert(value >= 0);
+        pack(key);
+        int slot = find();
+        if(values[slot] == EMPTY){
+            System.arraycopy(packed, 0, keys, slot * width, width);
+            size++;
+        }
+        values[slot] = value;
+
+        if(size > (mask + 1) / 2){                                                                                      //Keep probe sequences short
+            resize((mask + 1) * 2);
+        }
+    }
+
+    public void remove(long[] key){
+        pack(key);
+        int hole = find();
+        if(values[hole] == EMPTY)
+            return;
+        size--;
+
+        for(int slot = (hole + 1) & mask; values[slot] != EMPTY; slot = (slot + 1) & mask){
+            int home = hash(keys, slot * width);
+            if(((slot - home) & mask) >= ((slot - hole) & mask)){                                                       //Entry may move back into the hole without passing its home slot
+                System.arraycopy(keys, slot * width, keys, hole * width, width);
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        values[hole] = EMPTY;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @return Number of longs a key is packed into
+     */
+    public int width(){
+        return width;
+    }
+
+    private void pack(long[] key){
+        assert(key.length == maxima.length);
+        Arrays.fill(packed, 0);
+        for(int n=0;n<key.length;n++){
+            assert(key[n] >= 0 && key[n] <= maxima[n]);
+            packed[words[n]] |= key[n] << shifts[n];
+        }
+    }
+
+    /**
+     * @return Slot containing the packed key, or the empty slot where it would be inserted
+     */
+    private int find(){
+        int slot = hash(packed, 0);
+        while(values[slot] != EMPTY && !matches(slot)){
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean matches(int slot){
+        int offset = slot * width;
+        for(int w=0;w<width;w++){
+            if(keys[offset + w] != packed[w])
+                return false;
+        }
+        return true;
+    }
+
+    private int hash(long[] array, int offset){
+        long h = 0;
+        for(int w=0;w<width;w++){
+            h = (h ^ array[offset + w]) * 0x9E3779B97F4A7C15L;                                                          //Fibonacci hashing
+        }
+        return (int) (h ^ (h >>> 32) ^ (h >>> 17)) & mask;
+    }
+
+    private void resize(int capacity){
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+
+        keys = new long[capacity * width];
+        values = new int[capacity];
+        Arrays.fill(values, EMPTY);
+        mask = capacity - 1;
+
+        for(int i=0;i<oldValues.length;i++){
+            if(oldValues[i] != EMPTY){
+                System.arraycopy(oldKeys, i * width, packed, 0, width);
+                int slot = find();
+                System.arraycopy(packed, 0, keys, slot * width, width);
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package nl.utwente.simulator.utils.codegeneration;
 
 import nl.utwente.simulator.config.Expression;
 import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
 import org.codehaus.janino.JavaSourceClassLoader;
 
 import java.text.ParseException;
@@ -26,12 +27,26 @@ public class ExpressionGenerator {
                 "}" +
             "}";
 
+    /**
+     * Generates <code>expression</code> using the values of <code>Settings</code>
+     */
     public static Expression generate(String expression) throws ParseException {
-        Settings.log.debugln("converted from "+expression);
+        return generate(expression, INTERACTION_RADIUS_FORMULA, WEIGHT_HALF_INITIATOR, WEIGHT_MONOMER, WEIGHT_CROSSLINKER, MONOMER_LENGTH);
+    }
+
+    /**
+     * Generates <code>expression</code> using the values of <code>context</code>
+     */
+    public static Expression generate(String expression, SimulationContext context) throws ParseException {
+        return generate(expression, context.interactionRadiusFormula, context.weightHalfInitiator, context.weightMonomer, context.weightCrosslinker, context.monomerLength);
+    }
+
+    private static synchronized Expression generate(String expression, String radiusFormula, double weightI, double weightM, double weightC, double monomerLength) throws ParseException {
+        Settings.log.debugln("converted from "+expression);                                                             //Synchronized, as the converter is shared
         if(expression.replace("(","").length() != expression.replace(")","").length()){
             throw new ParseException("Missing parenthesis",0);
         }
-        String javaFunction = converter.convert(desugar(expression));
+        String javaFunction = converter.convert(desugar(expression, radiusFormula, weightI, weightM, weightC, monomerLength));
         Settings.log.debugln("converted to "+javaFunction);
 
         String janinoFile = String.format(
@@ -57,23 +72,23 @@ public class ExpressionGenerator {
 
     /**
      * Since Expression only contains <code>Species</code>-specific properties we need to inject some value which are
-     * defined in <code>Settings</code>.
+     * defined in <code>Settings</code> or <code>SimulationContext</code>.
      *
      * CONVERTS:
      *
      * - w -> p.getWeight()
-     * - l -> Settings.MONOMER_LENGTH
+     * - l -> monomer length
      *
      * ALIASES
      *
      * - n: number of segments -> (I+M+2C-P)
      * - m: number of crosslinks,ignoring cycles -> (R-1)
      */
-    private static String desugar(String string){
+    private static String desugar(String string, String radiusFormula, double weightI, double weightM, double weightC, double monomerLength){
         return string
-            .replace("SIZE", "2*"+INTERACTION_RADIUS_FORMULA)
-            .replace("w", String.format(Locale.ROOT,"(I*%f+M*%f+C*%f)", WEIGHT_HALF_INITIATOR, WEIGHT_MONOMER, WEIGHT_CROSSLINKER))
-            .replace("l", "("+MONOMER_LENGTH +")")
+            .replace("SIZE", "2*"+radiusFormula)
+            .replace("w", String.format(Locale.ROOT,"(I*%f+M*%f+C*%f)", weightI, weightM, weightC))
+            .replace("l", "("+monomerLength +")")
             .replace("n", "(I+M+2C-P)")
             .replace("m", "(C-P)")
             ;
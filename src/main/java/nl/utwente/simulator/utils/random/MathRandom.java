@@ -0,0 +1,55 @@
+package nl.utwente.simulator.utils.random;
+
+import nl.utwente.simulator.input.InputValue;
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+
+import java.io.IOException;
+
+import static nl.utwente.simulator.input.InputSource.STRUCTURED;
+import static nl.utwente.simulator.input.InputSource.UNSTRUCTURED;
+
+/**
+ * Linear congruential generator of <code>java.util.Random</code> (as used by <code>Math.random()</code>),
+ * split by seeding a new generator from this stream
+ */
+@InputValue(value = "Linear congruential (java.util.Random)", src = {UNSTRUCTURED, STRUCTURED})
+public class MathRandom extends Random {
+
+    private java.util.Random random;
+
+    public MathRandom() {
+        this.random = new java.util.Random();
+    }
+
+    public MathRandom(long seed) {
+        this.random = new java.util.Random(seed);
+    }
+
+    @Override
+    protected void fill(long[] buffer) {
+        for(int i=0;i<buffer.length;i++){
+            buffer[i] = random.nextLong();
+        }
+    }
+
+    @Override
+    protected void seed(long seed) {
+        random.setSeed(seed);
+    }
+
+    @Override
+    protected void saveState(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putBytes(serialize(random));
+    }
+
+    @Override
+    protected void restoreState(CheckpointReader checkpoint) throws IOException {
+        random = deserialize(checkpoint.getBytes(), java.util.Random.class);
+    }
+
+    @Override
+    public MathRandom split() {
+        return new MathRandom(nextLong());
+    }
+}
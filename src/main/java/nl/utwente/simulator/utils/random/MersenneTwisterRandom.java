@@ -0,0 +1,55 @@
+package nl.utwente.simulator.utils.random;
+
+import nl.utwente.simulator.input.InputValue;
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+import org.apache.commons.math3.random.MersenneTwister;
+
+import java.io.IOException;
+
+import static nl.utwente.simulator.input.InputSource.STRUCTURED;
+import static nl.utwente.simulator.input.InputSource.UNSTRUCTURED;
+
+/**
+ * Mersenne Twister (MT19937) generator of Apache Commons Math, split by seeding a new generator from this stream
+ */
+@InputValue(value = "Mersenne Twister", src = {UNSTRUCTURED, STRUCTURED})
+public class MersenneTwisterRandom extends Random {
+
+    private MersenneTwister mt;
+
+    public MersenneTwisterRandom() {
+        this.mt = new MersenneTwister();
+    }
+
+    public MersenneTwisterRandom(long seed) {
+        this.mt = new MersenneTwister(seed);
+    }
+
+    @Override
+    protected void fill(long[] buffer) {
+        for(int i=0;i<buffer.length;i++){
+            buffer[i] = mt.nextLong();
+        }
+    }
+
+    @Override
+    protected void seed(long seed) {
+        mt.setSeed(seed);
+    }
+
+    @Override
+    protected void saveState(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putBytes(serialize(mt));
+    }
+
+    @Override
+    protected void restoreState(CheckpointReader checkpoint) throws IOException {
+        mt = deserialize(checkpoint.getBytes(), MersenneTwister.class);
+    }
+
+    @Override
+    public MersenneTwisterRandom split() {
+        return new MersenneTwisterRandom(nextLong());
+    }
+}
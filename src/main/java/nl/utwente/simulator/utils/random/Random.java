@@ -1,18 +1,149 @@
 package nl.utwente.simulator.utils.random;
 
-import java.util.concurrent.ThreadLocalRandom;
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
 
-public class Random {
+import java.io.*;
 
-    public static int getRandom(int max) {
-        return ThreadLocalRandom.current().nextInt(0, max);
+/**
+ * Source of random numbers for a single simulation.
+ *
+ * Implementations generate uniformly distributed 64-bit values in blocks into a primitive buffer, from which all other
+ * draws are derived. A generator is not thread-safe; parallel simulations should each use their own stream,
+ * obtained with <code>split()</code>.
+ */
+public abstract class Random {
+
+    public static final int BUFFER_SIZE = 256;
+
+    private final long[] buffer = new long[BUFFER_SIZE];
+    private int position = BUFFER_SIZE;
+
+    /**
+     * Fills <code>buffer</code> with the next uniformly distributed 64-bit values of this stream
+     */
+    protected abstract void fill(long[] buffer);
+
+    /**
+     * Resets the state of this generator using <code>seed</code>
+     */
+    protected abstract void seed(long seed);
+
+    /**
+     * @return A new generator whose stream is statistically independent of the remainder of this stream
+     */
+    public abstract Random split();
+
+    /**
+     * Writes the state of this generator to <code>checkpoint</code>
+     */
+    protected abstract void saveState(CheckpointWriter checkpoint) throws IOException;
+
+    /**
+     * Replaces the state of this generator by the one written by <code>saveState</code>
+     */
+    protected abstract void restoreState(CheckpointReader checkpoint) throws IOException;
+
+    /**
+     * @return Whether <code>save</code> captures the complete state of this generator, which checkpoints and branches require
+     */
+    public boolean isSaveable(){
+        return true;
+    }
+
+    /**
+     * Writes the state of this generator, including the buffered values that were not used yet
+     */
+    public final void save(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putInt(position);
+        checkpoint.putLongs(buffer);
+        saveState(checkpoint);
+    }
+
+    /**
+     * Replaces the state of this generator by the one written by <code>save</code>, so it continues the same stream
+     */
+    public final void restore(CheckpointReader checkpoint) throws IOException {
+        position = checkpoint.getInt();
+        long[] values = checkpoint.getLongs();
+        if(values.length != BUFFER_SIZE || position < 0 || position > BUFFER_SIZE){
+            throw new IOException("Invalid state of the random generator in checkpoint");
+        }
+        System.arraycopy(values, 0, buffer, 0, BUFFER_SIZE);
+        restoreState(checkpoint);
+    }
+
+    public final void setSeed(long seed){
+        seed(seed);
+        position = BUFFER_SIZE;                                                                                         //Discard values generated with the previous seed
+    }
+
+    public final long nextLong(){
+        if(position == BUFFER_SIZE){
+            fill(buffer);
+            position = 0;
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * @return Uniformly distributed value in [0, 1)
+     */
+    public final double nextDouble(){
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    public final int getRandom(int max) {
+        return (int) getRandom((long) max);
+    }
+
+    /**
+     * @return Uniformly distributed value in [0, max)
+     */
+    public final long getRandom(long max) {
+        assert(max > 0);
+        long m = max - 1;
+        long r = nextLong();
+        if((max & m) == 0L){                                                                                            //Power of two, use lower bits
+            return r & m;
+        }
+        for(long u = r >>> 1; u + m - (r = u % max) < 0L; u = nextLong() >>> 1);                                        //Reject values from the incomplete last interval to prevent bias
+        return r;
+    }
+
+    /**
+     * @return Uniformly distributed value in [0, max)
+     */
+    public final double getRandom(double max) {
+        double r = nextDouble() * max;
+        return r < max ? r : Math.nextDown(max);                                                                        //Rounding may result in max
+    }
+
+    /**
+     * @return Java serialization of <code>generator</code>, for generators of which the state is not accessible otherwise
+     */
+    static byte[] serialize(Serializable generator) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream out = new ObjectOutputStream(bytes)){
+            out.writeObject(generator);
+        }
+        return bytes.toByteArray();
     }
 
-    public static long getRandom(long max) {
-        return ThreadLocalRandom.current().nextLong(0, max);
+    static <T> T deserialize(byte[] bytes, Class<T> type) throws IOException {
+        try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))){
+            return type.cast(in.readObject());
+        }catch(ClassNotFoundException | ClassCastException e){
+            throw new IOException("Invalid state of the random generator in checkpoint", e);
+        }
     }
 
-    public static double getRandom(double max) {
-        return ThreadLocalRandom.current().nextDouble(0.0, max);
+    /**
+     * Mixes the bits of <code>z</code> (variant 13 of Stafford's MurmurHash3 finalizer), used for seeding
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
     }
 }
@@ -0,0 +1,79 @@
+package nl.utwente.simulator.utils.random;
+
+import nl.utwente.simulator.input.InputValue;
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+
+import java.io.IOException;
+
+import static nl.utwente.simulator.input.InputSource.STRUCTURED;
+import static nl.utwente.simulator.input.InputSource.UNSTRUCTURED;
+
+/**
+ * SplitMix64 generator, the algorithm of <code>java.util.SplittableRandom</code>
+ *
+ * Steele, Lea and Flood, Fast splittable pseudorandom number generators (2014)
+ */
+@InputValue(value = "SplitMix64 (splittable)", src = {UNSTRUCTURED, STRUCTURED})
+public class SplitMixRandom extends Random {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+    private long gamma;
+
+    public SplitMixRandom() {
+        this(System.nanoTime() ^ Thread.currentThread().getId() * GOLDEN_GAMMA);
+    }
+
+    public SplitMixRandom(long seed) {
+        seed(seed);
+    }
+
+    private SplitMixRandom(long state, long gamma) {
+        this.state = state;
+        this.gamma = gamma;
+    }
+
+    @Override
+    protected void fill(long[] buffer) {
+        long s = state;
+        final long g = gamma;
+        for(int i=0;i<buffer.length;i++){
+            s += g;
+            buffer[i] = mix64(s);
+        }
+        state = s;
+    }
+
+    @Override
+    protected void seed(long seed) {
+        this.state = seed;
+        this.gamma = GOLDEN_GAMMA;
+    }
+
+    @Override
+    protected void saveState(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putLong(state);
+        checkpoint.putLong(gamma);
+    }
+
+    @Override
+    protected void restoreState(CheckpointReader checkpoint) throws IOException {
+        state = checkpoint.getLong();
+        gamma = checkpoint.getLong();
+    }
+
+    @Override
+    public SplitMixRandom split() {
+        return new SplitMixRandom(nextLong(), mixGamma(nextLong()));
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;                                                                                      //Gamma should be odd
+        int n = Long.bitCount(z ^ (z >>> 1));                                                                           //and have enough bit transitions
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
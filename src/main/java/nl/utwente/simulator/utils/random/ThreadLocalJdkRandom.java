@@ -0,0 +1,48 @@
+package nl.utwente.simulator.utils.random;
+
+import nl.utwente.simulator.input.InputValue;
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static nl.utwente.simulator.config.Settings.log;
+import static nl.utwente.simulator.input.InputSource.STRUCTURED;
+import static nl.utwente.simulator.input.InputSource.UNSTRUCTURED;
+
+/**
+ * Generator of the current thread (<code>java.util.concurrent.ThreadLocalRandom</code>).
+ * It cannot be seeded, so simulations using it are not reproducible.
+ */
+@InputValue(value = "Thread-local (not reproducible)", src = {UNSTRUCTURED, STRUCTURED})
+public class ThreadLocalJdkRandom extends Random {
+
+    @Override
+    protected void fill(long[] buffer) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for(int i=0;i<buffer.length;i++){
+            buffer[i] = random.nextLong();
+        }
+    }
+
+    @Override
+    protected void seed(long seed) {
+        log.warnln("[WARNING]The thread-local random generator cannot be seeded, seed "+seed+" is ignored");
+    }
+
+    @Override
+    public boolean isSaveable(){
+        return false;                                                                                                   //The state of the thread is not accessible
+    }
+
+    @Override
+    protected void saveState(CheckpointWriter checkpoint) {}
+
+    @Override
+    protected void restoreState(CheckpointReader checkpoint) {}
+
+    @Override
+    public ThreadLocalJdkRandom split() {
+        return new ThreadLocalJdkRandom();
+    }
+}
@@ -0,0 +1,92 @@
+package nl.utwente.simulator.utils.random;
+
+import nl.utwente.simulator.input.InputValue;
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+
+import java.io.IOException;
+
+import static nl.utwente.simulator.input.InputSource.STRUCTURED;
+import static nl.utwente.simulator.input.InputSource.UNSTRUCTURED;
+
+/**
+ * xoroshiro128++ generator, split into non-overlapping streams by jumping 2^64 values ahead
+ *
+ * Blackman and Vigna, Scrambled linear pseudorandom number generators (2021)
+ */
+@InputValue(value = "Xoroshiro128++ (splittable)", src = {UNSTRUCTURED, STRUCTURED})
+public class XoroshiroRandom extends Random {
+
+    private static final long[] JUMP = { 0x2bd7a6a6e99c2ddcL, 0x0992ccaf6a6fca05L };
+
+    private long s0;
+    private long s1;
+
+    public XoroshiroRandom() {
+        this(System.nanoTime() ^ Thread.currentThread().getId() * 0x9e3779b97f4a7c15L);
+    }
+
+    public XoroshiroRandom(long seed) {
+        seed(seed);
+    }
+
+    private XoroshiroRandom(long s0, long s1) {
+        this.s0 = s0;
+        this.s1 = s1;
+    }
+
+    @Override
+    protected void fill(long[] buffer) {
+        long a = s0;
+        long b = s1;
+        for(int i=0;i<buffer.length;i++){
+            buffer[i] = Long.rotateLeft(a + b, 17) + a;
+            b ^= a;
+            a = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+            b = Long.rotateLeft(b, 28);
+        }
+        s0 = a;
+        s1 = b;
+    }
+
+    @Override
+    protected void seed(long seed) {
+        s0 = mix64(seed += 0x9e3779b97f4a7c15L);                                                                        //Expand seed with SplitMix64, which never gives an all-zero state
+        s1 = mix64(seed +  0x9e3779b97f4a7c15L);
+    }
+
+    @Override
+    protected void saveState(CheckpointWriter checkpoint) throws IOException {
+        checkpoint.putLong(s0);
+        checkpoint.putLong(s1);
+    }
+
+    @Override
+    protected void restoreState(CheckpointReader checkpoint) throws IOException {
+        s0 = checkpoint.getLong();
+        s1 = checkpoint.getLong();
+    }
+
+    /**
+     * @return Generator continuing with the current state, while this generator jumps 2^64 values ahead
+     */
+    @Override
+    public XoroshiroRandom split() {
+        long[] block = new long[1];
+        XoroshiroRandom result = new XoroshiroRandom(s0, s1);
+        long j0 = 0;
+        long j1 = 0;
+        for(long jump : JUMP){
+            for(int b=0;b<64;b++){
+                if((jump & (1L << b)) != 0){
+                    j0 ^= s0;
+                    j1 ^= s1;
+                }
+                fill(block);
+            }
+        }
+        s0 = j0;                                                                                                        //Values still in the buffer precede the stream of result
+        s1 = j1;
+        return result;
+    }
+}
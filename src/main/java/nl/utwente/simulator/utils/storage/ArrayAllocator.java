@@ -0,0 +1,97 @@
+package nl.utwente.simulator.utils.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Creates the primitive arrays of a simulation in its <code>Storage</code>.
+ *
+ * Arrays outside the heap consist of segments of at most <code>SEGMENT_BYTES</code>, so that they can hold more than
+ * 2 GB and grow by adding segments instead of copying their values. The garbage collector only sees a buffer per
+ * segment, however many values the array holds. A segment starts as small as the array and doubles in size until it
+ * holds <code>SEGMENT_BYTES</code>, like the arrays on the heap. A mapped segment is a temporary file of its own, which
+ * is deleted as soon as it has been mapped; the mapping, and with it the disk space, is released when the segment is
+ * garbage collected.
+ */
+public class ArrayAllocator {
+
+    public static final ArrayAllocator HEAP = new ArrayAllocator(Storage.HEAP, null);
+
+    static final int SEGMENT_SHIFT = 27;
+    static final int SEGMENT_BYTES = 1 << SEGMENT_SHIFT;                                                                //128 MB
+
+    private final Storage storage;
+    private final Path directory;                                                                                       //Of the files of mapped segments
+
+    /**
+     * @param directory Directory of the temporary files of <code>MAPPED</code> storage, or null for the default temporary
+     * directory. It is created if it does not exist yet.
+     */
+    public ArrayAllocator(Storage storage, String directory){
+        this.storage = storage;
+        this.directory = directory == null ? Paths.get(System.getProperty("java.io.tmpdir")) : Paths.get(directory);
+        if(storage == Storage.MAPPED){
+            try{
+                Files.createDirectories(this.directory);
+            }catch(IOException e){
+                throw new UncheckedIOException("Could not create the directory "+directory+" of the mapped segments", e);
+            }
+        }
+    }
+
+    public Storage storage(){
+        return storage;
+    }
+
+    public LongArray longs(int length){
+        return storage == Storage.HEAP ? new LongArray.Heap(length) : new LongArray.Buffered(this, length);
+    }
+
+    public DoubleArray doubles(int length){
+        return storage == Storage.HEAP ? new DoubleArray.Heap(length) : new DoubleArray.Buffered(this, length);
+    }
+
+    public IntArray ints(int length){
+        return storage == Storage.HEAP ? new IntArray.Heap(length) : new IntArray.Buffered(this, length);
+    }
+
+    public ByteArray bytes(int length){
+        return storage == Storage.HEAP ? new ByteArray.Heap(length) : new ByteArray.Buffered(this, length);
+    }
+
+    /**
+     * @return Segment of at least <code>bytes</code> bytes containing the values of <code>segment</code> (which may be
+     * null) followed by zeros
+     */
+    ByteBuffer grow(ByteBuffer segment, int bytes){
+        assert(bytes <= SEGMENT_BYTES);
+        int capacity = segment == null ? 64 : segment.capacity();
+        while(capacity < bytes) capacity *= 2;                                                                          //Powers of two, so at most SEGMENT_BYTES
+        ByteBuffer grown = storage == Storage.MAPPED ? map(capacity) : ByteBuffer.allocateDirect(capacity);
+        if(segment != null){
+            ByteBuffer values = segment.duplicate();
+            values.clear();
+            grown.put(values);
+            grown.clear();
+        }
+        return grown.order(ByteOrder.nativeOrder());
+    }
+
+    private ByteBuffer map(int bytes){
+        try{
+            Path file = Files.createTempFile(directory, "cl-raft-", ".segment");
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)){
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);                                           //Extends the file without writing it, the mapping outlives the channel
+            }
+        }catch(IOException e){
+            throw new UncheckedIOException("Could not map a segment of "+bytes+" bytes in "+directory, e);
+        }
+    }
+}
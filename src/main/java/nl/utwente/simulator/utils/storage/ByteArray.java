@@ -0,0 +1,120 @@
+package nl.utwente.simulator.utils.storage;
+
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Array of bytes created by an <code>ArrayAllocator</code>, of which the length can change
+ */
+public abstract class ByteArray {
+
+    public abstract byte get(int index);
+
+    public abstract void set(int index, byte value);
+
+    public abstract int length();
+
+    /**
+     * Changes the length to <code>length</code>, keeping the values below both lengths; new values are zero
+     */
+    public abstract void resize(int length);
+
+    /**
+     * Sets every value to zero
+     */
+    public abstract void clear();
+
+    /**
+     * Writes the first <code>length</code> values in the same format as <code>CheckpointWriter.putBytes</code>
+     */
+    public void save(CheckpointWriter checkpoint, int length) throws IOException {
+        checkpoint.putInt(length);
+        for(int i=0;i<length;i++){
+            checkpoint.putByte(get(i));
+        }
+    }
+
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        save(checkpoint, length());
+    }
+
+    /**
+     * Replaces the values and the length by the ones written by <code>save</code>
+     */
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        int length = checkpoint.getLength();
+        resize(length);
+        for(int i=0;i<length;i++){
+            set(i, checkpoint.getByte());
+        }
+    }
+
+    static final class Heap extends ByteArray {
+
+        private byte[] values;
+
+        Heap(int length){
+            values = new byte[length];
+        }
+
+        @Override public byte get(int index){return values[index];}
+        @Override public void set(int index, byte value){values[index] = value;}
+        @Override public int length(){return values.length;}
+        @Override public void resize(int length){values = Arrays.copyOf(values, length);}
+        @Override public void clear(){Arrays.fill(values, (byte) 0);}
+
+        @Override
+        public void restore(CheckpointReader checkpoint) throws IOException {
+            values = checkpoint.getBytes();
+        }
+    }
+
+    static final class Buffered extends ByteArray {
+
+        private final Segments segments;
+        private final int shift;
+        private final int mask;
+        private ByteBuffer[] buffers;
+        private int length;
+
+        Buffered(ArrayAllocator allocator, int length){
+            segments = new Segments(allocator, Byte.BYTES);
+            shift = segments.shift;
+            mask = segments.mask;
+            resize(length);
+        }
+
+        @Override
+        public byte get(int index){
+            assert(index < length);
+            return buffers[index >>> shift].get(index & mask);
+        }
+
+        @Override
+        public void set(int index, byte value){
+            assert(index < length);
+            buffers[index >>> shift].put(index & mask, value);
+        }
+
+        @Override
+        public int length(){
+            return length;
+        }
+
+        @Override
+        public void resize(int length){
+            segments.resize(this.length, length);
+            buffers = segments.buffers;
+            this.length = length;
+        }
+
+        @Override
+        public void clear(){
+            segments.zero(0, length, buffers.length);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package nl.utwente.simulator.utils.storage;
+
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * Array of doubles created by an <code>ArrayAllocator</code>, of which the length can change
+ */
+public abstract class DoubleArray {
+
+    public abstract double get(int index);
+
+    public abstract void set(int index, double value);
+
+    public void add(int index, double value){
+        set(index, get(index) + value);
+    }
+
+    public abstract int length();
+
+    /**
+     * Changes the length to <code>length</code>, keeping the values below both lengths; new values are zero
+     */
+    public abstract void resize(int length);
+
+    /**
+     * Sets every value to zero
+     */
+    public abstract void clear();
+
+    /**
+     * Writes the first <code>length</code> values in the same format as <code>CheckpointWriter.putDoubles</code>
+     */
+    public void save(CheckpointWriter checkpoint, int length) throws IOException {
+        checkpoint.putInt(length);
+        for(int i=0;i<length;i++){
+            checkpoint.putDouble(get(i));
+        }
+    }
+
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        save(checkpoint, length());
+    }
+
+    /**
+     * Replaces the values and the length by the ones written by <code>save</code>
+     */
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        int length = checkpoint.getLength();
+        resize(length);
+        for(int i=0;i<length;i++){
+            set(i, checkpoint.getDouble());
+        }
+    }
+
+    static final class Heap extends DoubleArray {
+
+        private double[] values;
+
+        Heap(int length){
+            values = new double[length];
+        }
+
+        @Override public double get(int index){return values[index];}
+        @Override public void set(int index, double value){values[index] = value;}
+        @Override public void add(int index, double value){values[index] += value;}
+        @Override public int length(){return values.length;}
+        @Override public void resize(int length){values = Arrays.copyOf(values, length);}
+        @Override public void clear(){Arrays.fill(values, 0);}
+
+        @Override
+        public void restore(CheckpointReader checkpoint) throws IOException {
+            values = checkpoint.getDoubles();
+        }
+    }
+
+    static final class Buffered extends DoubleArray {
+
+        private final Segments segments;
+        private final int shift;
+        private final int mask;
+        private DoubleBuffer[] buffers = new DoubleBuffer[0];
+        private int length;
+
+        Buffered(ArrayAllocator allocator, int length){
+            segments = new Segments(allocator, Double.BYTES);
+            shift = segments.shift;
+            mask = segments.mask;
+            resize(length);
+        }
+
+        @Override
+        public double get(int index){
+            assert(index < length);
+            return buffers[index >>> shift].get(index & mask);
+        }
+
+        @Override
+        public void set(int index, double value){
+            assert(index < length);
+            buffers[index >>> shift].put(index & mask, value);
+        }
+
+        @Override
+        public int length(){
+            return length;
+        }
+
+        @Override
+        public void resize(int length){
+            segments.resize(this.length, length);
+            ByteBuffer[] bytes = segments.buffers;
+            buffers = new DoubleBuffer[bytes.length];
+            for(int s=0;s<bytes.length;s++) buffers[s] = bytes[s].asDoubleBuffer();                                     //Views that index by value instead of by byte
+            this.length = length;
+        }
+
+        @Override
+        public void clear(){
+            segments.zero(0, length, buffers.length);
+        }
+    }
+}
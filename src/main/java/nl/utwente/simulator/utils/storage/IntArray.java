@@ -0,0 +1,123 @@
+package nl.utwente.simulator.utils.storage;
+
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Array of ints created by an <code>ArrayAllocator</code>, of which the length can change
+ */
+public abstract class IntArray {
+
+    public abstract int get(int index);
+
+    public abstract void set(int index, int value);
+
+    public abstract int length();
+
+    /**
+     * Changes the length to <code>length</code>, keeping the values below both lengths; new values are zero
+     */
+    public abstract void resize(int length);
+
+    /**
+     * Sets every value to zero
+     */
+    public abstract void clear();
+
+    /**
+     * Writes the first <code>length</code> values in the same format as <code>CheckpointWriter.putInts</code>
+     */
+    public void save(CheckpointWriter checkpoint, int length) throws IOException {
+        checkpoint.putInt(length);
+        for(int i=0;i<length;i++){
+            checkpoint.putInt(get(i));
+        }
+    }
+
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        save(checkpoint, length());
+    }
+
+    /**
+     * Replaces the values and the length by the ones written by <code>save</code>
+     */
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        int length = checkpoint.getLength();
+        resize(length);
+        for(int i=0;i<length;i++){
+            set(i, checkpoint.getInt());
+        }
+    }
+
+    static final class Heap extends IntArray {
+
+        private int[] values;
+
+        Heap(int length){
+            values = new int[length];
+        }
+
+        @Override public int get(int index){return values[index];}
+        @Override public void set(int index, int value){values[index] = value;}
+        @Override public int length(){return values.length;}
+        @Override public void resize(int length){values = Arrays.copyOf(values, length);}
+        @Override public void clear(){Arrays.fill(values, 0);}
+
+        @Override
+        public void restore(CheckpointReader checkpoint) throws IOException {
+            values = checkpoint.getInts();
+        }
+    }
+
+    static final class Buffered extends IntArray {
+
+        private final Segments segments;
+        private final int shift;
+        private final int mask;
+        private IntBuffer[] buffers = new IntBuffer[0];
+        private int length;
+
+        Buffered(ArrayAllocator allocator, int length){
+            segments = new Segments(allocator, Integer.BYTES);
+            shift = segments.shift;
+            mask = segments.mask;
+            resize(length);
+        }
+
+        @Override
+        public int get(int index){
+            assert(index < length);
+            return buffers[index >>> shift].get(index & mask);
+        }
+
+        @Override
+        public void set(int index, int value){
+            assert(index < length);
+            buffers[index >>> shift].put(index & mask, value);
+        }
+
+        @Override
+        public int length(){
+            return length;
+        }
+
+        @Override
+        public void resize(int length){
+            segments.resize(this.length, length);
+            ByteBuffer[] bytes = segments.buffers;
+            buffers = new IntBuffer[bytes.length];
+            for(int s=0;s<bytes.length;s++) buffers[s] = bytes[s].asIntBuffer();                                        //Views that index by value instead of by byte
+            this.length = length;
+        }
+
+        @Override
+        public void clear(){
+            segments.zero(0, length, buffers.length);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package nl.utwente.simulator.utils.storage;
+
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Array of longs created by an <code>ArrayAllocator</code>, of which the length can change
+ */
+public abstract class LongArray {                                                                                       //No generics, we don't want boxing and unboxing
+
+    public abstract long get(int index);
+
+    public abstract void set(int index, long value);
+
+    public void add(int index, long value){
+        set(index, get(index) + value);
+    }
+
+    public abstract int length();
+
+    /**
+     * Changes the length to <code>length</code>, keeping the values below both lengths; new values are zero
+     */
+    public abstract void resize(int length);
+
+    /**
+     * Sets every value to zero
+     */
+    public abstract void clear();
+
+    /**
+     * Writes the first <code>length</code> values in the same format as <code>CheckpointWriter.putLongs</code>
+     */
+    public void save(CheckpointWriter checkpoint, int length) throws IOException {
+        checkpoint.putInt(length);
+        for(int i=0;i<length;i++){
+            checkpoint.putLong(get(i));
+        }
+    }
+
+    public void save(CheckpointWriter checkpoint) throws IOException {
+        save(checkpoint, length());
+    }
+
+    /**
+     * Replaces the values and the length by the ones written by <code>save</code>
+     */
+    public void restore(CheckpointReader checkpoint) throws IOException {
+        int length = checkpoint.getLength();
+        resize(length);
+        for(int i=0;i<length;i++){
+            set(i, checkpoint.getLong());
+        }
+    }
+
+    static final class Heap extends LongArray {
+
+        private long[] values;
+
+        Heap(int length){
+            values = new long[length];
+        }
+
+        @Override public long get(int index){return values[index];}
+        @Override public void set(int index, long value){values[index] = value;}
+        @Override public void add(int index, long value){values[index] += value;}
+        @Override public int length(){return values.length;}
+        @Override public void resize(int length){values = Arrays.copyOf(values, length);}
+        @Override public void clear(){Arrays.fill(values, 0);}
+
+        @Override
+        public void restore(CheckpointReader checkpoint) throws IOException {
+            values = checkpoint.getLongs();
+        }
+    }
+
+    static final class Buffered extends LongArray {
+
+        private final Segments segments;
+        private final int shift;
+        private final int mask;
+        private LongBuffer[] buffers = new LongBuffer[0];
+        private int length;
+
+        Buffered(ArrayAllocator allocator, int length){
+            segments = new Segments(allocator, Long.BYTES);
+            shift = segments.shift;
+            mask = segments.mask;
+            resize(length);
+        }
+
+        @Override
+        public long get(int index){
+            assert(index < length);
+            return buffers[index >>> shift].get(index & mask);
+        }
+
+        @Override
+        public void set(int index, long value){
+            assert(index < length);
+            buffers[index >>> shift].put(index & mask, value);
+        }
+
+        @Override
+        public int length(){
+            return length;
+        }
+
+        @Override
+        public void resize(int length){
+            segments.resize(this.length, length);
+            ByteBuffer[] bytes = segments.buffers;
+            buffers = new LongBuffer[bytes.length];
+            for(int s=0;s<bytes.length;s++) buffers[s] = bytes[s].asLongBuffer();                                       //Views that index by value instead of by byte
+            this.length = length;
+        }
+
+        @Override
+        public void clear(){
+            segments.zero(0, length, buffers.length);
+        }
+    }
+}
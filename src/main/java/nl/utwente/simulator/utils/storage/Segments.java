@@ -0,0 +1,64 @@
+package nl.utwente.simulator.utils.storage;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static nl.utwente.simulator.utils.storage.ArrayAllocator.SEGMENT_BYTES;
+import static nl.utwente.simulator.utils.storage.ArrayAllocator.SEGMENT_SHIFT;
+
+/**
+ * Buffers holding the values of an array outside the heap. Value <code>i</code> is at byte
+ * <code>(i & mask) << elementShift</code> of segment <code>i >>> shift</code>.
+ */
+final class Segments {
+
+    private static final byte[] ZEROS = new byte[8192];
+
+    private final ArrayAllocator allocator;
+    final int elementShift;                                                                                             //Log2 of the bytes per value
+    final int shift;                                                                                                    //Log2 of the values per segment
+    final int mask;
+    ByteBuffer[] buffers = new ByteBuffer[0];
+
+    Segments(ArrayAllocator allocator, int elementBytes){
+        this.allocator = allocator;
+        this.elementShift = Integer.numberOfTrailingZeros(elementBytes);
+        this.shift = SEGMENT_SHIFT - elementShift;
+        this.mask = (1 << shift) - 1;
+    }
+
+    /**
+     * Changes the length of the array from <code>oldLength</code> to <code>length</code>, releasing the segments that
+     * are no longer needed. Values from <code>length</code> onwards read as zero afterwards.
+     */
+    void resize(int oldLength, int length){
+        int segments = (int) (((long) length + mask) >>> shift);
+        if(length < oldLength){
+            zero(length, oldLength, segments);                                                                          //Kept segments may be used again when the array grows
+        }
+        buffers = Arrays.copyOf(buffers, segments);
+        for(int s=0;s<segments;s++){
+            long bytes = Math.min(SEGMENT_BYTES, ((long) length << elementShift) - ((long) s << SEGMENT_SHIFT));
+            if(buffers[s] == null || buffers[s].capacity() < bytes){
+                buffers[s] = allocator.grow(buffers[s], (int) bytes);
+            }
+        }
+    }
+
+    /**
+     * Sets the values from <code>from</code> up to <code>to</code> to zero, as far as they are in the first
+     * <code>segments</code> segments
+     */
+    void zero(int from, int to, int segments){
+        for(int s = from >>> shift; s < segments; s++){
+            ByteBuffer values = buffers[s].duplicate();
+            long start = Math.max((long) from << elementShift, (long) s << SEGMENT_SHIFT) - ((long) s << SEGMENT_SHIFT);
+            long end = Math.min((long) to << elementShift, (long) (s + 1) << SEGMENT_SHIFT) - ((long) s << SEGMENT_SHIFT);
+            values.limit((int) Math.min(end, values.capacity()));
+            values.position((int) Math.min(start, values.limit()));
+            while(values.hasRemaining()){
+                values.put(ZEROS, 0, Math.min(ZEROS.length, values.remaining()));
+            }
+        }
+    }
+}
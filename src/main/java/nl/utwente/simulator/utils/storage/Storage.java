@@ -0,0 +1,10 @@
+package nl.utwente.simulator.utils.storage;
+
+/**
+ * Memory in which the species and the Fenwick trees keep their arrays
+ */
+public enum Storage {
+    HEAP,                                                                                                               //Primitive arrays on the heap
+    DIRECT,                                                                                                             //Direct buffers outside the heap, limited by -XX:MaxDirectMemorySize
+    MAPPED                                                                                                              //Memory-mapped temporary files, which the operating system pages to disk when memory runs out
+}
@@ -0,0 +1,66 @@
+package nl.utwente.simulator.config;
+
+import nl.utwente.simulator.ValidationTest;
+import nl.utwente.simulator.entities.species.unstructured.UnstructuredParticle;
+import nl.utwente.simulator.entities.species.unstructured.UnstructuredSpeciesFactory;
+import nl.utwente.simulator.utils.random.Random;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.text.ParseException;
+
+import static nl.utwente.simulator.config.Settings.*;
+import static org.junit.Assert.*;
+
+@Category(ValidationTest.class)
+public class SimulationContextTest extends ValidationTest {
+
+    private final long numberOfMolecules = NUMBER_OF_MOLECULES;
+    private final double compensationFactor = COMPENSATION_FACTOR;
+
+    @After
+    public void restore() throws ParseException {
+        NUMBER_OF_MOLECULES = numberOfMolecules;
+        COMPENSATION_FACTOR = compensationFactor;
+        Settings.init();
+    }
+
+    @Test
+    public void contextsAreIndependentOfLaterSettings() throws ParseException {
+        NUMBER_OF_MOLECULES = 1000;
+        Settings.init();
+        SimulationContext small = SimulationContext.fromSettings();
+
+        NUMBER_OF_MOLECULES = 2000;
+        COMPENSATION_FACTOR = 2 * compensationFactor;
+        Settings.init();
+        SimulationContext large = SimulationContext.fromSettings();
+
+        assertEquals(1000, small.numberOfMolecules);
+        assertEquals(2000, large.numberOfMolecules);
+        assertEquals(2 * small.vesselVolume, large.vesselVolume, 1e-9 * large.vesselVolume);
+        assertEquals(compensationFactor, small.compensationFactor, 0);
+        assertEquals(2 * compensationFactor, large.compensationFactor, 0);
+
+        UnstructuredSpeciesFactory smallFactory = new UnstructuredSpeciesFactory(small);
+        UnstructuredSpeciesFactory largeFactory = new UnstructuredSpeciesFactory(large);
+        UnstructuredParticle m1 = smallFactory.createM(1);
+        UnstructuredParticle m2 = largeFactory.createM(1);
+        assertEquals(m1.getWeight(small), m2.getWeight(large), 0);
+    }
+
+    @Test
+    public void createRandomUsesSelectedGenerator() throws ParseException {
+        Settings.init();
+        SimulationContext context = SimulationContext.fromSettings();
+        Random first = context.createRandom(42);
+        Random second = context.createRandom(42);
+
+        assertSame(randomGenerator.getClass(), first.getClass());
+        assertNotSame(randomGenerator, first);
+        for(int i=0;i<100;i++){
+            assertEquals(first.nextLong(), second.nextLong());
+        }
+    }
+}
@@ -2,12 +2,20 @@ package nl.utwente.simulator.entities.species.structured;
 
 import nl.utwente.simulator.ValidationTest;
 import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.entities.RadicalPosition;
 import nl.utwente.simulator.simulator.RejectedReaction;
+import nl.utwente.simulator.simulator.Species;
+import nl.utwente.simulator.simulator.SpeciesStore;
+import nl.utwente.simulator.utils.random.SplitMixRandom;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static nl.utwente.simulator.config.Settings.CROSSLINKER_VINYL_GROUPS;
 import static org.junit.Assert.assertEquals;
@@ -16,7 +24,7 @@ import static org.junit.Assert.assertTrue;
 @Category(ValidationTest.class)
 public class TestLinkedParticle extends ValidationTest{
 
-    StructuredSpeciesFactory factory = new StructuredSpeciesFactory();
+    StructuredSpeciesFactory factory;
     StructuredParticle i;
     StructuredParticle m;
     StructuredParticle c;
@@ -30,6 +38,7 @@ public class TestLinkedParticle extends ValidationTest{
     @Before
     public void init() throws ParseException {
         Settings.init();
+        factory = new StructuredSpeciesFactory(SimulationContext.fromSettings(), new SplitMixRandom());
         i = factory.createI(1);
         m = factory.createM(1);
         c = factory.createC(1);
@@ -153,6 +162,39 @@ public class TestLinkedParticle extends ValidationTest{
         assertEquals(p5.numberOfI(), countI(p5));
     }
 
+    @Test
+    public void indexOfNthRadicalMatchesThePositions() throws ParseException {
+        SpeciesStore<StructuredParticle> store = factory.createStore(SimulationContext.fromSettings());
+        java.util.Random random = new java.util.Random(1);
+        List<StructuredParticle> particles = new ArrayList<>(Arrays.asList(i, i, m, c, c));
+        for(int step=0;step<2000;step++){                                                                               //Grow particles with both mid-chain and chain-end radicals
+            StructuredParticle radical = particles.get(random.nextInt(particles.size()));
+            StructuredParticle vinyl = particles.get(random.nextInt(particles.size()));
+            if(radical.numberOfRadicals() == 0 || vinyl.numberOfActiveVinylGroups() == 0 || vinyl.type == Species.Type.I)
+                continue;
+            int radicalIndex = random.nextInt((int) radical.numberOfRadicals());
+            try{
+                particles.add(radical == vinyl ? factory.createSpecies(radical, radicalIndex) : factory.createSpecies(radical, radicalIndex, vinyl));
+            }catch(RejectedReaction e){
+                continue;
+            }
+        }
+        for(StructuredParticle p : particles){
+            store.add(p);
+        }
+
+        for(int index=0;index<store.slots();index++){
+            for(boolean midChain : new boolean[]{true, false}){
+                long n = 0;
+                for(int r=0;r<store.numberOfRadicals(index);r++){
+                    if((store.positionOfNthRadical(index, r) == RadicalPosition.MID_CHAIN_CROSSLINKER) == midChain){
+                        assertEquals(r, store.indexOfNthRadical(index, midChain, n++));
+                    }
+                }
+            }
+        }
+    }
+
     private int countM(StructuredParticle particle){
         int result = 0;
         for(Molecule rad : particle.getReactiveCenters()){
@@ -0,0 +1,83 @@
+package nl.utwente.simulator.entities.species.unstructured;
+
+import nl.utwente.simulator.ValidationTest;
+import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.simulator.RejectedReaction;
+import nl.utwente.simulator.simulator.Species;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@Category(ValidationTest.class)
+public class UnstructuredSpeciesStoreTest extends ValidationTest {
+
+    private SimulationContext context;
+    private UnstructuredSpeciesFactory factory;
+
+    @Before
+    public void init() throws ParseException {
+        Settings.init();
+        context = SimulationContext.fromSettings();
+        factory = new UnstructuredSpeciesFactory(context);
+    }
+
+    @Test
+    public void matchesFactory() throws RejectedReaction {
+        UnstructuredSpeciesStore store = new UnstructuredSpeciesStore(context);
+        List<UnstructuredParticle> expected = new ArrayList<>();
+        for(UnstructuredParticle p : new UnstructuredParticle[]{factory.createI(10), factory.createM(20), factory.createC(30)}){
+            store.add(p);
+            expected.add(p);
+        }
+
+        java.util.Random random = new java.util.Random(1);
+        for(int step=0;step<200;step++){                                                                                //Grow chains by random inter- and intramolecular reactions
+            int radical;
+            do{
+                radical = random.nextInt(expected.size());
+            }while(expected.get(radical).numberOfRadicals() == 0);
+            int position = random.nextInt((int) expected.get(radical).numberOfRadicals());
+
+            int vinyl = 1 + random.nextInt(expected.size()-1);
+            if(expected.get(radical).isPolymer() && random.nextInt(4) == 0 && expected.get(radical).numberOfActiveVinylGroups() > 0){
+                expected.add(factory.createSpecies(expected.get(radical), position));
+                store.createSpecies(radical, position, expected.size()-1);
+            }else if(expected.get(vinyl).numberOfActiveVinylGroups() > 0){
+                expected.add(factory.createSpecies(expected.get(radical), position, expected.get(vinyl)));
+                store.createSpecies(radical, position, vinyl, expected.size()-1);
+            }
+        }
+
+        store.moveLast(3);                                                                                              //Overwrite the first polymer
+        expected.set(3, expected.remove(expected.size()-1));
+
+        assertEquals(expected.size(), store.slots());
+        int index = 0;
+        for(Species p : store){
+            assertSame(expected.get(index), p);
+            assertSame(expected.get(index), store.get(index));
+            assertEquals(expected.get(index).getWeight(context), store.getWeight(index), 0);
+            index++;
+        }
+    }
+
+    private static void assertSame(Species expected, Species actual){
+        assertEquals(expected.number(), actual.number());
+        assertEquals(expected.isPolymer(), actual.isPolymer());
+        assertEquals(expected.numberOfI(), actual.numberOfI());
+        assertEquals(expected.numberOfM(), actual.numberOfM());
+        assertEquals(expected.numberOfC(), actual.numberOfC());
+        assertEquals(expected.numberOfActiveVinylGroups(), actual.numberOfActiveVinylGroups());
+        assertEquals(expected.numberOfChainEndNonCrosslinkerRadicals(), actual.numberOfChainEndNonCrosslinkerRadicals());
+        assertEquals(expected.numberOfChainEndCrosslinkerRadicals(), actual.numberOfChainEndCrosslinkerRadicals());
+        assertEquals(expected.numberOfMidChainRadicals(), actual.numberOfMidChainRadicals());
+        assertEquals(expected.localConcentration(), actual.localConcentration(), 0);
+    }
+}
@@ -2,20 +2,38 @@ package nl.utwente.simulator.input;
 
 import nl.utwente.simulator.ValidationTest;
 import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.utils.random.MathRandom;
+import nl.utwente.simulator.utils.random.Random;
+import nl.utwente.simulator.utils.random.SplitMixRandom;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.AfterClass;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.text.ParseException;
 
 import static nl.utwente.simulator.config.Settings.log;
 import static nl.utwente.simulator.input.ExcelInput.*;
 import static nl.utwente.simulator.input.InputSource.TEST;
+import static nl.utwente.simulator.input.InputSource.UNSTRUCTURED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 
 @Category(ValidationTest.class)
 public class ExcelInputTest extends ValidationTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @AfterClass
     public static void cleanup(){
         ExcelInput.deleteExcel(TEST);
@@ -50,6 +68,49 @@ public class ExcelInputTest extends ValidationTest {
         }
     }
 
+    @Test
+    public void missingFieldsGetTheirDeclaredValue() throws ReflectiveOperationException, IOException, ParseException {
+        String inputDirectory = Settings.INPUT_DIRECTORY;
+        String inputFile = Settings.INPUT_FILE;
+        InputSource inputSource = Settings.INPUT_SOURCE;
+        String outputDirectory = Settings.OUTPUT_DIRECTORY;
+        long seed = Settings.RANDOM_SEED;
+        Random generator = Settings.randomGenerator;
+        try {
+            Settings.INPUT_DIRECTORY = folder.getRoot().getPath();
+            generateExcel(Settings.class, UNSTRUCTURED, false);
+            File workbook = new File(folder.getRoot(), UNSTRUCTURED.defaultFileName());
+            readContext(UNSTRUCTURED, workbook, folder.getRoot().getPath());
+
+            try (XSSFWorkbook wb = new XSSFWorkbook(new FileInputStream(workbook))) {                                   //Remove the rows that workbooks of older versions do not have
+                XSSFSheet sheet = wb.getSheet("input");
+                for (int i = sheet.getLastRowNum(); i >= 0; i--) {
+                    if (sheet.getRow(i).getCell(HEADER_COLUMN).getStringCellValue().startsWith("Random")) {
+                        sheet.removeRow(sheet.getRow(i));
+                        if (i < sheet.getLastRowNum()) sheet.shiftRows(i + 1, sheet.getLastRowNum(), -1);
+                    }
+                }
+                try (FileOutputStream out = new FileOutputStream(workbook)) {
+                    wb.write(out);
+                }
+            }
+            Settings.RANDOM_SEED = 42;
+            Settings.randomGenerator = new MathRandom();
+            SimulationContext context = readContext(UNSTRUCTURED, workbook, folder.getRoot().getPath());
+
+            assertEquals(0, Settings.RANDOM_SEED);
+            assertSame(SplitMixRandom.class, context.createRandom(1).getClass());
+        } finally {
+            Settings.INPUT_DIRECTORY = inputDirectory;
+            Settings.INPUT_FILE = inputFile;
+            Settings.INPUT_SOURCE = inputSource;
+            Settings.OUTPUT_DIRECTORY = outputDirectory;
+            Settings.RANDOM_SEED = seed;
+            Settings.randomGenerator = generator;
+            Settings.init();
+        }
+    }
+
     public class TestClass {
         public class SubClass1 extends TestClass {}
         public class SubClass2 extends TestClass {
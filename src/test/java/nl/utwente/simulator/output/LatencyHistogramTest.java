@@ -0,0 +1,41 @@
+package nl.utwente.simulator.output;
+
+import nl.utwente.simulator.ValidationTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.assertEquals;
+
+@Category(ValidationTest.class)
+public class LatencyHistogramTest extends ValidationTest {
+
+    @Test
+    public void bucketsArePowersOf2(){
+        assertEquals(0, LatencyHistogram.bucket(0));
+        assertEquals(1, LatencyHistogram.bucket(1));
+        assertEquals(2, LatencyHistogram.bucket(2));
+        assertEquals(2, LatencyHistogram.bucket(3));
+        assertEquals(11, LatencyHistogram.bucket(1024));
+        assertEquals(LatencyHistogram.BUCKETS-1, LatencyHistogram.bucket(Long.MAX_VALUE));
+        for(long nanos=1;nanos<1<<20;nanos+=17){
+            int bucket = LatencyHistogram.bucket(nanos);
+            assertEquals(true, nanos < LatencyHistogram.upperBound(bucket) && nanos >= LatencyHistogram.upperBound(bucket-1));
+        }
+    }
+
+    @Test
+    public void quantiles(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.quantileNanos(0.5));
+        for(int i=0;i<90;i++) histogram.record(100);                                                                    //Bucket [64, 128)
+        for(int i=0;i<10;i++) histogram.record(5000);                                                                   //Bucket [4096, 8192)
+        assertEquals(100, histogram.count());
+        assertEquals(590, histogram.meanNanos(), 1e-9);
+        assertEquals(128, histogram.quantileNanos(0.5));
+        assertEquals(128, histogram.quantileNanos(0.9));
+        assertEquals(8192, histogram.quantileNanos(0.91));
+        histogram.clear();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.quantileNanos(0.99));
+    }
+}
@@ -2,6 +2,7 @@ package nl.utwente.simulator.output;
 
 import nl.utwente.simulator.ValidationTest;
 import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.output.dynamicoutput.functions.BinnedSumFunc;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -21,7 +22,7 @@ public class LogScaleTest extends ValidationTest {
     @Test
     public void test () throws ParseException {
         Settings.init();
-        BinnedSumFunc scaleGenerator = new BinnedSumFunc("", null, false, false);
+        BinnedSumFunc scaleGenerator = new BinnedSumFunc(SimulationContext.fromSettings(), "", null, false, false);
         Long startTime = System.currentTimeMillis();
 
         double G2 = pow(G, 1/POINTS);
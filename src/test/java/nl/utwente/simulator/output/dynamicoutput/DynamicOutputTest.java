@@ -3,6 +3,7 @@ package nl.utwente.simulator.output.dynamicoutput;
 import nl.utwente.simulator.ValidationTest;
 import nl.utwente.simulator.config.Expression;
 import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
 import nl.utwente.simulator.output.dynamicoutput.functions.*;
 import org.junit.Before;
 import org.junit.Test;
@@ -21,7 +22,7 @@ public class DynamicOutputTest extends ValidationTest {
     @Before
     public void init() throws ParseException {
         Settings.init();
-        dynamicOutput = new DynamicOutput();
+        dynamicOutput = new DynamicOutput(SimulationContext.fromSettings());
         assertTrue(dynamicOutput.binnedFuncs.isEmpty());
         assertTrue(dynamicOutput.nonBinnedFuncs.isEmpty());
     }
@@ -0,0 +1,136 @@
+package nl.utwente.simulator.output.dynamicoutput;
+
+import nl.utwente.simulator.ValidationTest;
+import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.entities.species.unstructured.UnstructuredParticle;
+import nl.utwente.simulator.entities.species.unstructured.UnstructuredSpeciesFactory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static nl.utwente.simulator.output.dynamicoutput.EnsembleOutput.Statistic.*;
+import static nl.utwente.simulator.output.dynamicoutput.EnsembleOutput.statistic;
+import static org.junit.Assert.*;
+
+@Category(ValidationTest.class)
+public class EnsembleOutputTest extends ValidationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SimulationContext context;
+
+    @Before
+    public void init() throws ParseException {
+        Settings.init();
+        context = SimulationContext.fromSettings();
+    }
+
+    @Test
+    public void statistics(){
+        List<Double> values = Arrays.asList(1.0, null, 3.0);
+
+        assertEquals(2.0, statistic(values, MEAN), 1e-12);
+        assertEquals(Math.sqrt(2), statistic(values, SD), 1e-12);
+        assertEquals(12.7062047, statistic(values, CI), 1e-6);                                                          //t(0.975, 1) * sd / sqrt(2)
+
+        assertEquals(5.0, statistic(Collections.singletonList(5.0), MEAN), 0);
+        assertNull(statistic(Collections.singletonList(5.0), SD));
+        assertNull(statistic(Collections.singletonList(5.0), CI));
+        assertNull(statistic(Collections.singletonList(null), MEAN));
+    }
+
+    @Test
+    public void mergesReplicasPerConversion() throws ParseException, IOException {
+        UnstructuredSpeciesFactory factory = new UnstructuredSpeciesFactory(context);
+        DynamicOutput first = replica(factory, 1, 2);
+        DynamicOutput second = replica(factory, 3);                                                                     //Did not reach the second conversion
+
+        EnsembleOutput ensemble = new EnsembleOutput(context, Arrays.asList(first, second));
+
+        assertEquals(Arrays.asList(1.0, 3.0), ensemble.nonBinnedValues(0, 0.5));
+        assertEquals(Arrays.asList(2.0, null), ensemble.nonBinnedValues(0, 1.0));
+        assertEquals(2.0, statistic(ensemble.nonBinnedValues(0, 0.5), MEAN), 0);
+        assertEquals(2.0, statistic(ensemble.nonBinnedValues(0, 1.0), MEAN), 0);
+
+        int bin = first.binnedFuncs.get(0).getBinNumber((long) factory.createM(1).getWeight(context));
+        assertEquals(Arrays.asList(1.0, 3.0), ensemble.binnedValues(0, bin, 0.5));
+    }
+
+    @Test
+    public void keepsOnlyTheLastRowUnlessTheHistoryIsKept() throws ParseException, IOException {
+        UnstructuredSpeciesFactory factory = new UnstructuredSpeciesFactory(context);
+        DynamicOutput last = new DynamicOutput(context);
+        DynamicOutput history = replica(factory, 1, 2, 3);
+        last.addFunc("INC(SUM(1))");
+        last.addFunc("INC(MND)");
+        for(int i=1;i<=3;i++){
+            UnstructuredParticle m = factory.createM(i);
+            last.addRow(0.5 * i, Collections.singletonList(m), m);
+        }
+
+        int bin = last.binnedFuncs.get(0).getBinNumber((long) factory.createM(1).getWeight(context));
+        assertEquals(1, last.keys.size());
+        assertNull(last.nonBinnedFuncs.get(0).getData(0.5));
+        assertNull(last.binnedFuncs.get(0).getData(1.0, bin));
+        assertEquals(3.0, last.nonBinnedFuncs.get(0).getData(1.5), 0);
+        assertEquals(3.0, last.binnedFuncs.get(0).getData(1.5, bin), 0);
+
+        assertEquals(3, history.keys.size());
+        for(int i=1;i<=3;i++){
+            assertEquals(i, history.nonBinnedFuncs.get(0).getData(0.5 * i), 0);
+            assertEquals(i, history.binnedFuncs.get(0).getData(0.5 * i, bin), 0);
+        }
+    }
+
+    @Test
+    public void skipsConversionsWithoutData() throws Exception {
+        UnstructuredSpeciesFactory factory = new UnstructuredSpeciesFactory(context);
+        UnstructuredParticle monomer = factory.createM(1);
+        UnstructuredParticle polymer = factory.createSpecies(factory.createI(1), 0, factory.createM(1));
+        DynamicOutput first = new DynamicOutput(context);
+        DynamicOutput second = new DynamicOutput(context);
+        for(DynamicOutput replica : Arrays.asList(first, second)){
+            replica.addFunc("AVG(1)");
+            replica.keepHistory();
+            replica.addRow(0.5, Collections.singletonList(monomer), monomer);                                           //Only polymers count, so there is no data point
+            replica.addRow(1.0, Collections.singletonList(polymer), polymer);
+        }
+
+        SimulationContext ensembleContext = context.withOutputDirectory(folder.getRoot().getPath());
+        new EnsembleOutput(ensembleContext, Arrays.asList(first, second)).export();
+
+        File[] files = folder.getRoot().listFiles((dir, name) -> name.startsWith("ENSEMBLE OTHER"));
+        assertEquals(1, files.length);
+        List<String> lines = Files.readAllLines(files[0].toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());                                                                                  //Header and the second conversion
+        assertTrue(lines.get(1).startsWith("1.00"));
+    }
+
+    /**
+     * @return Output with a data point per number of monomers, at conversions 0.5, 1.0, ...
+     */
+    private DynamicOutput replica(UnstructuredSpeciesFactory factory, long... monomers) throws ParseException, IOException {
+        DynamicOutput output = new DynamicOutput(context);
+        output.addFunc("INC(SUM(1))");
+        output.addFunc("INC(MND)");
+        output.keepHistory();
+        for(int i=0;i<monomers.length;i++){
+            UnstructuredParticle m = factory.createM(monomers[i]);
+            output.addRow(0.5 * (i + 1), Collections.singletonList(m), m);
+        }
+        return output;
+    }
+}
@@ -0,0 +1,87 @@
+package nl.utwente.simulator.output.dynamicoutput;
+
+import nl.utwente.simulator.ValidationTest;
+import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.entities.species.unstructured.UnstructuredParticle;
+import nl.utwente.simulator.entities.species.unstructured.UnstructuredSpeciesFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@Category(ValidationTest.class)
+public class WeightMomentsTest extends ValidationTest {
+
+    private SimulationContext context;
+
+    @Before
+    public void init() throws ParseException {
+        Settings.init();
+        context = SimulationContext.fromSettings();
+    }
+
+    @Test
+    public void removingRestoresMoments(){
+        WeightMoments moments = new WeightMoments();
+        moments.add(3.5, 2);
+        WeightMoments expected = new WeightMoments(moments);
+
+        for(int i=1;i<=1000;i++){
+            moments.add(1e4 * i + 0.1, 1);
+        }
+        for(int i=1000;i>=1;i--){
+            moments.add(1e4 * i + 0.1, -1);
+        }
+
+        for(int k=0;k<=WeightMoments.ORDER;k++){
+            assertEquals(expected.moment(k), moments.moment(k), 0);
+        }
+        assertEquals(7.0, moments.moment(1), 0);
+    }
+
+    @Test
+    public void histogramMatchesIteratingOverSpecies() throws ParseException, IOException {
+        UnstructuredSpeciesFactory factory = new UnstructuredSpeciesFactory(context);
+        UnstructuredParticle monomers = factory.createM(5);
+        UnstructuredParticle crosslinkers = factory.createC(2);
+        List<UnstructuredParticle> particles = Arrays.asList(monomers, crosslinkers);
+
+        WeightHistogram histogram = new WeightHistogram(context);
+        for(UnstructuredParticle p : particles){
+            histogram.add(p, p.number());
+        }
+
+        DynamicOutput iterated = output();
+        DynamicOutput fromMoments = output();
+        iterated.addRow(0, particles, crosslinkers);
+        fromMoments.addRow(0, particles, crosslinkers, histogram);
+
+        for(int f=0;f<iterated.nonBinnedFuncs.size();f++){
+            double expected = iterated.nonBinnedFuncs.get(f).getData(0.0);
+            assertEquals(expected, fromMoments.nonBinnedFuncs.get(f).getData(0.0), expected * 1e-12);
+        }
+        for(int f=0;f<iterated.binnedFuncs.size();f++){
+            for(int bin=0;bin<iterated.binnedFuncs.get(f).maxBins;bin++){
+                double expected = iterated.binnedFuncs.get(f).getData(0.0, bin);
+                assertEquals(expected, fromMoments.binnedFuncs.get(f).getData(0.0, bin), Math.abs(expected) * 1e-12);
+            }
+        }
+    }
+
+    private DynamicOutput output() throws ParseException {
+        DynamicOutput output = new DynamicOutput(context);
+        output.addFunc("INC(MN)");
+        output.addFunc("INC(PDI)");
+        output.addFunc("INC(EXC(PDI))");
+        output.addFunc("INC(MND)");
+        output.addFunc("INC(EXC(MWD))");
+        return output;
+    }
+}
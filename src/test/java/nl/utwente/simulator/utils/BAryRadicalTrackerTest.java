@@ -0,0 +1,94 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.ValidationTest;
+import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.utils.random.SplitMixRandom;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static nl.utwente.simulator.utils.RadicalTrackerEquivalenceTest.add;
+import static nl.utwente.simulator.utils.RadicalTrackerEquivalenceTest.adj;
+import static nl.utwente.simulator.utils.RadicalTrackerEquivalenceTest.assertEquivalent;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the B-ary tree at the sizes at which it gains or loses a level
+ */
+@Category(ValidationTest.class)
+@RunWith(Parameterized.class)
+public class BAryRadicalTrackerTest extends ValidationTest {
+
+    @Parameters(name = "{0} species")
+    public static Collection<Object[]> sizes(){
+        return Arrays.asList(new Object[][]{{8}, {9}, {64}, {65}, {512}, {513}});                                       //On either side of a power of B
+    }
+
+    private final int size;
+
+    public BAryRadicalTrackerTest(int size){
+        this.size = size;
+    }
+
+    @Test
+    public void picksTheSpeciesAtEveryBoundary() throws ParseException {
+        Settings.init();
+        RadicalTracker tracker = new BAryRadicalTracker(SimulationContext.fromSettings(), new SplitMixRandom(1), 0);
+        java.util.Random random = new java.util.Random(size);
+
+        double[] local = new double[size];
+        for(int i=0;i<size;i++){
+            local[i] = random.nextInt(4) * 0.375;                                                                       //Exact in binary, so that every partial sum is exact
+            tracker.add(local[i], 0, 0);
+        }
+        double sum = 0;
+        for(int i=0;i<size;i++){
+            if(local[i] > 0){
+                assertEquals("Start of species "+i, i, tracker.indexOf(sum, 1, 0, 0));
+                //The scan never compares the last child of a node, so also check the sum just before the next one
+                assertEquals("End of species "+i, i, tracker.indexOf(Math.nextDown(sum + local[i]), 1, 0, 0));
+            }
+            sum += local[i];
+        }
+    }
+
+    @Test
+    public void halvesAndGrowsAcrossALevel() throws ParseException {
+        Settings.init();
+        SimulationContext context = SimulationContext.fromSettings();
+        RadicalTracker expected = new FenwickRadicalTracker(context, new SplitMixRandom(1), 0);
+        RadicalTracker bary = new BAryRadicalTracker(context, new SplitMixRandom(1), 0);
+        java.util.Random random = new java.util.Random(size);
+
+        long[] radicals = new long[size];
+        long[] vinylGroups = new long[size];
+        for(int i=0;i<size;i++){
+            radicals[i] = random.nextInt(4);
+            vinylGroups[i] = random.nextInt(100);
+            add(expected, bary, radicals[i], vinylGroups[i]);
+        }
+        assertEquivalent(expected, bary, random);
+
+        int half = Integer.highestOneBit(size);                                                                         //The capacity is the next power of 2
+        for(int i=half-1;i<size;i++){                                                                                   //Empty the upper half, so that the trees can be halved
+            adj(expected, bary, i, -radicals[i], vinylGroups[i]);
+            radicals[i] = 0;
+        }
+        expected.halfData();
+        bary.halfData();
+        assertEquivalent(expected, bary, random);
+
+        for(int i=half-1;i<size;i++){                                                                                   //Grow back to the original capacity
+            radicals[i] = random.nextInt(4);
+            add(expected, bary, radicals[i], vinylGroups[i]);
+        }
+        assertEquivalent(expected, bary, random);
+    }
+}
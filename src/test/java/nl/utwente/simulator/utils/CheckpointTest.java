@@ -0,0 +1,128 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.ValidationTest;
+import nl.utwente.simulator.utils.random.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+@Category(ValidationTest.class)
+public class CheckpointTest extends ValidationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("checkpoint.bin");
+        long[] longs = new long[CheckpointWriter.BUFFER_SIZE / 3];                                                      //Crosses the end of the buffer at an odd position
+        for(int i=0;i<longs.length;i++) longs[i] = i * 0x9E3779B97F4A7C15L;
+        try(CheckpointWriter checkpoint = new CheckpointWriter(file)){
+            checkpoint.putByte((byte) 7);
+            checkpoint.putLongs(longs);
+            checkpoint.putBoolean(true);
+            checkpoint.putString("MWD");
+            checkpoint.putDoubles(new double[]{0.1, Double.NaN, -0.0}, 2);
+            checkpoint.putInts(new int[]{-1, 3});
+            checkpoint.commit();
+        }
+        assertFalse(Files.exists(file.resolveSibling("checkpoint.bin.tmp")));
+
+        try(CheckpointReader checkpoint = new CheckpointReader(file)){
+            assertEquals(7, checkpoint.getByte());
+            assertArrayEquals(longs, checkpoint.getLongs());
+            assertTrue(checkpoint.getBoolean());
+            assertEquals("MWD", checkpoint.getString());
+            assertArrayEquals(new double[]{0.1, Double.NaN}, checkpoint.getDoubles(), 0);
+            assertArrayEquals(new int[]{-1, 3}, checkpoint.getInts());
+            checkpoint.finish();
+        }
+    }
+
+    @Test
+    public void damagedCheckpointIsRejected() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("checkpoint.bin");
+        try(CheckpointWriter checkpoint = new CheckpointWriter(file)){
+            checkpoint.putLongs(new long[1000]);
+            checkpoint.commit();
+        }
+        try(RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")){
+            raf.seek(4000);
+            raf.write(1);
+        }
+        try{
+            new CheckpointReader(file).close();
+            fail("A damaged checkpoint was read");
+        }catch(IOException e){
+            assertTrue(e.getMessage().contains("checksum"));
+        }
+    }
+
+    @Test
+    public void inMemory() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(CheckpointWriter checkpoint = new CheckpointWriter(Channels.newChannel(bytes))){
+            checkpoint.putLongs(new long[]{1, 2, 3});
+            checkpoint.commit();
+        }
+        byte[] snapshot = bytes.toByteArray();
+        for(int i=0;i<2;i++){                                                                                           //A snapshot can be read more than once
+            try(CheckpointReader checkpoint = new CheckpointReader(snapshot)){
+                assertArrayEquals(new long[]{1, 2, 3}, checkpoint.getLongs());
+                checkpoint.finish();
+            }
+        }
+        snapshot[20]++;
+        try{
+            new CheckpointReader(snapshot).close();
+            fail("A damaged snapshot was read");
+        }catch(IOException e){
+            assertTrue(e.getMessage().contains("checksum"));
+        }
+    }
+
+    @Test
+    public void uncommittedCheckpointIsDiscarded() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("checkpoint.bin");
+        try(CheckpointWriter checkpoint = new CheckpointWriter(file)){
+            checkpoint.putLong(1);
+        }
+        assertFalse(Files.exists(file));
+        assertFalse(Files.exists(file.resolveSibling("checkpoint.bin.tmp")));
+    }
+
+    @Test
+    public void restoredRandomContinuesTheSameNumbers() throws IOException {
+        Random[][] generators = {
+                {new SplitMixRandom(1), new SplitMixRandom(2)},
+                {new XoroshiroRandom(1), new XoroshiroRandom(2)},
+                {new MathRandom(1), new MathRandom(2)},
+                {new MersenneTwisterRandom(1), new MersenneTwisterRandom(2)}
+        };
+        for(Random[] pair : generators){
+            Path file = folder.getRoot().toPath().resolve(pair[0].getClass().getSimpleName());
+            for(int i=0;i<1001;i++) pair[0].nextLong();                                                                 //Stop halfway through the buffer
+            try(CheckpointWriter checkpoint = new CheckpointWriter(file)){
+                pair[0].save(checkpoint);
+                checkpoint.commit();
+            }
+            try(CheckpointReader checkpoint = new CheckpointReader(file)){
+                pair[1].restore(checkpoint);
+                checkpoint.finish();
+            }
+            for(int i=0;i<5000;i++){
+                assertEquals(pair[0].getClass().getSimpleName(), pair[0].nextLong(), pair[1].nextLong());
+            }
+        }
+    }
+}
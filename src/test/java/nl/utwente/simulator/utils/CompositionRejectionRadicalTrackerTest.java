@@ -0,0 +1,70 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.ValidationTest;
+import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.utils.random.SplitMixRandom;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.text.ParseException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@Category(ValidationTest.class)
+public class CompositionRejectionRadicalTrackerTest extends ValidationTest {
+
+    private static final int SAMPLES = 1000000;
+
+    @Test
+    public void picksProportionally() throws ParseException {
+        Settings.init();
+        SimulationContext context = SimulationContext.fromSettings();
+        RadicalTracker expected = new FenwickRadicalTracker(context, new SplitMixRandom(1), 0);
+        RadicalTracker tracker = new CompositionRejectionRadicalTracker(context, new SplitMixRandom(1), 0);
+        java.util.Random random = new java.util.Random(1);
+
+        long[] radicals = new long[100];
+        long[] vinylGroups = new long[100];
+        for(int i=0;i<radicals.length;i++){
+            radicals[i] = random.nextInt(4);
+            vinylGroups[i] = random.nextInt(100);
+            expected.add(radicals[i] * 0.37, radicals[i], radicals[i] * vinylGroups[i]);
+            tracker.add(radicals[i] * 0.37, radicals[i], radicals[i] * vinylGroups[i]);
+        }
+        for(int step=0;step<5000;step++){
+            int i = random.nextInt(radicals.length);
+            long delta = radicals[i] > 0 && random.nextBoolean() ? -1 : 1;
+            radicals[i] += delta;
+            expected.adj(i, delta * 0.37, delta, delta * vinylGroups[i]);
+            tracker.adj(i, delta * 0.37, delta, delta * vinylGroups[i]);
+        }
+
+        long activeVinylGroups = 5000;
+        double totalSum = expected.totalSum(activeVinylGroups);
+        assertEquals(totalSum, tracker.totalSum(activeVinylGroups), totalSum * 1e-12);
+
+        long[] counts = new long[radicals.length];
+        for(int i=0;i<SAMPLES;i++) counts[tracker.pickRadical(activeVinylGroups)]++;
+        for(int i=0;i<radicals.length;i++){
+            double p = (radicals[i] * 0.37 + radicals[i] * (activeVinylGroups - vinylGroups[i]) / context.vesselVolume) / totalSum;
+            double sd = Math.sqrt(SAMPLES * p * (1-p));
+            assertTrue("species "+i, Math.abs(counts[i] - SAMPLES * p) <= 5 * sd + 1);                                  //Fails by chance with a negligible probability
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void singleSpeciesWithAllVinylGroups() throws ParseException {
+        Settings.init();
+        SimulationContext context = SimulationContext.fromSettings();
+        for(double local : new double[]{0, 0.37}){
+            RadicalTracker tracker = new CompositionRejectionRadicalTracker(context, new SplitMixRandom(1), 0);
+            tracker.add(local, 3, 3 * 5);                                                                               //3 radicals in the only species, which has all 5 vinyl groups
+            for(int i=0;i<1000;i++){
+                assertEquals(0, tracker.pickRadical(5));
+                assertEquals(0, tracker.pickRadical(local, 0.53 * 5, 0.53));                                            //The global reactivity is a rounding error above zero
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.ValidationTest;
+import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.utils.random.SplitMixRandom;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.text.ParseException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+@Category(ValidationTest.class)
+public class FixedPointRadicalTrackerTest extends ValidationTest {
+
+    @Test
+    public void doesNotDrift() throws ParseException {
+        Settings.init();
+        SimulationContext context = SimulationContext.fromSettings();
+        RadicalTracker[] trackers = {
+                new FenwickRadicalTracker(context, new SplitMixRandom(1), 0),
+                new InterleavedRadicalTracker(context, new SplitMixRandom(1), 0),
+                new BAryRadicalTracker(context, new SplitMixRandom(1), 0),
+                new CompositionRejectionRadicalTracker(context, new SplitMixRandom(1), 0),
+                new FixedPointRadicalTracker(context, new SplitMixRandom(1), 0)
+        };
+        java.util.Random random = new java.util.Random(1);
+
+        long[] radicals = new long[1000];
+        long[] vinylGroups = new long[1000];
+        double[] localConcentrations = new double[1000];
+        for(int i=0;i<radicals.length;i++){
+            radicals[i] = random.nextInt(4);
+            vinylGroups[i] = random.nextInt(100);
+            localConcentrations[i] = random.nextDouble() * vinylGroups[i] / context.minMolVolume;
+            for(RadicalTracker tracker : trackers){
+                tracker.add(tracker.localReactivity(radicals[i], localConcentrations[i]), radicals[i], radicals[i] * vinylGroups[i]);
+            }
+        }
+        for(int step=0;step<100000;step++){                                                                             //Add and remove radicals, as the simulator does
+            int i = random.nextInt(radicals.length);
+            long delta = radicals[i] > 0 && random.nextBoolean() ? -1 : 1;
+            radicals[i] += delta;
+            for(RadicalTracker tracker : trackers){
+                tracker.adj(i, delta * tracker.localReactivity(1, localConcentrations[i]), delta, delta * vinylGroups[i]);
+            }
+        }
+
+        long activeVinylGroups = 50000;
+        for(RadicalTracker tracker : trackers){
+            double[] local = new double[radicals.length];
+            long[] global = new long[radicals.length];
+            long[] exclusion = new long[radicals.length];
+            for(int i=0;i<radicals.length;i++){
+                local[i] = tracker.localReactivity(radicals[i], localConcentrations[i]);
+                global[i] = radicals[i];
+                exclusion[i] = radicals[i] * vinylGroups[i];
+            }
+            long[] globalRsq = new long[radicals.length];
+            long[] exclusionRsq = new long[radicals.length];
+            for(int i=0;i<radicals.length;i++){
+                globalRsq[i] = tracker.globalRsq(i);
+                exclusionRsq[i] = tracker.exclusionRsq(i);
+            }
+
+            double before = tracker.totalSum(activeVinylGroups);
+            tracker.rebuild(local, global, exclusion);
+            double after = tracker.totalSum(activeVinylGroups);
+            assertEquals(tracker.getClass().getSimpleName(), after, before, after * 1e-9);
+            if(tracker instanceof FixedPointRadicalTracker){
+                assertEquals(after, before, 0);
+            }
+            for(int i=0;i<radicals.length;i++){
+                assertEquals(globalRsq[i], tracker.globalRsq(i));
+                assertEquals(exclusionRsq[i], tracker.exclusionRsq(i));
+            }
+        }
+        assertEquals(trackers[0].totalSum(activeVinylGroups), trackers[4].totalSum(activeVinylGroups), trackers[0].totalSum(activeVinylGroups) * 1e-9);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void rejectsLocalReactivityOutsideTheRange() throws ParseException {
+        Settings.init();
+        RadicalTracker tracker = new FixedPointRadicalTracker(SimulationContext.fromSettings(), new SplitMixRandom(1), 0);
+        tracker.localReactivity(1, Double.MAX_VALUE);
+    }
+
+    @Test
+    public void rejectsTotalLocalReactivityOutsideTheRange() throws ParseException {
+        Settings.init();
+        RadicalTracker tracker = new FixedPointRadicalTracker(SimulationContext.fromSettings(), new SplitMixRandom(1), 0);
+        tracker.add(0x1p62, 1, 1);
+        double before = tracker.totalSum(1, 0, 0);
+        try{
+            tracker.add(0x1p62, 1, 1);
+            fail("The total local reactivity does not fit in a long");
+        }catch(ArithmeticException e){
+            assertEquals(before, tracker.totalSum(1, 0, 0), 0);                                                         //The trees are left as they were
+        }
+    }
+}
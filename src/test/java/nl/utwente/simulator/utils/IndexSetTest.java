@@ -0,0 +1,54 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.ValidationTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+@Category(ValidationTest.class)
+public class IndexSetTest extends ValidationTest {
+
+    @Test
+    public void testEmpty(){
+        IndexSet set = new IndexSet();
+        assertEquals(IndexSet.NONE, set.first());
+        assertEquals(IndexSet.NONE, set.last());
+
+        set.add(300000);                                                                                                //Grows to four levels
+        set.add(5);
+        assertEquals(5, set.first());
+        assertEquals(300000, set.last());
+
+        set.remove(5);
+        set.remove(300000);
+        assertEquals(0, set.size());
+        assertEquals(IndexSet.NONE, set.first());
+    }
+
+    @Test
+    public void testAgainstTreeSet(){
+        IndexSet set = new IndexSet();
+        TreeSet<Integer> expected = new TreeSet<>();
+        java.util.Random random = new java.util.Random(1);
+
+        for(int step=0;step<100000;step++){
+            int index = random.nextInt(10000);
+            if(step < 50000 ? random.nextBoolean() : random.nextInt(8) == 0){                                           //Mostly removals in the second half, emptying whole words again
+                set.add(index);
+                expected.add(index);
+            }else{
+                set.remove(index);
+                expected.remove(index);
+            }
+
+            assertEquals(expected.size(), set.size());
+            if(!expected.isEmpty()){
+                assertEquals((int) expected.first(), set.first());
+                assertEquals((int) expected.last(), set.last());
+            }
+        }
+    }
+}
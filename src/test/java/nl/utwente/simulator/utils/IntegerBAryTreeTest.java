@@ -0,0 +1,54 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.ValidationTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.assertEquals;
+
+@Category(ValidationTest.class)
+public class IntegerBAryTreeTest extends ValidationTest {
+
+    @Test
+    public void matchesFenwickTree() {
+        IntegerSamplingTree expected = new IntegerFenwickTree();
+        IntegerSamplingTree bary = new IntegerBAryTree();
+        java.util.Random random = new java.util.Random(1);
+
+        long[] values = new long[1000];
+        for(int i=0;i<values.length;i++){
+            values[i] = random.nextInt(4) == 0 ? 0 : random.nextInt(100);                                               //Include empty slots, which should never be sampled
+            expected.add(values[i]);
+            bary.add(values[i]);
+        }
+        for(int step=0;step<5000;step++){
+            int i = random.nextInt(values.length);
+            long delta = values[i] > 0 && random.nextBoolean() ? -1 : 1;
+            values[i] += delta;
+            expected.adj(i, delta);
+            bary.adj(i, delta);
+        }
+        assertSame(expected, bary, random);
+
+        for(int i=expected.subtreeSize();i<values.length;i++){                                                          //Empty the upper half, so that the trees can be halved
+            expected.adj(i, -values[i]);
+            bary.adj(i, -values[i]);
+        }
+        expected.halfData();
+        bary.halfData();
+        assertSame(expected, bary, random);
+    }
+
+    private static void assertSame(IntegerSamplingTree expected, IntegerSamplingTree actual, java.util.Random random){
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.subtreeSize(), actual.subtreeSize());
+        assertEquals(expected.totalSum(), actual.totalSum());
+        for(int i=0;i<expected.size();i++){
+            assertEquals(expected.rsq(i), actual.rsq(i));
+        }
+        for(int i=0;i<1000;i++){
+            long prob = (long) (random.nextDouble() * expected.totalSum());
+            assertEquals(expected.indexOf(prob), actual.indexOf(prob));
+        }
+    }
+}
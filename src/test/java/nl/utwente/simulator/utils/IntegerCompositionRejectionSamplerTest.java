@@ -0,0 +1,84 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.ValidationTest;
+import nl.utwente.simulator.utils.random.SplitMixRandom;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@Category(ValidationTest.class)
+public class IntegerCompositionRejectionSamplerTest extends ValidationTest {
+
+    private static final int SAMPLES = 1000000;
+
+    @Test
+    public void matchesFenwickTree() {
+        IntegerSamplingTree expected = new IntegerFenwickTree();
+        IntegerSamplingTree sampler = new IntegerCompositionRejectionSampler();
+        long[] values = fill(expected, sampler, new java.util.Random(1));
+
+        for(int i=expected.subtreeSize();i<values.length;i++){                                                          //Empty the upper half, so that both can be halved
+            expected.adj(i, -values[i]);
+            sampler.adj(i, -values[i]);
+        }
+        expected.halfData();
+        sampler.halfData();
+
+        assertEquals(expected.size(), sampler.size());
+        assertEquals(expected.totalSum(), sampler.totalSum());
+        for(int i=0;i<expected.size();i++){
+            assertEquals(expected.rsq(i), sampler.rsq(i));
+        }
+        for(long prob=0;prob<expected.totalSum();prob+=97){
+            assertEquals(expected.indexOf(prob), sampler.indexOf(prob));
+        }
+    }
+
+    @Test
+    public void samplesProportionally() {
+        IntegerSamplingTree sampler = new IntegerCompositionRejectionSampler();
+        long[] values = fill(new IntegerFenwickTree(), sampler, new java.util.Random(2));
+        SplitMixRandom random = new SplitMixRandom(3);
+
+        long[] counts = new long[values.length];
+        for(int i=0;i<SAMPLES;i++) counts[sampler.sample(random)]++;
+        assertProportional(values, counts, SAMPLES, sampler.totalSum());
+
+        int excluded = 7;
+        long excludedValue = values[excluded]/2;
+        counts = new long[values.length];
+        for(int i=0;i<SAMPLES;i++) counts[sampler.sampleExcluding(random, excluded, excludedValue)]++;
+        values[excluded] -= excludedValue;
+        assertProportional(values, counts, SAMPLES, sampler.totalSum()-excludedValue);
+    }
+
+    /**
+     * Fills both trees with the same values, spread over many buckets, and updates them as the simulator does
+     */
+    private static long[] fill(IntegerSamplingTree expected, IntegerSamplingTree sampler, java.util.Random random){
+        long[] values = new long[100];
+        for(int i=0;i<values.length;i++){
+            values[i] = random.nextInt(4) == 0 ? 0 : 1L << random.nextInt(12) | random.nextInt(1 << 10);                //Include empty slots, which should never be sampled
+            expected.add(values[i]);
+            sampler.add(values[i]);
+        }
+        for(int step=0;step<5000;step++){
+            int i = random.nextInt(values.length);
+            long delta = values[i] > 0 && random.nextBoolean() ? -1 : 1;
+            values[i] += delta;
+            expected.adj(i, delta);
+            sampler.adj(i, delta);
+        }
+        return values;
+    }
+
+    private static void assertProportional(long[] values, long[] counts, int samples, long totalSum){
+        for(int i=0;i<values.length;i++){
+            double p = (double) values[i] / totalSum;
+            double sd = Math.sqrt(samples * p * (1-p));
+            assertTrue("index "+i, Math.abs(counts[i] - samples * p) <= 5 * sd + 1);                                    //Fails by chance with a negligible probability
+        }
+    }
+}
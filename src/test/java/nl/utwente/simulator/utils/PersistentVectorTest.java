@@ -0,0 +1,64 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.ValidationTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@Category(ValidationTest.class)
+public class PersistentVectorTest extends ValidationTest {
+
+    private static final PersistentVector.Shift<Integer> SHIFT = (element, offset) -> element + offset;
+
+    @Test
+    public void matchesList(){
+        Random random = new Random(3);
+        List<PersistentVector<Integer>> vectors = new ArrayList<>();
+        List<List<Integer>> expected = new ArrayList<>();
+        vectors.add(PersistentVector.filled(3, 0, SHIFT));
+        expected.add(new ArrayList<>(Arrays.asList(0, 0, 0)));
+        for(int i=0;i<5000;i++){                                                                                        //Combine earlier vectors, like particles that react
+            int a = random.nextInt(vectors.size());
+            PersistentVector<Integer> vector = vectors.get(a);
+            List<Integer> list = new ArrayList<>(expected.get(a));
+            int index;
+            switch(random.nextInt(4)){
+                case 0:
+                    int b = random.nextInt(vectors.size());
+                    vector = vector.concat(vectors.get(b));
+                    list.addAll(expected.get(b));
+                    break;
+                case 1:
+                    if(list.isEmpty()) continue;
+                    index = random.nextInt(list.size());
+                    vector = vector.set(index, i);
+                    list.set(index, i);
+                    break;
+                case 2:
+                    if(list.isEmpty()) continue;
+                    index = random.nextInt(list.size());
+                    vector = vector.remove(index);
+                    list.remove(index);
+                    break;
+                default:
+                    int offset = random.nextInt(100);
+                    vector = vector.shift(offset);
+                    list.replaceAll(element -> element + offset);
+            }
+            vectors.add(vector);
+            expected.add(list);
+        }
+        for(int i=0;i<vectors.size();i++){                                                                              //Every vector is still intact
+            PersistentVector<Integer> vector = vectors.get(i);
+            assertEquals(expected.get(i), vector.asList());
+            assertEquals(expected.get(i), new ArrayList<>(vector.asList()));                                            //Through the iterator
+            assertTrue(vector.height() <= 1.45 * Math.log(vector.size() + 2) / Math.log(2));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.ValidationTest;
+import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.utils.random.Random;
+import nl.utwente.simulator.utils.random.SplitMixRandom;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that every layout of the radical tracker holds the same trees as the separate Fenwick trees
+ */
+@Category(ValidationTest.class)
+@RunWith(Parameterized.class)
+public class RadicalTrackerEquivalenceTest extends ValidationTest {
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> layouts(){
+        return Arrays.asList(new Object[][]{
+                {InterleavedRadicalTracker.class.getSimpleName(), InterleavedRadicalTracker.class},
+                {BAryRadicalTracker.class.getSimpleName(), BAryRadicalTracker.class}
+        });
+    }
+
+    private final Class<? extends RadicalTracker> layout;
+
+    public RadicalTrackerEquivalenceTest(String name, Class<? extends RadicalTracker> layout){
+        this.layout = layout;
+    }
+
+    @Test
+    public void matchesSeparateTrees() throws Exception {
+        Settings.init();
+        SimulationContext context = SimulationContext.fromSettings();
+        RadicalTracker expected = new FenwickRadicalTracker(context, new SplitMixRandom(1), 0);
+        RadicalTracker actual = layout.getConstructor(SimulationContext.class, Random.class, int.class).newInstance(context, new SplitMixRandom(1), 0);
+        java.util.Random random = new java.util.Random(1);
+
+        long[] radicals = new long[1000];
+        long[] vinylGroups = new long[1000];
+        for(int i=0;i<radicals.length;i++){
+            radicals[i] = random.nextInt(4);
+            vinylGroups[i] = random.nextInt(100);
+            add(expected, actual, radicals[i], vinylGroups[i]);
+        }
+        for(int step=0;step<5000;step++){
+            int i = random.nextInt(radicals.length);
+            long delta = radicals[i] > 0 && random.nextBoolean() ? -1 : 1;
+            radicals[i] += delta;
+            adj(expected, actual, i, delta, vinylGroups[i]);
+        }
+        for(int i=511;i<radicals.length;i++){                                                                           //Empty the upper half, so that the trees can be halved
+            adj(expected, actual, i, -radicals[i], vinylGroups[i]);
+        }
+        expected.halfData();
+        actual.halfData();
+
+        assertEquivalent(expected, actual, random);
+    }
+
+    /**
+     * Asserts that both trackers have the same sums and pick the same radicals
+     */
+    static void assertEquivalent(RadicalTracker expected, RadicalTracker actual, java.util.Random random){
+        long activeVinylGroups = 50000;
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.totalSum(activeVinylGroups), actual.totalSum(activeVinylGroups), expected.totalSum(activeVinylGroups) * 1e-12);
+        for(int i=0;i<expected.size();i++){
+            assertEquals(expected.globalRsq(i), actual.globalRsq(i));
+            assertEquals(expected.exclusionRsq(i), actual.exclusionRsq(i));
+        }
+        for(int i=0;i<1000;i++){
+            double partialSum = random.nextDouble() * expected.totalSum(activeVinylGroups);
+            assertEquals(expected.indexOf(partialSum, activeVinylGroups), actual.indexOf(partialSum, activeVinylGroups));
+        }
+    }
+
+    static void add(RadicalTracker expected, RadicalTracker actual, long radicals, long vinylGroups){
+        expected.add(radicals * 0.37, radicals, radicals * vinylGroups);
+        actual.add(radicals * 0.37, radicals, radicals * vinylGroups);
+    }
+
+    static void adj(RadicalTracker expected, RadicalTracker actual, int index, long radicals, long vinylGroups){
+        expected.adj(index, radicals * 0.37, radicals, radicals * vinylGroups);
+        actual.adj(index, radicals * 0.37, radicals, radicals * vinylGroups);
+    }
+}
@@ -0,0 +1,54 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.ValidationTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+@Category(ValidationTest.class)
+public class SpeciesIndexTest extends ValidationTest {
+
+    @Test
+    public void testPacking(){
+        SpeciesIndex index = new SpeciesIndex(new long[]{1L << 40, 1L << 40, 0, 7});                                   //41 + 41 + 0 + 3 bits
+        assertEquals(2, index.width());
+
+        index.put(new long[]{1L << 40, 0, 0, 7}, 1);
+        index.put(new long[]{0, 1L << 40, 0, 7}, 2);
+        assertEquals(1, index.get(new long[]{1L << 40, 0, 0, 7}));
+        assertEquals(2, index.get(new long[]{0, 1L << 40, 0, 7}));
+        assertEquals(SpeciesIndex.ABSENT, index.get(new long[]{0, 0, 0, 7}));
+    }
+
+    @Test
+    public void testAgainstHashMap(){
+        SpeciesIndex index = new SpeciesIndex(new long[]{15, 15, 15});
+        Map<List<Long>, Integer> expected = new HashMap<>();
+        java.util.Random random = new java.util.Random(1);
+
+        for(int step=0;step<100000;step++){                                                                             //Many removals of keys sharing probe sequences
+            long[] key = {random.nextInt(16), random.nextInt(16), random.nextInt(16)};
+            List<Long> boxed = Arrays.asList(key[0], key[1], key[2]);
+            if(random.nextBoolean()){
+                index.put(key, step);
+                expected.put(boxed, step);
+            }else{
+                index.remove(key);
+                expected.remove(boxed);
+            }
+            assertEquals(expected.size(), index.size());
+        }
+
+        for(long i=0;i<16;i++){
+            for(long m=0;m<16;m++){
+                for(long c=0;c<16;c++){
+                    Integer value = expected.get(Arrays.asList(i, m, c));
+                    assertEquals(value == null ? SpeciesIndex.ABSENT : value, index.get(new long[]{i, m, c}));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package nl.utwente.simulator.utils;
+
+import nl.utwente.simulator.ValidationTest;
+import nl.utwente.simulator.config.Settings;
+import nl.utwente.simulator.config.SimulationContext;
+import nl.utwente.simulator.utils.random.SplitMixRandom;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.text.ParseException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@Category(ValidationTest.class)
+public class WeightedRadicalTrackerTest extends ValidationTest {
+
+    private static final int SAMPLES = 1000000;
+
+    private final long[] radicals = new long[100];
+    private final long[] vinylGroups = new long[100];
+    private double localConcentration;
+
+    private RadicalTracker[] trackers() throws ParseException {
+        Settings.init();
+        SimulationContext context = SimulationContext.fromSettings();
+        RadicalTracker[] trackers = {
+                new FenwickRadicalTracker(context, new SplitMixRandom(1), 0),
+                new InterleavedRadicalTracker(context, new SplitMixRandom(1), 0),
+                new BAryRadicalTracker(context, new SplitMixRandom(1), 0),
+                new CompositionRejectionRadicalTracker(context, new SplitMixRandom(1), 0),
+                new FixedPointRadicalTracker(context, new SplitMixRandom(1), 0)
+        };
+        java.util.Random random = new java.util.Random(1);
+        localConcentration = 50 / context.vesselVolume;                                                                 //Comparable to the global concentration
+        for(int i=0;i<radicals.length;i++){
+            radicals[i] = random.nextInt(4);
+            vinylGroups[i] = random.nextInt(100);
+            for(RadicalTracker tracker : trackers){
+                tracker.add(tracker.localReactivity(radicals[i], localConcentration), radicals[i], radicals[i] * vinylGroups[i]);
+            }
+        }
+        return trackers;
+    }
+
+    @Test
+    public void unitFactorsMatchUnweighted() throws ParseException {
+        long activeVinylGroups = 5000;
+        for(RadicalTracker tracker : trackers()){
+            String name = tracker.getClass().getSimpleName();
+            double totalSum = tracker.totalSum(activeVinylGroups);
+            assertEquals(name, totalSum, tracker.totalSum(1, activeVinylGroups, 1), totalSum * 1e-12);
+            for(int i=0;i<1000;i++){
+                double partialSum = totalSum * i / 1000;
+                assertEquals(name, tracker.indexOf(partialSum, activeVinylGroups), tracker.indexOf(partialSum, 1, activeVinylGroups, 1));
+            }
+        }
+    }
+
+    @Test
+    public void picksWeightedProportionally() throws ParseException {
+        double localFactor = 0.53;
+        double globalFactor = 0.53 * 3000 + 2000;                                                                       //3000 vinyl groups in polymers, 2000 in monomers and cross-linkers
+        double exclusionFactor = 0.53;
+        for(RadicalTracker tracker : trackers()){
+            if(tracker instanceof FixedPointRadicalTracker) continue;                                                   //Its local reactivity is in fixed-point units, covered by unitFactorsMatchUnweighted
+            String name = tracker.getClass().getSimpleName();
+            double[] weights = new double[radicals.length];
+            double totalSum = 0;
+            for(int i=0;i<radicals.length;i++){
+                weights[i] = localFactor * radicals[i] * localConcentration + radicals[i] * (globalFactor - exclusionFactor * vinylGroups[i]) / tracker.vesselVolume;
+                totalSum += weights[i];
+            }
+            assertEquals(name, totalSum, tracker.totalSum(localFactor, globalFactor, exclusionFactor), totalSum * 1e-12);
+
+            long[] counts = new long[radicals.length];
+            for(int i=0;i<SAMPLES;i++) counts[tracker.pickRadical(localFactor, globalFactor, exclusionFactor)]++;
+            for(int i=0;i<radicals.length;i++){
+                double p = weights[i] / totalSum;
+                double sd = Math.sqrt(SAMPLES * p * (1-p));
+                assertTrue(name+" species "+i, Math.abs(counts[i] - SAMPLES * p) <= 5 * sd + 1);                        //Fails by chance with a negligible probability
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package nl.utwente.simulator.utils.random;
+
+import nl.utwente.simulator.ValidationTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@Category(ValidationTest.class)
+public class RandomStreamTest extends ValidationTest {
+
+    public static final int SAMPLES = 10000;
+
+    private List<Random> seedableGenerators(){
+        return Arrays.asList(new SplitMixRandom(), new XoroshiroRandom(), new MersenneTwisterRandom(), new MathRandom());
+    }
+
+    private long[] draw(Random random, int n){
+        long[] result = new long[n];
+        for(int i=0;i<n;i++){
+            result[i] = random.nextLong();
+        }
+        return result;
+    }
+
+    @Test
+    public void sameSeedGivesSameStream(){
+        for(Random random : seedableGenerators()){
+            random.setSeed(42);
+            draw(random, 3);                                                                                            //Leave values in the buffer, which should be discarded when seeding again
+            random.setSeed(42);
+            long[] first = draw(random, SAMPLES);
+            random.setSeed(42);
+            assertArrayEquals(random.getClass().getSimpleName(), first, draw(random, SAMPLES));
+            random.setSeed(43);
+            assertFalse(random.getClass().getSimpleName(), Arrays.equals(first, draw(random, SAMPLES)));
+        }
+    }
+
+    @Test
+    public void splitStreamsAreReproducibleAndDiffer(){
+        for(Random random : seedableGenerators()){
+            random.setSeed(42);
+            Random split = random.split();
+            long[] parent = draw(random, SAMPLES);
+            long[] child = draw(split, SAMPLES);
+            assertFalse(random.getClass().getSimpleName(), Arrays.equals(parent, child));
+
+            random.setSeed(42);
+            assertArrayEquals(random.getClass().getSimpleName(), child, draw(random.split(), SAMPLES));
+        }
+    }
+
+    @Test
+    public void valuesAreWithinBounds(){
+        for(Random random : seedableGenerators()){
+            random.setSeed(42);
+            for(int i=0;i<SAMPLES;i++){
+                long l = random.getRandom(3L);
+                int n = random.getRandom(1 << 4);
+                double d = random.getRandom(0.5);
+                assertTrue(l >= 0 && l < 3);
+                assertTrue(n >= 0 && n < 16);
+                assertTrue(d >= 0 && d < 0.5);
+            }
+        }
+    }
+}
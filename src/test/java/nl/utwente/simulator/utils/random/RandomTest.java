@@ -16,9 +16,21 @@ public abstract class RandomTest {
 
     public static final long samples = 100000000;
 
-    public abstract long getRandom(long min, long max);
-    public abstract long getRandom(long max);
-    public abstract String getName();
+    private final Random random = createRandom();
+
+    public abstract Random createRandom();
+
+    public long getRandom(long min, long max){
+        return random.getRandom(max - min) + min;
+    }
+
+    public long getRandom(long max){
+        return random.getRandom(max);
+    }
+
+    public String getName(){
+        return random.getClass().getSimpleName();
+    }
 
     @Before
     public void init() throws ParseException {
@@ -0,0 +1,9 @@
+package nl.utwente.simulator.utils.random;
+
+public class SplitMixRandomTest extends RandomTest{
+
+    @Override
+    public Random createRandom() {
+        return new SplitMixRandom();
+    }
+}
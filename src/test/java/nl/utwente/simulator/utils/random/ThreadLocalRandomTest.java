@@ -1,21 +1,9 @@
 package nl.utwente.simulator.utils.random;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 public class ThreadLocalRandomTest extends RandomTest{
 
     @Override
-    public long getRandom(long min, long max){
-        return ThreadLocalRandom.current().nextLong(min, max);
-    }
-
-    @Override
-    public long getRandom(long max) {
-        return ThreadLocalRandom.current().nextLong(0L, max);
-    }
-
-    @Override
-    public String getName() {
-        return "ThreadLocalRandom";
+    public Random createRandom() {
+        return new ThreadLocalJdkRandom();
     }
 }
@@ -0,0 +1,140 @@
+package nl.utwente.simulator.utils.storage;
+
+import nl.utwente.simulator.ValidationTest;
+import nl.utwente.simulator.utils.CheckpointReader;
+import nl.utwente.simulator.utils.CheckpointWriter;
+import nl.utwente.simulator.utils.DecimalFenwickTree;
+import nl.utwente.simulator.utils.IntegerFenwickTree;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@Category(ValidationTest.class)
+public class ArrayAllocatorTest extends ValidationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void fenwickTreesMatchTheHeap() {
+        for(Storage storage : new Storage[]{Storage.DIRECT, Storage.MAPPED}){
+            ArrayAllocator allocator = new ArrayAllocator(storage, folder.getRoot().getPath());
+            IntegerFenwickTree expected = new IntegerFenwickTree();
+            IntegerFenwickTree actual = new IntegerFenwickTree(allocator);
+            DecimalFenwickTree expectedDecimal = new DecimalFenwickTree();
+            DecimalFenwickTree actualDecimal = new DecimalFenwickTree(allocator);
+            java.util.Random random = new java.util.Random(1);
+
+            long[] values = new long[1000];
+            for(int i=0;i<values.length;i++){
+                values[i] = random.nextInt(100);
+                expected.add(values[i]);
+                actual.add(values[i]);
+                expectedDecimal.add(values[i] / 7D);
+                actualDecimal.add(values[i] / 7D);
+            }
+            for(int i=expected.subtreeSize();i<values.length;i++){                                                      //Empty the upper half, so that the trees can be halved
+                expected.adj(i, -values[i]);
+                actual.adj(i, -values[i]);
+                expectedDecimal.adj(i, -values[i] / 7D);
+                actualDecimal.adj(i, -values[i] / 7D);
+            }
+            expected.halfData();
+            actual.halfData();
+            expectedDecimal.halfData();
+            actualDecimal.halfData();
+            for(int i=0;i<1000;i++){                                                                                    //Grow again over the nodes that were dropped
+                expected.add(i);
+                actual.add(i);
+                expectedDecimal.add(i / 7D);
+                actualDecimal.add(i / 7D);
+            }
+
+            assertEquals(expected.totalSum(), actual.totalSum());
+            assertEquals(expected.root(), actual.root());
+            for(int i=0;i<2*expected.root();i++){
+                assertEquals(storage.name(), expected.node(i), actual.node(i));
+                assertEquals(storage.name(), expectedDecimal.node(i), actualDecimal.node(i), 0);
+            }
+            for(int i=0;i<1000;i++){
+                long prob = (long) (random.nextDouble() * expected.totalSum());
+                assertEquals(expected.indexOf(prob), actual.indexOf(prob));
+            }
+        }
+    }
+
+    @Test
+    public void mappedArrayGrowsAcrossSegments() {
+        ArrayAllocator allocator = new ArrayAllocator(Storage.MAPPED, folder.getRoot().getPath());
+        int perSegment = ArrayAllocator.SEGMENT_BYTES / Long.BYTES;
+        LongArray array = allocator.longs(perSegment + 2);
+        array.set(perSegment - 2, 6);
+        array.set(perSegment - 1, 7);
+        array.set(perSegment, 8);
+        assertEquals(7, array.get(perSegment - 1));
+        assertEquals(8, array.get(perSegment));
+
+        array.resize(perSegment - 1);                                                                                   //Drops the second segment and the last value of the first
+        array.resize(perSegment + 2);
+        assertEquals(6, array.get(perSegment - 2));
+        assertEquals(0, array.get(perSegment - 1));
+        assertEquals(0, array.get(perSegment));
+    }
+
+    @Test
+    public void mappedSegmentsGrowWithTheArray() {
+        ArrayAllocator allocator = new ArrayAllocator(Storage.MAPPED, folder.getRoot().getPath());
+        ByteBuffer segment = allocator.grow(null, 100);
+        assertEquals(128, segment.capacity());                                                                          //Instead of SEGMENT_BYTES
+        segment.putLong(0, 42);
+        segment = allocator.grow(segment, 5000);
+        assertEquals(8192, segment.capacity());
+        assertEquals(42, segment.getLong(0));
+
+        LongArray array = allocator.longs(10);
+        for(int i=0;i<10;i++) array.set(i, i + 1);
+        array.resize(100000);
+        for(int i=0;i<10;i++) assertEquals(i + 1, array.get(i));
+        assertEquals(0, array.get(99999));
+    }
+
+    @Test
+    public void createsTheDirectoryOfMappedSegments() {
+        File directory = new File(folder.getRoot(), "missing/segments");
+        LongArray array = new ArrayAllocator(Storage.MAPPED, directory.getPath()).longs(10);
+        array.set(9, 42);
+        assertTrue(directory.isDirectory());
+        assertEquals(42, array.get(9));
+    }
+
+    @Test
+    public void checkpointIsIndependentOfTheStorage() throws IOException {
+        LongArray heap = ArrayAllocator.HEAP.longs(100);
+        for(int i=0;i<heap.length();i++) heap.set(i, i * 0x9E3779B97F4A7C15L);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(CheckpointWriter checkpoint = new CheckpointWriter(Channels.newChannel(bytes))){
+            heap.save(checkpoint);
+            checkpoint.commit();
+        }
+
+        LongArray direct = new ArrayAllocator(Storage.DIRECT, null).longs(3);
+        try(CheckpointReader checkpoint = new CheckpointReader(bytes.toByteArray())){
+            direct.restore(checkpoint);
+            checkpoint.finish();
+        }
+        assertEquals(heap.length(), direct.length());
+        for(int i=0;i<heap.length();i++){
+            assertEquals(heap.get(i), direct.get(i));
+        }
+    }
+}